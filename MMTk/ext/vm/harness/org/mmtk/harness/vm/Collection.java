@@ -12,6 +12,7 @@
  */
 package org.mmtk.harness.vm;
 
+import org.mmtk.harness.BenchmarkRecorder;
 import org.mmtk.harness.Mutator;
 import org.mmtk.harness.Mutators;
 import org.mmtk.harness.exception.OutOfMemory;
@@ -73,6 +74,14 @@ public class Collection extends org.mmtk.vm.Collection {
     return Options.threads.getValue();
   }
 
+  /**
+   * Collector threads of the harness are not bound to processors.
+   */
+  @Override
+  public int bindCollectorThread(int ordinal) {
+    return -1;
+  }
+
   @Override
   public int getActiveThreads() {
     return Mutators.count();
@@ -94,12 +103,14 @@ public class Collection extends org.mmtk.vm.Collection {
   public void stopAllMutators() {
     Clock.stop();
     Scheduler.stopAllMutators();
+    BenchmarkRecorder.pauseStarted();
     Clock.start();
   }
 
   @Override
   public void resumeAllMutators() {
     Clock.stop();
+    BenchmarkRecorder.pauseEnded();
     Scheduler.resumeAllMutators();
     Clock.start();
   }
@@ -224,4 +224,9 @@ public class Factory extends org.mmtk.vm.Factory {
   public Debug newDebug() {
     return new Debug();
   }
+
+  @Override
+  public FileIO newFileIO() {
+    return new FileIO();
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.harness.vm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Binary file access for the MMTk harness, backed by java.io.
+ */
+@Uninterruptible
+public class FileIO extends org.mmtk.vm.FileIO {
+
+  /** Open files, indexed by handle.  Closed handles are set to null. */
+  private final List<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+
+  @Override
+  public synchronized int open(String name, boolean forWriting) {
+    try {
+      RandomAccessFile file = new RandomAccessFile(name, forWriting ? "rw" : "r");
+      if (forWriting) {
+        file.setLength(0);
+      }
+      files.add(file);
+      return files.size() - 1;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public synchronized int write(int handle, byte[] buf, int len) {
+    try {
+      files.get(handle).write(buf, 0, len);
+      return len;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public synchronized int read(int handle, byte[] buf, int len) {
+    try {
+      int rc = files.get(handle).read(buf, 0, len);
+      return rc < 0 ? 0 : rc;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public synchronized void close(int handle) {
+    try {
+      files.get(handle).close();
+    } catch (IOException e) {
+      // Nothing sensible to do
+    }
+    files.set(handle, null);
+  }
+}
@@ -134,6 +134,30 @@ public class Memory extends org.mmtk.vm.Memory {
     return SimulatedMemory.unprotect(start, size);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Simulated memory has no physical backing to release, so this simply
+   * zeroes the area, as re-faulting it would.
+   */
+  @Override
+  public boolean uncommit(Address start, int size) {
+    SimulatedMemory.zero(start, Extent.fromIntZeroExtend(size));
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int numaNode(int processor) {
+    return -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean preferNumaNode(Address start, int size, int node) {
+    return false;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void zero(boolean useNT, Address start, Extent len) {
@@ -162,6 +186,14 @@ public class Memory extends org.mmtk.vm.Memory {
     // Nothing required
   }
 
+  /** {@inheritDoc} */
+  @Override
+  @Inline
+  public void storeStoreBarrier() {
+    Scheduler.yield();
+    // Nothing required
+  }
+
   /*
    * NOTE: The following methods must be implemented by subclasses of this
    * class, but are internal to the VM<->MM interface glue, so are never
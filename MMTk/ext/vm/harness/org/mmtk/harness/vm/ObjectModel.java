@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.Collection;
 
+import org.mmtk.harness.BenchmarkRecorder;
 import org.mmtk.harness.Mutator;
 import org.mmtk.harness.lang.Trace;
 import org.mmtk.harness.lang.Trace.Item;
@@ -187,6 +188,7 @@ public final class ObjectModel extends org.mmtk.vm.ObjectModel {
     setDataCount(ref, dataCount);
     Clock.stop();
     Sanity.getObjectTable().alloc(region, bytes);
+    BenchmarkRecorder.allocated(bytes);
 
     if (isWatched(ref)) {
       System.err.printf("WATCH: Object %s created%n",objectIdString(ref));
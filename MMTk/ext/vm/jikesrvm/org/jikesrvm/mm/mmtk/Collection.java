@@ -54,6 +54,15 @@ public class Collection extends org.mmtk.vm.Collection {
     return SysCall.sysCall.sysNumProcessors();
   }
 
+  @Override
+  public int bindCollectorThread(int ordinal) {
+    /* An explicit processor binding of the whole VM takes precedence */
+    if (VM.forceOneCPU >= 0 || SysCall.sysCall.sysThreadBindSupported() != 1) return -1;
+    int processor = ordinal % SysCall.sysCall.sysNumProcessors();
+    SysCall.sysCall.sysThreadBind(processor);
+    return processor;
+  }
+
   @Override
   public int getActiveThreads() {
     return RVMThread.getNumActiveThreads() - RVMThread.getNumActiveDaemons();
@@ -210,6 +210,16 @@ public final class Factory extends org.mmtk.vm.Factory {
     return new Debug();
   }
 
+  @Override
+  public org.mmtk.vm.FileIO newFileIO() {
+    try {
+      return new FileIO();
+    } catch (Exception e) {
+      VM.sysFail("Failed to allocate new FileIO!");
+      return null; // never get here
+    }
+  }
+
   /**********************************************************************
    * GCspy methods
    */
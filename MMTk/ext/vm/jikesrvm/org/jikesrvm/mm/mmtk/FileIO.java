@@ -0,0 +1,54 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import static org.jikesrvm.runtime.SysCall.sysCall;
+
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.*;
+
+/**
+ * Binary file access for MMTk, implemented directly on top of the
+ * bootloader's file system calls so that it may be used from
+ * uninterruptible (e.g. collection-time) code.
+ */
+@Uninterruptible
+public final class FileIO extends org.mmtk.vm.FileIO {
+
+  @Override
+  @Interruptible
+  public int open(String name, boolean forWriting) {
+    return sysCall.sysOpenFile(name.concat("\0").getBytes(), forWriting ? 1 : 0);
+  }
+
+  @Override
+  public int write(int handle, byte[] buf, int len) {
+    int written = 0;
+    while (written < len) {
+      int rc = sysCall.sysWriteBytes(handle, Magic.objectAsAddress(buf).plus(written), len - written);
+      if (rc < 0) return rc;
+      written += rc;
+    }
+    return written;
+  }
+
+  @Override
+  public int read(int handle, byte[] buf, int len) {
+    return sysCall.sysReadBytes(handle, Magic.objectAsAddress(buf), len);
+  }
+
+  @Override
+  public void close(int handle) {
+    sysCall.sysCloseFile(handle);
+  }
+}
@@ -28,6 +28,7 @@ import org.jikesrvm.VM;
 import org.jikesrvm.objectmodel.JavaHeader;
 import org.jikesrvm.runtime.BootRecord;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.SysCall;
 import org.mmtk.policy.ImmortalSpace;
 import org.mmtk.utility.heap.VMRequest;
 import org.vmmagic.pragma.Inline;
@@ -186,6 +187,29 @@ import org.vmmagic.unboxed.Offset;
                                                    org.jikesrvm.runtime.Memory.PROT_EXEC);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Uses <code>madvise(MADV_DONTNEED)</code>; see
+   * {@link org.jikesrvm.runtime.Memory#madvDontNeed()} for what that
+   * means on each platform.
+   */
+  @Override
+  public final boolean uncommit(Address start, int size) {
+    return org.jikesrvm.runtime.Memory.madvise(start, Extent.fromIntZeroExtend(size),
+                                               org.jikesrvm.runtime.Memory.madvDontNeed());
+  }
+
+  @Override
+  public final int numaNode(int processor) {
+    return SysCall.sysCall.sysCpuNumaNode(processor);
+  }
+
+  @Override
+  public final boolean preferNumaNode(Address start, int size, int node) {
+    return org.jikesrvm.runtime.Memory.preferNumaNode(start, Extent.fromIntZeroExtend(size), node);
+  }
+
   @Override
   public final void zero(boolean useNT, Address start, Extent len) {
     org.jikesrvm.runtime.Memory.zero(useNT, start,len);
@@ -212,4 +236,10 @@ import org.vmmagic.unboxed.Offset;
   public final void combinedLoadBarriers() {
     Magic.combinedLoadBarrier();
   }
+
+  @Override
+  @Inline
+  public final void storeStoreBarrier() {
+    Magic.storeStoreBarrier();
+  }
 }
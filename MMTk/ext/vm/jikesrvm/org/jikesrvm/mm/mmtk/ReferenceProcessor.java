@@ -12,6 +12,7 @@
  */
 package org.jikesrvm.mm.mmtk;
 
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.utility.options.Options;
 
@@ -46,6 +47,12 @@ import java.lang.ref.PhantomReference;
  * <p>
  * As an optimization for generational collectors, each reference type
  * maintains two queues: a nursery queue and the main queue.
+ * <p>
+ * The table of each reference type is split into segments.  A mutator adds
+ * its references to the segment chosen by its thread slot, taking only that
+ * segment's lock, and at GC time each collector scans and forwards its own
+ * share of the segments, so reference processing runs in parallel across
+ * the collector threads.
  */
 @Uninterruptible
 public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
@@ -54,8 +61,6 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Class fields
    */
 
-  private static final Lock lock = new Lock("ReferenceProcessor");
-
   private static final ReferenceProcessor softReferenceProcessor =
     new ReferenceProcessor(Semantics.SOFT);
   private static final ReferenceProcessor weakReferenceProcessor =
@@ -63,14 +68,21 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   private static final ReferenceProcessor phantomReferenceProcessor =
     new ReferenceProcessor(Semantics.PHANTOM);
 
+  /**
+   * Serializes {@link #enqueueReference}: the class library's reference
+   * queues are not locked against concurrent enqueues, and every collector
+   * enqueues references when processing is parallel.
+   */
+  private static final Lock enqueueLock = new Lock("ReferenceProcessor.enqueue");
+
   // Debug flags
   private static final boolean TRACE = false;
   private static final boolean TRACE_UNREACHABLE = false;
   private static final boolean TRACE_DETAIL = false;
   private static final boolean STRESS = false || VM.ForceFrequentGC;
 
-  /** Initial size of the reference object table */
-  private static final int INITIAL_SIZE = STRESS ? 1 : 256;
+  /** Initial size of each segment of the reference object table */
+  private static final int INITIAL_SIZE = STRESS ? 1 : 32;
 
   /**
    * Grow the reference object table by this multiplier
@@ -78,40 +90,18 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /** The number of segments each reference object table is split into */
+  private static final int SEGMENTS = 16;
+
 
   /*************************************************************************
    * Instance fields
    */
 
   /**
-   * The table of reference objects for the current semantics
-   */
-  private volatile AddressArray references = AddressArray.create(INITIAL_SIZE);
-
-  /**
-   * In a MarkCompact (or similar) collector, we need to update the {@code references}
-   * field, and then update its contents.  We implement this by saving the pointer in
-   * this untraced field for use during the {@code forward} pass.
-   */
-  @Untraced
-  private volatile AddressArray unforwardedReferences = null;
-
-  /**
-   * Index into the <code>references</code> table for the start of
-   * the reference nursery.
-   */
-  private int nurseryIndex = 0;
-
-  /**
-   * Index of the first free slot in the reference table.
-   */
-  private volatile int maxIndex = 0;
-
-  /**
-   * Flag to prevent a race between threads growing the reference object
-   * table.
+   * The segments of the table of reference objects for the current semantics
    */
-  private volatile boolean growingTable = false;
+  private final Segment[] segments = new Segment[SEGMENTS];
 
   /**
    * Semantics
@@ -131,13 +121,16 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   private ReferenceProcessor(Semantics semantics) {
     this.semantics = semantics;
     this.semanticsStr = semantics.toString();
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(this);
+    }
   }
 
   /**
    * Creates an instance of the appropriate reference type processor.
    *
    * @param semantics the semantics that the reference processor should
-   *  use (i.e. the type of references that it will process)
+   *  use (i.e. the types of references that it will process)
    * @return the reference processor
    */
   @Interruptible
@@ -153,59 +146,219 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   }
 
   /**
-   * Add a reference at the end of the table
-   * @param ref The reference to add
-   * @param referent the object pointed to by the reference
+   * One segment of the table of reference objects.  Mutators add to a
+   * segment under its lock; at GC time a segment is only ever touched
+   * by the one collector it has been shared out to.
    */
-  private void addReference(Reference<?> ref, ObjectReference referent) {
-    ObjectReference reference = ObjectReference.fromObject(ref);
-    setReferent(reference, referent);
-    setReference(maxIndex++,reference);
-  }
+  @Uninterruptible
+  private static final class Segment {
 
-  /**
-   * Update the reference table
-   *
-   * @param i The table index
-   * @param ref The reference to insert
-   */
-  private void setReference(int i, ObjectReference ref) {
-    if (TRACE_DETAIL) {
-      VM.sysWrite("slot ",i);
-      VM.sysWriteln(" => ",ref);
+    private final Lock lock = new Lock("ReferenceProcessor");
+
+    /** The processor owning this segment */
+    private final ReferenceProcessor processor;
+
+    /**
+     * The table of reference objects in this segment
+     */
+    private volatile AddressArray references = AddressArray.create(INITIAL_SIZE);
+
+    /**
+     * In a MarkCompact (or similar) collector, we need to update the {@code references}
+     * field, and then update its contents.  We implement this by saving the pointer in
+     * this untraced field for use during the {@code forward} pass.
+     */
+    @Untraced
+    private volatile AddressArray unforwardedReferences = null;
+
+    /**
+     * Index into the <code>references</code> table for the start of
+     * the reference nursery.
+     */
+    private int nurseryIndex = 0;
+
+    /**
+     * Index of the first free slot in the reference table.
+     */
+    private volatile int maxIndex = 0;
+
+    /**
+     * Flag to prevent a race between threads growing the reference object
+     * table.
+     */
+    private volatile boolean growingTable = false;
+
+    Segment(ReferenceProcessor processor) {
+      this.processor = processor;
     }
-    references.set(i,ref.toAddress());
-  }
 
-  /**
-   * Retrieve from the reference table
-   *
-   * @param i Table index
-   * @return The reference object at index i
-   */
-  private ObjectReference getReference(int i) {
-    return references.get(i).toObjectReference();
-  }
+    /**
+     * Add a reference at the end of the table
+     * @param ref The reference to add
+     * @param referent the object pointed to by the reference
+     */
+    private void addReference(Reference<?> ref, ObjectReference referent) {
+      ObjectReference reference = ObjectReference.fromObject(ref);
+      processor.setReferent(reference, referent);
+      setReference(maxIndex++,reference);
+    }
 
-  /**
-   * Grow the reference table by GROWTH_FACTOR.
-   *
-   * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates, but
-   * the rest of the code can't tolerate GC.
-   *
-   * <p>This method is called without the reference processor lock held,
-   * but with the flag <code>growingTable</code> set.
-   *
-   * @return the start address of the new reference table
-   */
-  @UninterruptibleNoWarn
-  private AddressArray growReferenceTable() {
-    int newLength = STRESS ? references.length() + 1 : (int)(references.length() * GROWTH_FACTOR);
-    if (TRACE) VM.sysWriteln("Expanding reference type table ",semanticsStr," to ",newLength);
-    AddressArray newReferences = AddressArray.create(newLength);
-    for (int i = 0; i < references.length(); i++)
-      newReferences.set(i,references.get(i));
-    return newReferences;
+    /**
+     * Update the reference table
+     *
+     * @param i The table index
+     * @param ref The reference to insert
+     */
+    private void setReference(int i, ObjectReference ref) {
+      if (TRACE_DETAIL) {
+        VM.sysWrite("slot ",i);
+        VM.sysWriteln(" => ",ref);
+      }
+      references.set(i,ref.toAddress());
+    }
+
+    /**
+     * Retrieve from the reference table
+     *
+     * @param i Table index
+     * @return The reference object at index i
+     */
+    private ObjectReference getReference(int i) {
+      return references.get(i).toObjectReference();
+    }
+
+    /**
+     * Grow the reference table by GROWTH_FACTOR.
+     *
+     * <p>Marked as UninterruptibleNoWarn because it can GC when it allocates, but
+     * the rest of the code can't tolerate GC.
+     *
+     * <p>This method is called without the segment lock held,
+     * but with the flag <code>growingTable</code> set.
+     *
+     * @return the start address of the new reference table
+     */
+    @UninterruptibleNoWarn
+    private AddressArray growReferenceTable() {
+      int newLength = STRESS ? references.length() + 1 : (int)(references.length() * GROWTH_FACTOR);
+      if (TRACE) VM.sysWriteln("Expanding reference type table ",processor.semanticsStr," to ",newLength);
+      AddressArray newReferences = AddressArray.create(newLength);
+      for (int i = 0; i < references.length(); i++)
+        newReferences.set(i,references.get(i));
+      return newReferences;
+    }
+
+    /**
+     * Add a reference to this segment.  See
+     * {@link ReferenceProcessor#addCandidate(Reference, ObjectReference)}.
+     *
+     * @param referent The referent of the reference
+     * @param ref The reference to add
+     */
+    @NoInline
+    @Unpreemptible("Non-preemptible but yield when table needs to be grown")
+    private void addCandidate(Reference<?> ref, ObjectReference referent) {
+      /*
+       * Ensure that only one thread at a time can grow the
+       * table of references.  The volatile flag <code>growingTable</code> is
+       * used to allow growing the table to trigger GC, but to prevent
+       * any other thread from accessing the table while it is being grown.
+       *
+       * If the table has space, threads will add the reference, incrementing maxIndex
+       * and exit.
+       *
+       * If the table is full, the first thread to notice will grow the table.
+       * Subsequent threads will release the lock and yield at (1) while the
+       * first thread
+       */
+      lock.acquire();
+      while (growingTable || maxIndex >= references.length()) {
+        if (growingTable) {
+          // FIXME: We should probably speculatively allocate a new table instead.
+          // note, we can copy without the lock after installing the new table (unint during copy).
+          lock.release();
+          RVMThread.yieldWithHandshake(); // (1) Allow another thread to grow the table
+          lock.acquire();
+        } else {
+          growingTable = true;  // Prevent other threads from growing table while lock is released
+          lock.release();       // Can't hold the lock while allocating
+          AddressArray newTable = growReferenceTable();
+          lock.acquire();
+          references = newTable;
+          growingTable = false; // Allow other threads to grow the table rather than waiting for us
+        }
+      }
+      addReference(ref,referent);
+      lock.release();
+    }
+
+    /**
+     * Forward the references of this segment.  See
+     * {@link ReferenceProcessor#forward(TraceLocal, boolean)}.
+     *
+     * @param trace The MMTk trace to forward to
+     */
+    private void forward(TraceLocal trace) {
+      if (VM.VerifyAssertions) VM._assert(unforwardedReferences != null);
+      if (TRACE_DETAIL) {
+        VM.sysWrite(processor.semanticsStr," Reference table is ",
+            Magic.objectAsAddress(references));
+        VM.sysWriteln("unforwardedReferences is ",
+            Magic.objectAsAddress(unforwardedReferences));
+      }
+      for (int i = 0; i < maxIndex; i++) {
+        if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
+        ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
+        if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
+        processor.setReferent(reference, trace.getForwardedReferent(processor.getReferent(reference)));
+        ObjectReference newReference = trace.getForwardedReference(reference);
+        unforwardedReferences.set(i, newReference.toAddress());
+      }
+      unforwardedReferences = null;
+    }
+
+    /**
+     * Scan the references of this segment.  See
+     * {@link ReferenceProcessor#scan(TraceLocal, boolean, boolean)}.
+     *
+     * @param trace the thread local trace element.
+     * @param nursery Scan only the newly created references
+     * @param retain whether to retain those references whose referents are not
+     *  reachable
+     * @return the number of references remaining in this segment
+     */
+    private int scan(TraceLocal trace, boolean nursery, boolean retain) {
+      unforwardedReferences = references;
+
+      int toIndex = nursery ? nurseryIndex : 0;
+
+      if (TRACE_DETAIL) VM.sysWriteln(processor.semanticsStr," Reference table is ",Magic.objectAsAddress(references));
+      if (retain) {
+        for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+          ObjectReference reference = getReference(fromIndex);
+          processor.retainReferent(trace, reference);
+        }
+        return maxIndex;
+      }
+      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+        ObjectReference reference = getReference(fromIndex);
+
+        /* Determine liveness (and forward if necessary) the reference */
+        ObjectReference newReference = processor.processReference(trace,reference);
+        if (!newReference.isNull()) {
+          setReference(toIndex++,newReference);
+          if (TRACE_DETAIL) {
+            int index = toIndex - 1;
+            VM.sysWrite("SCANNED ",index);
+            VM.sysWrite(" ",references.get(index));
+            VM.sysWrite(" -> ");
+            VM.sysWriteln(processor.getReferent(references.get(index).toObjectReference()));
+          }
+        }
+      }
+      nurseryIndex = maxIndex = toIndex;
+      return toIndex;
+    }
   }
 
   /**
@@ -228,45 +381,26 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       VM.sysWrite("Adding Reference: ", referenceAsAddress);
       VM.sysWriteln(" ~> ", referent);
     }
-
-    /*
-     * Ensure that only one thread at a time can grow the
-     * table of references.  The volatile flag <code>growingTable</code> is
-     * used to allow growing the table to trigger GC, but to prevent
-     * any other thread from accessing the table while it is being grown.
-     *
-     * If the table has space, threads will add the reference, incrementing maxIndex
-     * and exit.
-     *
-     * If the table is full, the first thread to notice will grow the table.
-     * Subsequent threads will release the lock and yield at (1) while the
-     * first thread
-     */
-    lock.acquire();
-    while (growingTable || maxIndex >= references.length()) {
-      if (growingTable) {
-        // FIXME: We should probably speculatively allocate a new table instead.
-        // note, we can copy without the lock after installing the new table (unint during copy).
-        lock.release();
-        RVMThread.yieldWithHandshake(); // (1) Allow another thread to grow the table
-        lock.acquire();
-      } else {
-        growingTable = true;  // Prevent other threads from growing table while lock is released
-        lock.release();       // Can't hold the lock while allocating
-        AddressArray newTable = growReferenceTable();
-        lock.acquire();
-        references = newTable;
-        growingTable = false; // Allow other threads to grow the table rather than waiting for us
-      }
-    }
-    addReference(ref,referent);
-    lock.release();
+    segments[RVMThread.getCurrentThread().getThreadSlot() & (SEGMENTS - 1)].addCandidate(ref, referent);
   }
 
   /***********************************************************************
    *              GC time processing
    */
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Every collector calls {@link #scan} and {@link #forward}, each taking
+   * the segments whose index matches its parallel worker ordinal.  The
+   * collectors share the reference queues, so {@link #enqueueReference}
+   * is serialized.
+   */
+  @Override
+  public boolean isParallel() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    * <p>
@@ -274,35 +408,23 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * using separate traces.
    * <p>
    * Currently ignores the nursery hint.
-   * <p>
-   * TODO parallelise this code
-   *
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    if (VM.VerifyAssertions) VM._assert(unforwardedReferences != null);
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.forward(",semanticsStr,")");
-    if (TRACE_DETAIL) {
-      VM.sysWrite(semanticsStr," Reference table is ",
-          Magic.objectAsAddress(references));
-      VM.sysWriteln("unforwardedReferences is ",
-          Magic.objectAsAddress(unforwardedReferences));
-    }
-    for (int i = 0; i < maxIndex; i++) {
-      if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
-      ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
-      if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
-      setReferent(reference, trace.getForwardedReferent(getReferent(reference)));
-      ObjectReference newReference = trace.getForwardedReference(reference);
-      unforwardedReferences.set(i, newReference.toAddress());
+    CollectorContext collector = RVMThread.getCurrentThread().getCollectorContext();
+    for (int i = collector.parallelWorkerOrdinal(); i < SEGMENTS; i += collector.parallelWorkerCount()) {
+      segments[i].forward(trace);
     }
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
-    unforwardedReferences = null;
   }
 
   @Override
   public void clear() {
-    maxIndex = 0;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i].maxIndex = 0;
+      segments[i].nurseryIndex = 0;
+    }
   }
 
   /**
@@ -313,45 +435,24 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    * <p>
-   * TODO parallelise this code
+   * Each collector scans the segments whose index matches its parallel
+   * worker ordinal.
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   public void scan(TraceLocal trace, boolean nursery, boolean retain) {
-    unforwardedReferences = references;
-
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.scan(",semanticsStr,")");
-    int toIndex = nursery ? nurseryIndex : 0;
-
-    if (TRACE_DETAIL) VM.sysWriteln(semanticsStr," Reference table is ",Magic.objectAsAddress(references));
-    if (retain) {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-          ObjectReference reference = getReference(fromIndex);
-          retainReferent(trace, reference);
-        }
-    } else {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-        ObjectReference reference = getReference(fromIndex);
-
-        /* Determine liveness (and forward if necessary) the reference */
-        ObjectReference newReference = processReference(trace,reference);
-        if (!newReference.isNull()) {
-          setReference(toIndex++,newReference);
-          if (TRACE_DETAIL) {
-            int index = toIndex - 1;
-            VM.sysWrite("SCANNED ",index);
-            VM.sysWrite(" ",references.get(index));
-            VM.sysWrite(" -> ");
-            VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
-          }
-               }
-             }
-      if (Options.verbose.getValue() >= 3) {
-        VM.sysWrite(semanticsStr);
-        VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
-      }
-      nurseryIndex = maxIndex = toIndex;
+    CollectorContext collector = RVMThread.getCurrentThread().getCollectorContext();
+    int before = 0;
+    int after = 0;
+    for (int i = collector.parallelWorkerOrdinal(); i < SEGMENTS; i += collector.parallelWorkerCount()) {
+      before += segments[i].maxIndex;
+      after += segments[i].scan(trace, nursery, retain);
+    }
+    if (!retain && Options.verbose.getValue() >= 3) {
+      VM.sysWrite(semanticsStr);
+      VM.sysWriteln(" references: ",before," -> ",after);
     }
 
     /* flush out any remset entries generated during the above activities */
@@ -411,7 +512,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   public boolean enqueueReference(ObjectReference addr) {
     Reference<?> reference = (Reference<?>)addr.toObject();
-    return reference.enqueueInternal();
+    enqueueLock.acquire();
+    boolean enqueued = reference.enqueueInternal();
+    enqueueLock.release();
+    return enqueued;
   }
 
   /**
@@ -601,6 +705,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
 
   @Override
   public int countWaitingReferences() {
-    return maxIndex;
+    int count = 0;
+    for (int i = 0; i < SEGMENTS; i++) {
+      count += segments[i].maxIndex;
+    }
+    return count;
   }
 }
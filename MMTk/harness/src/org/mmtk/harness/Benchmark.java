@@ -0,0 +1,431 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.harness;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark driver for the MMTk harness.
+ * <p>
+ * Runs a set of allocation-pattern scripts over a set of plans, heap sizes
+ * and (for scripts that call the <code>mutators()</code> intrinsic) mutator
+ * thread counts, repeating each configuration a number of times.  MMTk keeps
+ * its plan in static state, so every run is a separate child JVM running
+ * {@link Main} with the <code>benchmarkStats</code> option; the child reports
+ * its raw statistics through {@link BenchmarkRecorder}.
+ * <p>
+ * For each configuration the report gives the GC count, total GC time, the
+ * maximum and percentile pause times and the allocation throughput over
+ * mutator (non-pause) time.  The report is written as CSV, or as JSON when
+ * the report file name ends in <code>.json</code>.
+ * <p>
+ * Options, all of the form <code>key=value</code>:
+ * <ul>
+ * <li><code>plans</code>: comma-separated plan names</li>
+ * <li><code>scripts</code>: comma-separated scripts, or <code>scriptDir</code>
+ *     to run every script in a directory</li>
+ * <li><code>heapFactors</code>: multiples of each script's <code>baseHeap</code></li>
+ * <li><code>mutators</code>: mutator thread counts for scalable scripts</li>
+ * <li><code>reps</code>: repetitions of each configuration</li>
+ * <li><code>report</code>: report file (default: CSV on standard output)</li>
+ * </ul>
+ * Any other argument is passed through to the child harness.
+ */
+public final class Benchmark {
+
+  /** First command-line argument to {@link Main} that selects benchmark mode */
+  public static final String COMMAND = "benchmark";
+
+  private static final String DEFAULT_PLANS =
+    "MementoV2,MementoV3,MementoV4,MementoV5,GenCopy,GenMS,GenImmix";
+  private static final String DEFAULT_SCRIPT_DIR = "MMTk/harness/test-scripts/benchmarks";
+  private static final String DEFAULT_HEAP_FACTORS = "1.5,2,3";
+  private static final String DEFAULT_MUTATORS = "1,2,4,8";
+
+  private static final Pattern BASE_HEAP =
+    Pattern.compile("option\\s+baseHeap\\s+\"(\\d+)([kKmM]?)\"");
+  private static final String SCALABLE_MARKER = "mutators()";
+
+  private static final double NS_PER_MS = 1e6;
+  private static final double BYTES_IN_MB = 1024 * 1024;
+
+  private final List<String> plans = new ArrayList<String>();
+  private final List<String> scripts = new ArrayList<String>();
+  private final List<Double> heapFactors = new ArrayList<Double>();
+  private final List<Integer> mutators = new ArrayList<Integer>();
+  private final List<String> passThrough = new ArrayList<String>();
+  private int reps = 3;
+  private String report = null;
+
+  private Benchmark() {
+  }
+
+  /**
+   * Run the benchmark suite
+   * @param args Benchmark options
+   * @return Process exit status: 0 if every run succeeded
+   * @throws IOException If a script or the report file can't be accessed
+   */
+  public static int run(String[] args) throws IOException {
+    Benchmark benchmark = new Benchmark();
+    if (!benchmark.parse(args)) {
+      return -1;
+    }
+    List<Result> results = benchmark.runAll();
+    benchmark.writeReport(results);
+    for (Result result : results) {
+      if (result.failures > 0) return 1;
+    }
+    return 0;
+  }
+
+  /**
+   * Parse the command line
+   * @param args Benchmark options
+   * @return {@code true} if the options were valid
+   */
+  private boolean parse(String[] args) {
+    String planList = DEFAULT_PLANS;
+    String scriptList = null;
+    String scriptDir = DEFAULT_SCRIPT_DIR;
+    String factorList = DEFAULT_HEAP_FACTORS;
+    String mutatorList = DEFAULT_MUTATORS;
+    try {
+      for (String arg : args) {
+        int eq = arg.indexOf('=');
+        String key = eq < 0 ? arg : arg.substring(0, eq);
+        String value = eq < 0 ? "" : arg.substring(eq + 1);
+        if (key.equals("plans")) planList = value;
+        else if (key.equals("scripts")) scriptList = value;
+        else if (key.equals("scriptDir")) scriptDir = value;
+        else if (key.equals("heapFactors")) factorList = value;
+        else if (key.equals("mutators")) mutatorList = value;
+        else if (key.equals("reps")) reps = Integer.parseInt(value);
+        else if (key.equals("report")) report = value;
+        else passThrough.add(arg);
+      }
+      plans.addAll(Arrays.asList(planList.split(",")));
+      for (String factor : factorList.split(",")) {
+        heapFactors.add(Double.valueOf(factor));
+      }
+      for (String count : mutatorList.split(",")) {
+        mutators.add(Integer.valueOf(count));
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Invalid benchmark option: " + e.getMessage());
+      return false;
+    }
+    for (String plan : plans) {
+      if (!isPlan(plan)) {
+        System.err.println("Unknown plan " + plan);
+        return false;
+      }
+    }
+    if (scriptList != null) {
+      scripts.addAll(Arrays.asList(scriptList.split(",")));
+    } else {
+      String[] files = new File(scriptDir).list();
+      if (files == null) {
+        System.err.println("Can't read script directory " + scriptDir);
+        return false;
+      }
+      Arrays.sort(files);
+      for (String file : files) {
+        if (file.endsWith(".script")) scripts.add(new File(scriptDir, file).getPath());
+      }
+    }
+    if (scripts.isEmpty() || reps <= 0) {
+      System.err.println("Nothing to run");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param name A plan name as given to the harness: a short name or the
+   * name of a plan class
+   * @return {@code true} if the name resolves to a plan class
+   */
+  private static boolean isPlan(String name) {
+    try {
+      Class<?> plan = Class.forName(PlanSpecificConfig.planClass(name), false, Benchmark.class.getClassLoader());
+      return org.mmtk.plan.Plan.class.isAssignableFrom(plan);
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Run every configuration
+   * @return The aggregated result of each configuration
+   * @throws IOException If a script can't be read
+   */
+  private List<Result> runAll() throws IOException {
+    List<Result> results = new ArrayList<Result>();
+    for (String script : scripts) {
+      String source = readScript(script);
+      int baseHeapKb = baseHeapKb(source);
+      /* Scripts without a baseHeap run once, at the harness default heap size */
+      List<Double> factors = baseHeapKb == 0 ?
+          Collections.singletonList(Double.valueOf(1)) : heapFactors;
+      List<Integer> threadCounts = source.contains(SCALABLE_MARKER) ?
+          mutators : Collections.singletonList(Integer.valueOf(1));
+      for (String plan : plans) {
+        for (double factor : factors) {
+          int heapKb = (int)Math.round(baseHeapKb * factor);
+          for (int threads : threadCounts) {
+            Result result = new Result(script, plan, heapKb, threads);
+            for (int rep = 0; rep < reps; rep++) {
+              runOne(result);
+            }
+            results.add(result);
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Run one repetition of a configuration in a child JVM, adding its
+   * statistics to the result.
+   * @param result The configuration and its accumulated statistics
+   */
+  private void runOne(Result result) {
+    List<String> command = new ArrayList<String>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(Main.class.getName());
+    command.add(result.script);
+    command.add("plan=" + result.plan);
+    if (result.heapKb > 0) command.add("baseHeap=" + result.heapKb + "k");
+    command.add("mutators=" + result.mutators);
+    command.add("benchmarkStats=true");
+    command.addAll(passThrough);
+
+    System.err.printf("[Benchmark] %s plan=%s heap=%dk mutators=%d%n",
+        result.script, result.plan, result.heapKb, result.mutators);
+    String line = null;
+    int status;
+    try {
+      Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+      BufferedReader output = new BufferedReader(new InputStreamReader(child.getInputStream()));
+      for (String l = output.readLine(); l != null; l = output.readLine()) {
+        if (l.startsWith(BenchmarkRecorder.RESULT_PREFIX)) line = l;
+      }
+      status = child.waitFor();
+    } catch (IOException e) {
+      System.err.println("[Benchmark] Can't run child harness: " + e.getMessage());
+      status = -1;
+    } catch (InterruptedException e) {
+      status = -1;
+    }
+    if (status != 0 || line == null) {
+      result.failures++;
+      System.err.printf("[Benchmark]   failed (status %d)%n", status);
+      return;
+    }
+    result.add(line.substring(BenchmarkRecorder.RESULT_PREFIX.length()));
+  }
+
+  private static String readScript(String script) throws IOException {
+    String file = script.endsWith(".script") ? script : script + ".script";
+    StringBuilder source = new StringBuilder();
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try {
+      for (String l = in.readLine(); l != null; l = in.readLine()) {
+        source.append(l).append('\n');
+      }
+    } finally {
+      in.close();
+    }
+    return source.toString();
+  }
+
+  /**
+   * @param source Script source
+   * @return The baseHeap declared by the script in kilobytes, or 0 if none
+   */
+  private static int baseHeapKb(String source) {
+    Matcher m = BASE_HEAP.matcher(source);
+    if (!m.find()) return 0;
+    int size = Integer.parseInt(m.group(1));
+    String unit = m.group(2).toLowerCase(Locale.ROOT);
+    if (unit.equals("m")) return size * 1024;
+    if (unit.equals("")) return size / 1024;
+    return size;
+  }
+
+  /**
+   * Write the report, as CSV or JSON
+   * @param results The results
+   * @throws IOException If the report file can't be written
+   */
+  private void writeReport(List<Result> results) throws IOException {
+    PrintWriter out = report == null ?
+        new PrintWriter(System.out) : new PrintWriter(new FileWriter(report));
+    try {
+      if (report != null && report.endsWith(".json")) {
+        writeJson(out, results);
+      } else {
+        writeCsv(out, results);
+      }
+    } finally {
+      out.flush();
+      if (report != null) out.close();
+    }
+  }
+
+  private static void writeCsv(PrintWriter out, List<Result> results) {
+    out.println("script,plan,heapKb,mutators,runs,failures,gcCount,gcTimeMs," +
+        "maxPauseMs,p50PauseMs,p90PauseMs,p99PauseMs,allocatedMB,throughputMBs");
+    for (Result r : results) {
+      out.printf(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+          r.script, r.plan, r.heapKb, r.mutators, r.runs, r.failures,
+          r.meanGcCount(), r.meanGcTimeMs(), r.maxPauseMs(),
+          r.pausePercentileMs(50), r.pausePercentileMs(90), r.pausePercentileMs(99),
+          r.meanAllocatedMB(), r.meanThroughputMBs());
+    }
+  }
+
+  private static void writeJson(PrintWriter out, List<Result> results) {
+    out.println("[");
+    for (int i = 0; i < results.size(); i++) {
+      Result r = results.get(i);
+      out.printf(Locale.ROOT, "  {\"script\": \"%s\", \"plan\": \"%s\", \"heapKb\": %d, \"mutators\": %d, " +
+          "\"runs\": %d, \"failures\": %d, \"gcCount\": %.1f, \"gcTimeMs\": %.3f, " +
+          "\"maxPauseMs\": %.3f, \"p50PauseMs\": %.3f, \"p90PauseMs\": %.3f, \"p99PauseMs\": %.3f, " +
+          "\"allocatedMB\": %.3f, \"throughputMBs\": %.3f}%s%n",
+          r.script.replace("\\", "\\\\"), r.plan, r.heapKb, r.mutators, r.runs, r.failures,
+          r.meanGcCount(), r.meanGcTimeMs(), r.maxPauseMs(),
+          r.pausePercentileMs(50), r.pausePercentileMs(90), r.pausePercentileMs(99),
+          r.meanAllocatedMB(), r.meanThroughputMBs(),
+          i < results.size() - 1 ? "," : "");
+    }
+    out.println("]");
+  }
+
+  /**
+   * Nearest-rank percentile of a sorted list
+   * @param sorted Values in ascending order
+   * @param percentile The percentile, 0 &lt; percentile &lt;= 100
+   * @return The percentile value, or 0 for an empty list
+   */
+  static long percentile(List<Long> sorted, double percentile) {
+    if (sorted.isEmpty()) return 0;
+    int rank = (int)Math.ceil(percentile / 100 * sorted.size());
+    return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+  }
+
+  /**
+   * The statistics of one configuration, accumulated over its repetitions
+   */
+  static final class Result {
+    final String script;
+    final String plan;
+    final int heapKb;
+    final int mutators;
+
+    int runs = 0;
+    int failures = 0;
+    private long gcCount = 0;
+    private long gcTime = 0;
+    private long allocated = 0;
+    private double throughput = 0;
+    /** Pause times of all runs, in nanoseconds */
+    private final List<Long> pauses = new ArrayList<Long>();
+    private boolean sorted = true;
+
+    Result(String script, String plan, int heapKb, int mutators) {
+      this.script = script;
+      this.plan = plan;
+      this.heapKb = heapKb;
+      this.mutators = mutators;
+    }
+
+    /**
+     * Add the statistics of a run
+     * @param stats The result line of the run, without its prefix
+     */
+    void add(String stats) {
+      long elapsed = 0;
+      long runAllocated = 0;
+      long runGcTime = 0;
+      for (String field : stats.split(" ")) {
+        int eq = field.indexOf('=');
+        String key = field.substring(0, eq);
+        String value = field.substring(eq + 1);
+        if (key.equals("elapsed")) {
+          elapsed = Long.parseLong(value);
+        } else if (key.equals("allocated")) {
+          runAllocated = Long.parseLong(value);
+        } else if (key.equals("pauses") && value.length() > 0) {
+          for (String pause : value.split(",")) {
+            long p = Long.parseLong(pause);
+            pauses.add(p);
+            runGcTime += p;
+            gcCount++;
+          }
+        }
+      }
+      runs++;
+      gcTime += runGcTime;
+      allocated += runAllocated;
+      long mutatorTime = Math.max(1, elapsed - runGcTime);
+      throughput += (runAllocated / BYTES_IN_MB) / (mutatorTime / (NS_PER_MS * 1000));
+      sorted = false;
+    }
+
+    double meanGcCount() {
+      return runs == 0 ? 0 : (double)gcCount / runs;
+    }
+
+    double meanGcTimeMs() {
+      return runs == 0 ? 0 : gcTime / NS_PER_MS / runs;
+    }
+
+    double meanAllocatedMB() {
+      return runs == 0 ? 0 : allocated / BYTES_IN_MB / runs;
+    }
+
+    double meanThroughputMBs() {
+      return runs == 0 ? 0 : throughput / runs;
+    }
+
+    double maxPauseMs() {
+      return pausePercentileMs(100);
+    }
+
+    double pausePercentileMs(double percentile) {
+      if (!sorted) {
+        Collections.sort(pauses);
+        sorted = true;
+      }
+      return percentile(pauses, percentile) / NS_PER_MS;
+    }
+  }
+}
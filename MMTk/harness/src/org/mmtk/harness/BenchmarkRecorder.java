@@ -0,0 +1,100 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.harness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the raw statistics of a single harness run for the benchmark
+ * driver: wall-clock time of the script, bytes allocated and the duration
+ * of every stop-the-world pause.
+ * <p>
+ * The statistics are gathered unconditionally (the cost is negligible next
+ * to the simulated heap), and printed as a single line prefixed with
+ * {@link #RESULT_PREFIX} when the <code>benchmarkStats</code> option is set.
+ * The driver in {@link Benchmark} parses that line from the child JVM's output.
+ */
+public final class BenchmarkRecorder {
+
+  /** Prefix of the result line */
+  public static final String RESULT_PREFIX = "BENCHMARK ";
+
+  private static final AtomicLong bytesAllocated = new AtomicLong();
+
+  /** Pause durations in nanoseconds, in collection order */
+  private static final List<Long> pauses = new ArrayList<Long>();
+
+  private static long pauseStart;
+  private static long runStart;
+  private static long runEnd;
+
+  private BenchmarkRecorder() {
+  }
+
+  /**
+   * The script is about to start executing
+   */
+  public static void runStarted() {
+    runStart = System.nanoTime();
+  }
+
+  /**
+   * The script has finished executing
+   */
+  public static void runEnded() {
+    runEnd = System.nanoTime();
+  }
+
+  /**
+   * A mutator allocated an object
+   * @param bytes Size of the object in bytes
+   */
+  public static void allocated(int bytes) {
+    bytesAllocated.addAndGet(bytes);
+  }
+
+  /**
+   * All mutators have been stopped for a collection
+   */
+  public static synchronized void pauseStarted() {
+    pauseStart = System.nanoTime();
+  }
+
+  /**
+   * The mutators are about to be resumed after a collection
+   */
+  public static synchronized void pauseEnded() {
+    pauses.add(System.nanoTime() - pauseStart);
+  }
+
+  /**
+   * Format the result line, of the form
+   * <pre>
+   * BENCHMARK elapsed=&lt;ns&gt; allocated=&lt;bytes&gt; pauses=&lt;ns&gt;,&lt;ns&gt;,...
+   * </pre>
+   * @return The result line
+   */
+  public static synchronized String resultLine() {
+    StringBuilder line = new StringBuilder(RESULT_PREFIX);
+    line.append("elapsed=").append(runEnd - runStart);
+    line.append(" allocated=").append(bytesAllocated.get());
+    line.append(" pauses=");
+    for (int i = 0; i < pauses.size(); i++) {
+      if (i > 0) line.append(',');
+      line.append(pauses.get(i));
+    }
+    return line.toString();
+  }
+}
@@ -21,6 +21,7 @@ import java.util.Set;
 
 import org.mmtk.harness.options.BaseHeap;
 import org.mmtk.harness.options.BaseHeap64;
+import org.mmtk.harness.options.BenchmarkStats;
 import org.mmtk.harness.options.Bits;
 import org.mmtk.harness.options.DumpPcode;
 import org.mmtk.harness.options.GcEvery;
@@ -29,6 +30,7 @@ import org.mmtk.harness.options.HeapLayout;
 import org.mmtk.harness.options.InitHeap;
 import org.mmtk.harness.options.LockTimeout;
 import org.mmtk.harness.options.MaxHeap;
+import org.mmtk.harness.options.Mutators;
 import org.mmtk.harness.options.Plan;
 import org.mmtk.harness.options.PolicyStats;
 import org.mmtk.harness.options.RandomPolicyLength;
@@ -142,6 +144,12 @@ public class Harness {
   /** Set watch points on variables */
   public static final StringOption watchVar = new WatchVar();
 
+  /** Print GC pause and allocation statistics on exit, for the benchmark driver */
+  public static final BooleanOption benchmarkStats = new BenchmarkStats();
+
+  /** Number of mutator threads requested by scalable scripts */
+  public static final Mutators mutators = new Mutators();
+
   protected static final double MB = 1024 * 1024;
 
   private static boolean initialized = false;
@@ -45,9 +45,15 @@ public class Main {
     /* Usage */
     if (args.length < 1) {
       System.err.println("usage: java -jar mmtk-harness.jar test-script [options ...]");
+      System.err.println("       java -jar mmtk-harness.jar benchmark [benchmark-options ...]");
       System.exit(-1);
     }
 
+    /* Benchmark mode runs each configuration in a child harness */
+    if (args[0].equals(Benchmark.COMMAND)) {
+      System.exit(Benchmark.run(Arrays.copyOfRange(args, 1, args.length)));
+    }
+
     /* Parse the script */
     String scriptFile = args[0];
     if (!scriptFile.endsWith(".script")) {
@@ -97,10 +103,16 @@ public class Main {
       Scheduler.scheduleMutator(Compiler.compile(methods));
 
       /* Start the thread scheduler */
+      BenchmarkRecorder.runStarted();
       Scheduler.schedule();
+      BenchmarkRecorder.runEnded();
 
       timeout.cancel();
 
+      if (Harness.benchmarkStats.getValue()) {
+        System.out.println(BenchmarkRecorder.resultLine());
+      }
+
       Harness.mmtkShutdown();
     } catch (Throwable e) {
       e.printStackTrace();
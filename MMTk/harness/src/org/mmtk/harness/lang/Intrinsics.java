@@ -45,6 +45,16 @@ public class Intrinsics {
     return Collection.getGcCount();
   }
 
+  /**
+   * Return the number of mutator threads requested on the command line,
+   * for scripts that scale their parallelism with it.
+   * @param env Thread-local environment (language-dependent mutator context)
+   * @return The value of the Mutators harness option
+   */
+  public static int mutators(Env env) {
+    return Harness.mutators.getValue();
+  }
+
   /**
    * Return the thread ID
    * @param env Thread-local environment (language-dependent mutator context)
@@ -46,6 +46,7 @@ public class GlobalDefs {
   public final MethodTable methods = new MethodTable(
       new IntrinsicMethod("gc",INTRINSICS,"gc"),
       new IntrinsicMethod("gcCount",INTRINSICS,"gcCount"),
+      new IntrinsicMethod("mutators",INTRINSICS,"mutators"),
       new IntrinsicMethod("tid",INTRINSICS,"threadId"),
       new IntrinsicMethod("hash",INTRINSICS,"hash",
           new Class<?>[] { ObjectValue.class }),
@@ -0,0 +1,34 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.harness.options;
+
+import org.mmtk.harness.Harness;
+
+public final class Mutators extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public Mutators() {
+    super(Harness.options, "Mutators",
+        "Number of mutator threads requested by scripts that scale with it",
+        Integer.valueOf(System.getProperty("mmtk.harness.mutators", "1")));
+  }
+
+  /**
+   * Only accept positive values.
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value <= 0, "Mutators must be > 0");
+  }
+}
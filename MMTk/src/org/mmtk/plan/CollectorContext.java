@@ -13,6 +13,7 @@
 package org.mmtk.plan;
 
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.Log;
 
 import org.mmtk.vm.VM;
@@ -76,6 +77,9 @@ public abstract class CollectorContext {
   /** Used for printing log information in a thread safe manner */
   protected final Log log = new Log();
 
+  /** Records copy events when event tracing is enabled */
+  protected final EventTrace events = new EventTrace();
+
   /****************************************************************************
    *
    * Initialization
@@ -199,4 +203,11 @@ public abstract class CollectorContext {
   public int getId() {
     return id;
   }
+
+  /**
+   * Write any events recorded by this collector to the event trace.
+   */
+  public final void drainEvents() {
+    events.drain(EventTrace.COLLECTOR, id);
+  }
 }
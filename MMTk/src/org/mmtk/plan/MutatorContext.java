@@ -12,13 +12,17 @@
  */
 package org.mmtk.plan;
 
+import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
+
 import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.ImmortalLocal;
 import org.mmtk.policy.LargeObjectLocal;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.alloc.BumpPointer;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
 
 import org.mmtk.vm.VM;
 
@@ -98,6 +102,7 @@ public abstract class MutatorContext {
    */
   public void deinitMutator() {
     flush();
+    drainEvents();
   }
 
   /****************************************************************************
@@ -110,6 +115,9 @@ public abstract class MutatorContext {
   /** Used for printing log information in a thread safe manner */
   protected final Log log = new Log();
 
+  /** Records allocation events when event tracing is enabled */
+  protected final EventTrace events = new EventTrace();
+
   /** Per-mutator allocator into the immortal space */
   protected final BumpPointer immortal = new ImmortalLocal(Plan.immortalSpace);
 
@@ -125,6 +133,18 @@ public abstract class MutatorContext {
   /** Per-mutator allocator into the non moving space */
   protected final MarkSweepLocal nonmove = new MarkSweepLocal(Plan.nonMovingSpace);
 
+  /** Smoothed bytes allocated into adaptively sized regions per collection cycle */
+  private long allocationRate;
+
+  /** Bytes allocated into adaptively sized regions during this cycle */
+  private long cycleAllocatedBytes;
+
+  /** Bytes abandoned at the end of adaptively sized regions during this cycle */
+  private long cycleWastedBytes;
+
+  /** Region refills performed during this cycle */
+  private int cycleRefills;
+
 
   /****************************************************************************
    *
@@ -203,6 +223,26 @@ public abstract class MutatorContext {
     }
   }
 
+  /**
+   * Allocate memory for an object, given a free-list size class fixed
+   * ahead of time by {@link Plan#getAllocationSizeClass}.  The allocator
+   * must be one that the plan returned a size class for, and is not
+   * subject to {@link #checkAllocator}.
+   *
+   * @param bytes The number of bytes required for the object.
+   * @param align Required alignment for the object.
+   * @param offset Offset associated with the alignment.
+   * @param allocator The allocator associated with this request.
+   * @param site Allocation site
+   * @param sizeClass The size class of the request.
+   * @return The low address of the allocated chunk.
+   */
+  @Inline
+  public Address allocInSizeClass(int bytes, int align, int offset, int allocator, int site, int sizeClass) {
+    VM.assertions.fail("No size class allocation for this allocator");
+    return Address.zero();
+  }
+
   /**
    * Perform post-allocation actions.  For many allocators none are
    * required.
@@ -1244,6 +1284,69 @@ public abstract class MutatorContext {
     // write barriers are not used and this is a no-op
   }
 
+  /***********************************************************************
+   *
+   * Adaptive allocation regions
+   */
+
+  /** The number of refills a mutator should need between collections */
+  private static final int TARGET_REFILLS = 32;
+
+  /** No region may exceed this fraction (as a shift) of the nursery */
+  private static final int LOG_MAX_REGION_FRACTION = 3;
+
+  /**
+   * Fold the refill statistics of a bump pointer into this mutator's
+   * totals for the cycle.  This must be called before the allocator is
+   * reset at a collection.
+   *
+   * @param allocator The allocator whose region is being given up
+   */
+  protected final void retireAllocationRegion(BumpPointer allocator) {
+    allocator.retireRegion();
+    cycleRefills += allocator.getRefills();
+    cycleWastedBytes += allocator.getWastedBytes();
+    cycleAllocatedBytes += allocator.getAcquiredBytes() - allocator.getWastedBytes();
+    allocator.clearRefillStats();
+  }
+
+  /**
+   * Update this mutator's allocation rate with the cycle that has just
+   * ended and choose the size of the regions it should acquire before
+   * the next collection.  The rate is smoothed so that a single quiet or
+   * busy cycle does not swing the region size; the size aims for
+   * <code>TARGET_REFILLS</code> refills per cycle, but is bounded by a
+   * fraction of the nursery so that one thread cannot hold a large part
+   * of it.
+   *
+   * @param capacityPages The pages available to the nursery between collections
+   * @return The preferred refill size in pages
+   */
+  protected final int adaptAllocationRegions(int capacityPages) {
+    if (allocationRate == 0)
+      allocationRate = cycleAllocatedBytes;
+    else
+      allocationRate = allocationRate - (allocationRate >> 2) + (cycleAllocatedBytes >> 2);
+
+    long regionBytes = allocationRate / TARGET_REFILLS;
+    long maxRegionBytes = ((long) capacityPages << LOG_BYTES_IN_PAGE) >> LOG_MAX_REGION_FRACTION;
+    if (regionBytes > maxRegionBytes) regionBytes = maxRegionBytes;
+    int pages = (int) (regionBytes >>> LOG_BYTES_IN_PAGE);
+
+    if (Options.verbose.getValue() >= 3) {
+      Log.write("[TLAB mutator ", id);
+      Log.write(" refills=", cycleRefills);
+      Log.write(" allocated=", cycleAllocatedBytes);
+      Log.write(" wasted=", cycleWastedBytes);
+      Log.write(" next=", pages);
+      Log.writeln(" pages]");
+    }
+    cycleAllocatedBytes = 0;
+    cycleWastedBytes = 0;
+    cycleRefills = 0;
+    return pages;
+  }
+
   /***********************************************************************
    *
    * Miscellaneous
@@ -1260,4 +1363,21 @@ public abstract class MutatorContext {
     return id;
   }
 
+  /**
+   * Start recording events, for a mutator created before event tracing
+   * was enabled.
+   */
+  @Interruptible
+  public final void enableEvents() {
+    events.enable();
+  }
+
+  /**
+   * Write any recorded events to the event trace.  The mutator must
+   * not be allocating concurrently.
+   */
+  public final void drainEvents() {
+    events.drain(EventTrace.MUTATOR, id);
+  }
+
 }
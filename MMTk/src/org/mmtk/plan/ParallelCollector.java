@@ -12,6 +12,8 @@
  */
 package org.mmtk.plan;
 
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
@@ -35,6 +37,15 @@ public abstract class ParallelCollector extends CollectorContext {
   /** The index of this thread in the collector context group. */
   int workerOrdinal;
 
+  /** Has this thread been bound to a processor (if requested)? */
+  private boolean bound;
+
+  /** The processor this thread is bound to, or -1 if it is not bound */
+  private int processor = -1;
+
+  /** The NUMA node of that processor, or -1 if it is not known */
+  private int numaNode = -1;
+
   /****************************************************************************
    * Collection.
    */
@@ -80,9 +91,53 @@ public abstract class ParallelCollector extends CollectorContext {
    */
   public final void park() {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(this.group != null);
+    if (!bound) bindToProcessor();
     group.park(this);
   }
 
+  /**
+   * Bind this thread to a processor if the <code>collectorAffinity</code>
+   * option is set, and ask the copy allocators to take their regions
+   * from the processor's NUMA node.  Called on this thread the first time
+   * it parks, so that it is bound before it does any collection work,
+   * including its share of root scanning.  Collector ids are unique
+   * across groups, so the threads of different groups are spread over
+   * the processors together.
+   */
+  private void bindToProcessor() {
+    bound = true;
+    if (!Options.collectorAffinity.getValue()) return;
+    processor = VM.collection.bindCollectorThread(getId());
+    if (processor < 0) return;
+    numaNode = VM.memory.numaNode(processor);
+    if (numaNode >= 0) bindCopyAllocators(numaNode);
+    if (Options.verbose.getValue() >= 3) {
+      Log.write("[Collector ", getId());
+      Log.write(" bound to processor ", processor);
+      Log.write(" node ", numaNode);
+      Log.writeln("]");
+    }
+  }
+
+  /**
+   * Ask the allocators this collector copies with to take their regions
+   * from the given NUMA node.  Collectors that copy override this.
+   *
+   * @param node The NUMA node of the processor this thread is bound to
+   */
+  protected void bindCopyAllocators(int node) {
+  }
+
+  /** @return The processor this thread is bound to, or -1 if it is not bound */
+  public final int getProcessor() {
+    return processor;
+  }
+
+  /** @return The NUMA node of this thread's processor, or -1 if it is not known */
+  public final int getNumaNode() {
+    return numaNode;
+  }
+
   @Override
   public int parallelWorkerCount() {
     return group.activeWorkerCount();
@@ -52,6 +52,12 @@ public class ParallelCollectorGroup {
   /** Which rendezvous counter is currently in use */
   private volatile int currentRendezvousCounter;
 
+  /** The number of contexts out of work in the current parallel closure */
+  private volatile int closureIdle;
+
+  /** The number of contexts that have left the last completed parallel closure */
+  private int closureExited;
+
   /****************************************************************************
    *
    * Initialization
@@ -192,4 +198,59 @@ public class ParallelCollectorGroup {
     lock.unlock();
     return me;
   }
+
+  /****************************************************************************
+   *
+   * Termination of parallel closures
+   */
+
+  /**
+   * Note that a context has run out of work in a parallel closure.  Every
+   * context in the group must take part in the closure.  A context that
+   * arrives at the next closure before all have left the last waits.
+   */
+  public void enterClosureIdle() {
+    lock.lock();
+    while (closureExited > 0) {
+      lock.await();
+    }
+    closureIdle++;
+    lock.unlock();
+  }
+
+  /**
+   * Have an idle context resume work it has found.
+   *
+   * @return {@code false} if every context had already run out of work,
+   * so that the closure is complete and the context must leave it
+   */
+  public boolean leaveClosureIdle() {
+    lock.lock();
+    boolean resumed = closureIdle < contexts.length;
+    if (resumed) closureIdle--;
+    lock.unlock();
+    return resumed;
+  }
+
+  /**
+   * @return {@code true} if every context has run out of work, so that
+   * the closure is complete
+   */
+  public boolean isClosureComplete() {
+    return closureIdle == contexts.length;
+  }
+
+  /**
+   * Leave a completed parallel closure.  The last context to leave resets
+   * the state for the next.
+   */
+  public void exitClosure() {
+    lock.lock();
+    if (++closureExited == contexts.length) {
+      closureIdle = 0;
+      closureExited = 0;
+      lock.broadcast();
+    }
+    lock.unlock();
+  }
 }
@@ -39,7 +39,7 @@ public abstract class Phase {
   */
 
   /** The maximum number of phases */
-  private static final int MAX_PHASES = 64;
+  public static final int MAX_PHASES = 64;
   /** The array of phase instances. Zero is unused. */
   private static final Phase[] phases = new Phase[MAX_PHASES];
   /** The id to be allocated for the next phase */
@@ -303,6 +303,7 @@ public abstract class Phase {
   protected Phase(String name, Timer timer) {
     this.name = name;
     this.timer = timer;
+    if (timer != null) timer.enableHistograms();
     this.id = nextPhaseId++;
     phases[this.id] = this;
   }
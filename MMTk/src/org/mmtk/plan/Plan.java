@@ -21,12 +21,16 @@ import org.mmtk.policy.ImmortalSpace;
 import org.mmtk.policy.RawPageSpace;
 import org.mmtk.policy.LargeObjectSpace;
 import org.mmtk.utility.alloc.LinearScan;
+import org.mmtk.utility.alloc.PretenureAdvisor;
 import org.mmtk.utility.Conversions;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.heap.HeapGrowthManager;
+import org.mmtk.utility.heap.Uncommitter;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.Telemetry;
 import org.mmtk.utility.options.*;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.utility.statistics.Timer;
@@ -65,21 +69,6 @@ public abstract class Plan {
    *
    */
 
-  /* Memento Globals */
-  public static final boolean showLogs = true;
-
-  public static void mementoLog(String s) {
-      if (showLogs) {
-          Log.write(s);
-      }
-  }
-
-    public static void mementoLog(int i) {
-        if (showLogs) {
-            Log.write(i);
-        }
-    }
-
   /* GC State */
   public static final int NOT_IN_GC = 0; // this must be zero for C code
   public static final int GC_PREPARE = 1; // before setup and obtaining root
@@ -180,6 +169,7 @@ public abstract class Plan {
     Options.metaDataLimit = new MetaDataLimit();
     Options.nurserySize = new NurserySize();
     Options.nurseryZeroing = new NurseryZeroing();
+    Options.zeroingThreads = new ZeroingThreads();
     Options.pretenureThresholdFraction = new PretenureThresholdFraction();
     Options.variableSizeHeap = new VariableSizeHeap();
     Options.eagerMmapSpaces = new EagerMmapSpaces();
@@ -189,6 +179,11 @@ public abstract class Plan {
     Options.useReturnBarrier = new UseReturnBarrier();
     Options.useShortStackScans = new UseShortStackScans();
     Options.threads = new Threads();
+    Options.collectorAffinity = new CollectorAffinity();
+    Options.workStealing = new WorkStealing();
+    Options.uncommitAfterGCs = new UncommitAfterGCs();
+    Options.scalablePageResources = new ScalablePageResources();
+    Options.adaptiveTLABs = new AdaptiveTLABs();
     Options.cycleTriggerThreshold = new CycleTriggerThreshold();
     HeapLayout.vmMap.finalizeStaticSpaceMap();
     registerSpecializedMethods();
@@ -242,7 +237,10 @@ public abstract class Plan {
     if (Options.verbose.getValue() > 3) VM.config.printConfig();
     if (Options.verbose.getValue() > 0) Stats.startAll();
     if (Options.eagerMmapSpaces.getValue()) Space.eagerlyMmapMMTkSpaces();
+    if (Options.scalablePageResources.getValue()) Space.enableScalablePageResources();
     pretenureThreshold = (int) ((Options.nurserySize.getMaxNursery() << LOG_BYTES_IN_PAGE) * Options.pretenureThresholdFraction.getValue());
+    EventTrace.boot();
+    Telemetry.boot();
   }
 
   /**
@@ -352,6 +350,11 @@ public abstract class Plan {
     // Create our control thread.
     VM.collection.spawnCollectorContext(controlCollectorContext);
 
+    // Create the thread that returns free chunks to the operating system.
+    if (Options.uncommitAfterGCs.getValue() > 0) {
+      Uncommitter.enable();
+    }
+
     // Allow mutators to trigger collection.
     initialized = true;
   }
@@ -383,6 +386,9 @@ public abstract class Plan {
       Log.writeln(" ms]");
     }
     if (Options.verboseTiming.getValue()) printDetailedTiming(true);
+    EventTrace.shutdown();
+    Telemetry.shutdown();
+    PretenureAdvisor.shutdown();
   }
 
   /**
@@ -1078,6 +1084,25 @@ public abstract class Plan {
     return false;
   }
 
+  /**
+   * Determine the free-list size class that requests of a given size to
+   * a given allocator are, or may be, served from, so that the VM can fix
+   * it when compiling an allocation site and allocate with
+   * {@link MutatorContext#allocInSizeClass}.  A plan that decides at run
+   * time whether a site's requests go to a free list answers for the free
+   * list.
+   *
+   * @param bytes The number of bytes to be allocated
+   * @param align The requested alignment
+   * @param allocator The allocator statically assigned to the allocation
+   * @return The size class, or -1 if the allocator never serves such
+   * requests from segregated free lists
+   */
+  @Interruptible
+  public int getAllocationSizeClass(int bytes, int align, int allocator) {
+    return -1;
+  }
+
   /****************************************************************************
    * Specialized Methods
    */
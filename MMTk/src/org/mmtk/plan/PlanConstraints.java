@@ -212,6 +212,18 @@ import org.vmmagic.pragma.*;
     return false;
   }
 
+  /**
+   * @return {@code true} if the object reference write barrier does nothing
+   * for stores into an object allocated by the default allocator, until the
+   * next collection.  A compiler may then omit the barrier on stores that
+   * follow such an allocation with no intervening GC point.  A plan that
+   * redirects such an allocation to another space must remember the object
+   * as if a reference had been stored into it.
+   */
+  public boolean freshDefaultObjectsNeedNoWriteBarrier() {
+    return false;
+  }
+
   /** @return {@code true} if this Plan requires read barriers on object references. */
   public boolean needsObjectReferenceReadBarrier() {
     return false;
@@ -290,7 +302,11 @@ import org.vmmagic.pragma.*;
     return 0;
   }
 
-  /** @return {@code true} if this plan requires concurrent worker threads */
+  /**
+   * @return {@code true} if this plan requires concurrent worker threads.
+   * This is asked when the collector threads are spawned, so the answer
+   * may depend on the options.
+   */
   public boolean needsConcurrentWorkers() {
     return false;
   }
@@ -300,6 +316,12 @@ import org.vmmagic.pragma.*;
     return false;
   }
 
+  /** @return {@code true} if this Plan remembers mature-to-nursery pointers
+   * by marking cards rather than with a slot remembered set */
+  public boolean cardMarkingBarrier() {
+    return false;
+  }
+
   /** @return the maximum number of GC threads supported by this plan.
    * The return value must be a positive number. */
   public int maxNumGCThreads() {
@@ -13,8 +13,11 @@
 package org.mmtk.plan;
 
 import org.mmtk.policy.Space;
+import org.mmtk.utility.EventTrace;
+import org.mmtk.utility.Telemetry;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.heap.Uncommitter;
 import org.mmtk.utility.options.*;
 import org.mmtk.utility.statistics.Timer;
 import org.mmtk.vm.VM;
@@ -202,6 +205,7 @@ public abstract class Simple extends Plan {
 
     if (phaseId == INITIATE) {
       setGCStatus(GC_PREPARE);
+      Telemetry.gcStart();
       return;
     }
 
@@ -211,6 +215,7 @@ public abstract class Simple extends Plan {
     }
 
     if (phaseId == PREPARE) {
+      Telemetry.prepare();
       loSpace.prepare(true);
       nonMovingSpace.prepare(true);
       if (USE_CODE_SPACE) {
@@ -219,6 +224,7 @@ public abstract class Simple extends Plan {
       }
       immortalSpace.prepare();
       VM.memory.globalPrepareVMSpace();
+      if (Options.scalablePageResources.getValue()) Space.consolidatePageResources();
       return;
     }
 
@@ -235,6 +241,7 @@ public abstract class Simple extends Plan {
     }
 
     if (phaseId == RELEASE) {
+      Telemetry.release();
       loSpace.release(true);
       nonMovingSpace.release();
       if (USE_CODE_SPACE) {
@@ -247,7 +254,10 @@ public abstract class Simple extends Plan {
     }
 
     if (phaseId == COMPLETE) {
+      EventTrace.drainMutators();
+      Telemetry.gcEnd(!isCurrentGCNursery());
       setGCStatus(NOT_IN_GC);
+      Uncommitter.trigger();
       return;
     }
 
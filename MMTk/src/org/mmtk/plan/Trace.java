@@ -13,6 +13,7 @@
 package org.mmtk.plan;
 
 import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.deque.WorkStealingDeque;
 import org.mmtk.policy.RawPageSpace;
 
 import org.vmmagic.pragma.*;
@@ -29,15 +30,42 @@ public class Trace {
   final SharedDeque valuePool;
   final SharedDeque rootLocationPool;
 
+  /** The space from which work-stealing deques acquire their buffers */
+  private final RawPageSpace metaDataSpace;
+
+  /** The first of the work-stealing deques of the threads sharing this trace */
+  private WorkStealingDeque stealDeques;
+
   /**
    * @param metaDataSpace the space to use for allocation for this
    *  instance
    */
   public Trace(RawPageSpace metaDataSpace) {
+    this.metaDataSpace = metaDataSpace;
     valuePool = new SharedDeque("valuePool",metaDataSpace, 1);
     rootLocationPool = new SharedDeque("rootLocations", metaDataSpace, 1);
   }
 
+  /**
+   * Create a work-stealing deque for a thread taking part in this trace,
+   * linking it with the others.  Threads are created one at a time, so
+   * no synchronization is needed.
+   *
+   * @return The new deque
+   */
+  @Interruptible
+  WorkStealingDeque newStealDeque() {
+    stealDeques = new WorkStealingDeque(metaDataSpace, stealDeques);
+    return stealDeques;
+  }
+
+  /**
+   * @return The first of the work-stealing deques sharing this trace
+   */
+  WorkStealingDeque stealDeques() {
+    return stealDeques;
+  }
+
   /**
    * Prepare for a new collection pass.
    */
@@ -63,6 +91,15 @@ public class Trace {
     rootLocationPool.reset();
   }
 
+  /**
+   * Abandon a collection pass, discarding any work outstanding in
+   * this trace.
+   */
+  public void discard() {
+    valuePool.clearDeque(1);
+    rootLocationPool.clearDeque(1);
+  }
+
   /**
    * @return whether there is any work outstanding in this trace.
    *  That is are there any pages in the pools.
@@ -33,6 +33,14 @@ import org.vmmagic.unboxed.*;
  */
 @Uninterruptible
 public abstract class TraceLocal extends TransitiveClosure {
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The longest pause, in polls, of a thread waiting for work to steal */
+  private static final int MAX_STEAL_BACK_OFF = 1 << 10;
+
   /****************************************************************************
    *
    * Instance variables
@@ -43,6 +51,15 @@ public abstract class TraceLocal extends TransitiveClosure {
   /** delayed root slots */
   protected final AddressDeque rootLocations;
 
+  /** The global trace */
+  private final Trace trace;
+  /** This thread's work-stealing deque, if it may close the trace by stealing */
+  private WorkStealingDeque stealDeque;
+  /** The collector whose group closes the trace by stealing */
+  private ParallelCollector stealCollector;
+  /** Are gray objects being pushed onto the work-stealing deque? */
+  private boolean stealing;
+
   /****************************************************************************
    *
    * Initialization
@@ -67,6 +84,21 @@ public abstract class TraceLocal extends TransitiveClosure {
     super(specializedScan);
     values = new ObjectReferenceDeque("value", trace.valuePool);
     rootLocations = new AddressDeque("roots", trace.rootLocationPool);
+    this.trace = trace;
+  }
+
+  /**
+   * Allow this trace to be closed by work stealing, when the
+   * <code>WorkStealing</code> option is set.  Every collector in the
+   * group of the given collector must then call {@link #completeTrace()}
+   * together, so only traces closed in a collector phase may do so.
+   *
+   * @param collector The collector performing this trace
+   */
+  @Interruptible
+  public void enableWorkStealing(ParallelCollector collector) {
+    stealCollector = collector;
+    stealDeque = trace.newStealDeque();
   }
 
   /****************************************************************************
@@ -198,6 +230,7 @@ public abstract class TraceLocal extends TransitiveClosure {
   @Override
   @Inline
   public final void processNode(ObjectReference object) {
+    if (stealing && stealDeque.push(object)) return;
     values.push(object);
   }
 
@@ -489,14 +522,118 @@ public abstract class TraceLocal extends TransitiveClosure {
     }
     logMessage(5, "processing gray objects");
     assertMutatorRemsetsFlushed();
+    if (stealDeque != null && Options.workStealing.getValue()) {
+      completeTraceByStealing();
+    } else {
+      do {
+        while (!values.isEmpty()) {
+          ObjectReference v = values.pop();
+          scanObject(v);
+        }
+        processRememberedSets();
+      } while (!values.isEmpty());
+    }
+    assertMutatorRemsetsFlushed();
+  }
+
+  /**
+   * Finish processing all GC work, with the other collectors in this
+   * collector's group.  Gray objects are pushed onto this thread's
+   * work-stealing deque, overflowing into the shared pool.  A thread that
+   * runs out of work steals from the others' deques, and the trace is
+   * complete once every thread in the group is out of work at once.
+   */
+  private void completeTraceByStealing() {
+    ParallelCollectorGroup group = stealCollector.group;
+    stealDeque.prepare();
+    stealing = true;
     do {
-      while (!values.isEmpty()) {
-        ObjectReference v = values.pop();
+      drainWork();
+    } while (stealWork() || awaitWork(group));
+    group.exitClosure();
+    stealing = false;
+  }
+
+  /**
+   * Scan gray objects until this thread's deque, the shared pool and its
+   * remembered sets are exhausted.  The shared pool is not waited on, so
+   * that a thread out of work goes on to steal; termination is left to
+   * {@link #awaitWork(ParallelCollectorGroup)}.
+   */
+  private void drainWork() {
+    while (true) {
+      ObjectReference v = popLocalWork();
+      if (v.isNull()) {
+        processRememberedSets();
+        v = popLocalWork();
+        if (v.isNull()) return;
+      }
+      scanObject(v);
+    }
+  }
+
+  /**
+   * @return The next gray object from this thread's deque or, failing
+   * that, from the shared pool, or {@code null} if neither has one now
+   */
+  @Inline
+  private ObjectReference popLocalWork() {
+    ObjectReference v = stealDeque.pop();
+    if (v.isNull()) v = values.popNonBlocking();
+    return v;
+  }
+
+  /**
+   * Steal and scan an object from another thread's deque.
+   *
+   * @return {@code true} if an object was stolen
+   */
+  private boolean stealWork() {
+    WorkStealingDeque victim = stealDeque;
+    while (true) {
+      victim = victim.next();
+      if (victim == null) victim = trace.stealDeques();
+      if (victim == stealDeque) return false;
+      ObjectReference v = victim.steal();
+      if (!v.isNull()) {
         scanObject(v);
+        return true;
       }
-      processRememberedSets();
-    } while (!values.isEmpty());
-    assertMutatorRemsetsFlushed();
+    }
+  }
+
+  /**
+   * Wait, out of work, until either work appears or every thread in the
+   * group is out of work.
+   *
+   * @param group The group closing the trace
+   * @return {@code true} if there may be work to resume
+   */
+  private boolean awaitWork(ParallelCollectorGroup group) {
+    group.enterClosureIdle();
+    int backOff = 1;
+    while (!group.isClosureComplete()) {
+      if (trace.hasWork() || anyStealableWork()) {
+        return group.leaveClosureIdle();
+      }
+      /* Back off before looking again, to keep idle threads off the deques' cache lines */
+      for (int i = 0; i < backOff; i++) {
+        VM.memory.combinedLoadBarriers();
+      }
+      if (backOff < MAX_STEAL_BACK_OFF) backOff <<= 1;
+    }
+    return false;
+  }
+
+  /**
+   * @return {@code true} if any thread's work-stealing deque appears
+   * to hold work
+   */
+  private boolean anyStealableWork() {
+    for (WorkStealingDeque d = trace.stealDeques(); d != null; d = d.next()) {
+      if (!d.isEmpty()) return true;
+    }
+    return false;
   }
 
   /**
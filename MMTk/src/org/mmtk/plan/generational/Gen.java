@@ -22,6 +22,7 @@ import org.mmtk.utility.deque.*;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.Telemetry;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.utility.statistics.*;
@@ -65,6 +66,8 @@ public abstract class Gen extends StopTheWorld {
   public static final boolean USE_OBJECT_BARRIER_FOR_AASTORE = false; // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER_FOR_PUTFIELD = false; // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER = USE_OBJECT_BARRIER_FOR_AASTORE || USE_OBJECT_BARRIER_FOR_PUTFIELD;
+  /** Choose between card marking and slot remsets for stores into card-marked mature spaces */
+  public static final boolean USE_CARD_MARKING = VM.activePlan.constraints().cardMarkingBarrier();
 
   /** Fraction of available virtual memory to give to the nursery (if contiguous) */
   protected static final float NURSERY_VM_FRACTION = 0.15f;
@@ -175,6 +178,7 @@ public abstract class Gen extends StopTheWorld {
     }
 
     if (phaseId == PREPARE) {
+      Telemetry.prepare();
       nurserySpace.prepare(true);
       if (traceFullHeap()) {
         if (gcFullHeap) {
@@ -204,6 +208,7 @@ public abstract class Gen extends StopTheWorld {
     }
 
     if (phaseId == RELEASE) {
+      Telemetry.release();
       nurserySpace.release();
       switchNurseryZeroingApproach(nurserySpace);
       modbufPool.clearDeque(1);
@@ -224,7 +229,7 @@ public abstract class Gen extends StopTheWorld {
 
   @Override
   public boolean collectionRequired(boolean spaceFull, Space space) {
-    int availableNurseryPages = Options.nurserySize.getMaxNursery() - nurserySpace.reservedPages();
+    int availableNurseryPages = maxNurseryPages() - nurserySpace.reservedPages();
 
     /* periodically recalculate nursery pretenure threshold */
     Plan.pretenureThreshold = (int) (pagesToBytes(availableNurseryPages).toInt() * Options.pretenureThresholdFraction.getValue());
@@ -243,6 +248,17 @@ public abstract class Gen extends StopTheWorld {
     return super.collectionRequired(spaceFull, space);
   }
 
+  /**
+   * Return the number of pages the nursery may grow to before a
+   * collection is required.  Plans that size their generations
+   * adaptively may override this.
+   *
+   * @return The current upper bound on the nursery size, in pages.
+   */
+  protected int maxNurseryPages() {
+    return Options.nurserySize.getMaxNursery();
+  }
+
   /**
    * Determine if this GC should be a full heap collection.
    *
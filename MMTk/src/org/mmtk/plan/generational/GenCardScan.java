@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.utility.deque.AddressDeque;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class turns the edges of objects on dirty cards into remembered
+ * set entries: every slot that refers into the nursery is inserted into
+ * the collector's remset, to be processed along with the slots remembered
+ * by the write barrier.
+ *
+ * @see org.mmtk.utility.CardTable
+ */
+@Uninterruptible
+final class GenCardScan extends TransitiveClosure {
+
+  /**
+   *
+   */
+  private final AddressDeque remset;
+
+  /**
+   * @param remset The remset into which slots referring into the nursery are inserted
+   */
+  GenCardScan(AddressDeque remset) {
+    this.remset = remset;
+  }
+
+  @Override
+  @Inline
+  public void processEdge(ObjectReference source, Address slot) {
+    ObjectReference object = VM.activePlan.global().loadObjectReference(slot);
+    if (Gen.inNursery(object)) {
+      remset.insert(slot);
+    }
+  }
+}
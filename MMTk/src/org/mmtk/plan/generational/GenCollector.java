@@ -14,6 +14,7 @@ package org.mmtk.plan.generational;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.LargeObjectLocal;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.deque.*;
 
@@ -91,6 +92,13 @@ import org.vmmagic.pragma.*;
       global().remsetPool.prepareNonBlocking();
       global().modbufPool.prepareNonBlocking();
       nurseryTrace.prepare();
+      if (Gen.USE_CARD_MARKING) {
+        if (global().traceFullHeap()) {
+          CardTable.clearCards(global().activeMatureSpace(), parallelWorkerOrdinal(), parallelWorkerCount());
+        } else {
+          nurseryTrace.scanDirtyCards(parallelWorkerOrdinal(), parallelWorkerCount());
+        }
+      }
       return;
     }
     if (phaseId == Simple.STACK_ROOTS && !global().gcFullHeap) {
@@ -117,6 +125,9 @@ import org.vmmagic.pragma.*;
 
     if (phaseId == Gen.RELEASE) {
       los.release(true);
+      Plan.loSpace.sweep(parallelWorkerOrdinal(), parallelWorkerCount());
+      if (Plan.USE_CODE_SPACE)
+        Plan.largeCodeSpace.sweep(parallelWorkerOrdinal(), parallelWorkerCount());
       if (!global().traceFullHeap()) {
         nurseryTrace.release();
         global().arrayRemsetPool.reset();
@@ -53,6 +53,17 @@ public class GenConstraints extends StopTheWorldConstraints {
     return true;
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * The default allocator allocates into the nursery, and the slot
+   * barrier ignores stores into nursery objects.
+   */
+  @Override
+  public boolean freshDefaultObjectsNeedNoWriteBarrier() {
+    return !Gen.USE_OBJECT_BARRIER;
+  }
+
   @Override
   public boolean needsObjectReferenceNonHeapWriteBarrier() {
     return Gen.USE_NON_HEAP_OBJECT_REFERENCE_WRITE_BARRIER;
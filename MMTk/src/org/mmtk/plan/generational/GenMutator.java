@@ -15,10 +15,12 @@ package org.mmtk.plan.generational;
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.CardTable;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.HeaderByte;
-import org.mmtk.utility.Log;
 import org.mmtk.utility.deque.*;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.options.Options;
 import org.mmtk.utility.statistics.Stats;
 import org.mmtk.vm.VM;
 import static org.mmtk.plan.generational.Gen.USE_OBJECT_BARRIER_FOR_AASTORE;
@@ -89,9 +91,7 @@ import org.vmmagic.unboxed.*;
   public Address alloc(int bytes, int align, int offset, int allocator, int site) {
     if (allocator == Gen.ALLOC_NURSERY) {
       if (Stats.GATHER_MARK_CONS_STATS) Gen.nurseryCons.inc(bytes);
-      global().mementoLog("[GenMutator.java] Allocating in nursery Allocator: ");
-      global().mementoLog(allocator);
-      global().mementoLog("\n");
+      if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, allocator, bytes, Gen.NURSERY);
       return nursery.alloc(bytes, align, offset);
     }
     return super.alloc(bytes, align, offset, allocator, site);
@@ -119,7 +119,8 @@ import org.vmmagic.unboxed.*;
 
   /**
    * Perform the write barrier fast path, which may involve remembering
-   * a reference if necessary.
+   * a reference if necessary.  Stores into card-marked spaces simply
+   * dirty the card of the source object.
    *
    * @param src The object into which the new reference will be stored
    * @param slot The address into which the new reference will be
@@ -130,7 +131,9 @@ import org.vmmagic.unboxed.*;
   @Inline
   private void fastPath(ObjectReference src, Address slot, ObjectReference tgt, int mode) {
     if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbFast.inc();
-    if ((mode == ARRAY_ELEMENT && USE_OBJECT_BARRIER_FOR_AASTORE) ||
+    if (Gen.USE_CARD_MARKING && Space.getSpaceForObject(src).isCardMarked()) {
+      CardTable.dirty(src);
+    } else if ((mode == ARRAY_ELEMENT && USE_OBJECT_BARRIER_FOR_AASTORE) ||
         (mode == INSTANCE_FIELD && USE_OBJECT_BARRIER_FOR_PUTFIELD)) {
       if (HeaderByte.isUnlogged(src)) {
         if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbSlow.inc();
@@ -145,6 +148,25 @@ import org.vmmagic.unboxed.*;
     }
   }
 
+  /**
+   * Remember an object outside the nursery as if a reference had been
+   * stored into it, so that all of its fields are scanned at the next
+   * nursery collection.  Plans whose compiled code may omit the barrier
+   * on stores into an object use this when they place it outside the
+   * nursery.
+   *
+   * @param src The object to remember
+   */
+  @Inline
+  protected final void rememberObject(ObjectReference src) {
+    if (Gen.USE_CARD_MARKING && Space.getSpaceForObject(src).isCardMarked()) {
+      CardTable.dirty(src);
+    } else {
+      HeaderByte.markAsLogged(src);
+      modbuf.insert(src);
+    }
+  }
+
   /**
    * {@inheritDoc}<p>
    *
@@ -154,7 +176,7 @@ import org.vmmagic.unboxed.*;
    */
   @Override
   @Inline
-  public final void objectReferenceWrite(ObjectReference src, Address slot,
+  public void objectReferenceWrite(ObjectReference src, Address slot,
       ObjectReference tgt, Word metaDataA,
       Word metaDataB, int mode) {
     fastPath(src, slot, tgt, mode);
@@ -215,12 +237,15 @@ import org.vmmagic.unboxed.*;
    * {@inheritDoc}<p>
    *
    * In this case, we remember the mutated source address range and
-   * will scan that address range at GC time.
+   * will scan that address range at GC time, or dirty the card of a
+   * card-marked destination.
    */
   @Inline
   @Override
-  public final boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset, ObjectReference dst, Offset dstOffset, int bytes) {
-    if (!Gen.inNursery(dst)) {
+  public boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset, ObjectReference dst, Offset dstOffset, int bytes) {
+    if (Gen.USE_CARD_MARKING && Space.getSpaceForObject(dst).isCardMarked()) {
+      CardTable.dirty(dst);
+    } else if (!Gen.inNursery(dst)) {
       Address start = dst.toAddress().plus(dstOffset);
       arrayRemset.insert(start, start.plus(bytes));
     }
@@ -257,6 +282,7 @@ import org.vmmagic.unboxed.*;
   public void collectionPhase(short phaseId, boolean primary) {
 
     if (phaseId == Gen.PREPARE) {
+      if (Options.adaptiveTLABs.getValue()) retireAllocationRegion(nursery);
       nursery.reset();
       if (global().traceFullHeap()) {
         super.collectionPhase(phaseId, primary);
@@ -270,6 +296,10 @@ import org.vmmagic.unboxed.*;
     }
 
     if (phaseId == Gen.RELEASE) {
+      if (Options.adaptiveTLABs.getValue()) {
+        int capacity = global().maxNurseryPages();
+        nursery.setRefillPages(adaptAllocationRegions(capacity), capacity);
+      }
       if (global().traceFullHeap()) {
         super.collectionPhase(phaseId, primary);
       }
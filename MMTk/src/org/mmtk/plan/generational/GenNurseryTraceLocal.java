@@ -16,6 +16,8 @@ import static org.mmtk.utility.Constants.BYTES_IN_ADDRESS;
 
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.Trace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.deque.*;
 import org.mmtk.vm.VM;
@@ -41,6 +43,9 @@ public final class GenNurseryTraceLocal extends TraceLocal {
   private final ObjectReferenceDeque modbuf;
   private final AddressDeque remset;
   private final AddressPairDeque arrayRemset;
+  private final GenCardScan cardScan;
+  /** If non-null, the trace to which each root is also passed */
+  private TraceLocal rootTrace;
 
   /**
    * @param trace the global trace class to use
@@ -51,6 +56,7 @@ public final class GenNurseryTraceLocal extends TraceLocal {
     this.modbuf = plan.modbuf;
     this.remset = plan.remset;
     this.arrayRemset = plan.arrayRemset;
+    this.cardScan = new GenCardScan(plan.remset);
   }
 
   /****************************************************************************
@@ -80,6 +86,33 @@ public final class GenNurseryTraceLocal extends TraceLocal {
     return object;
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * If a root trace has been set, each root is passed on to it once it
+   * has been traced here, so that the roots of this collection may seed
+   * a trace of the mature space.
+   */
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object, boolean root) {
+    ObjectReference newObject = traceObject(object);
+    if (root && rootTrace != null) {
+      rootTrace.traceObject(newObject, true);
+    }
+    return newObject;
+  }
+
+  /**
+   * Set the trace to which roots are also passed, or clear it.  Remembered
+   * set entries are treated as roots, so they are passed on too.
+   *
+   * @param rootTrace The trace to receive roots, or {@code null}
+   */
+  public void setRootTrace(TraceLocal rootTrace) {
+    this.rootTrace = rootTrace;
+  }
+
   /**
    * Process any remembered set entries.
    */
@@ -112,6 +145,22 @@ public final class GenNurseryTraceLocal extends TraceLocal {
     }
   }
 
+  /**
+   * Clean this collector's share of the dirty cards of the mature space,
+   * inserting every slot on those cards that refers into the nursery into
+   * the remset.  The cards must be scanned before any object is copied,
+   * since a copy into the mature space may land on a card being scanned.
+   *
+   * @param ordinal The ordinal of the calling collector
+   * @param workers The number of collectors taking part
+   */
+  public void scanDirtyCards(int ordinal, int workers) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Gen.USE_CARD_MARKING);
+    logMessage(5, "scanning dirty cards");
+    Space mature = ((Gen) VM.activePlan.global()).activeMatureSpace();
+    CardTable.scanDirtyCards(mature, cardScan, ordinal, workers);
+  }
+
   /**
    * Will the object move from now on during the collection.
    *
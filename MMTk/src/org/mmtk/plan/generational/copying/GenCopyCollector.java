@@ -17,7 +17,9 @@ import org.mmtk.plan.generational.GenCollector;
 import org.mmtk.plan.Plan;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.policy.CopyLocal;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
@@ -69,6 +71,11 @@ public class GenCopyCollector extends GenCollector {
     matureTrace = new GenCopyMatureTraceLocal(global().matureTrace, this);
   }
 
+  @Override
+  protected void bindCopyAllocators(int node) {
+    mature.setNumaNode(node);
+  }
+
   /****************************************************************************
    *
    * Collection-time allocation
@@ -90,10 +97,7 @@ public class GenCopyCollector extends GenCollector {
         VM.assertions._assert(allocator == GenCopy.ALLOC_MATURE_MINORGC ||
             allocator == GenCopy.ALLOC_MATURE_MAJORGC);
       }
-      global().mementoLog("[GenCopyCollector.java] Collector copyAlloc Allocator: ");
-      global().mementoLog(allocator);
-      global().mementoLog("\n");
-
+      if (EventTrace.isEnabled()) events.record(EventTrace.COPY, allocator, bytes, GenCopy.toSpaceDesc());
       return mature.alloc(bytes, align, offset);
     }
   }
@@ -112,6 +116,8 @@ public class GenCopyCollector extends GenCollector {
       Plan.loSpace.initializeHeader(object, false);
     else if (GenCopy.IGNORE_REMSETS)
       GenCopy.immortalSpace.traceObject(getCurrentTrace(), object); // FIXME this does not look right
+    if (Gen.USE_CARD_MARKING && allocator != Plan.ALLOC_LOS)
+      CardTable.recordObject(object);
     if (Gen.USE_OBJECT_BARRIER)
       HeaderByte.markAsUnlogged(object);
   }
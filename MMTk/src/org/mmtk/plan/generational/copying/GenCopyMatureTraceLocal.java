@@ -16,7 +16,6 @@ import org.mmtk.plan.generational.Gen;
 import org.mmtk.plan.generational.GenCollector;
 import org.mmtk.plan.generational.GenMatureTraceLocal;
 import org.mmtk.plan.Trace;
-import org.mmtk.plan.mementov5.MementoV5;
 import org.mmtk.policy.Space;
 
 import org.mmtk.vm.VM;
@@ -64,13 +63,26 @@ public class GenCopyMatureTraceLocal extends GenMatureTraceLocal {
     if (object.isNull()) return object;
 
     if (Space.isInSpace(GenCopy.MS0, object))
-      return GenCopy.matureSpace0.traceObject(this, object, MementoV5.ALLOC_MATURE_MAJORGC);
+      return GenCopy.matureSpace0.traceObject(this, object, matureAllocator(object));
     if (Space.isInSpace(GenCopy.MS1, object))
-      return GenCopy.matureSpace1.traceObject(this, object, MementoV5.ALLOC_OLD_GEN);
+      return GenCopy.matureSpace1.traceObject(this, object, matureAllocator(object));
 
     return super.traceObject(object);
   }
 
+  /**
+   * Select the allocator into which a surviving object in one of the
+   * mature copy spaces will be copied.  Subclasses may override this
+   * to promote objects out of the copy spaces.
+   *
+   * @param object The mature object about to be copied
+   * @return The allocator to copy the object with
+   */
+  @Inline
+  protected int matureAllocator(ObjectReference object) {
+    return Gen.ALLOC_MATURE_MAJORGC;
+  }
+
   @Override
   public boolean isLive(ObjectReference object) {
     if (object.isNull()) return false;
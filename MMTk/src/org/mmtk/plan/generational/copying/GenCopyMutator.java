@@ -12,10 +12,12 @@
  */
 package org.mmtk.plan.generational.copying;
 
+import org.mmtk.plan.generational.Gen;
 import org.mmtk.plan.generational.GenMutator;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.Space;
-import org.mmtk.utility.Log;
+import org.mmtk.utility.CardTable;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
 
@@ -88,11 +90,7 @@ public class GenCopyMutator extends GenMutator {
   @Inline
   public Address alloc(int bytes, int align, int offset, int allocator, int site) {
     if (allocator == GenCopy.ALLOC_MATURE) {
-
-      global().mementoLog("[GenCopyMutator.java] Allocating in Mature Allocator: ");
-      global().mementoLog(allocator);
-      global().mementoLog("\n");
-
+      if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, allocator, bytes, GenCopy.toSpaceDesc());
       return mature.alloc(bytes, align, offset);
     }
     return super.alloc(bytes, align, offset, allocator, site);
@@ -102,8 +100,10 @@ public class GenCopyMutator extends GenMutator {
   @Inline
   public void postAlloc(ObjectReference object, ObjectReference typeRef,
       int bytes, int allocator) {
-    // nothing to be done
-    if (allocator == GenCopy.ALLOC_MATURE) return;
+    if (allocator == GenCopy.ALLOC_MATURE) {
+      if (Gen.USE_CARD_MARKING) CardTable.recordObject(object);
+      return;
+    }
     super.postAlloc(object, typeRef, bytes, allocator);
   }
 
@@ -16,9 +16,11 @@ import org.mmtk.plan.*;
 import org.mmtk.policy.CopySpace;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
-import org.mmtk.utility.Log;
+import org.mmtk.utility.heap.GenerationSizer;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.TargetPauseTime;
+import org.mmtk.utility.options.ThroughputGoal;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 
 import org.vmmagic.pragma.*;
@@ -72,6 +74,20 @@ public class MementoV2 extends StopTheWorld {
 
   public static final int SCAN_MEMENTO = 0;
 
+  static {
+    Options.targetPauseTime = new TargetPauseTime();
+    Options.throughputGoal = new ThroughputGoal();
+  }
+
+  /** The initial size of each eden space, before any collection has been observed */
+  private static final int INITIAL_EDEN_PAGES = 500;
+
+  /**
+   * Sizes the eden spaces.  Each eden space may grow to the eden budget;
+   * allocation moves to the second once the first reaches it.
+   */
+  public static final GenerationSizer sizer = new GenerationSizer(INITIAL_EDEN_PAGES, 0, 0);
+
   /****************************************************************************
    * Instance variables
    */
@@ -99,6 +115,16 @@ public class MementoV2 extends StopTheWorld {
   @Override
   @Inline
   public final void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      sizer.startCollection(edenSpace1.reservedPages() + edenSpace2.reservedPages(), 0);
+      return;
+    }
+    if (phaseId == COMPLETE) {
+      super.collectionPhase(phaseId);
+      sizer.endCollection(false, survivorSpace.reservedPages(), 0, getTotalPages());
+      return;
+    }
     if (phaseId == PREPARE) {
       super.collectionPhase(phaseId);
       trace.prepare();
@@ -127,22 +153,8 @@ public class MementoV2 extends StopTheWorld {
 
   @Override
   public final boolean collectionRequired(boolean spaceFull, Space space) {
-	Log.writeln("Collection required for Memento");
-	Log.write("Eden 1 usage: ");
-	edenSpace1.printUsageMB();
-	Log.write("Eden 2 usage: ");
-	edenSpace2.printUsageMB();
-    boolean nurseryFull = (edenSpace1.reservedPages() + edenSpace2.reservedPages()) > (2 * 500
-//    		Options.nurserySize.getMaxNursery()
-    		);
-    Log.write("Is nursery full: ");
-    Log.writeln(nurseryFull);
-    Log.write(" Space full: ");
-    Log.write(spaceFull);
-    boolean returnVal = super.collectionRequired(spaceFull, space);
-    Log.write(" ReturnVal: ");
-    Log.write(returnVal);
-    return returnVal || nurseryFull;
+    boolean nurseryFull = (edenSpace1.reservedPages() + edenSpace2.reservedPages()) > 2 * sizer.getEdenPages();
+    return super.collectionRequired(spaceFull, space) || nurseryFull;
   }
 
   /*****************************************************************************
@@ -16,6 +16,7 @@ import org.mmtk.plan.*;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.LargeObjectLocal;
 import org.mmtk.policy.MarkSweepLocal;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
@@ -64,6 +65,7 @@ public class MementoV2Collector extends StopTheWorldCollector {
     los = new LargeObjectLocal(Plan.loSpace);
     mature = new CopyLocal(MementoV2.survivorSpace);
     trace = new MementoV2TraceLocal(global().trace);
+    trace.enableWorkStealing(this);
  }
 
   /****************************************************************************
@@ -78,11 +80,6 @@ public class MementoV2Collector extends StopTheWorldCollector {
   @Inline
   public final Address allocCopy(ObjectReference original, int bytes,
       int align, int offset, int allocator) {
-	  Log.write("### Alloc Copy Bytes: ");
-	    Log.write(bytes);
-	    Log.write(" Allocator: ");
-	    Log.write(allocator);
-	    Log.writeln();
     if (allocator == Plan.ALLOC_LOS) {
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Allocator.getMaximumAlignedSize(bytes, align) > Plan.MAX_NON_LOS_COPY_BYTES);
       return los.alloc(bytes, align, offset);
@@ -91,6 +88,7 @@ public class MementoV2Collector extends StopTheWorldCollector {
         VM.assertions._assert(bytes <= Plan.MAX_NON_LOS_COPY_BYTES);
         VM.assertions._assert(allocator == MementoV2.ALLOC_SURVIVOR);
       }
+      if (EventTrace.isEnabled()) events.record(EventTrace.COPY, allocator, bytes, MementoV2.SURVIVOR);
       return mature.alloc(bytes, align, offset);
     }
   }
@@ -16,7 +16,7 @@ import org.mmtk.plan.StopTheWorldMutator;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
-import org.mmtk.utility.Log;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.options.Options;
 import org.vmmagic.pragma.*;
@@ -77,18 +77,16 @@ public class MementoV2Mutator extends StopTheWorldMutator {
   @Override
   @Inline
   public Address alloc(int bytes, int align, int offset, int allocator, int site) {
-    Log.write("Alloc Bytes: ");
-    Log.write(bytes);
-    Log.write(" Allocator: ");
-    Log.write(allocator);
-    Log.writeln();
     if (allocator == MementoV2.ALLOC_DEFAULT) {
-    	if (nursery1.getSpace().reservedPages() > 500) {
-    		return nursery2.alloc(bytes, align, offset);
-    	}
+      if (MementoV2.edenSpace1.reservedPages() > MementoV2.sizer.getEdenPages()) {
+        if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, allocator, bytes, MementoV2.EDEN2);
+        return nursery2.alloc(bytes, align, offset);
+      }
+      if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, allocator, bytes, MementoV2.EDEN1);
       return nursery1.alloc(bytes, align, offset);
     }
     if (allocator == MementoV2.ALLOC_SURVIVOR) {
+      if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, allocator, bytes, MementoV2.SURVIVOR);
       return mature.alloc(bytes, align, offset);
     }
 
@@ -131,17 +129,22 @@ public class MementoV2Mutator extends StopTheWorldMutator {
    * {@inheritDoc}
    */
   @Override
-  @Inline
+  @NoInline
   public final void collectionPhase(short phaseId, boolean primary) {
-  	Log.write("Collection phase in Mutator phaseId Val: ");
-  	Log.write(phaseId);
-  	Log.writeln();
     if (phaseId == MementoV2.PREPARE) {
       super.collectionPhase(phaseId, primary);
       return;
     }
 
     if (phaseId == MementoV2.RELEASE) {
+      if (Options.adaptiveTLABs.getValue()) {
+        retireAllocationRegion(nursery1);
+        retireAllocationRegion(nursery2);
+        int capacity = MementoV2.sizer.getEdenPages();
+        int pages = adaptAllocationRegions(2 * capacity);
+        nursery1.setRefillPages(pages, capacity);
+        nursery2.setRefillPages(pages, capacity);
+      }
       nursery1.reset();
       nursery2.reset();
       super.collectionPhase(phaseId, primary);
@@ -71,7 +71,7 @@ import org.vmmagic.pragma.*;
    * The low half of the copying mature space.  We allocate into this space
    * when <code>hi</code> is <code>false</code>.
    */
-  static CopySpace matureSpace = new CopySpace("ss0", false, VMRequest.discontiguous());
+  static CopySpace matureSpace = new CopySpace("ss0", false, true, USE_CARD_MARKING, VMRequest.discontiguous());
   static final int MS = matureSpace.getDescriptor();
 
 
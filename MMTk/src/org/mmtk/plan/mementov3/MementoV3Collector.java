@@ -18,6 +18,7 @@ import org.mmtk.plan.Plan;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
@@ -67,6 +68,8 @@ public class MementoV3Collector extends GenCollector {
   public MementoV3Collector() {
     mature = new CopyLocal(MementoV3.matureSpace);
     matureTrace = new MementoV3MatureTraceLocal(global().matureTrace, this);
+    nurseryTrace.enableWorkStealing(this);
+    matureTrace.enableWorkStealing(this);
   }
 
   /****************************************************************************
@@ -108,6 +111,8 @@ public class MementoV3Collector extends GenCollector {
       Plan.loSpace.initializeHeader(object, false);
     else if (MementoV3.IGNORE_REMSETS)
       MementoV3.immortalSpace.traceObject(getCurrentTrace(), object); // FIXME this does not look right
+    if (Gen.USE_CARD_MARKING && allocator != Plan.ALLOC_LOS)
+      CardTable.recordObject(object);
     if (Gen.USE_OBJECT_BARRIER)
       HeaderByte.markAsUnlogged(object);
   }
@@ -12,9 +12,11 @@
  */
 package org.mmtk.plan.mementov3;
 
+import org.mmtk.plan.generational.Gen;
 import org.mmtk.plan.generational.GenMutator;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
 
@@ -96,8 +98,10 @@ public class MementoV3Mutator extends GenMutator {
   @Inline
   public final void postAlloc(ObjectReference object, ObjectReference typeRef,
       int bytes, int allocator) {
-    // nothing to be done
-    if (allocator == MementoV3.ALLOC_MATURE) return;
+    if (allocator == MementoV3.ALLOC_MATURE) {
+      if (Gen.USE_CARD_MARKING) CardTable.recordObject(object);
+      return;
+    }
     super.postAlloc(object, typeRef, bytes, allocator);
   }
 
@@ -12,6 +12,8 @@
  */
 package org.mmtk.plan.mementov4;
 
+import static org.mmtk.utility.Constants.*;
+
 import org.mmtk.policy.CopySpace;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
@@ -19,8 +21,11 @@ import org.mmtk.plan.generational.*;
 import org.mmtk.plan.Trace;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.heap.GenerationSizer;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.TargetPauseTime;
+import org.mmtk.utility.options.ThroughputGoal;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
@@ -72,7 +77,7 @@ import org.vmmagic.pragma.*;
    * The low half of the copying mature space.  We allocate into this space
    * when <code>hi</code> is <code>false</code>.
    */
-  static CopySpace survivorSpace = new CopySpace("survivor", false, VMRequest.fixedSize(20));
+  static CopySpace survivorSpace = new CopySpace("survivor", false, true, USE_CARD_MARKING, VMRequest.discontiguous());
   static final int SURVIVOR = survivorSpace.getDescriptor();
   
 
@@ -80,12 +85,23 @@ import org.vmmagic.pragma.*;
    * The high half of the copying mature space. We allocate into this space
    * when <code>hi</code> is <code>true</code>.
    */
-  static MarkSweepSpace oldGenSpace = new MarkSweepSpace("oldgen", VMRequest.fixedSize(50));
+  static MarkSweepSpace oldGenSpace = new MarkSweepSpace("oldgen", VMRequest.discontiguous());
   static final int OLDGEN = oldGenSpace.getDescriptor();
 
 
   public boolean triggerOldGenSweep = false;
 
+  static {
+    Options.targetPauseTime = new TargetPauseTime();
+    Options.throughputGoal = new ThroughputGoal();
+  }
+
+  /** The initial survivor budget, before any collection has been observed */
+  private static final int INITIAL_SURVIVOR_MB = 20;
+
+  /** The initial old generation budget, before any collection has been observed */
+  private static final int INITIAL_OLD_GEN_MB = 50;
+
 
   /****************************************************************************
    *
@@ -97,12 +113,18 @@ import org.vmmagic.pragma.*;
    */
   final Trace matureTrace;
 
+  /**
+   * Sizes eden, the survivor space and the old generation within the heap.
+   * Created once the options are processed, as the initial eden budget is
+   * the nursery size option.
+   */
+  GenerationSizer sizer;
+
   /**
    * Constructor
    */
   public MementoV4() {
     super();
-    Options.noReferenceTypes.setDefaultValue(true);
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!IGNORE_REMSETS); // Not supported for GenCopy
     matureTrace = new Trace(metaDataSpace);
   }
@@ -118,6 +140,16 @@ import org.vmmagic.pragma.*;
   @Override
   @Inline
   public void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      sizer.startCollection(nurserySpace.reservedPages(), oldGenSpace.reservedPages());
+      return;
+    }
+    if (phaseId == COMPLETE) {
+      super.collectionPhase(phaseId);
+      sizer.endCollection(gcFullHeap, survivorSpace.reservedPages(), oldGenSpace.reservedPages(), getTotalPages());
+      return;
+    }
     if (traceFullHeap()) {
       if (phaseId == PREPARE) {
         super.collectionPhase(phaseId);
@@ -141,11 +173,30 @@ import org.vmmagic.pragma.*;
   
   @Override
   public final boolean collectionRequired(boolean spaceFull, Space space) {
-    if (getOldGenPhysicalPagesAvail() > 10) {
+    if (sizer.oldGenFull(oldGenSpace.reservedPages()) ||
+        survivorSpace.reservedPages() > sizer.getSurvivorPages()) {
       triggerOldGenSweep = true;
+      nextGCFullHeap = true;
       return true;
     }
-  	return super.collectionRequired(spaceFull, space);
+    return super.collectionRequired(spaceFull, space);
+  }
+
+  /**
+   * The nursery is bounded by the eden budget chosen by the generation sizer.
+   */
+  @Override
+  protected int maxNurseryPages() {
+    return sizer.getEdenPages();
+  }
+
+  @Override
+  @Interruptible
+  public void processOptions() {
+    super.processOptions();
+    sizer = new GenerationSizer(Options.nurserySize.getMaxNursery(),
+        INITIAL_SURVIVOR_MB << (LOG_BYTES_IN_MBYTE - LOG_BYTES_IN_PAGE),
+        INITIAL_OLD_GEN_MB << (LOG_BYTES_IN_MBYTE - LOG_BYTES_IN_PAGE));
   }
 
   /*****************************************************************************
@@ -160,7 +211,7 @@ import org.vmmagic.pragma.*;
   @Override
   @Inline
   public int getPagesUsed() {
-    return survivorSpace.reservedPages() + super.getPagesUsed();
+    return survivorSpace.reservedPages() + oldGenSpace.reservedPages() + super.getPagesUsed();
   }
 
   /**
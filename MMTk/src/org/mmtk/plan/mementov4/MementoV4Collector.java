@@ -20,6 +20,7 @@ import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.Allocator;
@@ -73,6 +74,8 @@ public class MementoV4Collector extends GenCollector {
     mature = new CopyLocal(MementoV4.survivorSpace);
     oldGen = new MarkSweepLocal(MementoV4.oldGenSpace);
     matureTrace = new MementoV4MatureTraceLocal(global().matureTrace, this);
+    nurseryTrace.enableWorkStealing(this);
+    matureTrace.enableWorkStealing(this);
   }
 
   /****************************************************************************
@@ -120,6 +123,8 @@ public class MementoV4Collector extends GenCollector {
     }
     else if (MementoV4.IGNORE_REMSETS)
       MementoV4.immortalSpace.traceObject(getCurrentTrace(), object); // FIXME this does not look right
+    if (Gen.USE_CARD_MARKING && allocator != Plan.ALLOC_LOS)
+      CardTable.recordObject(object);
     if (Gen.USE_OBJECT_BARRIER)
       HeaderByte.markAsUnlogged(object);
   }
@@ -19,4 +19,8 @@ import org.vmmagic.pragma.*;
  * GenCopy constants.
  */
 @Uninterruptible public class MementoV4Constraints extends GenConstraints {
+  @Override
+  public boolean cardMarkingBarrier() {
+    return true;
+  }
 }
@@ -12,10 +12,12 @@
  */
 package org.mmtk.plan.mementov4;
 
+import org.mmtk.plan.generational.Gen;
 import org.mmtk.plan.generational.GenMutator;
 import org.mmtk.policy.CopyLocal;
 import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.vm.VM;
@@ -101,8 +103,10 @@ public class MementoV4Mutator extends GenMutator {
   @Inline
   public final void postAlloc(ObjectReference object, ObjectReference typeRef,
       int bytes, int allocator) {
-    // nothing to be done
-    if (allocator == MementoV4.ALLOC_MATURE) return;
+    if (allocator == MementoV4.ALLOC_MATURE) {
+      if (Gen.USE_CARD_MARKING) CardTable.recordObject(object);
+      return;
+    }
     super.postAlloc(object, typeRef, bytes, allocator);
   }
 
@@ -12,14 +12,30 @@
  */
 package org.mmtk.plan.mementov5;
 
+import org.mmtk.plan.Plan;
 import org.mmtk.plan.StopTheWorld;
 import org.mmtk.plan.Trace;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.plan.generational.copying.GenCopy;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.ObjectAge;
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.alloc.PretenureAdvisor;
+import org.mmtk.utility.deque.SharedDeque;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.ConcurrentOldGen;
+import org.mmtk.utility.options.ConcurrentTrigger;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.PretenureAdviceFile;
+import org.mmtk.utility.options.PretenureProfiling;
+import org.mmtk.utility.options.PretenureSurvivalThreshold;
+import org.mmtk.utility.options.TargetSurvivorRatio;
+import org.mmtk.utility.options.TenuringPolicy;
+import org.mmtk.utility.options.TenuringThreshold;
+import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
@@ -44,6 +60,14 @@ import org.vmmagic.unboxed.*;
  * collection and fast allocation." SP&amp;E 19(2):171--183, 1989.<p>
  *
  *
+ * With the <code>ConcurrentOldGen</code> option, once the mark-sweep spaces
+ * occupy more than <code>ConcurrentTrigger</code> percent of the heap, the
+ * next nursery collection also snapshots the roots of the old generation,
+ * which is then marked by the concurrent workers under a snapshot barrier
+ * while nursery collections carry on.  When the mark completes a nursery
+ * collection finishes it and sweeps the mark-sweep spaces.  A full-heap
+ * collection abandons any mark in progress.<p>
+ *
  * For general comments about the global/local distinction among classes refer
  * to Plan.java and PlanLocal.java.
  */
@@ -64,6 +88,28 @@ public class MementoV5 extends GenCopy {
 
   public static final int SCAN_OLD_GEN  = 2;
 
+  /**
+   * The number of copies a mature object must have survived before it is
+   * promoted into <code>msSpace</code>.  Read by the full-heap trace.
+   */
+  public static int tenuringThreshold;
+
+  static {
+    Options.tenuringThreshold = new TenuringThreshold();
+    Options.tenuringPolicy = new TenuringPolicy();
+    Options.targetSurvivorRatio = new TargetSurvivorRatio();
+    Options.pretenureProfiling = new PretenureProfiling();
+    Options.pretenureAdviceFile = new PretenureAdviceFile();
+    Options.pretenureSurvivalThreshold = new PretenureSurvivalThreshold();
+    Options.concurrentOldGen = new ConcurrentOldGen();
+    Options.concurrentTrigger = new ConcurrentTrigger();
+  }
+
+  /* Concurrent mark states */
+  private static final int MARK_IDLE = 0;
+  private static final int MARK_CONCURRENT = 1;
+  private static final int MARK_COMPLETE = 2;
+
 
 
   
@@ -74,14 +120,39 @@ public class MementoV5 extends GenCopy {
   
   public MementoV5() {
     super();
-    Options.noReferenceTypes.setDefaultValue(true);
-    Options.noFinalizer.setDefaultValue(true);
-    Options.variableSizeHeap.setValue(false);
+    Options.lazySweep.setDefaultValue(true);
+    Options.pretenureProfiling.setDefaultValue(true);
   }
   
   /** The trace class for a full-heap collection */
   public final Trace oldGenTrace = new Trace(metaDataSpace);
 
+  /** Bytes copied during the current collection, indexed by age after the copy */
+  private final long[] ageTable = new long[ObjectAge.MAX_AGE + 1];
+
+  /** Protects <code>ageTable</code> while collectors merge into it */
+  private final Lock ageTableLock = VM.newLock("MementoV5AgeTable");
+
+  /** The trace class for the concurrent mark of the old generation */
+  public final Trace concurrentMarkTrace = new Trace(metaDataSpace);
+
+  /** References overwritten by the mutators while the old generation is being marked */
+  public final SharedDeque snapshotPool = new SharedDeque("snapshot", metaDataSpace, 1);
+
+  /** Objects outside the mark-sweep spaces visited by the concurrent mark */
+  public final SharedDeque visitedPool = new SharedDeque("visited", metaDataSpace, 1);
+
+  /** Is the old generation marked concurrently? */
+  private boolean concurrentOldGen;
+
+  /** The state of the concurrent mark of the old generation */
+  private volatile int concurrentMarkState = MARK_IDLE;
+
+  /* The part this collection plays in the concurrent mark, if any */
+  private boolean initialMark;
+  private boolean remark;
+  private boolean abortMark;
+
   /*****************************************************************************
    *
    * Collection
@@ -93,12 +164,37 @@ public class MementoV5 extends GenCopy {
   @Inline
   @Override
   public final void collectionPhase(short phaseId) {
-  	msSpace.printUsageMB();
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      initialMark = remark = abortMark = false;
+      if (concurrentMarkState == MARK_IDLE) {
+        initialMark = !gcFullHeap && concurrentMarkTriggered();
+      } else if (gcFullHeap) {
+        abortMark = true;
+      } else {
+        remark = concurrentMarkState == MARK_COMPLETE;
+      }
+      return;
+    }
+    if (phaseId == PREPARE) {
+      if (initialMark) beginConcurrentMark();
+      if (abortMark) abandonConcurrentMark();
+    }
+    if (phaseId == RELEASE) {
+      if (remark) finishConcurrentMark();
+      if (remark || abortMark) visitedPool.reset();
+      if (concurrentMarkState == MARK_CONCURRENT)
+        controlCollectorContext.requestConcurrentCollection();
+    }
+    if (phaseId == RELEASE) {
+      updateTenuringThreshold();
+      PretenureAdvisor.update();
+    }
     if (traceOldGen()) {
       if (phaseId == PREPARE) {
         super.collectionPhase(phaseId);
         oldGenTrace.prepare();
-        msSpace.prepare(true);
+        msSpace.prepare(true, true);
         return;
       }
 
@@ -116,9 +212,205 @@ public class MementoV5 extends GenCopy {
     super.collectionPhase(phaseId);
   }
 
+  /**
+   * Tenured objects may be promoted into <code>msSpace</code> by any
+   * full-heap collection, so the old generation is traced whenever the
+   * full heap is, even while it is still empty.
+   *
+   * @return {@code true} if the old generation is being traced
+   */
   @Inline
   public boolean traceOldGen() {
-    return traceFullHeap() && msSpace.reservedPages() > 10;
+    return traceFullHeap();
+  }
+
+  /****************************************************************************
+   *
+   * Concurrent marking
+   */
+
+  /**
+   * @return {@code true} if the old generation is marked concurrently.
+   * This is only known once options have been processed.
+   */
+  public final boolean isConcurrentOldGen() {
+    return concurrentOldGen;
+  }
+
+  /**
+   * @return {@code true} if the mark-sweep spaces occupy enough of the
+   * heap for a concurrent mark of the old generation to begin.
+   */
+  private boolean concurrentMarkTriggered() {
+    if (!concurrentOldGen) return false;
+    return msSpace.reservedPages() * 100 / getTotalPages() > Options.concurrentTrigger.getValue();
+  }
+
+  /**
+   * Begin a concurrent mark.  The roots traced by this collection are
+   * passed to the mark, and objects allocated into the mark-sweep spaces
+   * from now on are born marked.
+   */
+  private void beginConcurrentMark() {
+    concurrentMarkTrace.prepareNonBlocking();
+    snapshotPool.prepareNonBlocking();
+    visitedPool.prepareNonBlocking();
+    msSpace.prepare(true);
+    msSpace.setAllocAsMarked(true);
+    nonMovingSpace.prepare(true);
+    nonMovingSpace.setAllocAsMarked(true);
+    if (USE_CODE_SPACE) {
+      smallCodeSpace.prepare(true);
+      smallCodeSpace.setAllocAsMarked(true);
+    }
+    concurrentMarkState = MARK_CONCURRENT;
+    if (Options.verbose.getValue() >= 2) Log.writeln("[Concurrent old gen mark begins]");
+  }
+
+  /**
+   * Finish a concurrent mark once its last work has been traced by this
+   * collection, sweeping the mark-sweep spaces.
+   */
+  private void finishConcurrentMark() {
+    concurrentMarkTrace.release();
+    snapshotPool.reset();
+    msSpace.release();
+    msSpace.setAllocAsMarked(false);
+    nonMovingSpace.release();
+    nonMovingSpace.setAllocAsMarked(false);
+    if (USE_CODE_SPACE) {
+      smallCodeSpace.release();
+      smallCodeSpace.setAllocAsMarked(false);
+    }
+    concurrentMarkState = MARK_IDLE;
+  }
+
+  /**
+   * Abandon a concurrent mark ahead of a full-heap collection, which
+   * marks the mark-sweep spaces afresh.
+   */
+  private void abandonConcurrentMark() {
+    concurrentMarkTrace.discard();
+    snapshotPool.clearDeque(1);
+    msSpace.setAllocAsMarked(false);
+    nonMovingSpace.setAllocAsMarked(false);
+    if (USE_CODE_SPACE) smallCodeSpace.setAllocAsMarked(false);
+    concurrentMarkState = MARK_IDLE;
+    if (Options.verbose.getValue() >= 2) Log.writeln("[Concurrent old gen mark abandoned]");
+  }
+
+  /**
+   * Called by a concurrent worker once no marking remains, to request
+   * the collection that finishes the mark.
+   */
+  void concurrentMarkComplete() {
+    concurrentMarkState = MARK_COMPLETE;
+    if (Options.verbose.getValue() >= 2) Log.writeln("[Concurrent old gen mark complete]");
+    Plan.triggerInternalCollectionRequest();
+  }
+
+  /**
+   * @return {@code true} if the concurrent mark has outstanding work
+   */
+  boolean concurrentMarkHasWork() {
+    return concurrentMarkTrace.hasWork() || snapshotPool.enqueuedPages() > 0;
+  }
+
+  /** @return {@code true} if a concurrent mark of the old generation is under way */
+  public boolean concurrentMarkInProgress() {
+    return concurrentMarkState != MARK_IDLE;
+  }
+
+  /** @return {@code true} if this collection begins a concurrent mark */
+  public boolean isInitialMark() {
+    return initialMark;
+  }
+
+  /** @return {@code true} if this collection finishes a concurrent mark */
+  public boolean isRemark() {
+    return remark;
+  }
+
+  /** @return {@code true} if this collection abandons a concurrent mark */
+  public boolean isMarkAbort() {
+    return abortMark;
+  }
+
+  /****************************************************************************
+   *
+   * Tenuring
+   */
+
+  /**
+   * Accumulate a collector's survivor age table into the global table.
+   * Called by each collector during its release phase.
+   *
+   * @param survivorBytes Bytes copied by the collector, indexed by age
+   */
+  public void mergeAgeTable(long[] survivorBytes) {
+    ageTableLock.acquire();
+    for (int age = 0; age <= ObjectAge.MAX_AGE; age++) {
+      ageTable[age] += survivorBytes[age];
+    }
+    ageTableLock.release();
+  }
+
+  /**
+   * Choose the tenuring threshold for the next collection.  With a fixed
+   * policy this is the <code>TenuringThreshold</code> option.  With an
+   * adaptive policy it is the youngest age at which the survivors of this
+   * collection, accumulated from the youngest age up, exceed the target
+   * fraction of survivor space, bounded above by the option.
+   */
+  private void updateTenuringThreshold() {
+    int maxThreshold = Options.tenuringThreshold.getValue();
+    if (Options.tenuringPolicy.getAdaptive()) {
+      long desired = Conversions.pagesToBytes(survivorCapacity()).toLong() *
+          Options.targetSurvivorRatio.getValue() / 100;
+      long total = 0;
+      int age = 1;
+      while (age < maxThreshold) {
+        total += ageTable[age];
+        if (total > desired) break;
+        age++;
+      }
+      tenuringThreshold = age;
+    } else {
+      tenuringThreshold = maxThreshold;
+    }
+    for (int age = 0; age <= ObjectAge.MAX_AGE; age++) {
+      ageTable[age] = 0;
+    }
+  }
+
+  /**
+   * @return The number of pages the mature copy space may occupy, being
+   * half of the heap not already taken by the old generation.
+   */
+  private int survivorCapacity() {
+    return (getTotalPages() - msSpace.reservedPages()) >> 1;
+  }
+
+  @Override
+  @Interruptible
+  public void processOptions() {
+    super.processOptions();
+    tenuringThreshold = Options.tenuringThreshold.getValue();
+    PretenureAdvisor.boot(ALLOC_OLD_GEN);
+    /* Objects allocated during a mark are born marked, and a mark abandoned
+       for a full-heap collection moves the mark state on twice */
+    concurrentOldGen = Options.concurrentOldGen.getValue() &&
+        MarkSweepSpace.HEADER_MARK_BITS && Options.markSweepMarkBits.getValue() > 1;
+  }
+
+  @Override
+  @Interruptible
+  public void fullyBooted() {
+    super.fullyBooted();
+    if (Options.lazySweep.getValue())
+      msSpace.enableLazySweep();
+    if (!MarkSweepSpace.HEADER_MARK_BITS)
+      msSpace.enableBackgroundBitmapClearing();
   }
 
 
@@ -130,10 +422,34 @@ public class MementoV5 extends GenCopy {
   @Override
   public boolean willNeverMove(ObjectReference object) {
     if (Space.isInSpace(MS, object))
-      return true;
+      return !Options.markSweepDefrag.getValue();
     return super.willNeverMove(object);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Requests to the old generation that {@link MementoV5Mutator#checkAllocator}
+   * leaves there are served from the mark-sweep space's free lists.  So
+   * are nursery requests whose site is found to be long-lived while
+   * pretenure profiling is on; those never go to the large object space
+   * if they are no larger than a copy may be.
+   */
+  @Override
+  @Interruptible
+  public int getAllocationSizeClass(int bytes, int align, int allocator) {
+    int maxBytes = Allocator.getMaximumAlignedSize(bytes, align);
+    if (maxBytes > MarkSweepSpace.MAX_FREELIST_OBJECT_BYTES) return -1;
+    if (allocator == ALLOC_OLD_GEN) {
+      if (maxBytes > MAX_NON_LOS_DEFAULT_ALLOC_BYTES) return -1;
+    } else if (allocator == ALLOC_NURSERY && PretenureAdvisor.isEnabled()) {
+      if (maxBytes > MAX_NON_LOS_COPY_BYTES) return -1;
+    } else {
+      return -1;
+    }
+    return msSpace.getSizeClass(maxBytes);
+  }
+
   @Override
   @Interruptible
   protected void registerSpecializedMethods() {
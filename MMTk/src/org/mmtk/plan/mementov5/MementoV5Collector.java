@@ -13,15 +13,21 @@
 package org.mmtk.plan.mementov5;
 
 import org.mmtk.plan.Plan;
+import org.mmtk.plan.StopTheWorld;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.generational.Gen;
 import org.mmtk.plan.generational.GenCollector;
 import org.mmtk.plan.generational.copying.GenCopyCollector;
 import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.Log;
+import org.mmtk.utility.ObjectAge;
+import org.mmtk.utility.Telemetry;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.heap.layout.HeapParameters;
+import org.mmtk.utility.options.Options;
 import org.mmtk.utility.statistics.Stats;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
@@ -59,12 +65,29 @@ public class MementoV5Collector extends GenCopyCollector {
   private final MarkSweepLocal oldGen;
   private final MementoV5TraceLocal oldGenTrace;
 
+  /** The trace for the concurrent mark of the old generation */
+  private final MementoV5MarkTraceLocal markTrace;
+
+  /** Should the concurrent workers take another pass over the mark? */
+  private static volatile boolean continueMarking;
+
+  /** Bytes this collector copied within the copy spaces, indexed by age after the copy */
+  private final long[] survivorBytes = new long[ObjectAge.MAX_AGE + 1];
+
+  /** Bytes this collector copied out of and into each space, indexed by space, for telemetry */
+  private final long[] copiedOut = new long[HeapParameters.MAX_SPACES];
+  private final long[] copiedIn = new long[HeapParameters.MAX_SPACES];
+
   /**
    * Constructor
    */
   public MementoV5Collector() {
     oldGen = new MarkSweepLocal(MementoV5.msSpace);
     oldGenTrace = new MementoV5TraceLocal(MementoV5.SCAN_OLD_GEN, global().oldGenTrace, this);
+    markTrace = new MementoV5MarkTraceLocal(global().concurrentMarkTrace, global());
+    nurseryTrace.enableWorkStealing(this);
+    oldGenTrace.enableWorkStealing(this);
+    markTrace.enableWorkStealing(this);
   }
 
   /****************************************************************************
@@ -82,6 +105,9 @@ public class MementoV5Collector extends GenCopyCollector {
       if (Space.isInSpace(MementoV5.NURSERY, original))
         MementoV5.nurseryMark.inc(bytes);
     }
+    if (Telemetry.isEnabled()) {
+      copiedOut[Space.getSpaceForObject(original).getIndex()] += bytes;
+    }
 
     if (allocator == Plan.ALLOC_LOS) {
       if (VM.VERIFY_ASSERTIONS)
@@ -94,9 +120,7 @@ public class MementoV5Collector extends GenCopyCollector {
             allocator == MementoV5.ALLOC_MATURE_MAJORGC || allocator == MementoV5.ALLOC_OLD_GEN);
       }
       if (allocator == MementoV5.ALLOC_OLD_GEN) {
-        global().mementoLog("[MementoV5Collector.java] Collector copyAlloc Allocator: ");
-        global().mementoLog(allocator);
-        global().mementoLog("\n");
+        if (EventTrace.isEnabled()) events.record(EventTrace.COPY, allocator, bytes, MementoV5.MS);
         return oldGen.alloc(bytes, align, offset);
       }
       return super.allocCopy(original, bytes, align, offset, allocator);
@@ -107,10 +131,15 @@ public class MementoV5Collector extends GenCopyCollector {
   @Override
   public final void postCopy(ObjectReference object, ObjectReference typeRef,
       int bytes, int allocator) {
+    super.postCopy(object, typeRef, bytes, allocator);
+    if (Telemetry.isEnabled()) {
+      copiedIn[Space.getSpaceForObject(object).getIndex()] += bytes;
+    }
     if (allocator == MementoV5.ALLOC_OLD_GEN) {
-      MementoV5.msSpace.postCopy(object, allocator == MementoV5.ALLOC_OLD_GEN);
+      MementoV5.msSpace.postCopy(object, true);
+    } else if (allocator != Plan.ALLOC_LOS) {
+      survivorBytes[ObjectAge.incrementAge(object)] += bytes;
     }
-    super.postCopy(object, typeRef, bytes, allocator);
   }
 
   /*****************************************************************************
@@ -118,13 +147,73 @@ public class MementoV5Collector extends GenCopyCollector {
    * Collection
    */
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Members of the concurrent worker group mark the old generation
+   * instead of collecting.
+   */
+  @Override
+  @Unpreemptible
+  public void run() {
+    while (true) {
+      park();
+      if (Plan.concurrentWorkers.isMember(this)) {
+        concurrentMark();
+      } else {
+        collect();
+      }
+    }
+  }
+
+  /**
+   * Mark the old generation alongside the mutators until either no
+   * work remains, when the collection that finishes the mark is
+   * requested, or the workers are aborted for a collection.
+   */
+  @Unpreemptible
+  private void concurrentMark() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!Plan.gcInProgress());
+    do {
+      while (!markTrace.incrementalMark(100)) {
+        if (group.isAborted()) break;
+      }
+      markTrace.flushMarkState();
+      if (rendezvous() == 0) {
+        continueMarking = false;
+        if (!group.isAborted()) {
+          /* We are responsible for ensuring termination. */
+          if (Options.verbose.getValue() >= 2) Log.writeln("< requesting mutator flush >");
+          VM.collection.requestMutatorFlush();
+          if (Options.verbose.getValue() >= 2) Log.writeln("< mutators flushed >");
+
+          if (global().concurrentMarkHasWork()) {
+            continueMarking = true;
+          } else {
+            global().concurrentMarkComplete();
+          }
+        }
+      }
+      rendezvous();
+    } while (continueMarking);
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   @NoInline
   public void collectionPhase(short phaseId, boolean primary) {
-    global().msSpace.printUsageMB();
+    if (phaseId == MementoV5.RELEASE) {
+      global().mergeAgeTable(survivorBytes);
+      for (int age = 0; age <= ObjectAge.MAX_AGE; age++) {
+        survivorBytes[age] = 0;
+      }
+      Telemetry.copied(copiedOut, copiedIn);
+    }
+    if (global().isInitialMark() || global().isRemark() || global().isMarkAbort()) {
+      if (concurrentMarkPhase(phaseId, primary)) return;
+    }
     if (global().traceOldGen()) {
       if (phaseId == MementoV5.PREPARE) {
         super.collectionPhase(phaseId, primary);
@@ -140,7 +229,6 @@ public class MementoV5Collector extends GenCopyCollector {
       }
 
       if (phaseId == MementoV5.RELEASE) {
-        global().msSpace.printUsageMB();
         oldGenTrace.release();
         if (global().traceOldGen() && global().gcFullHeap) {
           oldGen.release();
@@ -153,6 +241,93 @@ public class MementoV5Collector extends GenCopyCollector {
     super.collectionPhase(phaseId, primary);
   }
 
+  /**
+   * Perform the part of a collection phase that begins, finishes or
+   * abandons a concurrent mark of the old generation.<p>
+   *
+   * The collection that begins a mark scans every stack frame and the
+   * boot image, passing the roots it finds to the mark trace, since the
+   * mark must start from all the roots of the heap.
+   *
+   * @param phaseId The unique phase identifier
+   * @param primary Should this thread be used to execute any single-threaded
+   * local operations?
+   * @return {@code true} if the phase has been performed in full
+   */
+  private boolean concurrentMarkPhase(short phaseId, boolean primary) {
+    if (phaseId == MementoV5.PREPARE) {
+      if (global().isMarkAbort()) {
+        markTrace.clearVisited();
+      } else if (global().isInitialMark()) {
+        oldGen.prepare();
+        nurseryTrace.setRootTrace(markTrace);
+      }
+      return false;
+    }
+
+    if (phaseId == StopTheWorld.STACK_ROOTS && global().isInitialMark()) {
+      VM.scanning.computeThreadRoots(getCurrentTrace());
+      return true;
+    }
+
+    if (phaseId == StopTheWorld.ROOTS && global().isInitialMark()) {
+      super.collectionPhase(phaseId, primary);
+      if (Plan.SCAN_BOOT_IMAGE) VM.scanning.computeBootImageRoots(getCurrentTrace());
+      return true;
+    }
+
+    if (phaseId == MementoV5.CLOSURE) {
+      if (global().isInitialMark()) {
+        super.collectionPhase(phaseId, primary);
+        nurseryTrace.setRootTrace(null);
+        markTrace.flushMarkState();
+        return true;
+      }
+      if (global().isRemark()) {
+        super.collectionPhase(phaseId, primary);
+        rendezvous();
+        markTrace.completeTrace();
+        markTrace.flushMarkState();
+        return true;
+      }
+    }
+
+    if (phaseId == MementoV5.RELEASE && global().isRemark()) {
+      processOldGenReferences(primary);
+      markTrace.clearVisited();
+    }
+    return false;
+  }
+
+  /**
+   * Process the references into the old generation before the collection
+   * that finishes a concurrent mark sweeps it.  The nursery part of the
+   * collection only scans references made since the last collection, so
+   * every reference is scanned again, with liveness decided by the mark.
+   * Referents the mark did not reach are cleared (soft references are
+   * treated as weak), and unmarked finalizable objects are retained for
+   * finalization by marking from them.
+   *
+   * @param primary Should this thread be used to execute any single-threaded
+   * local operations?
+   */
+  private void processOldGenReferences(boolean primary) {
+    if (!Options.noReferenceTypes.getValue()) {
+      if (primary || VM.softReferences.isParallel())
+        VM.softReferences.scan(markTrace, false, false);
+      if (primary || VM.weakReferences.isParallel())
+        VM.weakReferences.scan(markTrace, false, false);
+    }
+    if (primary && !Options.noFinalizer.getValue())
+      VM.finalizableProcessor.scan(markTrace, false);
+    rendezvous();
+    markTrace.completeTrace();
+    markTrace.flushMarkState();
+    rendezvous();
+    if (!Options.noReferenceTypes.getValue() && (primary || VM.phantomReferences.isParallel()))
+      VM.phantomReferences.scan(markTrace, false, false);
+  }
+
   @Override
   @Inline
   public final TraceLocal getFullHeapTrace() {
@@ -14,6 +14,9 @@ package org.mmtk.plan.mementov5;
 
 import org.mmtk.plan.generational.GenConstraints;
 import org.mmtk.plan.generational.copying.GenCopyConstraints;
+import org.mmtk.policy.MarkSweepSpace;
+import org.mmtk.utility.ObjectAge;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 
 import static org.mmtk.policy.SegregatedFreeListSpace.MAX_FREELIST_OBJECT_BYTES;
@@ -31,8 +34,31 @@ public class MementoV5Constraints extends GenCopyConstraints {
     return MAX_FREELIST_OBJECT_BYTES;
   }
   @Override
+  public int gcHeaderBits() {
+    return Math.max(ObjectAge.LOCAL_GC_BITS_REQUIRED, MarkSweepSpace.LOCAL_GC_BITS_REQUIRED);
+  }
+  @Override
   public int numSpecializedScans() {
     return 3;
   }
+  @Override
+  public boolean cardMarkingBarrier() {
+    return true;
+  }
+  /**
+   * {@inheritDoc}<p>
+   *
+   * The concurrent workers only mark the old generation, so they are
+   * only needed when the <code>ConcurrentOldGen</code> option is in
+   * effect.  Collector threads are spawned after options are processed.
+   */
+  @Override
+  public boolean needsConcurrentWorkers() {
+    return ((MementoV5) VM.activePlan.global()).isConcurrentOldGen();
+  }
+  @Override
+  public boolean needsJavaLangReferenceReadBarrier() {
+    return true;
+  }
 
 }
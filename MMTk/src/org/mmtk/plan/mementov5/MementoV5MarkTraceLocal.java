@@ -0,0 +1,179 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.mementov5;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.Trace;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.ObjectAge;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the thread-local functionality for the
+ * concurrent mark of the MementoV5 old generation.<p>
+ *
+ * The mark is a snapshot of the heap as it stood at the end of the
+ * nursery collection that began it.  Objects in the mark-sweep spaces are
+ * marked in place.  Objects in the other mature spaces are not reclaimed
+ * by the mark but must be scanned for the references they hold into the
+ * mark-sweep spaces, so each is flagged as visited in its header and
+ * logged, and the flags are cleared from the log once the mark is
+ * finished or abandoned.  Nursery objects were allocated after the
+ * snapshot and are ignored.
+ */
+@Uninterruptible
+public final class MementoV5MarkTraceLocal extends TraceLocal {
+
+  /** Header bit flagging an object outside the mark-sweep spaces as visited */
+  private static final byte VISITED_BIT = (byte) (1 << ObjectAge.LOCAL_GC_BITS_REQUIRED);
+
+  /** References logged by the snapshot barrier */
+  private final ObjectReferenceDeque snapshot;
+
+  /** Objects whose visited bit this trace has set */
+  private final ObjectReferenceDeque visited;
+
+  /**
+   * @param trace the global trace class to use
+   * @param plan the global state of the collector
+   */
+  public MementoV5MarkTraceLocal(Trace trace, MementoV5 plan) {
+    super(trace);
+    snapshot = new ObjectReferenceDeque("snapshot", plan.snapshotPool);
+    visited = new ObjectReferenceDeque("visited", plan.visitedPool);
+  }
+
+  /****************************************************************************
+   *
+   * Externally visible Object processing and tracing
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean overwriteReferenceDuringTrace() {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Objects in the mark-sweep spaces are marked by their space.  The boot
+   * image is scanned as a root when the mark begins, so it is not traced
+   * through again.
+   */
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object) {
+    if (object.isNull() || Space.isInSpace(MementoV5.NURSERY, object))
+      return object;
+    if (Space.isInSpace(MementoV5.MS, object))
+      return MementoV5.msSpace.traceObject(this, object);
+    if (Space.isInSpace(Plan.NON_MOVING, object))
+      return Plan.nonMovingSpace.traceObject(this, object);
+    if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.SMALL_CODE, object))
+      return Plan.smallCodeSpace.traceObject(this, object);
+    if (Plan.SCAN_BOOT_IMAGE && Space.isInSpace(Plan.VM_SPACE, object))
+      return object;
+    if (testAndSetVisited(object)) {
+      visited.push(object);
+      processNode(object);
+    }
+    return object;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Only the spaces marked in place are reclaimed once the mark is
+   * finished, so every other object is considered live.
+   */
+  @Override
+  public boolean isLive(ObjectReference object) {
+    if (object.isNull()) return false;
+    if (Space.isInSpace(MementoV5.MS, object))
+      return MementoV5.msSpace.isLive(object);
+    if (Space.isInSpace(Plan.NON_MOVING, object))
+      return Plan.nonMovingSpace.isLive(object);
+    if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.SMALL_CODE, object))
+      return Plan.smallCodeSpace.isLive(object);
+    return true;
+  }
+
+  /**
+   * Trace the references logged by the snapshot barrier.
+   */
+  @Override
+  @Inline
+  protected void processRememberedSets() {
+    ObjectReference object;
+    while (!(object = snapshot.pop()).isNull()) {
+      traceObject(object);
+    }
+  }
+
+  /**
+   * Perform a bounded amount of marking alongside the mutators, first
+   * tracing any references logged by the snapshot barrier.
+   *
+   * @param workLimit The maximum number of objects to scan
+   * @return {@code true} if this collector has no marking left
+   */
+  public boolean incrementalMark(int workLimit) {
+    processRememberedSets();
+    return incrementalTrace(workLimit);
+  }
+
+  /**
+   * Flush this collector's marking work and visited log to the shared
+   * pools, so that another collector may take them up.
+   */
+  public void flushMarkState() {
+    flush();
+    snapshot.flushLocal();
+    visited.flushLocal();
+  }
+
+  /**
+   * Clear the visited bit of every logged object.  All collectors take
+   * part, each draining the shared log.
+   */
+  public void clearVisited() {
+    ObjectReference object;
+    while (!(object = visited.pop()).isNull()) {
+      byte value = VM.objectModel.readAvailableByte(object);
+      VM.objectModel.writeAvailableByte(object, (byte) (value & ~VISITED_BIT));
+    }
+  }
+
+  /**
+   * Set the visited bit of an object.  The update is not atomic, so two
+   * collectors may both visit an object, which costs a second scan but
+   * no correctness.
+   *
+   * @param object The object
+   * @return {@code true} if the object had not yet been visited
+   */
+  @Inline
+  private static boolean testAndSetVisited(ObjectReference object) {
+    byte value = VM.objectModel.readAvailableByte(object);
+    if ((value & VISITED_BIT) != 0) return false;
+    VM.objectModel.writeAvailableByte(object, (byte) (value | VISITED_BIT));
+    return true;
+  }
+}
@@ -12,12 +12,16 @@
  */
 package org.mmtk.plan.mementov5;
 
+import static org.mmtk.utility.Constants.BYTES_IN_ADDRESS;
+
 import org.mmtk.plan.generational.GenMutator;
 import org.mmtk.plan.generational.copying.GenCopyMutator;
 import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
-import org.mmtk.utility.Log;
+import org.mmtk.utility.EventTrace;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.alloc.PretenureAdvisor;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
@@ -54,6 +58,20 @@ public class MementoV5Mutator extends GenCopyMutator {
    */
   private final MarkSweepLocal oldGen;
 
+  /** Survival samples of this mutator's nursery allocations */
+  private final PretenureAdvisor pretenure = new PretenureAdvisor();
+
+  /**
+   * Was the allocation in progress redirected to the old generation
+   * because its site is pretenured?
+   */
+  private boolean pretenuredAlloc = false;
+
+  /** References overwritten while the old generation is being marked */
+  private final ObjectReferenceDeque snapshot;
+
+  /** Is the snapshot barrier active? */
+  private boolean barrierActive;
 
   /****************************************************************************
    *
@@ -65,6 +83,8 @@ public class MementoV5Mutator extends GenCopyMutator {
    */
   public MementoV5Mutator() {
     oldGen = new MarkSweepLocal(MementoV5.msSpace);
+    snapshot = new ObjectReferenceDeque("snapshot", global().snapshotPool);
+    barrierActive = global().concurrentMarkInProgress();
   }
 
   /****************************************************************************
@@ -79,25 +99,77 @@ public class MementoV5Mutator extends GenCopyMutator {
   @Inline
   public final Address alloc(int bytes, int align, int offset, int allocator, int site) {
     if (allocator == MementoV5.ALLOC_OLD_GEN) {
-      global().mementoLog("[MementoV5Mutator.java] Allocating in OldGen Allocator: ");
-      global().mementoLog(allocator);
-      global().mementoLog("\n");
+      if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, allocator, bytes, MementoV5.MS);
       return oldGen.alloc(bytes, align, offset);
     }
+    if (allocator == MementoV5.ALLOC_NURSERY && PretenureAdvisor.isEnabled()) {
+      if (PretenureAdvisor.isPretenured(site)) {
+        pretenuredAlloc = true;
+        if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, MementoV5.ALLOC_OLD_GEN, bytes, MementoV5.MS);
+        return oldGen.alloc(bytes, align, offset);
+      }
+      pretenure.countAlloc(bytes, site);
+    }
     return super.alloc(bytes, align, offset, allocator, site);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * A compiled site that allocates into the old generation pops a cell of
+   * its size class straight from the free list.  So does a compiled
+   * nursery site once it is pretenured; until then its requests go to the
+   * nursery, as in {@link #alloc}.
+   */
+  @Override
+  @Inline
+  public final Address allocInSizeClass(int bytes, int align, int offset, int allocator, int site, int sizeClass) {
+    if (allocator == MementoV5.ALLOC_NURSERY) {
+      if (!PretenureAdvisor.isPretenured(site)) {
+        if (PretenureAdvisor.isEnabled()) pretenure.countAlloc(bytes, site);
+        return super.alloc(bytes, align, offset, allocator, site);
+      }
+      pretenuredAlloc = true;
+    } else if (VM.VERIFY_ASSERTIONS) {
+      VM.assertions._assert(allocator == MementoV5.ALLOC_OLD_GEN);
+    }
+    if (EventTrace.isEnabled()) events.record(EventTrace.ALLOC, MementoV5.ALLOC_OLD_GEN, bytes, MementoV5.MS);
+    return oldGen.allocInSizeClass(sizeClass, bytes, align, offset);
+  }
+
   @Override
   @Inline
   public final void postAlloc(ObjectReference ref, ObjectReference typeRef,
       int bytes, int allocator) {
     if (allocator == MementoV5.ALLOC_OLD_GEN) {
       MementoV5.msSpace.initializeHeader(ref, true);
+    } else if (pretenuredAlloc) {
+      pretenuredAlloc = false;
+      MementoV5.msSpace.initializeHeader(ref, true);
+      // Compiled code may omit the barrier on stores into an object from a
+      // nursery site, so one redirected to the old generation is remembered
+      rememberObject(ref);
     } else {
+      if (allocator == MementoV5.ALLOC_NURSERY) pretenure.recordSample(ref, bytes);
       super.postAlloc(ref, typeRef, bytes, allocator);
     }
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Objects too large for the old generation's free lists are sent to
+   * the large object space even when their site asks for pretenuring.
+   */
+  @Override
+  public int checkAllocator(int bytes, int align, int allocator) {
+    if (allocator == MementoV5.ALLOC_OLD_GEN) {
+      int maxBytes = Allocator.getMaximumAlignedSize(bytes, align);
+      return maxBytes > MementoV5.MAX_NON_LOS_DEFAULT_ALLOC_BYTES ? MementoV5.ALLOC_LOS : allocator;
+    }
+    return super.checkAllocator(bytes, align, allocator);
+  }
+
   @Override
   public Allocator getAllocatorFromSpace(Space space) {
     if (space == MementoV5.msSpace) return oldGen;
@@ -115,6 +187,26 @@ public class MementoV5Mutator extends GenCopyMutator {
   @Override
   @NoInline
   public void collectionPhase(short phaseId, boolean primary) {
+    if (phaseId == MementoV5.RELEASE) {
+      pretenure.release();
+      if (global().isRemark()) barrierActive = false;
+    }
+
+    if (phaseId == MementoV5.PREPARE) {
+      if (barrierActive) snapshot.flushLocal();
+      if (global().isMarkAbort()) barrierActive = false;
+      if (global().isInitialMark()) {
+        /* Blocks taken before the mark began must not be allocated into
+           while it is under way, since their cells are not born marked */
+        super.collectionPhase(phaseId, primary);
+        oldGen.prepare();
+        nonmove.prepare();
+        smcode.prepare();
+        barrierActive = true;
+        return;
+      }
+    }
+
     if (false && global().traceOldGen()) {
       if (phaseId == MementoV5.PREPARE) {
         super.collectionPhase(phaseId, primary);
@@ -136,6 +228,79 @@ public class MementoV5Mutator extends GenCopyMutator {
   public void flush() {
     super.flush();
     oldGen.flush();
+    snapshot.flushLocal();
+  }
+
+  /****************************************************************************
+   *
+   * Write barriers
+   */
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * While the old generation is being marked, the reference being
+   * overwritten is also logged, as for a Yuasa-style snapshot barrier.
+   */
+  @Inline
+  @Override
+  public void objectReferenceWrite(ObjectReference src, Address slot,
+      ObjectReference tgt, Word metaDataA,
+      Word metaDataB, int mode) {
+    if (barrierActive) checkAndEnqueueReference(src, slot.loadObjectReference());
+    super.objectReferenceWrite(src, slot, tgt, metaDataA, metaDataB, mode);
+  }
+
+  @Inline
+  @Override
+  public boolean objectReferenceTryCompareAndSwap(ObjectReference src, Address slot, ObjectReference old, ObjectReference tgt,
+      Word metaDataA, Word metaDataB, int mode) {
+    boolean result = super.objectReferenceTryCompareAndSwap(src, slot, old, tgt, metaDataA, metaDataB, mode);
+    if (barrierActive && result) checkAndEnqueueReference(src, old);
+    return result;
+  }
+
+  @Inline
+  @Override
+  public boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset, ObjectReference dst, Offset dstOffset, int bytes) {
+    if (barrierActive) {
+      Address cursor = dst.toAddress().plus(dstOffset);
+      Address limit = cursor.plus(bytes);
+      while (cursor.LT(limit)) {
+        checkAndEnqueueReference(dst, cursor.loadObjectReference());
+        cursor = cursor.plus(BYTES_IN_ADDRESS);
+      }
+    }
+    return super.objectReferenceBulkCopy(src, srcOffset, dst, dstOffset, bytes);
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * A referent read during the mark may be stored where the mark has
+   * already been, so it is logged as if it had been overwritten.
+   */
+  @Inline
+  @Override
+  public ObjectReference javaLangReferenceReadBarrier(ObjectReference ref) {
+    if (barrierActive && !ref.isNull() && !Space.isInSpace(MementoV5.NURSERY, ref))
+      snapshot.insert(ref);
+    return ref;
+  }
+
+  /**
+   * Log a reference overwritten during the mark.  References held by
+   * nursery objects, and references to them, were made after the
+   * snapshot so need not be logged.
+   *
+   * @param src The object holding the reference
+   * @param ref The reference being overwritten
+   */
+  @Inline
+  private void checkAndEnqueueReference(ObjectReference src, ObjectReference ref) {
+    if (ref.isNull() || Space.isInSpace(MementoV5.NURSERY, src) ||
+        Space.isInSpace(MementoV5.NURSERY, ref)) return;
+    snapshot.insert(ref);
   }
 
   /****************************************************************************
@@ -19,6 +19,7 @@ import org.mmtk.plan.generational.GenMatureTraceLocal;
 import org.mmtk.plan.generational.copying.GenCopy;
 import org.mmtk.plan.generational.copying.GenCopyMatureTraceLocal;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.ObjectAge;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
 
@@ -45,12 +46,25 @@ public final class MementoV5TraceLocal extends GenCopyMatureTraceLocal {
     if (object.isNull()) return object;
 
     if (Space.isInSpace(MementoV5.MS, object)) {
-      return MementoV5.msSpace.traceObject(this, object);
+      return MementoV5.msSpace.traceObject(this, object, MementoV5.ALLOC_OLD_GEN);
     }
 
     return super.traceObject(object);
   }
 
+  /**
+   * Objects that have survived at least the current tenuring threshold
+   * number of copies are promoted into the mark-sweep old generation;
+   * younger objects are copied into the other mature semispace.
+   */
+  @Override
+  @Inline
+  protected int matureAllocator(ObjectReference object) {
+    if (ObjectAge.getAge(object) >= MementoV5.tenuringThreshold)
+      return MementoV5.ALLOC_OLD_GEN;
+    return MementoV5.ALLOC_MATURE_MAJORGC;
+  }
+
   @Override
   public boolean isLive(ObjectReference object) {
     if (object.isNull()) return false;
@@ -64,7 +78,7 @@ public final class MementoV5TraceLocal extends GenCopyMatureTraceLocal {
   @Override
   public boolean willNotMoveInCurrentCollection(ObjectReference object) {
     if (Space.isInSpace(MementoV5.MS, object)) {
-      return true;
+      return !MementoV5.msSpace.isDefragSource(object);
     }
     return super.willNotMoveInCurrentCollection(object);
   }
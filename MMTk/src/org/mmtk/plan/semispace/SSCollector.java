@@ -74,6 +74,11 @@ public class SSCollector extends StopTheWorldCollector {
     trace = tr;
   }
 
+  @Override
+  protected void bindCopyAllocators(int node) {
+    ss.setNumaNode(node);
+  }
+
   /****************************************************************************
    *
    * Collection-time allocation
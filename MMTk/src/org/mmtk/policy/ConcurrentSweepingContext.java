@@ -0,0 +1,78 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Monitor;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * This context concurrently sweeps the blocks of a lazily swept
+ * free list space, and clears its inactive side bitmap, when triggered.
+ */
+@Uninterruptible
+public class ConcurrentSweepingContext extends CollectorContext {
+
+  private final SegregatedFreeListSpace space;
+  private final Monitor lock;
+  private volatile int trigger;
+  private boolean sweeping;
+
+  public ConcurrentSweepingContext(SegregatedFreeListSpace space) {
+    this.space = space;
+    this.lock = VM.newHeavyCondLock("ConcurrentSweepingLock");
+  }
+
+  public void trigger() {
+    lock.lock();
+    trigger++;
+    lock.broadcast();
+    lock.unlock();
+  }
+
+  /**
+   * Wait until any sweep in progress has stopped.
+   */
+  public void waitForCompletion() {
+    lock.lock();
+    while (sweeping) {
+      lock.await();
+    }
+    lock.unlock();
+  }
+
+  @Override
+  public void run() {
+    if (Options.verbose.getValue() >= 2) {
+      Log.writeln("SweepingThread running");
+    }
+    while (true) {
+      lock.lock();
+      while (trigger == 0) {
+        lock.await();
+      }
+      trigger--;
+      sweeping = true;
+      lock.unlock();
+      space.concurrentSweep();
+      lock.lock();
+      sweeping = false;
+      lock.broadcast();
+      lock.unlock();
+    }
+  }
+}
@@ -13,9 +13,11 @@
 package org.mmtk.policy;
 
 import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.BYTES_IN_CHUNK;
 
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.utility.heap.*;
+import org.mmtk.utility.CardTable;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.ForwardingWord;
 import org.mmtk.utility.Log;
@@ -98,15 +100,50 @@ import org.vmmagic.pragma.*;
    * @param vmRequest An object describing the virtual memory requested.
    */
   public CopySpace(String name, boolean fromSpace, boolean zeroed, VMRequest vmRequest) {
+    this(name, fromSpace, zeroed, false, vmRequest);
+  }
+
+  /**
+   * The caller specifies the region of virtual memory to be used for
+   * this space.  If this region conflicts with an existing space,
+   * then the constructor will fail.<p>
+   *
+   * A card-marked space reserves room for a {@link CardTable} at the
+   * start of each metadata region.  It must be discontiguous (the card
+   * table is found by walking the space's chunks) and zeroed (a fresh
+   * chunk must start with clean cards and an empty crossing map).
+   *
+   * @param name The name of this space (used when printing error messages etc)
+   * @param fromSpace The does this instance start life as from-space
+   * (or to-space)?
+   * @param zeroed if true, allocations return zeroed memory.
+   * @param cardMarked if true, maintain a card table for this space.
+   * @param vmRequest An object describing the virtual memory requested.
+   */
+  public CopySpace(String name, boolean fromSpace, boolean zeroed, boolean cardMarked, VMRequest vmRequest) {
     super(name, true, false, zeroed, vmRequest);
     this.fromSpace = fromSpace;
+    this.cardMarked = cardMarked;
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!cardMarked || (zeroed && vmRequest.isDiscontiguous()));
+    int metaDataPages = cardMarked ? CardTable.META_DATA_PAGES_PER_REGION : META_DATA_PAGES_PER_REGION;
     if (vmRequest.isDiscontiguous()) {
-      pr = new MonotonePageResource(this, META_DATA_PAGES_PER_REGION);
+      pr = new MonotonePageResource(this, metaDataPages);
     } else {
-      pr = new MonotonePageResource(this, start, extent, META_DATA_PAGES_PER_REGION);
+      pr = new MonotonePageResource(this, start, extent, metaDataPages);
     }
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * A card table only covers the chunk whose metadata holds it, so a
+   * card-marked space must grow one chunk at a time.
+   */
+  @Override
+  public void growSpace(Address start, Extent bytes, boolean newChunk) {
+    if (VM.VERIFY_ASSERTIONS && cardMarked) VM.assertions._assert(bytes.LE(Extent.fromIntSignExtend(BYTES_IN_CHUNK)));
+  }
+
   /****************************************************************************
    *
    * Prepare and release
@@ -56,6 +56,7 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
    */
   private byte markState;
   private boolean inNurseryGC;
+  private boolean sweepPending;
   private final Treadmill treadmill;
 
   /****************************************************************************
@@ -111,6 +112,23 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
     }
     treadmill.flip(fullHeap);
     inNurseryGC = !fullHeap;
+    sweepPending = true;
+  }
+
+  /**
+   * Sweep this collector's share of the treadmill segments.  Collectors
+   * call this during their release phase, once tracing is complete, so
+   * that the segments are swept in parallel; any segment left unswept
+   * is swept when the space is released.  This does nothing if the space
+   * was not prepared for the current collection.
+   *
+   * @param ordinal The ordinal of the calling collector
+   * @param workers The number of collectors sweeping
+   */
+  public void sweep(int ordinal, int workers) {
+    if (!sweepPending) return;
+    for (int segment = ordinal; segment < Treadmill.SEGMENTS; segment += workers)
+      sweepSegment(segment, !inNurseryGC);
   }
 
   /**
@@ -120,25 +138,44 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
    * @param fullHeap whether the collection was full heap
    */
   public void release(boolean fullHeap) {
-    // sweep the large objects
-    sweepLargePages(true);                // sweep the nursery
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(treadmill.nurseryEmpty());
-    if (fullHeap) sweepLargePages(false); // sweep the mature space
+    for (int segment = 0; segment < Treadmill.SEGMENTS; segment++)
+      sweepSegment(segment, fullHeap);
+    if (VM.VERIFY_ASSERTIONS) {
+      VM.assertions._assert(treadmill.nurseryEmpty());
+      if (fullHeap) VM.assertions._assert(treadmill.fromSpaceEmpty());
+    }
+    sweepPending = false;
   }
 
   /**
-   * Sweeps through the large pages, releasing all superpages on the
-   * "from space" treadmill.
+   * Sweeps one segment of the treadmill.  Nursery objects that were
+   * marked (and so lost their nursery bit) move to the to-space, and
+   * the rest are released.  In a full heap collection everything left
+   * on the from-space is released too.  Dead superpages are chained
+   * through their treadmill links and returned to the page resource in
+   * a batch.
    *
-   * @param sweepNursery whether to sweep the nursery
+   * @param segment The segment to sweep
+   * @param fullHeap whether to sweep the mature space
    */
-  private void sweepLargePages(boolean sweepNursery) {
-    while (true) {
-      Address cell = sweepNursery ? treadmill.popNursery() : treadmill.pop();
-      if (cell.isZero()) break;
-      release(getSuperPage(cell));
+  private void sweepSegment(int segment, boolean fullHeap) {
+    Address dead = Address.zero();
+    Address node = treadmill.popNurserySegment(segment);
+    while (!node.isZero()) {
+      Address next = Treadmill.getNext(node);
+      ObjectReference object = VM.objectModel.getObjectFromStartAddress(Treadmill.nodeToPayload(node));
+      if (isInNursery(object)) {
+        Treadmill.setNext(node, dead);
+        dead = node;
+      } else {
+        treadmill.addToToSpace(node);
+      }
+      node = next;
     }
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(sweepNursery ? treadmill.nurseryEmpty() : treadmill.fromSpaceEmpty());
+    FreeListPageResource flpr = (FreeListPageResource) pr;
+    flpr.releasePageChain(dead, Treadmill.nextOffset());
+    if (fullHeap)
+      flpr.releasePageChain(treadmill.popFromSpaceSegment(segment), Treadmill.nextOffset());
   }
 
   @Override
@@ -190,9 +227,9 @@ public final class LargeObjectSpace extends BaseLargeObjectSpace {
   }
 
   /**
-   * An object has been marked (identifiged as live).  Large objects
-   * are added to the to-space treadmill, while all other objects will
-   * have a mark bit set in the superpage header.
+   * An object has been marked (identifiged as live).  Mature large
+   * objects are moved to the to-space treadmill; nursery objects stay
+   * where they are and are moved when the nursery is swept.
    *
    * @param object The object which has been marked.
    * @param nurseryObject whether the object is in the nursery
@@ -14,12 +14,20 @@ package org.mmtk.policy;
 
 import static org.mmtk.utility.Constants.*;
 
+import org.mmtk.plan.Plan;
 import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.utility.alloc.BlockAllocator;
 import org.mmtk.utility.heap.*;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.options.MarkSweepMarkBits;
 import org.mmtk.utility.options.EagerCompleteSweep;
+import org.mmtk.utility.options.FragmentationStats;
+import org.mmtk.utility.options.LazySweep;
+import org.mmtk.utility.options.MarkSweepDefrag;
+import org.mmtk.utility.options.MarkSweepDefragThreshold;
+import org.mmtk.utility.ForwardingWord;
 import org.mmtk.utility.HeaderByte;
+import org.mmtk.utility.Log;
 
 import org.mmtk.vm.VM;
 
@@ -52,8 +60,8 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   /** highest bit bits we may use */
   private static final int AVAILABLE_LOCAL_BITS = 8 - HeaderByte.USED_GLOBAL_BITS;
 
-  /* mark bits */
-  private static final int COUNT_BASE = 0;
+  /* mark bits, kept clear of the forwarding bits used when evacuating */
+  private static final int COUNT_BASE = ForwardingWord.FORWARDING_BITS;
 
   public static final int DEFAULT_MARKCOUNT_BITS = 4;
   public static final int MAX_MARKCOUNT_BITS = AVAILABLE_LOCAL_BITS - COUNT_BASE;
@@ -62,8 +70,13 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
 
   private static final boolean EAGER_MARK_CLEAR = HeaderByte.NEEDS_UNLOGGED_BIT;
 
+  /* defragmentation: blocks are bucketed by occupancy, and only blocks
+     less than half full are evacuated */
+  private static final int DEFRAG_BUCKETS = 16;
+  private static final int MAX_SOURCE_BUCKET = DEFRAG_BUCKETS >> 1;
+
   /* header requirements */
-  public static final int LOCAL_GC_BITS_REQUIRED = MAX_MARKCOUNT_BITS;
+  public static final int LOCAL_GC_BITS_REQUIRED = COUNT_BASE + MAX_MARKCOUNT_BITS;
   public static final int GLOBAL_GC_BITS_REQUIRED = 0;
   public static final int GC_HEADER_WORDS_REQUIRED = 0;
 
@@ -76,13 +89,21 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   /**
    *
    */
-  private byte markState = 1;
+  private byte markState = MARK_COUNT_INCREMENT;
   private byte allocState = 0;
   private boolean inMSCollection;
   private static final boolean usingStickyMarkBits = VM.activePlan.constraints().needsLogBitInHeader(); /* are sticky mark bits in use? */
   private boolean isAgeSegregated = false; /* is this space a nursery space? */
   private boolean isAllocAsMarked = false;
 
+  /* defragmentation state */
+  private boolean inDefrag;
+  private volatile boolean defragExhausted;
+  private int defragAvailablePages;
+  private int defragSourceBlocks;
+  private final int[] bucketBlocks = new int[DEFRAG_BUCKETS];
+  private final int[] bucketCells = new int[DEFRAG_BUCKETS];
+
   /****************************************************************************
    *
    * Initialization
@@ -91,6 +112,10 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   static {
     Options.markSweepMarkBits = new MarkSweepMarkBits();
     Options.eagerCompleteSweep = new EagerCompleteSweep();
+    Options.lazySweep = new LazySweep();
+    Options.fragmentationStats = new FragmentationStats();
+    Options.markSweepDefrag = new MarkSweepDefrag();
+    Options.markSweepDefragThreshold = new MarkSweepDefragThreshold();
   }
 
   /**
@@ -126,12 +151,32 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
     return !HEADER_MARK_BITS;
   }
 
+  /**
+   * A side bitmap alternates between collections, so that it need not
+   * be cleared at the start of each collection.
+   */
+  @Override
+  @Inline
+  protected boolean alternateSideBitmaps() {
+    return !HEADER_MARK_BITS;
+  }
+
   @Override
   @Inline
   protected boolean preserveFreeList() {
     return !LAZY_SWEEP;
   }
 
+  /**
+   * Live cell counts are needed to measure fragmentation and to choose
+   * the blocks to evacuate.
+   */
+  @Override
+  @Inline
+  protected boolean countLiveCells() {
+    return HEADER_MARK_BITS && (Options.markSweepDefrag.getValue() || Options.fragmentationStats.getValue());
+  }
+
   /****************************************************************************
    *
    * Allocation
@@ -153,6 +198,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   protected Address advanceToBlock(Address block, int sizeClass) {
     if (HEADER_MARK_BITS) {
       if (inMSCollection) markBlock(block);
+      if (countLiveCells()) BlockAllocator.clearDefragMeta(block);
     }
 
     if (LAZY_SWEEP) {
@@ -172,6 +218,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   protected void notifyNewBlock(Address block, int sizeClass) {
     if (HEADER_MARK_BITS) {
       if (inMSCollection) markBlock(block);
+      if (inDefrag) consumeDefragPages(pagesInBlock(sizeClass));
     }
   }
 
@@ -188,6 +235,20 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
    * @param gcWholeMS True if we are going to collect the whole marksweep space
    */
   public void prepare(boolean gcWholeMS) {
+    prepare(gcWholeMS, false);
+  }
+
+  /**
+   * Prepare for a new collection increment, which may evacuate the
+   * sparsest blocks of the space if it has become fragmented.  Objects
+   * may only be evacuated by a stop-the-world trace that reaches them
+   * through {@link #traceObject(TransitiveClosure, ObjectReference, int)}.
+   *
+   * @param gcWholeMS True if we are going to collect the whole marksweep space
+   * @param evacuate True if this collection may evacuate objects
+   */
+  public void prepare(boolean gcWholeMS, boolean evacuate) {
+    finishLazySweep();
     if (HEADER_MARK_BITS && Options.eagerCompleteSweep.getValue()) {
       consumeBlocks();
     } else {
@@ -195,6 +256,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
     }
     if (HEADER_MARK_BITS) {
       if (gcWholeMS) {
+        if (countLiveCells()) decideWhetherToDefrag(evacuate);
         allocState = markState;
         if (usingStickyMarkBits && !isAgeSegregated) /* if true, we allocate as "mature", not nursery */
           allocState |= HeaderByte.UNLOGGED_BIT;
@@ -203,17 +265,32 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
           clearAllBlockMarks();
       }
     } else {
-      zeroLiveBits();
+      flipLiveBitmap();
     }
     inMSCollection = true;
   }
 
   /**
    * A new collection increment has completed.  For the mark-sweep
-   * collector this means we can perform the sweep phase.
+   * collector this means we can perform the sweep phase, or when
+   * sweeping lazily, hand the blocks over to be swept on demand.
  */
   public void release() {
-    sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    if (inDefrag && Options.verbose.getValue() >= 3) {
+      Log.write("[");
+      Log.write(getName());
+      Log.write(" defrag: ", defragSourceBlocks);
+      Log.write(" source blocks");
+      if (defragExhausted) Log.write(", space exhausted");
+      Log.writeln("]");
+    }
+    inDefrag = false;
+    if (isLazySweep()) {
+      deferSweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    } else {
+      sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    }
+    if (!HEADER_MARK_BITS) clearInactiveBitmap();
     inMSCollection = false;
   }
 
@@ -241,7 +318,9 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
     if (!HEADER_MARK_BITS) {
       return super.isCellLive(object);
     }
-    return testMarkState(object);
+    /* the cell of an evacuated object is free, whatever its forwarding pointer looks like */
+    byte value = VM.objectModel.readAvailableByte(object);
+    return (value & ForwardingWord.FORWARDING_MASK) == 0 && (value & MARK_COUNT_MASK) == markState;
   }
 
   /****************************************************************************
@@ -271,13 +350,70 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
         trace.processNode(object);
       }
     } else {
-      if (testAndSetLiveBit(object)) {
+      if (testAndSetActiveLiveBit(object)) {
         trace.processNode(object);
       }
     }
     return object;
   }
 
+  /**
+   * Trace a reference to an object, evacuating it if it lies in a block
+   * chosen for defragmentation by this collection.
+   *
+   * @param trace The trace performing the transitive closure
+   * @param object The object to be traced.
+   * @param allocator The allocator to which any copying should be directed
+   * @return Either the object or a forwarded object, depending on
+   * whether it was evacuated.
+   */
+  @Inline
+  public ObjectReference traceObject(TransitiveClosure trace, ObjectReference object, int allocator) {
+    if (inDefrag && isDefragSource(object))
+      return traceObjectWithOpportunisticCopy(trace, object, allocator);
+    return traceObject(trace, object);
+  }
+
+  /**
+   * Trace a reference to an object in a defrag source block, forwarding
+   * it unless the space available for evacuation has been exhausted, in
+   * which case the object is marked in place.  The protocol follows that
+   * of <code>ImmixSpace</code>.
+   *
+   * @param trace The trace performing the transitive closure
+   * @param object The object to be traced.
+   * @param allocator The allocator to which any copying should be directed
+   * @return Either the object or a forwarded object.
+   */
+  @Inline
+  private ObjectReference traceObjectWithOpportunisticCopy(TransitiveClosure trace, ObjectReference object, int allocator) {
+    /* Race to be the (potential) forwarder */
+    Word priorStatusWord = ForwardingWord.attemptToForward(object);
+    if (ForwardingWord.stateIsForwardedOrBeingForwarded(priorStatusWord)) {
+      /* We lost the race; the winner may yet mark the object in place */
+      return ForwardingWord.spinAndGetForwardedObject(object, priorStatusWord);
+    }
+    byte priorState = (byte) (priorStatusWord.toInt() & 0xFF);
+    if ((priorState & MARK_COUNT_MASK) == markState) {
+      /* already marked in place; unlock and return the unmoved object */
+      VM.objectModel.writeAvailableByte(object, priorState);
+      return object;
+    }
+    ObjectReference newObject;
+    if (defragExhausted) {
+      /* mark in place, which also unlocks the object */
+      byte newState = (byte) ((priorState & ~MARK_COUNT_MASK) | markState);
+      if (HeaderByte.NEEDS_UNLOGGED_BIT) newState |= HeaderByte.UNLOGGED_BIT;
+      VM.objectModel.writeAvailableByte(object, newState);
+      markBlock(object);
+      newObject = object;
+    } else {
+      newObject = ForwardingWord.forwardObject(object, allocator);
+    }
+    trace.processNode(newObject);
+    return newObject;
+  }
+
   /**
    * @return {@code true} if this object is known to be live (i.e. it is marked)
    */
@@ -285,9 +421,10 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   @Inline
   public boolean isLive(ObjectReference object) {
     if (HEADER_MARK_BITS) {
+      if (inDefrag && ForwardingWord.isForwardedOrBeingForwarded(object)) return true;
       return testMarkState(object);
     } else {
-      return liveBitSet(object);
+      return activeLiveBitSet(object);
     }
   }
 
@@ -315,6 +452,154 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
     return rtn;
   }
 
+  /****************************************************************************
+   *
+   * Defragmentation
+   */
+
+  /**
+   * Measure the fragmentation of the space from the live cell counts
+   * recorded when its blocks were last swept, and decide whether this
+   * collection should evacuate the sparsest blocks.  Blocks allocated
+   * into since they were swept have no count and are left in place.
+   *
+   * @param evacuate True if this collection may evacuate objects
+   */
+  private void decideWhetherToDefrag(boolean evacuate) {
+    long liveCells = 0;
+    long totalCells = 0;
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      int cells = cellsInBlock(sizeClass);
+      for (int list = 0; list < 2; list++) {
+        Address block = list == 0 ? flushedBlockHead.get(sizeClass) : consumedBlockHead.get(sizeClass);
+        while (!block.isZero()) {
+          int live = BlockAllocator.getLiveCellCount(block);
+          if (live != BlockAllocator.UNKNOWN_LIVE_CELLS) {
+            liveCells += live;
+            totalCells += cells;
+          }
+          block = BlockAllocator.getNext(block);
+        }
+      }
+    }
+    double fragmentation = totalCells == 0 ? 0 : 1 - (liveCells / (double) totalCells);
+    if (Options.fragmentationStats.getValue()) {
+      Log.write("[");
+      Log.write(getName());
+      Log.write(" fragmentation: ", totalCells - liveCells);
+      Log.write(" of ", totalCells);
+      Log.write(" swept cells free (");
+      Log.write(fragmentation * 100, 1);
+      Log.writeln("%)]");
+    }
+    defragExhausted = false;
+    defragSourceBlocks = 0;
+    inDefrag = evacuate && Options.markSweepDefrag.getValue() && totalCells > 0 &&
+        (fragmentation >= Options.markSweepDefragThreshold.getValue() || Plan.isEmergencyCollection());
+    if (inDefrag) selectDefragSources();
+  }
+
+  /**
+   * Flag the sparsest blocks of each size class as defrag sources.  In each
+   * size class the blocks less than half full are bucketed by occupancy,
+   * and whole buckets are taken, sparsest first, for as long as their
+   * survivors fit in the pages available for evacuation.
+   */
+  private void selectDefragSources() {
+    /* leave half the free pages for survivors copied out of the other spaces */
+    defragAvailablePages = (VM.activePlan.global().getTotalPages() - VM.activePlan.global().getPagesUsed()) >> 1;
+    int budget = defragAvailablePages;
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      int cells = cellsInBlock(sizeClass);
+      int pages = pagesInBlock(sizeClass);
+      for (int b = 0; b < DEFRAG_BUCKETS; b++) {
+        bucketBlocks[b] = 0;
+        bucketCells[b] = 0;
+      }
+      for (int list = 0; list < 2; list++) {
+        Address block = list == 0 ? flushedBlockHead.get(sizeClass) : consumedBlockHead.get(sizeClass);
+        while (!block.isZero()) {
+          int bucket = defragBucket(block, cells);
+          if (bucket < MAX_SOURCE_BUCKET) {
+            bucketBlocks[bucket]++;
+            bucketCells[bucket] += BlockAllocator.getLiveCellCount(block);
+          }
+          block = BlockAllocator.getNext(block);
+        }
+      }
+      int limit = 0;
+      int copyPages = 0;
+      int copyCells = 0;
+      while (limit < MAX_SOURCE_BUCKET) {
+        int pagesNeeded = ((copyCells + bucketCells[limit] + cells - 1) / cells) * pages;
+        if (pagesNeeded > budget) break;
+        copyCells += bucketCells[limit];
+        copyPages = pagesNeeded;
+        defragSourceBlocks += bucketBlocks[limit];
+        limit++;
+      }
+      budget -= copyPages;
+      for (int list = 0; list < 2; list++) {
+        Address block = list == 0 ? flushedBlockHead.get(sizeClass) : consumedBlockHead.get(sizeClass);
+        while (!block.isZero()) {
+          BlockAllocator.setDefragSource(block, defragBucket(block, cells) < limit);
+          block = BlockAllocator.getNext(block);
+        }
+      }
+    }
+    if (Options.verbose.getValue() >= 3) {
+      Log.write("[");
+      Log.write(getName());
+      Log.write(" defrag: evacuating ", defragSourceBlocks);
+      Log.write(" blocks, ", defragAvailablePages);
+      Log.writeln(" pages available]");
+    }
+  }
+
+  /**
+   * @param block The block
+   * @param cells The number of cells in the block
+   * @return The occupancy bucket of the block, or <code>DEFRAG_BUCKETS</code>
+   * if its live cell count is unknown
+   */
+  @Inline
+  private static int defragBucket(Address block, int cells) {
+    int live = BlockAllocator.getLiveCellCount(block);
+    if (live == BlockAllocator.UNKNOWN_LIVE_CELLS) return DEFRAG_BUCKETS;
+    return (live * DEFRAG_BUCKETS) / cells;
+  }
+
+  /**
+   * Account for a block acquired while evacuating, noting when the pages
+   * set aside for evacuation are used up.
+   *
+   * @param pages The number of pages in the block
+   */
+  private void consumeDefragPages(int pages) {
+    lock.acquire();
+    defragAvailablePages -= pages;
+    if (defragAvailablePages <= 0) defragExhausted = true;
+    lock.release();
+  }
+
+  /**
+   * @return {@code true} if this collection is evacuating blocks of this space
+   */
+  @Inline
+  public boolean inDefrag() {
+    return inDefrag;
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the object lies in a block chosen for
+   * evacuation by this collection
+   */
+  @Inline
+  public boolean isDefragSource(ObjectReference object) {
+    return inDefrag && BlockAllocator.isDefragSource(VM.objectModel.refToAddress(object));
+  }
+
   /****************************************************************************
    *
    * Header manipulation
@@ -342,7 +627,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   public void postCopy(ObjectReference object, boolean majorGC) {
     initializeHeader(object, false);
     if (!HEADER_MARK_BITS) {
-      testAndSetLiveBit(object);
+      testAndSetActiveLiveBit(object);
     }
   }
 
@@ -357,7 +642,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   public void initializeHeader(ObjectReference object, boolean alloc) {
     if (HEADER_MARK_BITS) {
       byte oldValue = VM.objectModel.readAvailableByte(object);
-      byte newValue = (byte) ((oldValue & ~MARK_COUNT_MASK) | (alloc && !isAllocAsMarked ? allocState : markState));
+      byte newValue = (byte) ((oldValue & ~(MARK_COUNT_MASK | ForwardingWord.FORWARDING_MASK)) | (alloc && !isAllocAsMarked ? allocState : markState));
       VM.objectModel.writeAvailableByte(object, newValue);
     } else if (HeaderByte.NEEDS_UNLOGGED_BIT)
       HeaderByte.markAsUnlogged(object);
@@ -397,4 +682,14 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   public void makeAllocAsMarked() {
     isAllocAsMarked = true;
   }
+
+  /**
+   * Set whether objects are allocated already marked, as they must be
+   * while the space is being marked alongside the mutators.
+   *
+   * @param allocAsMarked {@code true} if new objects are born marked
+   */
+  public void setAllocAsMarked(boolean allocAsMarked) {
+    isAllocAsMarked = allocAsMarked;
+  }
 }
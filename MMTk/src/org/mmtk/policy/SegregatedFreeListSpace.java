@@ -14,6 +14,7 @@ package org.mmtk.policy;
 
 import static org.mmtk.utility.Constants.*;
 
+import org.mmtk.plan.Plan;
 import org.mmtk.utility.alloc.BlockAllocator;
 import org.mmtk.utility.alloc.EmbeddedMetaData;
 import org.mmtk.utility.heap.FreeListPageResource;
@@ -64,14 +65,17 @@ public abstract class SegregatedFreeListSpace extends Space {
   private static final Extent LIVE_WORD_STRIDE = Extent.fromIntSignExtend(1 << LOG_LIVE_WORD_STRIDE);
   private static final Word LIVE_WORD_STRIDE_MASK = LIVE_WORD_STRIDE.minus(1).toWord().not();
   private static final int NET_META_DATA_BYTES_PER_REGION = BlockAllocator.META_DATA_BYTES_PER_REGION + LIVE_BYTES_PER_REGION;
+  private static final int NET_META_DATA_BYTES_PER_REGION_TWO_BITMAPS = NET_META_DATA_BYTES_PER_REGION + LIVE_BYTES_PER_REGION;
   protected static final int META_DATA_PAGES_PER_REGION_WITH_BITMAP = Conversions.bytesToPages(Extent.fromIntSignExtend(NET_META_DATA_BYTES_PER_REGION));
+  protected static final int META_DATA_PAGES_PER_REGION_WITH_TWO_BITMAPS = Conversions.bytesToPages(Extent.fromIntSignExtend(NET_META_DATA_BYTES_PER_REGION_TWO_BITMAPS));
   protected static final int META_DATA_PAGES_PER_REGION_NO_BITMAP = Conversions.bytesToPages(Extent.fromIntSignExtend(BlockAllocator.META_DATA_BYTES_PER_REGION));
   private static final Extent META_DATA_OFFSET = BlockAllocator.META_DATA_EXTENT;
+  private static final Extent LIVE_BITMAP_EXTENT = Extent.fromIntSignExtend(LIVE_BYTES_PER_REGION);
 
 
   // calculate worst case fragmentation very conservatively
   private static final int NEW_SIZECLASS_OVERHEAD = sizeClassCount();  // one page wasted per size class
-  private static final int METADATA_OVERHEAD = META_DATA_PAGES_PER_REGION_WITH_BITMAP; // worst case scenario
+  private static final int METADATA_OVERHEAD = META_DATA_PAGES_PER_REGION_WITH_TWO_BITMAPS; // worst case scenario
   public static final float WORST_CASE_FRAGMENTATION = 1 + ((NEW_SIZECLASS_OVERHEAD + METADATA_OVERHEAD) / (float) EmbeddedMetaData.BYTES_IN_REGION);
 
   /****************************************************************************
@@ -87,6 +91,24 @@ public abstract class SegregatedFreeListSpace extends Space {
   protected final AddressArray flushedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray availableBlockHead = AddressArray.create(sizeClassCount());
 
+  /**
+   * When sweeping lazily, a raw page holding, for each size class, the head
+   * of the list of blocks awaiting a sweep, followed by the head of the list
+   * of blocks already swept by the background sweeper.  These lists are
+   * claimed from without taking <code>lock</code>.
+   */
+  private Address lazySweepLists = Address.zero();
+  private ConcurrentSweepingContext sweepingContext;
+  private boolean lazySweep;
+  private volatile boolean lazySweepPending;
+  private boolean lazySweepClearMarks;
+
+  /* alternating side bitmaps */
+  private Extent liveBitmap = Extent.zero();
+  private boolean inactiveBitmapClear = true;
+  private volatile boolean bitmapClearPending;
+  private boolean backgroundBitmapClearing;
+
   private final int[] cellSize = new int[sizeClassCount()];
   private final byte[] blockSizeClass = new byte[sizeClassCount()];
   private final int[] blockHeaderSize = new int[sizeClassCount()];
@@ -105,7 +127,7 @@ public abstract class SegregatedFreeListSpace extends Space {
     initSizeClasses();
     int totalMetadata = additionalMetadata;
     if (maintainSideBitmap()) {
-      totalMetadata += META_DATA_PAGES_PER_REGION_WITH_BITMAP;
+      totalMetadata += alternateSideBitmaps() ? META_DATA_PAGES_PER_REGION_WITH_TWO_BITMAPS : META_DATA_PAGES_PER_REGION_WITH_BITMAP;
     } else {
       totalMetadata += META_DATA_PAGES_PER_REGION_NO_BITMAP;
     }
@@ -122,6 +144,15 @@ public abstract class SegregatedFreeListSpace extends Space {
    */
   protected abstract boolean maintainSideBitmap();
 
+  /**
+   * @return whether the side bitmap alternates between two bitmaps from
+   *  one collection to the next, so that the bitmap a collection marks
+   *  can be cleared ahead of time (see {@link #flipLiveBitmap()})
+   */
+  protected boolean alternateSideBitmaps() {
+    return false;
+  }
+
   /**
    * @return whether free lists need to be preserved when blocks
    *  are moved around
@@ -176,8 +207,12 @@ public abstract class SegregatedFreeListSpace extends Space {
    * @return The address of the block
    */
   public Address getAllocationBlock(int sizeClass, AddressArray freeList) {
-    lock.acquire();
     Address block;
+    if (lazySweepPending) {
+      block = getLazySweepBlock(sizeClass, freeList);
+      if (!block.isZero()) return block;
+    }
+    lock.acquire();
     while (!(block = availableBlockHead.get(sizeClass)).isZero()) {
       availableBlockHead.set(sizeClass, BlockAllocator.getNext(block));
       lock.release();
@@ -248,6 +283,40 @@ public abstract class SegregatedFreeListSpace extends Space {
     return block;
   }
 
+  /**
+   * Claim a block left over from the last collection, sweeping it if that
+   * has not already been done by the background sweeper.  Blocks that turn
+   * out to be free are released, and blocks that turn out to be full are
+   * placed on the consumed list.
+   *
+   * @param sizeClass The size class to allocate into
+   * @param freeList The free list to populate
+   * @return The address of the block, or zero if no swept or unswept blocks
+   * of this size class remain.
+   */
+  private Address getLazySweepBlock(int sizeClass, AddressArray freeList) {
+    Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+    while (true) {
+      /* Blocks on the swept list are known to contain live cells */
+      Address block = popBlock(sweptListHead(sizeClass));
+      if (block.isZero()) {
+        block = popBlock(unsweptListHead(sizeClass));
+        if (block.isZero()) break;
+        if (!containsLiveCell(block, sizeClass, blockSize, lazySweepClearMarks)) {
+          BlockAllocator.free(this, block);
+          continue;
+        }
+      }
+      Address cell = advanceToBlock(block, sizeClass);
+      if (!cell.isZero()) {
+        freeList.set(sizeClass, cell);
+        return block;
+      }
+      returnConsumedBlock(block, sizeClass);
+    }
+    return Address.zero();
+  }
+
   /****************************************************************************
    *
    * Block management
@@ -534,7 +603,7 @@ public abstract class SegregatedFreeListSpace extends Space {
    * @return updated head of the blocks that still need to be swept
    */
   protected final Address sweepBlock(Address block, int sizeClass, Extent blockSize, Address availableHead, boolean clearMarks) {
-    boolean liveBlock = containsLiveCell(block, blockSize, clearMarks);
+    boolean liveBlock = containsLiveCell(block, sizeClass, blockSize, clearMarks);
     if (!liveBlock) {
       BlockAllocator.setNext(block, Address.zero());
       BlockAllocator.free(this, block);
@@ -548,6 +617,169 @@ public abstract class SegregatedFreeListSpace extends Space {
     return availableHead;
   }
 
+  /****************************************************************************
+   *
+   * Lazy sweeping
+   */
+
+  /**
+   * Sweep this space lazily.  Rather than sweeping every consumed block
+   * at the end of a collection, blocks are swept when they are next needed
+   * for allocation of their size class, or by a background sweeper.
+   * Requires cell-level lazy sweeping (see <code>LAZY_SWEEP</code>).
+   */
+  @Interruptible
+  public void enableLazySweep() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!preserveFreeList());
+    if (lazySweep) return;
+    lazySweepLists = Plan.metaDataSpace.acquire(1);
+    if (lazySweepLists.isZero()) {
+      VM.assertions.fail("Failed to allocate lazy sweep lists.  Is metadata virtual memory exhausted?");
+    }
+    startSweepingContext();
+    lazySweep = true;
+  }
+
+  /**
+   * Start the context that sweeps lazily swept blocks and clears the
+   * inactive side bitmap in the background, if not already started.
+   */
+  @Interruptible
+  private void startSweepingContext() {
+    if (sweepingContext != null) return;
+    sweepingContext = new ConcurrentSweepingContext(this);
+    VM.collection.spawnCollectorContext(sweepingContext);
+  }
+
+  /**
+   * @return {@code true} if this space is swept lazily.
+   */
+  public final boolean isLazySweep() {
+    return lazySweep;
+  }
+
+  /**
+   * Defer the sweep of all consumed and flushed blocks, handing them to
+   * the allocators and the background sweeper.  The pause cost is
+   * proportional to the number of flushed blocks, not the size of the space.
+   *
+   * @param clearMarks should block mark bits be cleared as blocks are swept.
+   */
+  protected final void deferSweepConsumedBlocks(boolean clearMarks) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(lazySweep && !lazySweepPending);
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Address head = flushedBlockHead.get(sizeClass);
+      Address consumed = consumedBlockHead.get(sizeClass);
+      if (head.isZero()) {
+        head = consumed;
+      } else {
+        Address tail = head;
+        while (!BlockAllocator.getNext(tail).isZero()) {
+          tail = BlockAllocator.getNext(tail);
+        }
+        BlockAllocator.setNext(tail, consumed);
+      }
+      flushedBlockHead.set(sizeClass, Address.zero());
+      consumedBlockHead.set(sizeClass, Address.zero());
+      unsweptListHead(sizeClass).store(head);
+      sweptListHead(sizeClass).store(Address.zero());
+    }
+    lazySweepClearMarks = clearMarks;
+    lazySweepPending = true;
+    sweepingContext.trigger();
+  }
+
+  /**
+   * The entry point for the background sweeper.  Sweeps unswept blocks
+   * until none remain or a collection needs the lists back.
+   */
+  void concurrentSweep() {
+    for (int sizeClass = 0; sizeClass < sizeClassCount() && lazySweepPending; sizeClass++) {
+      Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+      Address block;
+      while (lazySweepPending && !(block = popBlock(unsweptListHead(sizeClass))).isZero()) {
+        if (containsLiveCell(block, sizeClass, blockSize, lazySweepClearMarks)) {
+          pushBlock(sweptListHead(sizeClass), block);
+        } else {
+          BlockAllocator.free(this, block);
+        }
+      }
+    }
+    if (bitmapClearPending && !inactiveBitmapClear) {
+      inactiveBitmapClear = zeroLiveBitmap(inactiveLiveBitmap(), true);
+    }
+  }
+
+  /**
+   * Stop lazy sweeping ahead of a collection, returning any blocks that
+   * were not reached to the flushed lists so that the coming collection
+   * sweeps them.  Must be called before mark state is changed.
+   */
+  protected final void finishLazySweep() {
+    if (!lazySweepPending) return;
+    lazySweepPending = false;
+    sweepingContext.waitForCompletion();
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+      Address block;
+      while (!(block = popBlock(sweptListHead(sizeClass))).isZero()) {
+        BlockAllocator.setNext(block, flushedBlockHead.get(sizeClass));
+        flushedBlockHead.set(sizeClass, block);
+      }
+      while (!(block = popBlock(unsweptListHead(sizeClass))).isZero()) {
+        if (lazySweepClearMarks && !maintainSideBitmap()) {
+          clearBlockMark(block, blockSize);
+        }
+        BlockAllocator.setNext(block, flushedBlockHead.get(sizeClass));
+        flushedBlockHead.set(sizeClass, block);
+      }
+    }
+  }
+
+  @Inline
+  private Address unsweptListHead(int sizeClass) {
+    return lazySweepLists.plus(sizeClass << LOG_BYTES_IN_ADDRESS);
+  }
+
+  @Inline
+  private Address sweptListHead(int sizeClass) {
+    return lazySweepLists.plus((sizeClassCount() + sizeClass) << LOG_BYTES_IN_ADDRESS);
+  }
+
+  /**
+   * Atomically remove the first block from a list.  A block is never
+   * returned to a lazy sweep list within the cycle in which it was removed,
+   * so a successful compare-and-swap cannot suffer from ABA.
+   *
+   * @param head The address of the list head
+   * @return The block removed, or zero if the list was empty
+   */
+  @Inline
+  private static Address popBlock(Address head) {
+    Address block;
+    do {
+      block = head.prepareAddress();
+      if (block.isZero()) return block;
+    } while (!head.attempt(block, BlockAllocator.getNext(block)));
+    BlockAllocator.setNext(block, Address.zero());
+    return block;
+  }
+
+  /**
+   * Atomically add a block to the front of a list.
+   *
+   * @param head The address of the list head
+   * @param block The block to add
+   */
+  @Inline
+  private static void pushBlock(Address head, Address block) {
+    Address old;
+    do {
+      old = head.prepareAddress();
+      BlockAllocator.setNext(block, old);
+    } while (!head.attempt(old, block));
+  }
+
   /**
    * Eagerly consume all remaining blocks.
    */
@@ -564,11 +796,19 @@ public abstract class SegregatedFreeListSpace extends Space {
   }
 
   /**
-   * Flush all the allocation blocks to the consumed list.
+   * Flush all the allocation blocks to the flushed list, ahead of any
+   * blocks already on it.
    */
   protected final void flushAvailableBlocks() {
     for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
-      flushedBlockHead.set(sizeClass, availableBlockHead.get(sizeClass));
+      Address head = availableBlockHead.get(sizeClass);
+      if (head.isZero()) continue;
+      Address tail = head;
+      while (!BlockAllocator.getNext(tail).isZero()) {
+        tail = BlockAllocator.getNext(tail);
+      }
+      BlockAllocator.setNext(tail, flushedBlockHead.get(sizeClass));
+      flushedBlockHead.set(sizeClass, head);
       availableBlockHead.set(sizeClass, Address.zero());
     }
   }
@@ -585,8 +825,8 @@ public abstract class SegregatedFreeListSpace extends Space {
   protected boolean containsLiveCell(Address block, Extent blockSize, boolean clearMarks) {
     if (maintainSideBitmap()) {
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(alignToLiveStride(block).EQ(block));
-      Address cursor = getLiveWordAddress(block);
-      Address sentinel = getLiveWordAddress(block.plus(blockSize.minus(1)));
+      Address cursor = getLiveWordAddress(block).plus(liveBitmap);
+      Address sentinel = getLiveWordAddress(block.plus(blockSize.minus(1))).plus(liveBitmap);
       while (cursor.LE(sentinel)) {
         Word live = cursor.loadWord();
         if (!live.isZero()) {
@@ -608,6 +848,70 @@ public abstract class SegregatedFreeListSpace extends Space {
     }
   }
 
+  /**
+   * Does this block contain any live cells.  When the subclass asks for
+   * live cell counts, the cells of a live block are also counted and the
+   * count recorded in the block's meta data.
+   *
+   * @param block The block
+   * @param sizeClass The size class of the block
+   * @param blockSize The size of the block
+   * @param clearMarks should we clear block mark bits as we process.
+   * @return {@code true} if any cells in the block are live
+   */
+  @Inline
+  private boolean containsLiveCell(Address block, int sizeClass, Extent blockSize, boolean clearMarks) {
+    if (!containsLiveCell(block, blockSize, clearMarks)) return false;
+    if (countLiveCells()) {
+      BlockAllocator.setLiveCellCount(block, liveCellCount(block, sizeClass));
+    }
+    return true;
+  }
+
+  /**
+   * Count the live cells in a block.
+   *
+   * @param block The block
+   * @param sizeClass The size class of the block
+   * @return The number of live cells in the block
+   */
+  private int liveCellCount(Address block, int sizeClass) {
+    Address cursor = block.plus(blockHeaderSize[sizeClass]);
+    Address end = block.plus(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+    Extent cellExtent = Extent.fromIntSignExtend(cellSize[sizeClass]);
+    int live = 0;
+    while (cursor.LT(end)) {
+      ObjectReference current = VM.objectModel.getObjectFromStartAddress(cursor);
+      if (!current.isNull() && isCellLive(current)) live++;
+      cursor = cursor.plus(cellExtent);
+    }
+    return live;
+  }
+
+  /**
+   * Should the sweep count the live cells of each block it keeps?
+   *
+   * @return {@code true} if live cell counts are to be recorded
+   */
+  protected boolean countLiveCells() {
+    return false;
+  }
+
+  /**
+   * @param sizeClass The size class
+   * @return The number of cells in a block of the given size class
+   */
+  protected final int cellsInBlock(int sizeClass) {
+    return (BlockAllocator.blockSize(blockSizeClass[sizeClass]) - blockHeaderSize[sizeClass]) / cellSize[sizeClass];
+  }
+
+  /**
+   * @param sizeClass The size class
+   * @return The number of pages in a block of the given size class
+   */
+  protected final int pagesInBlock(int sizeClass) {
+    return BlockAllocator.blockSize(blockSizeClass[sizeClass]) >>> LOG_BYTES_IN_PAGE;
+  }
 
   /**
    * Clear block marks for a block
@@ -635,7 +939,7 @@ public abstract class SegregatedFreeListSpace extends Space {
   protected boolean isCellLive(ObjectReference object) {
     /* Must override if not using the side bitmap */
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(maintainSideBitmap());
-    return liveBitSet(object);
+    return activeLiveBitSet(object);
   }
 
   /**
@@ -876,8 +1180,22 @@ public abstract class SegregatedFreeListSpace extends Space {
    */
   @Inline
   private static boolean updateLiveBit(Address address, boolean set, boolean atomic) {
+    return updateLiveBit(address, Extent.zero(), set, atomic);
+  }
+
+  /**
+   * Set the live bit for a given address in one of the side bitmaps
+   *
+   * @param address The address whose live bit is to be set.
+   * @param bitmap The offset of the bitmap from the first side bitmap
+   * @param set {@code true} if the bit is to be set, as opposed to cleared
+   * @param atomic {@code true} if we want to perform this operation atomically
+   * @return whether the live bit was set before the update
+   */
+  @Inline
+  private static boolean updateLiveBit(Address address, Extent bitmap, boolean set, boolean atomic) {
     Word oldValue, newValue;
-    Address liveWord = getLiveWordAddress(address);
+    Address liveWord = getLiveWordAddress(address).plus(bitmap);
     Word mask = getMask(address, true);
     if (atomic) {
       do {
@@ -898,12 +1216,39 @@ public abstract class SegregatedFreeListSpace extends Space {
 
   @Inline
   protected static boolean liveBitSet(Address address) {
-    Address liveWord = getLiveWordAddress(address);
+    return liveBitSet(address, Extent.zero());
+  }
+
+  @Inline
+  private static boolean liveBitSet(Address address, Extent bitmap) {
+    Address liveWord = getLiveWordAddress(address).plus(bitmap);
     Word mask = getMask(address, true);
     Word value = liveWord.loadWord();
     return value.and(mask).EQ(mask);
   }
 
+  /**
+   * Atomically set the live bit for a given object in the side bitmap
+   * being marked by the current collection.
+   *
+   * @param object The object whose live bit is to be set.
+   * @return {@code true} if the bit was changed to true.
+   */
+  @Inline
+  protected final boolean testAndSetActiveLiveBit(ObjectReference object) {
+    return updateLiveBit(VM.objectModel.objectStartRef(object), liveBitmap, true, true);
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the live bit for the object is set in the side
+   * bitmap marked by the current (or most recent) collection.
+   */
+  @Inline
+  protected final boolean activeLiveBitSet(ObjectReference object) {
+    return liveBitSet(VM.objectModel.refToAddress(object), liveBitmap);
+  }
+
   /**
    * Clear the live bit for a given object
    *
@@ -960,22 +1305,85 @@ public abstract class SegregatedFreeListSpace extends Space {
     }
   }
 
-  protected void zeroLiveBits() {
-    Extent bytes = Extent.fromIntSignExtend(EmbeddedMetaData.BYTES_IN_REGION >> LOG_LIVE_COVERAGE);
-   if (contiguous) {
+  /**
+   * Make the other side bitmap the one marked by the coming collection,
+   * clearing it first unless that has already been done in the background.
+   * The bitmap marked by the last collection becomes the inactive one, and
+   * may be cleared once the sweep no longer needs it.  Must be called after
+   * any lazy sweep has finished.
+   */
+  protected final void flipLiveBitmap() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(alternateSideBitmaps() && !lazySweepPending);
+    if (bitmapClearPending) {
+      bitmapClearPending = false;
+      sweepingContext.waitForCompletion();
+    }
+    Extent inactive = inactiveLiveBitmap();
+    if (!inactiveBitmapClear) {
+      boolean cleared = zeroLiveBitmap(inactive, false);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(cleared);
+    }
+    liveBitmap = inactive;
+    inactiveBitmapClear = false;
+  }
+
+  /**
+   * Clear the inactive side bitmap on the background sweeping context
+   * between collections, if background clearing is enabled.  Called once
+   * the sweep no longer needs the inactive bitmap.
+   */
+  protected final void clearInactiveBitmap() {
+    if (!backgroundBitmapClearing || inactiveBitmapClear) return;
+    bitmapClearPending = true;
+    sweepingContext.trigger();
+  }
+
+  /**
+   * Clear the inactive side bitmap in the background between
+   * collections, rather than at the start of the next collection.
+   */
+  @Interruptible
+  public void enableBackgroundBitmapClearing() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(maintainSideBitmap() && alternateSideBitmaps());
+    startSweepingContext();
+    backgroundBitmapClearing = true;
+  }
+
+  /**
+   * @return The offset of the inactive side bitmap from the first side bitmap
+   */
+  @Inline
+  private Extent inactiveLiveBitmap() {
+    return liveBitmap.EQ(Extent.zero()) ? LIVE_BITMAP_EXTENT : Extent.zero();
+  }
+
+  /**
+   * Zero one of the side bitmaps of every region of the space, a region
+   * at a time.  In the background, non-temporal stores are used and the
+   * zeroing gives up if the coming collection needs the bitmap, or if a
+   * region is released while the regions are being walked.
+   *
+   * @param bitmap The offset of the bitmap from the first side bitmap
+   * @param background {@code true} if called from the background sweeping context
+   * @return {@code true} if the bitmap of every region was zeroed
+   */
+  private boolean zeroLiveBitmap(Extent bitmap, boolean background) {
+    Offset offset = META_DATA_OFFSET.plus(bitmap).toWord().toOffset();
+    if (contiguous) {
       Address end = ((FreeListPageResource)pr).getHighWater();
-      Address cursor = start;
-      while (cursor.LT(end)) {
-        Address metadata = EmbeddedMetaData.getMetaDataBase(cursor).plus(META_DATA_OFFSET);
-        VM.memory.zero(false, metadata, bytes);
-        cursor = cursor.plus(EmbeddedMetaData.BYTES_IN_REGION);
+      for (Address cursor = start; cursor.LT(end); cursor = cursor.plus(EmbeddedMetaData.BYTES_IN_REGION)) {
+        if (background && !bitmapClearPending) return false;
+        VM.memory.zero(background, EmbeddedMetaData.getMetaDataBase(cursor).plus(offset), LIVE_BITMAP_EXTENT);
       }
     } else {
-      for (Address cursor = headDiscontiguousRegion; !cursor.isZero(); cursor = HeapLayout.vmMap.getNextContiguousRegion(cursor)) {
-        Address metadata = EmbeddedMetaData.getMetaDataBase(cursor).plus(META_DATA_OFFSET);
-        VM.memory.zero(false, metadata, bytes);
+      Address region = headDiscontiguousRegion;
+      while (!region.isZero()) {
+        if (background && !bitmapClearPending) return false;
+        region = ((FreeListPageResource)pr).zeroRegionMetaData(region, offset, LIVE_BITMAP_EXTENT, background);
+        if (region.EQ(Address.max())) return false;
       }
     }
+    return true;
   }
 
   /**
@@ -21,6 +21,7 @@ import org.mmtk.plan.Plan;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.utility.heap.PageResource;
 import org.mmtk.utility.heap.SpaceDescriptor;
+import org.mmtk.utility.heap.Uncommitter;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.options.Options;
@@ -90,6 +91,8 @@ public abstract class Space {
   protected final boolean movable;
   protected final boolean contiguous;
   protected final boolean zeroed;
+  /** Does this space keep a card table (see {@link org.mmtk.utility.CardTable})? */
+  protected boolean cardMarked;
 
   protected PageResource pr;
   protected final Address start;
@@ -232,6 +235,11 @@ public abstract class Space {
     return immortal;
   }
 
+  /** @return {@code true} if this space keeps a card table in its metadata */
+  public final boolean isCardMarked() {
+    return cardMarked;
+  }
+
   /** @return {@code true} if objects in this space may move */
   public boolean isMovable() {
     return movable;
@@ -471,6 +479,7 @@ public abstract class Space {
     if (newHead.isZero()) {
       return Address.zero();
     }
+    Uncommitter.chunksAcquired(newHead, chunks);
     return headDiscontiguousRegion = newHead;
   }
 
@@ -508,7 +517,9 @@ public abstract class Space {
     if (chunk.EQ(headDiscontiguousRegion)) {
       headDiscontiguousRegion = HeapLayout.vmMap.getNextContiguousRegion(chunk);
     }
-    return HeapLayout.vmMap.freeContiguousChunks(chunk);
+    int chunks = HeapLayout.vmMap.freeContiguousChunks(chunk);
+    Uncommitter.chunksReleased(chunk, chunks);
+    return chunks;
   }
 
   /**
@@ -519,6 +530,12 @@ public abstract class Space {
   }
 
   public void releaseAllChunks() {
+    if (Uncommitter.isEnabled()) {
+      for (Address region = headDiscontiguousRegion; !region.isZero();
+           region = HeapLayout.vmMap.getNextContiguousRegion(region)) {
+        Uncommitter.chunksReleased(region, HeapLayout.vmMap.getContiguousRegionChunks(region));
+      }
+    }
     HeapLayout.vmMap.freeAllChunks(headDiscontiguousRegion);
     headDiscontiguousRegion = Address.zero();
   }
@@ -625,6 +642,31 @@ public abstract class Space {
   }
 
 
+  /**
+   * Make the page resources of all MMTk spaces (aside from the VM and
+   * metadata spaces) scalable.  This must be called while the VM is
+   * single threaded.
+   */
+  @Interruptible
+  public static void enableScalablePageResources() {
+    for (int i = 0; i < spaceCount; i++) {
+      Space space = spaces[i];
+      if (space != VM.memory.getVMSpace() && space != Plan.metaDataSpace) {
+        space.pr.enableScalable();
+      }
+    }
+  }
+
+  /**
+   * Fold the striped page counts of all scalable page resources back
+   * into their totals, returning any pages held in per-thread caches.
+   */
+  public static void consolidatePageResources() {
+    for (int i = 0; i < spaceCount; i++) {
+      spaces[i].pr.consolidate();
+    }
+  }
+
   /**
    * Ensure that all MMTk spaces (all spaces aside from the VM space)
    * are mapped. Demand zero map all of them if they are not already
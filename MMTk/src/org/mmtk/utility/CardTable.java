@@ -0,0 +1,219 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility;
+
+import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.LOG_BYTES_IN_CHUNK;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.alloc.EmbeddedMetaData;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements a card table for card-marked spaces (see
+ * {@link Space#isCardMarked()}).  Each region's embedded metadata starts
+ * with one byte for every card of the region, followed by a crossing map
+ * recording, for every card, the first and last objects whose
+ * {@link org.mmtk.vm.ObjectModel#refToAddress(ObjectReference) address}
+ * falls within that card.<p>
+ *
+ * The write barrier dirties the card of the <i>source</i> object of a
+ * store, so a dirty card is cleaned by scanning every object recorded
+ * against it.  Objects must be recorded in allocation order by a single
+ * allocator per card, which holds for bump-pointer spaces since a card
+ * never straddles two allocation regions.  A card-marked space must be
+ * discontiguous, and must be zeroed on allocation so that a fresh chunk
+ * starts with clean cards and an empty crossing map.
+ */
+@Uninterruptible
+public final class CardTable {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final int LOG_BYTES_IN_CARD = 9;
+  public static final int BYTES_IN_CARD = 1 << LOG_BYTES_IN_CARD;
+  private static final int CARDS_IN_REGION = EmbeddedMetaData.BYTES_IN_REGION >> LOG_BYTES_IN_CARD;
+  private static final Extent CARD_TABLE_EXTENT = Extent.fromIntSignExtend(CARDS_IN_REGION);
+
+  /* each crossing map entry holds two object references: the first and last objects on the card */
+  private static final int LOG_BYTES_IN_CROSSING_ENTRY = LOG_BYTES_IN_ADDRESS + 1;
+  private static final Offset LAST_OBJECT_OFFSET = Offset.fromIntSignExtend(BYTES_IN_ADDRESS);
+
+  /** The number of metadata pages per region required by a card-marked space */
+  public static final int META_DATA_PAGES_PER_REGION =
+    Conversions.bytesToPages(Extent.fromIntSignExtend(CARDS_IN_REGION + (CARDS_IN_REGION << LOG_BYTES_IN_CROSSING_ENTRY)));
+
+  /* the cards covering the metadata itself are never dirtied */
+  private static final int FIRST_DATA_CARD = META_DATA_PAGES_PER_REGION << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_CARD);
+
+  private static final byte CLEAN = 0;
+  private static final byte DIRTY = 1;
+
+  /****************************************************************************
+   *
+   * Mutator-time operations
+   */
+
+  /**
+   * Dirty the card holding an object.  This is an unconditional store,
+   * and is the whole of the card-marking write barrier.
+   *
+   * @param object An object in a card-marked space
+   */
+  @Inline
+  public static void dirty(ObjectReference object) {
+    getCard(VM.objectModel.refToAddress(object)).store(DIRTY);
+  }
+
+  /**
+   * Record a newly allocated or copied object in the crossing map, if
+   * it lies in a card-marked space.  Objects on any one card must be
+   * recorded in address order.
+   *
+   * @param object The new object
+   */
+  @Inline
+  public static void recordObject(ObjectReference object) {
+    if (!Space.getSpaceForObject(object).isCardMarked()) return;
+    Address entry = getCrossingEntry(VM.objectModel.refToAddress(object));
+    if (entry.loadObjectReference().isNull()) {
+      entry.store(object);
+    }
+    entry.store(object, LAST_OBJECT_OFFSET);
+  }
+
+  /****************************************************************************
+   *
+   * Collection-time operations
+   */
+
+  /**
+   * Clean this collector's share of the dirty cards of a space, presenting
+   * every object on each dirty card to a closure.  The chunks of the space
+   * are divided among the collectors by ordinal.  The heap must not change
+   * while this is in progress, so this must precede any copying.
+   *
+   * @param space The card-marked space
+   * @param closure The closure to which each object's edges are presented
+   * @param ordinal The ordinal of the calling collector
+   * @param workers The number of collectors taking part
+   */
+  public static void scanDirtyCards(Space space, TransitiveClosure closure, int ordinal, int workers) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(space.isCardMarked());
+    int chunkIndex = 0;
+    for (Address region = space.getHeadDiscontiguousRegion(); !region.isZero(); region = HeapLayout.vmMap.getNextContiguousRegion(region)) {
+      int chunks = HeapLayout.vmMap.getContiguousRegionChunks(region);
+      for (int i = 0; i < chunks; i++, chunkIndex++) {
+        if (chunkIndex % workers == ordinal) {
+          scanChunk(region.plus(i << LOG_BYTES_IN_CHUNK), closure);
+        }
+      }
+    }
+  }
+
+  /**
+   * Clean this collector's share of the cards of a space without scanning
+   * them.  This is used when every object a card could refer to is
+   * about to be traced anyway (i.e. a full heap collection).
+   *
+   * @param space The card-marked space
+   * @param ordinal The ordinal of the calling collector
+   * @param workers The number of collectors taking part
+   */
+  public static void clearCards(Space space, int ordinal, int workers) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(space.isCardMarked());
+    int chunkIndex = 0;
+    for (Address region = space.getHeadDiscontiguousRegion(); !region.isZero(); region = HeapLayout.vmMap.getNextContiguousRegion(region)) {
+      int chunks = HeapLayout.vmMap.getContiguousRegionChunks(region);
+      for (int i = 0; i < chunks; i++, chunkIndex++) {
+        if (chunkIndex % workers == ordinal) {
+          VM.memory.zero(false, region.plus(i << LOG_BYTES_IN_CHUNK), CARD_TABLE_EXTENT);
+        }
+      }
+    }
+  }
+
+  /**
+   * Clean and scan the dirty cards of a single chunk.  Clean cards are
+   * skipped a word at a time.
+   *
+   * @param chunk The start of the chunk (and of its metadata)
+   * @param closure The closure to which each object's edges are presented
+   */
+  private static void scanChunk(Address chunk, TransitiveClosure closure) {
+    Address crossingMap = chunk.plus(CARD_TABLE_EXTENT);
+    for (int word = FIRST_DATA_CARD; word < CARDS_IN_REGION; word += BYTES_IN_WORD) {
+      if (chunk.plus(word).loadWord().isZero()) continue;
+      for (int card = word; card < word + BYTES_IN_WORD; card++) {
+        Offset offset = Offset.fromIntZeroExtend(card);
+        if (chunk.loadByte(offset) == CLEAN) continue;
+        chunk.store(CLEAN, offset);
+        scanCard(crossingMap.plus(card << LOG_BYTES_IN_CROSSING_ENTRY), closure);
+      }
+    }
+  }
+
+  /**
+   * Scan every object recorded against a card.
+   *
+   * @param entry The card's crossing map entry
+   * @param closure The closure to which each object's edges are presented
+   */
+  private static void scanCard(Address entry, TransitiveClosure closure) {
+    ObjectReference object = entry.loadObjectReference();
+    if (object.isNull()) return;
+    ObjectReference last = entry.loadObjectReference(LAST_OBJECT_OFFSET);
+    while (true) {
+      VM.scanning.scanObject(closure, object);
+      if (object.toAddress().EQ(last.toAddress())) break;
+      object = VM.objectModel.getNextObject(object);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(object.toAddress().LE(last.toAddress()));
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Metadata addressing
+   */
+
+  /**
+   * @param address An address in a card-marked space
+   * @return The address of the card byte covering the address
+   */
+  @Inline
+  private static Address getCard(Address address) {
+    return EmbeddedMetaData.getMetaDataBase(address).plus(
+        EmbeddedMetaData.getMetaDataOffset(address, LOG_BYTES_IN_CARD, 0));
+  }
+
+  /**
+   * @param address An address in a card-marked space
+   * @return The address of the crossing map entry for the card covering the address
+   */
+  @Inline
+  private static Address getCrossingEntry(Address address) {
+    return EmbeddedMetaData.getMetaDataBase(address).plus(CARD_TABLE_EXTENT).plus(
+        EmbeddedMetaData.getMetaDataOffset(address, LOG_BYTES_IN_CARD, LOG_BYTES_IN_CROSSING_ENTRY));
+  }
+}
@@ -99,6 +99,16 @@ import org.vmmagic.unboxed.*;
     return node.toWord().rshl(logGranularity).lsh(logGranularity).EQ(node.toWord());
   }
 
+  @Inline
+  public static Offset prevOffset() {
+    return PREV_OFFSET;
+  }
+
+  @Inline
+  public static Offset nextOffset() {
+    return NEXT_OFFSET;
+  }
+
   @Inline
   public static Address nodeToPayload(Address node) {
     return node.plus(HEADER_SIZE);
@@ -159,6 +169,21 @@ import org.vmmagic.unboxed.*;
     return first;
   }
 
+  /**
+   * Remove every node from the list at once.  The nodes remain linked
+   * to each other through their next fields.
+   *
+   * @return The first node of the detached list, or zero if it was empty
+   */
+  @Inline
+  public Address detach() {
+    if (lock != null) lock.acquire();
+    Address first = head;
+    head = Address.zero();
+    if (lock != null) lock.release();
+    return first;
+  }
+
   @Inline
   public boolean isEmpty() {
     return head.isZero();
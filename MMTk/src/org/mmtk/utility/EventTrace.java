@@ -0,0 +1,279 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.MutatorContext;
+import org.mmtk.utility.options.EventTraceFile;
+import org.mmtk.utility.options.EventTracing;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A fixed-size ring buffer of binary event records, one instance of
+ * which is owned by each mutator and collector context.<p>
+ *
+ * Records are written only by the owning thread and without any
+ * synchronization, so recording an event costs a handful of array
+ * stores.  When the buffer wraps the oldest records are overwritten
+ * (and counted as dropped).  Buffers are drained to the file named by
+ * the <code>eventTraceFile</code> option only when their owner is
+ * known to be quiescent: at the end of each collection, when a mutator
+ * is retired, and when the VM exits.<p>
+ *
+ * The file starts with a header of three little-endian ints (magic,
+ * version, record size in bytes).  Each drain appends a block header of
+ * four ints (context kind, context id, record count, dropped record
+ * count) followed by the records.  Each record is five ints: the event
+ * id and allocator (packed as <code>event &lt;&lt; 16 | allocator</code>),
+ * the number of bytes, the space descriptor and the high and low halves
+ * of the cycle counter.
+ */
+@Uninterruptible
+public final class EventTrace {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** A mutator allocated an object */
+  public static final int ALLOC = 1;
+  /** A collector copied (or promoted) an object */
+  public static final int COPY = 2;
+
+  /** Kind of the context that owns a drained block */
+  public static final int MUTATOR = 0;
+  public static final int COLLECTOR = 1;
+
+  private static final int LOG_CAPACITY = 10;
+  private static final int CAPACITY = 1 << LOG_CAPACITY;
+  private static final int INDEX_MASK = CAPACITY - 1;
+  private static final int RECORD_INTS = 5;
+  private static final int BLOCK_HEADER_INTS = 4;
+  private static final int EVENT_SHIFT = 16;
+  private static final int ALLOCATOR_MASK = (1 << EVENT_SHIFT) - 1;
+
+  private static final int FILE_MAGIC = 0x4d4d5445; // "MMTE"
+  private static final int FILE_VERSION = 1;
+
+  /** Is tracing enabled?  Tested on each allocation fast path. */
+  private static boolean enabled = false;
+
+  /** The handle of the trace file, or -1 if no file is open */
+  private static int handle = -1;
+
+  /** Staging buffer used to serialize a block, guarded by <code>lock</code> */
+  private static byte[] scratch;
+
+  /** Serializes drains performed by multiple collector threads */
+  private static final Lock lock = VM.newLock("EventTrace");
+
+  static {
+    Options.eventTracing = new EventTracing();
+    Options.eventTraceFile = new EventTraceFile();
+  }
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /**
+   * The records, <code>RECORD_INTS</code> ints per record, or
+   * {@code null} if tracing was disabled when this buffer was created
+   */
+  private int[] records;
+
+  /** The number of records ever written to this buffer */
+  private int cursor = 0;
+
+  /** The value of <code>cursor</code> at the last drain */
+  private int drained = 0;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor.  The records are only allocated if tracing is enabled,
+   * so contexts pay nothing for the (default) untraced case.
+   */
+  public EventTrace() {
+    if (enabled) records = new int[CAPACITY * RECORD_INTS];
+  }
+
+  /****************************************************************************
+   *
+   * Global control
+   */
+
+  /**
+   * Open the trace file and enable tracing if requested by the
+   * <code>eventTracing</code> option.  Called once options have been
+   * processed.
+   */
+  @Interruptible
+  public static void boot() {
+    if (!Options.eventTracing.getValue()) return;
+    handle = VM.fileIO.open(Options.eventTraceFile.getValue(), true);
+    if (handle < 0) {
+      Log.write("Unable to open event trace file ");
+      Log.writeln(Options.eventTraceFile.getValue());
+      return;
+    }
+    scratch = new byte[(BLOCK_HEADER_INTS + CAPACITY * RECORD_INTS) << LOG_BYTES_IN_INT];
+    int pos = putInt(0, FILE_MAGIC);
+    pos = putInt(pos, FILE_VERSION);
+    pos = putInt(pos, RECORD_INTS << LOG_BYTES_IN_INT);
+    VM.fileIO.write(handle, scratch, pos);
+    enabled = true;
+    // Contexts created from now on allocate their own records; give the
+    // mutators that already exist theirs.  (Collectors are not spawned
+    // until collection is enabled.)
+    VM.activePlan.resetMutatorIterator();
+    MutatorContext mutator;
+    while ((mutator = VM.activePlan.getNextMutator()) != null) {
+      mutator.enableEvents();
+    }
+    VM.activePlan.resetMutatorIterator();
+  }
+
+  /**
+   * Allocate the records of a buffer created before tracing was enabled.
+   */
+  @Interruptible
+  public void enable() {
+    if (records == null) records = new int[CAPACITY * RECORD_INTS];
+  }
+
+  /**
+   * @return {@code true} if events are being recorded.
+   */
+  @Inline
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Drain the buffers of all mutators.  Must only be called when
+   * mutators are stopped, or (on exit) when the loss of a partially
+   * written record is acceptable.
+   */
+  public static void drainMutators() {
+    if (!enabled) return;
+    VM.activePlan.resetMutatorIterator();
+    MutatorContext mutator;
+    while ((mutator = VM.activePlan.getNextMutator()) != null) {
+      mutator.drainEvents();
+    }
+    VM.activePlan.resetMutatorIterator();
+  }
+
+  /**
+   * Drain all outstanding mutator records and close the trace file.
+   */
+  public static void shutdown() {
+    if (!enabled) return;
+    drainMutators();
+    enabled = false;
+    VM.fileIO.close(handle);
+    handle = -1;
+  }
+
+  /****************************************************************************
+   *
+   * Recording and draining
+   */
+
+  /**
+   * Record an event.  Only the owning thread may call this method.<p>
+   *
+   * Callers guard this with {@link #isEnabled()} on allocation and copy
+   * fast paths, so it is kept out of line to leave those paths small
+   * when they are inlined into compiled code.
+   *
+   * @param event The event id
+   * @param allocator The allocator used
+   * @param bytes The number of bytes involved
+   * @param descriptor The descriptor of the space involved
+   */
+  @NoInline
+  public void record(int event, int allocator, int bytes, int descriptor) {
+    if (records == null) return;
+    int index = (cursor & INDEX_MASK) * RECORD_INTS;
+    long cycles = VM.statistics.cycles();
+    records[index] = (event << EVENT_SHIFT) | (allocator & ALLOCATOR_MASK);
+    records[index + 1] = bytes;
+    records[index + 2] = descriptor;
+    records[index + 3] = (int) (cycles >>> 32);
+    records[index + 4] = (int) cycles;
+    cursor++;
+  }
+
+  /**
+   * Write all records made since the last drain to the trace file.
+   * The owner of this buffer must not be recording concurrently.
+   *
+   * @param kind The kind of the owning context (<code>MUTATOR</code>
+   * or <code>COLLECTOR</code>)
+   * @param id The id of the owning context
+   */
+  public void drain(int kind, int id) {
+    int pending = cursor - drained;
+    if (!enabled || pending == 0) return;
+    int dropped = 0;
+    if (pending > CAPACITY) {
+      dropped = pending - CAPACITY;
+      pending = CAPACITY;
+    }
+    lock.acquire();
+    int pos = putInt(0, kind);
+    pos = putInt(pos, id);
+    pos = putInt(pos, pending);
+    pos = putInt(pos, dropped);
+    for (int i = cursor - pending; i != cursor; i++) {
+      int index = (i & INDEX_MASK) * RECORD_INTS;
+      for (int j = 0; j < RECORD_INTS; j++) {
+        pos = putInt(pos, records[index + j]);
+      }
+    }
+    if (VM.fileIO.write(handle, scratch, pos) < 0) {
+      Log.writeln("Error writing event trace, tracing disabled");
+      enabled = false;
+    }
+    lock.release();
+    drained = cursor;
+  }
+
+  /**
+   * Store an int, little-endian, into the staging buffer.
+   *
+   * @param pos The byte position to store at
+   * @param value The value to store
+   * @return The position following the stored value
+   */
+  @Inline
+  private static int putInt(int pos, int value) {
+    scratch[pos] = (byte) value;
+    scratch[pos + 1] = (byte) (value >>> 8);
+    scratch[pos + 2] = (byte) (value >>> 16);
+    scratch[pos + 3] = (byte) (value >>> 24);
+    return pos + BYTES_IN_INT;
+  }
+}
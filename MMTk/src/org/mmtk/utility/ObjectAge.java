@@ -0,0 +1,84 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility;
+
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class manages a small per-object age counter held in the GC byte,
+ * immediately above the forwarding bits (see {@link ForwardingWord}).
+ * The age records the number of times an object has been copied, and is
+ * used by generational copying plans to make tenuring decisions.<p>
+ *
+ * The age bits are local bits: they are only meaningful while an object
+ * resides in a copying space, and are overwritten when the object is
+ * copied into a space that uses the local bits for its own purposes
+ * (for example a mark-sweep space using header mark bits).
+ */
+@Uninterruptible
+public class ObjectAge {
+  /** The lowest bit of the age field */
+  private static final int AGE_SHIFT = ForwardingWord.FORWARDING_BITS;
+  /** The number of bits in the age field */
+  public static final int AGE_BITS = 3;
+  /** The largest age that can be represented; ages saturate at this value */
+  public static final int MAX_AGE = (1 << AGE_BITS) - 1;
+  private static final byte AGE_MASK = (byte) (MAX_AGE << AGE_SHIFT);
+
+  /** The number of local GC bits required by the forwarding and age bits together */
+  public static final int LOCAL_GC_BITS_REQUIRED = AGE_SHIFT + AGE_BITS;
+
+  /**
+   * Return the age of an object.  If the object has already been forwarded
+   * the result is meaningless, but callers only use it to select an
+   * allocator for a copy that will not then take place.
+   *
+   * @param object The object in question
+   * @return The number of times the object has been copied (saturating)
+   */
+  @Inline
+  public static int getAge(ObjectReference object) {
+    return (VM.objectModel.readAvailableByte(object) & AGE_MASK) >>> AGE_SHIFT;
+  }
+
+  /**
+   * Increment the age of a freshly copied object.  This is not atomic; the
+   * caller must own the copy (i.e. be the thread that forwarded it).
+   *
+   * @param object The newly copied object
+   * @return The new age of the object
+   */
+  @Inline
+  public static int incrementAge(ObjectReference object) {
+    byte value = VM.objectModel.readAvailableByte(object);
+    int age = (value & AGE_MASK) >>> AGE_SHIFT;
+    if (age < MAX_AGE) {
+      age++;
+      VM.objectModel.writeAvailableByte(object, (byte) ((value & ~AGE_MASK) | (age << AGE_SHIFT)));
+    }
+    return age;
+  }
+
+  /**
+   * Clear the age of an object.
+   *
+   * @param object The object in question
+   */
+  @Inline
+  public static void clearAge(ObjectReference object) {
+    VM.objectModel.writeAvailableByte(object, (byte) (VM.objectModel.readAvailableByte(object) & ~AGE_MASK));
+  }
+}
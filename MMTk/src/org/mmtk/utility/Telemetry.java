@@ -0,0 +1,407 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility;
+
+import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.HeapParameters.MAX_SPACES;
+
+import org.mmtk.policy.Space;
+import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.TelemetryFile;
+import org.mmtk.utility.statistics.Stats;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A timeline of per-collection space usage, copying and pause phases.<p>
+ *
+ * At each collection the global collector records, for every space, the
+ * pages reserved before and after the collection and the pages committed
+ * after it, together with the times at which the collection started,
+ * entered its prepare and release phases and completed.  Collectors that
+ * copy objects report the bytes they copied out of and into each space,
+ * from which promotion (nursery to survivor space, survivor space to old
+ * generation) and the survival rate of each collected space follow.<p>
+ *
+ * Records are kept in a ring of preallocated arrays so that recording
+ * never allocates.  They are written to the file named by the
+ * <code>telemetryFile</code> option, one JSON object per line, whenever
+ * the ring fills, on demand via {@link #flush()}, and when the VM exits.
+ * Times are in microseconds: <code>time</code> is measured from boot
+ * and the phase times from the start of the collection.  A phase time
+ * is left out of a record if the plan did not report that phase.
+ */
+@Uninterruptible
+public final class Telemetry {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  private static final int CAPACITY = 64;
+
+  /* Layout of the header of a record */
+  private static final int GC = 0;
+  private static final int FULL = 1;
+  private static final int START = 2;
+  private static final int PREPARE = 3;
+  private static final int RELEASE = 4;
+  private static final int END = 5;
+  private static final int HEADER_LONGS = 6;
+
+  /* Layout of the per-space part of a record */
+  private static final int RESERVED_BEFORE = 0;
+  private static final int RESERVED_AFTER = 1;
+  private static final int COMMITTED = 2;
+  private static final int COPIED_IN = 3;
+  private static final int COPIED_OUT = 4;
+  private static final int SPACE_LONGS = 5;
+
+  private static final int RECORD_LONGS = HEADER_LONGS + MAX_SPACES * SPACE_LONGS;
+
+  private static final int LINE_BYTES = 8192;
+  private static final int MAX_NAME_CHARS = 64;
+
+  /** Fixed point scale of the survival rates written out */
+  private static final long SURVIVAL_SCALE = 10000;
+
+  /** Is telemetry being recorded? */
+  private static boolean enabled = false;
+
+  /** The handle of the telemetry file, or -1 if no file is open */
+  private static int handle = -1;
+
+  /** The records, <code>RECORD_LONGS</code> longs per record */
+  private static long[] records;
+
+  /** The number of records completed since boot */
+  private static int cursor = 0;
+
+  /** The value of <code>cursor</code> at the last flush */
+  private static int flushed = 0;
+
+  /** The time at which telemetry was booted */
+  private static long bootTime;
+
+  /** Staging buffers used to serialize a record, owned by the flushing thread */
+  private static byte[] scratch;
+  private static char[] chars;
+
+  /** Is a thread writing records out?  Guarded by <code>lock</code> */
+  private static boolean flushing = false;
+
+  /** Serializes collectors reporting copies and threads starting a flush */
+  private static final Lock lock = VM.newLock("Telemetry");
+
+  static {
+    Options.telemetry = new org.mmtk.utility.options.Telemetry();
+    Options.telemetryFile = new TelemetryFile();
+  }
+
+  /****************************************************************************
+   *
+   * Global control
+   */
+
+  /**
+   * Open the telemetry file and enable recording if requested by the
+   * <code>telemetry</code> option.  Called once options have been
+   * processed.
+   */
+  @Interruptible
+  public static void boot() {
+    if (!Options.telemetry.getValue()) return;
+    handle = VM.fileIO.open(Options.telemetryFile.getValue(), true);
+    if (handle < 0) {
+      Log.write("Unable to open telemetry file ");
+      Log.writeln(Options.telemetryFile.getValue());
+      return;
+    }
+    records = new long[CAPACITY * RECORD_LONGS];
+    scratch = new byte[LINE_BYTES];
+    chars = new char[MAX_NAME_CHARS];
+    bootTime = VM.statistics.nanoTime();
+    enabled = true;
+  }
+
+  /**
+   * @return {@code true} if telemetry is being recorded.
+   */
+  @Inline
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Write all outstanding records and close the telemetry file.
+   */
+  public static void shutdown() {
+    if (!enabled) return;
+    flush();
+    enabled = false;
+    VM.fileIO.close(handle);
+    handle = -1;
+  }
+
+  /****************************************************************************
+   *
+   * Recording
+   */
+
+  /**
+   * A collection has started.  Called by the global collector while
+   * mutators are stopped.
+   */
+  public static void gcStart() {
+    if (!enabled) return;
+    int base = current();
+    for (int i = 0; i < RECORD_LONGS; i++) {
+      records[base + i] = 0;
+    }
+    records[base + GC] = Stats.gcCount();
+    records[base + START] = VM.statistics.nanoTime();
+    Space[] spaces = Space.getSpaces();
+    for (int i = 0; i < Space.getSpaceCount(); i++) {
+      records[spaceBase(base, i) + RESERVED_BEFORE] = spaces[i].reservedPages();
+    }
+  }
+
+  /**
+   * The global prepare phase of the current collection has started.
+   * Only the first report in a collection is recorded, so plans may
+   * report the phase at each level of their hierarchy.
+   */
+  public static void prepare() {
+    if (!enabled) return;
+    int base = current();
+    if (records[base + PREPARE] == 0) records[base + PREPARE] = VM.statistics.nanoTime();
+  }
+
+  /**
+   * The global release phase of the current collection has started.
+   * Only the first report in a collection is recorded.
+   */
+  public static void release() {
+    if (!enabled) return;
+    int base = current();
+    if (records[base + RELEASE] == 0) records[base + RELEASE] = VM.statistics.nanoTime();
+  }
+
+  /**
+   * Add the bytes a collector copied during the current collection to
+   * the current record, and reset the collector's counts.
+   *
+   * @param copiedOut Bytes copied out of each space, indexed by space index
+   * @param copiedIn Bytes copied into each space, indexed by space index
+   */
+  public static void copied(long[] copiedOut, long[] copiedIn) {
+    if (!enabled) return;
+    int base = current();
+    lock.acquire();
+    for (int i = 0; i < MAX_SPACES; i++) {
+      records[spaceBase(base, i) + COPIED_OUT] += copiedOut[i];
+      records[spaceBase(base, i) + COPIED_IN] += copiedIn[i];
+    }
+    lock.release();
+    for (int i = 0; i < MAX_SPACES; i++) {
+      copiedOut[i] = 0;
+      copiedIn[i] = 0;
+    }
+  }
+
+  /**
+   * The current collection has completed.  Record the state of each
+   * space and complete the record, writing out the ring if it is full.
+   *
+   * @param full Was this a full heap collection?
+   */
+  public static void gcEnd(boolean full) {
+    if (!enabled) return;
+    int base = current();
+    records[base + FULL] = full ? 1 : 0;
+    records[base + END] = VM.statistics.nanoTime();
+    Space[] spaces = Space.getSpaces();
+    for (int i = 0; i < Space.getSpaceCount(); i++) {
+      Space space = spaces[i];
+      records[spaceBase(base, i) + RESERVED_AFTER] = space.reservedPages();
+      records[spaceBase(base, i) + COMMITTED] = space.committedPages();
+    }
+    lock.acquire();
+    cursor++;
+    lock.release();
+    if (cursor - flushed == CAPACITY) flush();
+  }
+
+  /**
+   * @return The index of the first long of the record being built
+   */
+  @Inline
+  private static int current() {
+    return (cursor % CAPACITY) * RECORD_LONGS;
+  }
+
+  /**
+   * @param base The index of the first long of a record
+   * @param space The index of a space
+   * @return The index of the first long of the part of the record for the space
+   */
+  @Inline
+  private static int spaceBase(int base, int space) {
+    return base + HEADER_LONGS + space * SPACE_LONGS;
+  }
+
+  /****************************************************************************
+   *
+   * Writing
+   */
+
+  /**
+   * Write all records completed since the last flush to the telemetry
+   * file.  May be called at any time, including by a mutator while a
+   * collection is in progress.  Only one thread writes at a time, others
+   * wait for it to finish; the file is written without holding
+   * <code>lock</code>.
+   */
+  public static void flush() {
+    if (!enabled) return;
+    lock.acquire();
+    while (flushing) {
+      lock.release();
+      VM.memory.combinedLoadBarriers();
+      lock.acquire();
+    }
+    flushing = true;
+    while (enabled && flushed != cursor) {
+      int base = (flushed % CAPACITY) * RECORD_LONGS;
+      lock.release();
+      int pos = writeRecord(base);
+      boolean written = VM.fileIO.write(handle, scratch, pos) >= 0;
+      lock.acquire();
+      if (!written) {
+        Log.writeln("Error writing telemetry, telemetry disabled");
+        enabled = false;
+      }
+      flushed++;
+    }
+    flushing = false;
+    lock.release();
+  }
+
+  /**
+   * Serialize a record into the staging buffer as a line of JSON.
+   *
+   * @param base The index of the first long of the record
+   * @return The number of bytes written
+   */
+  private static int writeRecord(int base) {
+    long start = records[base + START];
+    int pos = putString(0, "{\"gc\":");
+    pos = putLong(pos, records[base + GC]);
+    pos = putString(pos, ",\"full\":");
+    pos = putString(pos, records[base + FULL] != 0 ? "true" : "false");
+    pos = putString(pos, ",\"time\":");
+    pos = putLong(pos, (start - bootTime) / 1000);
+    if (records[base + PREPARE] != 0) {
+      pos = putString(pos, ",\"prepare\":");
+      pos = putLong(pos, (records[base + PREPARE] - start) / 1000);
+    }
+    if (records[base + RELEASE] != 0) {
+      pos = putString(pos, ",\"release\":");
+      pos = putLong(pos, (records[base + RELEASE] - start) / 1000);
+    }
+    pos = putString(pos, ",\"pause\":");
+    pos = putLong(pos, (records[base + END] - start) / 1000);
+    pos = putString(pos, ",\"spaces\":[");
+    Space[] spaces = Space.getSpaces();
+    for (int i = 0; i < Space.getSpaceCount(); i++) {
+      int s = spaceBase(base, i);
+      long before = records[s + RESERVED_BEFORE] << LOG_BYTES_IN_PAGE;
+      long copiedOut = records[s + COPIED_OUT];
+      if (i > 0) pos = putString(pos, ",");
+      pos = putString(pos, "{\"name\":\"");
+      pos = putString(pos, spaces[i].getName());
+      pos = putString(pos, "\",\"reservedBefore\":");
+      pos = putLong(pos, records[s + RESERVED_BEFORE]);
+      pos = putString(pos, ",\"reservedAfter\":");
+      pos = putLong(pos, records[s + RESERVED_AFTER]);
+      pos = putString(pos, ",\"committed\":");
+      pos = putLong(pos, records[s + COMMITTED]);
+      pos = putString(pos, ",\"copiedIn\":");
+      pos = putLong(pos, records[s + COPIED_IN]);
+      pos = putString(pos, ",\"copiedOut\":");
+      pos = putLong(pos, copiedOut);
+      pos = putString(pos, ",\"survival\":");
+      pos = putFixed(pos, before == 0 ? 0 : copiedOut * SURVIVAL_SCALE / before);
+      pos = putString(pos, "}");
+    }
+    pos = putString(pos, "]}\n");
+    return pos;
+  }
+
+  /**
+   * Store the characters of a string into the staging buffer.  Strings
+   * are assumed to be ASCII and no longer than <code>MAX_NAME_CHARS</code>.
+   *
+   * @param pos The byte position to store at
+   * @param s The string to store
+   * @return The position following the stored string
+   */
+  private static int putString(int pos, String s) {
+    int length = VM.strings.copyStringToChars(s, chars, 0, MAX_NAME_CHARS);
+    for (int i = 0; i < length; i++) {
+      scratch[pos++] = (byte) chars[i];
+    }
+    return pos;
+  }
+
+  /**
+   * Store the decimal representation of a value into the staging buffer.
+   *
+   * @param pos The byte position to store at
+   * @param value The value to store
+   * @return The position following the stored value
+   */
+  private static int putLong(int pos, long value) {
+    if (value < 0) {
+      scratch[pos++] = (byte) '-';
+      value = -value;
+    }
+    long divisor = 1;
+    while (value / divisor >= 10) divisor *= 10;
+    for (; divisor > 0; divisor /= 10) {
+      scratch[pos++] = (byte) ('0' + (value / divisor) % 10);
+    }
+    return pos;
+  }
+
+  /**
+   * Store a non-negative fixed point value, scaled by
+   * <code>SURVIVAL_SCALE</code>, as a decimal fraction.
+   *
+   * @param pos The byte position to store at
+   * @param value The scaled value to store
+   * @return The position following the stored value
+   */
+  private static int putFixed(int pos, long value) {
+    pos = putLong(pos, value / SURVIVAL_SCALE);
+    scratch[pos++] = (byte) '.';
+    long fraction = value % SURVIVAL_SCALE;
+    for (long divisor = SURVIVAL_SCALE / 10; divisor > 0; divisor /= 10) {
+      scratch[pos++] = (byte) ('0' + (fraction / divisor) % 10);
+    }
+    return pos;
+  }
+}
@@ -12,7 +12,12 @@
  */
 package org.mmtk.utility;
 
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.Plan;
 import org.mmtk.utility.gcspy.drivers.TreadmillDriver;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
 
 import org.vmmagic.unboxed.*;
 import org.vmmagic.pragma.*;
@@ -24,18 +29,35 @@ import org.vmmagic.pragma.*;
  * This is true in the case of Jikes RVM, but it is not true for any
  * VM implementing a language other than Java.<p>
  *
- * Each instance of this class is a doubly-linked list, in which
+ * Each instance of this class is a set of lists, in which
  * each item or node is a piece of memory.  The first two words of each node
- * contains the forward and backward links.  The third word contains
- * the treadmill.  The remaining portion is the payload.<p>
+ * contains the forward and backward links.  The remaining portion is the
+ * payload.<p>
  *
- * The treadmill object itself must not be moved.<p>
+ * Nodes are spread over <code>SEGMENTS</code> segments by address, so
+ * that collector threads contend less when moving nodes between the
+ * mature lists and so that each segment can be swept by a different
+ * collector.  Within a segment the mature from- and to-spaces are
+ * locked doubly-linked lists.  Newly allocated (nursery) nodes are only
+ * ever pushed during mutation, so they are kept on singly-linked lists
+ * whose heads are updated with a compare and swap; nursery nodes stay
+ * on their list when traced and are moved to the to-space when the
+ * nursery is swept.<p>
  *
- * Access to the instances may be synchronized depending on the constructor argument.
+ * The treadmill object itself must not be moved.
  */
 @Uninterruptible
 public final class Treadmill {
 
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The number of segments, and so the maximum parallelism of a sweep */
+  public static final int LOG_SEGMENTS = 4;
+  public static final int SEGMENTS = 1 << LOG_SEGMENTS;
+
   /****************************************************************************
    *
    * Instance variables
@@ -44,10 +66,15 @@ public final class Treadmill {
   /**
    *
    */
-  private DoublyLinkedList fromSpace;
-  private DoublyLinkedList toSpace;
-  private DoublyLinkedList collectNursery;
-  private DoublyLinkedList allocNursery;
+  private final DoublyLinkedList[] fromSpace = new DoublyLinkedList[SEGMENTS];
+  private final DoublyLinkedList[] toSpace = new DoublyLinkedList[SEGMENTS];
+  private final int logGranularity;
+  private final Lock lock;
+
+  /** Two banks of <code>SEGMENTS</code> nursery list heads, allocated on first use */
+  private Address nurseryHeads = Address.zero();
+  /** The bank currently receiving allocations; the other is being collected */
+  private int allocBank;
 
   /****************************************************************************
    *
@@ -55,14 +82,16 @@ public final class Treadmill {
    */
 
   /**
-   * @param granularity TODO needs documentation
+   * @param granularity The log of the granularity (and alignment) of nodes
    * @param shared <code>true</code> if the created instance will be shared between threads. If it is shared, accesses will be synchronized using locks.
    */
   public Treadmill(int granularity, boolean shared) {
-    fromSpace = new DoublyLinkedList(granularity, shared);
-    toSpace = new DoublyLinkedList(granularity, shared);
-    allocNursery = new DoublyLinkedList(granularity, shared);
-    collectNursery = new DoublyLinkedList(granularity, shared);
+    for (int i = 0; i < SEGMENTS; i++) {
+      fromSpace[i] = new DoublyLinkedList(granularity, shared);
+      toSpace[i] = new DoublyLinkedList(granularity, shared);
+    }
+    logGranularity = granularity;
+    lock = VM.newLock("Treadmill");
   }
 
   /**
@@ -74,33 +103,68 @@ public final class Treadmill {
   @Inline
   public void addToTreadmill(Address node, boolean nursery) {
     if (nursery)
-      allocNursery.add(node);
+      pushNursery(node);
     else
-      toSpace.add(node);
+      toSpace[segmentOf(node)].add(node);
   }
 
   /**
-   * Removes a node from the nursery list.
+   * Push a node onto the nursery list of its segment.  This does not
+   * take a lock.
    *
-   * @return the removed node
+   * @param node the node to add
    */
   @Inline
-  public Address popNursery() {
-    return collectNursery.pop();
+  private void pushNursery(Address node) {
+    Address head = nurseryHead(allocBank, segmentOf(node));
+    node.store(Address.zero(), DoublyLinkedList.prevOffset());
+    Address old;
+    do {
+      old = head.prepareAddress();
+      node.store(old, DoublyLinkedList.nextOffset());
+    } while (!head.attempt(old, node));
+  }
+
+  /**
+   * Detach the nursery nodes of a segment that are being collected.
+   * The nodes remain linked through their next fields.
+   *
+   * @param segment The segment to detach
+   * @return The first node of the detached list, or zero if it is empty
+   */
+  public Address popNurserySegment(int segment) {
+    if (nurseryHeads.isZero()) return Address.zero();
+    Address head = nurseryHead(1 - allocBank, segment);
+    Address first = head.loadAddress();
+    head.store(Address.zero());
+    return first;
   }
 
   /**
-   * Removes a node from the mature list.
+   * Detach the mature from-space nodes of a segment.  The nodes remain
+   * linked through their next fields.
    *
-   * @return the removed node
+   * @param segment The segment to detach
+   * @return The first node of the detached list, or zero if it is empty
+   */
+  public Address popFromSpaceSegment(int segment) {
+    return fromSpace[segment].detach();
+  }
+
+  /**
+   * Add a node to the to-space.  This is used when a surviving nursery
+   * node is swept.
+   *
+   * @param node the node to add
    */
   @Inline
-  public Address pop() {
-    return fromSpace.pop();
+  public void addToToSpace(Address node) {
+    toSpace[segmentOf(node)].add(node);
   }
 
   /**
-   * Copies a node (during gc tracing).
+   * Copies a node (during gc tracing).  Nursery nodes stay on their
+   * list until the nursery is swept.
    *
    * @param node the node to copy
    * @param isInNursery whether the node is in the nursery or the
@@ -108,12 +172,11 @@ public final class Treadmill {
    */
   @Inline
   public void copy(Address node, boolean isInNursery) {
-    if (isInNursery) {
-      collectNursery.remove(node);
-    } else {
-      fromSpace.remove(node);
+    if (!isInNursery) {
+      int segment = segmentOf(node);
+      fromSpace[segment].remove(node);
+      toSpace[segment].add(node);
     }
-    toSpace.add(node);
   }
 
   /**
@@ -121,7 +184,9 @@ public final class Treadmill {
    */
   @Inline
   public boolean toSpaceEmpty() {
-    return toSpace.isEmpty();
+    for (int i = 0; i < SEGMENTS; i++)
+      if (!toSpace[i].isEmpty()) return false;
+    return true;
   }
 
   /**
@@ -129,15 +194,20 @@ public final class Treadmill {
    */
   @Inline
   public boolean fromSpaceEmpty() {
-    return fromSpace.isEmpty();
+    for (int i = 0; i < SEGMENTS; i++)
+      if (!fromSpace[i].isEmpty()) return false;
+    return true;
   }
 
   /**
-   * @return whether the nursery is empty
+   * @return whether the nursery being collected is empty
    */
   @Inline
   public boolean nurseryEmpty() {
-    return collectNursery.isEmpty();
+    if (nurseryHeads.isZero()) return true;
+    for (int i = 0; i < SEGMENTS; i++)
+      if (!nurseryHead(1 - allocBank, i).loadAddress().isZero()) return false;
+    return true;
   }
 
   /**
@@ -146,16 +216,54 @@ public final class Treadmill {
    * @param fullHeap whether the collection is full heap
    */
   public void flip(boolean fullHeap) {
-    DoublyLinkedList tmp = allocNursery;
-    allocNursery = collectNursery;
-    collectNursery = tmp;
+    allocBank = 1 - allocBank;
     if (fullHeap) {
-      tmp = fromSpace;
-      fromSpace = toSpace;
-      toSpace = tmp;
+      for (int i = 0; i < SEGMENTS; i++) {
+        DoublyLinkedList tmp = fromSpace[i];
+        fromSpace[i] = toSpace[i];
+        toSpace[i] = tmp;
+      }
     }
   }
 
+  /**
+   * @param node A node on this treadmill
+   * @return The segment to which the node belongs
+   */
+  @Inline
+  private int segmentOf(Address node) {
+    Word page = node.toWord().rshl(logGranularity);
+    return page.xor(page.rshl(LOG_SEGMENTS)).xor(page.rshl(2 * LOG_SEGMENTS)).toInt() & (SEGMENTS - 1);
+  }
+
+  /**
+   * @param bank The bank of nursery heads
+   * @param segment The segment
+   * @return The address of the nursery list head for the segment
+   */
+  @Inline
+  private Address nurseryHead(int bank, int segment) {
+    if (nurseryHeads.isZero()) allocateNurseryHeads();
+    return nurseryHeads.plus(((bank << LOG_SEGMENTS) + segment) << LOG_BYTES_IN_ADDRESS);
+  }
+
+  /**
+   * Allocate the nursery list heads.  Metadata pages are zeroed, so all
+   * lists start empty.
+   */
+  @NoInline
+  private void allocateNurseryHeads() {
+    lock.acquire();
+    if (nurseryHeads.isZero()) {
+      Address heads = Plan.metaDataSpace.acquire(1);
+      if (heads.isZero()) {
+        VM.assertions.fail("Failed to allocate treadmill nursery lists.  Is metadata virtual memory exhausted?");
+      }
+      nurseryHeads = heads;
+    }
+    lock.release();
+  }
+
   /****************************************************************************
    *
    * Misc header manipulation
@@ -179,6 +287,32 @@ public final class Treadmill {
     return DoublyLinkedList.midPayloadToNode(payload);
   }
 
+  /**
+   * @param node A node on a detached list
+   * @return The next node on the list, or zero
+   */
+  @Inline
+  public static Address getNext(Address node) {
+    return node.loadAddress(DoublyLinkedList.nextOffset());
+  }
+
+  /**
+   * @param node A node on a detached list
+   * @param next The node to follow it
+   */
+  @Inline
+  public static void setNext(Address node, Address next) {
+    node.store(next, DoublyLinkedList.nextOffset());
+  }
+
+  /**
+   * @return The offset within each node of the link to the next node
+   */
+  @Inline
+  public static Offset nextOffset() {
+    return DoublyLinkedList.nextOffset();
+  }
+
   /****************************************************************************
    *
    * GCSpy
@@ -190,7 +324,14 @@ public final class Treadmill {
    * @param tmDriver the GCSpy space driver
    */
   public void gcspyGatherData(int event, TreadmillDriver tmDriver) {
-    this.allocNursery.gcspyGatherData(tmDriver);
+    if (nurseryHeads.isZero()) return;
+    for (int i = 0; i < SEGMENTS; i++) {
+      Address cur = nurseryHead(allocBank, i).loadAddress();
+      while (!cur.isZero()) {
+        tmDriver.scan(cur);
+        cur = getNext(cur);
+      }
+    }
   }
 
   /**
@@ -200,9 +341,11 @@ public final class Treadmill {
    * @param tospace gather from tospace?
    */
   public void gcspyGatherData(int event, TreadmillDriver tmDriver, boolean tospace) {
-    if (tospace)
-      toSpace.gcspyGatherData(tmDriver);
-    else
-      fromSpace.gcspyGatherData(tmDriver);
+    for (int i = 0; i < SEGMENTS; i++) {
+      if (tospace)
+        toSpace[i].gcspyGatherData(tmDriver);
+      else
+        fromSpace[i].gcspyGatherData(tmDriver);
+    }
   }
 }
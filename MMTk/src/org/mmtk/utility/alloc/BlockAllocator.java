@@ -57,6 +57,9 @@ public final class BlockAllocator {
   private static final byte BLOCK_SC_MASK = 0xf;             // lower 4 bits
   private static final int BLOCK_PAGE_OFFSET_SHIFT = 4;      // higher 4 bits
   private static final int MAX_BLOCK_PAGE_OFFSET = (1 << 4) - 1; // 4 bits
+  private static final short DEFRAG_SOURCE = (short) 0x8000;     // top bit, on every page
+  private static final short LIVE_CELLS_MASK = 0x7fff;           // lower 15 bits, on the first page
+  public static final int UNKNOWN_LIVE_CELLS = LIVE_CELLS_MASK;
   private static final int LOG_BYTES_IN_BLOCK_META = LOG_BYTES_IN_ADDRESS + 2;
   private static final int LOG_BYTE_COVERAGE = LOG_MIN_BLOCK - LOG_BYTES_IN_BLOCK_META;
 
@@ -146,6 +149,7 @@ public final class BlockAllocator {
     for (int i = 0; i < pagesForSizeClass(sc); i++) {
       byte value = (byte) ((i << BLOCK_PAGE_OFFSET_SHIFT) | sc);
       getMetaAddress(address).store(value, BMD_OFFSET);
+      getMetaAddress(address).store((short) UNKNOWN_LIVE_CELLS, IU_OFFSET);
       if (VM.VERIFY_ASSERTIONS) {
         VM.assertions._assert(getBlkStart(address).EQ(block));
         VM.assertions._assert(getBlkSizeClass(address) == sc);
@@ -296,6 +300,84 @@ public final class BlockAllocator {
            EmbeddedMetaData.getMetaDataOffset(address, LOG_BYTE_COVERAGE, LOG_BYTES_IN_BLOCK_META)).plus(offset);
   }
 
+  /****************************************************************************
+   *
+   * Defragmentation meta data
+   */
+
+  /**
+   * Record the number of live cells found in a block when it was last
+   * swept.  The count is kept on the first page of the block.
+   *
+   * @param block The block address
+   * @param cells The number of live cells, or <code>UNKNOWN_LIVE_CELLS</code>
+   */
+  @Inline
+  public static void setLiveCellCount(Address block, int cells) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(cells >= 0 && cells <= UNKNOWN_LIVE_CELLS);
+    Address meta = getMetaAddress(block);
+    short value = (short) ((meta.loadShort(IU_OFFSET) & DEFRAG_SOURCE) | cells);
+    meta.store(value, IU_OFFSET);
+  }
+
+  /**
+   * Get the number of live cells found in a block when it was last swept.
+   *
+   * @param block The block address
+   * @return The number of live cells, or <code>UNKNOWN_LIVE_CELLS</code> if
+   * the block has been allocated into since it was last swept
+   */
+  @Inline
+  public static int getLiveCellCount(Address block) {
+    return getMetaAddress(block).loadShort(IU_OFFSET) & LIVE_CELLS_MASK;
+  }
+
+  /**
+   * Set or clear the <i>defrag source</i> flag on every page of a block.
+   *
+   * @param block The block address
+   * @param source {@code true} if the block is to be evacuated
+   */
+  @Inline
+  public static void setDefragSource(Address block, boolean source) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(getBlkStart(block).EQ(block));
+    Address address = block;
+    for (int i = 0; i < pagesForSizeClass(getBlkSizeClass(block)); i++) {
+      Address meta = getMetaAddress(address);
+      short value = meta.loadShort(IU_OFFSET);
+      value = (short) (source ? (value | DEFRAG_SOURCE) : (value & ~DEFRAG_SOURCE));
+      meta.store(value, IU_OFFSET);
+      address = address.plus(1 << VM.LOG_BYTES_IN_PAGE);
+    }
+  }
+
+  /**
+   * Is the block containing a given address to be evacuated?
+   *
+   * @param address The address of interest
+   * @return {@code true} if the block is flagged as a defrag source
+   */
+  @Inline
+  public static boolean isDefragSource(Address address) {
+    return (getMetaAddress(address).loadShort(IU_OFFSET) & DEFRAG_SOURCE) != 0;
+  }
+
+  /**
+   * Forget the live cell count and defrag source flag of a block, as
+   * is required once the block is allocated into.
+   *
+   * @param block The block address
+   */
+  @Inline
+  public static void clearDefragMeta(Address block) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(getBlkStart(block).EQ(block));
+    Address address = block;
+    for (int i = 0; i < pagesForSizeClass(getBlkSizeClass(block)); i++) {
+      getMetaAddress(address).store((short) UNKNOWN_LIVE_CELLS, IU_OFFSET);
+      address = address.plus(1 << VM.LOG_BYTES_IN_PAGE);
+    }
+  }
+
   /****************************************************************************
    *
    * Block marking
@@ -127,6 +127,18 @@ import org.vmmagic.unboxed.Word;
   protected final boolean allowScanning;
   /** current contiguous region */
   protected Address region;
+  /** pages requested on each external refill, or zero for the minimum */
+  private int refillPages;
+  /** pages the space may grow to before a collection, or zero if unbounded */
+  private int capacityPages;
+  /** the NUMA node on which regions should be placed, or -1 for no preference */
+  private int numaNode = -1;
+  /** number of external refills since the statistics were cleared */
+  private int refills;
+  /** bytes acquired from the space since the statistics were cleared */
+  private long acquiredBytes;
+  /** bytes abandoned at the end of regions since the statistics were cleared */
+  private long wastedBytes;
 
 
   /**
@@ -299,9 +311,16 @@ import org.vmmagic.unboxed.Word;
     /* Acquire space, block aligned, that can accommodate the request */
     Extent blockSize = Word.fromIntZeroExtend(bytes).plus(BLOCK_MASK)
                        .and(BLOCK_MASK.not()).toExtent();
+    if (refillPages > 0) blockSize = adaptiveRefillSize(blockSize);
     Address start = space.acquire(Conversions.bytesToPages(blockSize));
 
     if (start.isZero()) return start; // failed allocation
+    if (numaNode >= 0) VM.memory.preferNumaNode(start, blockSize.toInt(), numaNode);
+
+    refills++;
+    acquiredBytes += blockSize.toLong();
+    if (!limit.isZero() && start.NE(limit))
+      wastedBytes += limit.diff(cursor).toLong();
 
     if (!allowScanning) { // simple allocator
       if (start.NE(limit)) cursor = start;  // discontiguous
@@ -628,6 +647,88 @@ import org.vmmagic.unboxed.Word;
     return Extent.max();
   }
 
+  /**
+   * Choose the size of the next region when refills are sized
+   * adaptively.  The preferred size is used unless the space is close
+   * to its capacity, in which case at most half of what remains is
+   * taken so that other threads can still refill before the collection.
+   *
+   * @param minimum The block-aligned size needed by the pending allocation
+   * @return The block-aligned size of the region to acquire
+   */
+  private Extent adaptiveRefillSize(Extent minimum) {
+    int pages = refillPages;
+    if (capacityPages > 0) {
+      int remaining = (capacityPages - space.reservedPages()) >> 1;
+      if (remaining < pages) pages = remaining;
+    }
+    if (pages <= 0) return minimum;
+    Extent size = Conversions.pagesToBytes(pages).toWord().and(BLOCK_MASK.not()).toExtent();
+    return size.GT(minimum) ? size : minimum;
+  }
+
+  /**
+   * Set the number of pages acquired on each external refill.
+   *
+   * @param pages The preferred refill size in pages, or zero to
+   * acquire only what the pending allocation needs
+   * @param capacity The number of pages the space may grow to before a
+   * collection is required, or zero if refills should not be bounded
+   */
+  public final void setRefillPages(int pages, int capacity) {
+    refillPages = pages;
+    capacityPages = capacity;
+  }
+
+  /**
+   * Place the regions acquired from now on on a NUMA node.  The
+   * preference applies to the pages of each region that are not yet
+   * resident when it is acquired.
+   *
+   * @param node The node, or -1 for no preference
+   */
+  public final void setNumaNode(int node) {
+    numaNode = node;
+  }
+
+  /** @return the preferred number of pages acquired on each refill */
+  public final int getRefillPages() {
+    return refillPages;
+  }
+
+  /**
+   * Account for the unused tail of the current region as waste.  This
+   * must be called before the allocator is reset at a collection.
+   */
+  public final void retireRegion() {
+    if (!limit.isZero())
+      wastedBytes += limit.diff(cursor).toLong();
+  }
+
+  /** @return the number of external refills since the statistics were cleared */
+  public final int getRefills() {
+    return refills;
+  }
+
+  /** @return the bytes acquired from the space since the statistics were cleared */
+  public final long getAcquiredBytes() {
+    return acquiredBytes;
+  }
+
+  /** @return the bytes abandoned at the end of regions since the statistics were cleared */
+  public final long getWastedBytes() {
+    return wastedBytes;
+  }
+
+  /**
+   * Clear the refill and waste statistics.
+   */
+  public final void clearRefillStats() {
+    refills = 0;
+    acquiredBytes = 0;
+    wastedBytes = 0;
+  }
+
   /** @return the current cursor value */
   public final Address getCursor() {
     return cursor;
@@ -0,0 +1,436 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.alloc;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * Allocation-site survival profiling and pretenuring advice.<p>
+ *
+ * Each mutator owns an instance, which samples roughly one object per
+ * <code>SAMPLE_INTERVAL_BYTES</code> of nursery allocation and remembers
+ * its address and allocation site.  When the nursery is evacuated each
+ * sample is checked for a forwarding pointer and the sampled and
+ * surviving bytes are accumulated per site.  At the end of each
+ * collection sites with enough samples whose survival rate is at or
+ * above the <code>pretenureSurvivalThreshold</code> option are marked as
+ * pretenured, after which the plan's mutators allocate them directly
+ * into the old generation.  Totals decay by half at every collection,
+ * so a site must keep surviving to be selected.<p>
+ *
+ * Site ids are handed out in compilation order and so differ between
+ * runs.  The VM may therefore register a stable key (e.g. a hash of the
+ * allocated type and allocating method) for each site.  The keys of
+ * pretenured sites are written to the <code>pretenureAdviceFile</code>
+ * at exit and read back at startup, when the VM may consult
+ * {@link #isAdvisedKey(int)} to choose the pretenuring allocator at
+ * compile time.  The file is a little-endian int header (magic, version,
+ * key count) followed by the keys.
+ */
+@Uninterruptible
+public final class PretenureAdvisor {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The number of sites profiled; sites at or above this id are ignored */
+  private static final int MAX_SITES = 1 << 14;
+  /** The maximum number of keys read from or written to the advice file */
+  private static final int MAX_ADVICE = 1 << 12;
+  /** The number of samples a mutator can hold between collections */
+  private static final int SAMPLE_CAPACITY = 256;
+  /** Nursery bytes allocated between two samples */
+  private static final int SAMPLE_INTERVAL_BYTES = 16 << LOG_BYTES_IN_KBYTE;
+  /** The number of (decayed) samples a site needs before it is judged */
+  private static final int MIN_SAMPLES = 16;
+  /** The key of a site whose key was never registered */
+  private static final int NO_KEY = 0;
+
+  private static final int FILE_MAGIC = 0x4d4d5450; // "MMTP"
+  private static final int FILE_VERSION = 1;
+  private static final int HEADER_INTS = 3;
+  private static final int SCRATCH_INTS = 1024;
+
+  /** Is profiling enabled?  Tested on each allocation fast path. */
+  private static boolean enabled = false;
+
+  /** The allocator that advised sites should use */
+  private static int pretenureAllocator = Plan.ALLOC_DEFAULT;
+
+  /** The stable key of each site, or <code>NO_KEY</code> */
+  private static final int[] siteKeys = new int[MAX_SITES];
+  /** Samples taken per site, guarded by <code>lock</code> */
+  private static final int[] samples = new int[MAX_SITES];
+  /** Bytes sampled per site, guarded by <code>lock</code> */
+  private static final long[] sampledBytes = new long[MAX_SITES];
+  /** Sampled bytes that survived per site, guarded by <code>lock</code> */
+  private static final long[] survivedBytes = new long[MAX_SITES];
+  /** Sites whose objects should be pretenured */
+  private static final boolean[] pretenured = new boolean[MAX_SITES];
+  /** One more than the highest site sampled so far */
+  private static int siteLimit = 0;
+
+  /** Sorted keys read from the advice file */
+  private static int[] advice;
+  /** The number of valid entries in <code>advice</code> */
+  private static int adviceCount = 0;
+
+  /** Staging buffer for file access */
+  private static byte[] scratch;
+
+  /** Serializes merges performed by multiple collector threads */
+  private static final Lock lock = VM.newLock("PretenureAdvisor");
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /** The addresses of the sampled objects */
+  private final AddressArray sampleRefs = AddressArray.create(SAMPLE_CAPACITY);
+  /** The site of each sampled object */
+  private final int[] sampleSites = new int[SAMPLE_CAPACITY];
+  /** The size of each sampled object */
+  private final int[] sampleBytes = new int[SAMPLE_CAPACITY];
+  /** The number of samples held */
+  private int sampleCount = 0;
+  /** Bytes left to allocate before the next sample */
+  private int countdown = SAMPLE_INTERVAL_BYTES;
+  /** The site of the allocation in progress if it is to be sampled, else -1 */
+  private int pendingSite = -1;
+
+  /****************************************************************************
+   *
+   * Global control
+   */
+
+  /**
+   * Enable profiling if requested by the <code>pretenureProfiling</code>
+   * option and read any advice left by an earlier run.  Called once
+   * options have been processed, by plans that create the
+   * <code>pretenure*</code> options and can pretenure.
+   *
+   * @param allocator The allocator that advised sites should use
+   */
+  @Interruptible
+  public static void boot(int allocator) {
+    if (!Options.pretenureProfiling.getValue()) return;
+    pretenureAllocator = allocator;
+    scratch = new byte[SCRATCH_INTS << LOG_BYTES_IN_INT];
+    advice = new int[MAX_ADVICE];
+    readAdvice();
+    enabled = true;
+  }
+
+  /**
+   * @return {@code true} if allocation sites are being profiled.
+   */
+  @Inline
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return The allocator that advised sites should use, or
+   * <code>Plan.ALLOC_DEFAULT</code> if profiling is disabled.
+   */
+  public static int getPretenureAllocator() {
+    return pretenureAllocator;
+  }
+
+  /**
+   * Associate a stable key with an allocation site.
+   *
+   * @param site The site, as returned by <code>Plan.getAllocationSite</code>
+   * @param key A key that identifies the site across runs
+   */
+  public static void registerSite(int site, int key) {
+    if (site >= 0 && site < MAX_SITES) siteKeys[site] = key;
+  }
+
+  /**
+   * @param site An allocation site
+   * @return {@code true} if objects allocated at <code>site</code>
+   * should be pretenured.
+   */
+  @Inline
+  public static boolean isPretenured(int site) {
+    return site >= 0 && site < MAX_SITES && pretenured[site];
+  }
+
+  /**
+   * @param key A site key
+   * @return {@code true} if an earlier run advised pretenuring the
+   * site(s) with this key.
+   */
+  public static boolean isAdvisedKey(int key) {
+    if (!enabled || key == NO_KEY) return false;
+    return indexOfAdvice(key) >= 0;
+  }
+
+  /**
+   * Select the sites to pretenure from the survival rates recorded in
+   * this collection, then decay the totals.  Called once, by the
+   * primary collector, after all mutators have released their samples.
+   */
+  public static void update() {
+    if (!enabled) return;
+    float threshold = Options.pretenureSurvivalThreshold.getValue();
+    for (int site = 0; site < siteLimit; site++) {
+      if (samples[site] >= MIN_SAMPLES && !pretenured[site] &&
+          survivedBytes[site] >= (long) (threshold * sampledBytes[site])) {
+        pretenured[site] = true;
+        if (Options.verbose.getValue() >= 3) {
+          Log.write("[Pretenuring site "); Log.write(site);
+          Log.write(" survival "); Log.write(survivedBytes[site]);
+          Log.write("/"); Log.write(sampledBytes[site]); Log.writeln("]");
+        }
+      }
+      samples[site] >>= 1;
+      sampledBytes[site] >>= 1;
+      survivedBytes[site] >>= 1;
+    }
+  }
+
+  /**
+   * Write the keys of all advised and pretenured sites to the advice
+   * file.  Called when the VM exits.
+   */
+  public static void shutdown() {
+    if (!enabled) return;
+    enabled = false;
+    String name = Options.pretenureAdviceFile.getValue();
+    if (name.length() == 0) return;
+    int count = adviceCount;
+    for (int site = 0; site < MAX_SITES; site++) {
+      if (isNewAdvice(site)) count++;
+    }
+    if (count > MAX_ADVICE) count = MAX_ADVICE;
+    int handle = VM.fileIO.open(name, true);
+    if (handle < 0) {
+      Log.write("Unable to write pretenuring advice to ");
+      Log.writeln(name);
+      return;
+    }
+    int pos = putInt(0, FILE_MAGIC);
+    pos = putInt(pos, FILE_VERSION);
+    pos = putInt(pos, count);
+    int written = 0;
+    for (int i = 0; i < adviceCount && written < count; i++, written++) {
+      pos = flushIfFull(handle, pos);
+      pos = putInt(pos, advice[i]);
+    }
+    for (int site = 0; site < MAX_SITES && written < count; site++) {
+      if (isNewAdvice(site)) {
+        pos = flushIfFull(handle, pos);
+        pos = putInt(pos, siteKeys[site]);
+        written++;
+      }
+    }
+    VM.fileIO.write(handle, scratch, pos);
+    VM.fileIO.close(handle);
+  }
+
+  /****************************************************************************
+   *
+   * Sampling
+   */
+
+  /**
+   * Note an allocation into the nursery, choosing whether the object
+   * will be sampled once its address is known.
+   *
+   * @param bytes The size of the object
+   * @param site The allocation site
+   */
+  @Inline
+  public void countAlloc(int bytes, int site) {
+    countdown -= bytes;
+    if (countdown <= 0) {
+      countdown = SAMPLE_INTERVAL_BYTES;
+      if (site >= 0 && site < MAX_SITES && sampleCount < SAMPLE_CAPACITY) {
+        pendingSite = site;
+      }
+    }
+  }
+
+  /**
+   * Record the object allocated by the last call to
+   * {@link #countAlloc(int, int)}, if it was chosen as a sample.
+   *
+   * @param ref The new object
+   * @param bytes The size of the object
+   */
+  @Inline
+  public void recordSample(ObjectReference ref, int bytes) {
+    if (pendingSite < 0) return;
+    sampleRefs.set(sampleCount, ref.toAddress());
+    sampleSites[sampleCount] = pendingSite;
+    sampleBytes[sampleCount] = bytes;
+    sampleCount++;
+    pendingSite = -1;
+  }
+
+  /**
+   * Accumulate this mutator's samples into the per-site totals and
+   * discard them.  Must be called after the space the samples were
+   * allocated in has been fully evacuated and before it is released, so
+   * that a sample survived exactly when it has been forwarded.
+   */
+  public void release() {
+    if (sampleCount == 0) return;
+    lock.acquire();
+    for (int i = 0; i < sampleCount; i++) {
+      int site = sampleSites[i];
+      samples[site]++;
+      sampledBytes[site] += sampleBytes[i];
+      if (ForwardingWord.isForwarded(sampleRefs.get(i).toObjectReference())) {
+        survivedBytes[site] += sampleBytes[i];
+      }
+      if (site >= siteLimit) siteLimit = site + 1;
+    }
+    lock.release();
+    sampleCount = 0;
+    pendingSite = -1;
+  }
+
+  /****************************************************************************
+   *
+   * Advice file
+   */
+
+  /**
+   * Read the advice file, if one is named and exists, into
+   * <code>advice</code>, sorted and without duplicates.
+   */
+  @Interruptible
+  private static void readAdvice() {
+    String name = Options.pretenureAdviceFile.getValue();
+    if (name.length() == 0) return;
+    int handle = VM.fileIO.open(name, false);
+    if (handle < 0) return;
+    int headerBytes = HEADER_INTS << LOG_BYTES_IN_INT;
+    if (VM.fileIO.read(handle, scratch, headerBytes) != headerBytes ||
+        getInt(0) != FILE_MAGIC || getInt(BYTES_IN_INT) != FILE_VERSION) {
+      Log.write("Ignoring malformed pretenuring advice in ");
+      Log.writeln(name);
+      VM.fileIO.close(handle);
+      return;
+    }
+    int remaining = getInt(2 * BYTES_IN_INT);
+    while (remaining > 0 && adviceCount < MAX_ADVICE) {
+      int want = remaining < SCRATCH_INTS ? remaining : SCRATCH_INTS;
+      int got = VM.fileIO.read(handle, scratch, want << LOG_BYTES_IN_INT) >> LOG_BYTES_IN_INT;
+      if (got <= 0) break;
+      for (int i = 0; i < got && adviceCount < MAX_ADVICE; i++) {
+        insertAdvice(getInt(i << LOG_BYTES_IN_INT));
+      }
+      remaining -= got;
+    }
+    VM.fileIO.close(handle);
+  }
+
+  /**
+   * Insert a key into the sorted <code>advice</code> table.
+   *
+   * @param key The key to insert
+   */
+  private static void insertAdvice(int key) {
+    if (key == NO_KEY || indexOfAdvice(key) >= 0) return;
+    int i = adviceCount;
+    while (i > 0 && advice[i - 1] > key) {
+      advice[i] = advice[i - 1];
+      i--;
+    }
+    advice[i] = key;
+    adviceCount++;
+  }
+
+  /**
+   * @param key A key
+   * @return The index of <code>key</code> in <code>advice</code>, or -1.
+   */
+  private static int indexOfAdvice(int key) {
+    int lo = 0;
+    int hi = adviceCount - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (advice[mid] < key) lo = mid + 1;
+      else if (advice[mid] > key) hi = mid - 1;
+      else return mid;
+    }
+    return -1;
+  }
+
+  /**
+   * @param site A site
+   * @return {@code true} if <code>site</code> was pretenured in this run
+   * and its key is not already in the advice read at startup.
+   */
+  private static boolean isNewAdvice(int site) {
+    return pretenured[site] && siteKeys[site] != NO_KEY && indexOfAdvice(siteKeys[site]) < 0;
+  }
+
+  /**
+   * Write out the staging buffer if it cannot hold another int.
+   *
+   * @param handle The file to write to
+   * @param pos The number of bytes staged
+   * @return The number of bytes staged after any write
+   */
+  private static int flushIfFull(int handle, int pos) {
+    if (pos + BYTES_IN_INT <= scratch.length) return pos;
+    VM.fileIO.write(handle, scratch, pos);
+    return 0;
+  }
+
+  /**
+   * Store an int, little-endian, into the staging buffer.
+   *
+   * @param pos The byte position to store at
+   * @param value The value to store
+   * @return The position following the stored value
+   */
+  @Inline
+  private static int putInt(int pos, int value) {
+    scratch[pos] = (byte) value;
+    scratch[pos + 1] = (byte) (value >>> 8);
+    scratch[pos + 2] = (byte) (value >>> 16);
+    scratch[pos + 3] = (byte) (value >>> 24);
+    return pos + BYTES_IN_INT;
+  }
+
+  /**
+   * Load a little-endian int from the staging buffer.
+   *
+   * @param pos The byte position to load from
+   * @return The value
+   */
+  @Inline
+  private static int getInt(int pos) {
+    return (scratch[pos] & 0xff) | (scratch[pos + 1] & 0xff) << 8 |
+        (scratch[pos + 2] & 0xff) << 16 | (scratch[pos + 3] & 0xff) << 24;
+  }
+}
@@ -72,7 +72,24 @@ public abstract class SegregatedFreeList<S extends SegregatedFreeListSpace> exte
   @Inline
   public final Address alloc(int bytes, int align, int offset) {
     int alignedBytes = getMaximumAlignedSize(bytes, align);
-    int sizeClass = getSizeClass(alignedBytes);
+    return allocInSizeClass(getSizeClass(alignedBytes), bytes, align, offset);
+  }
+
+  /**
+   * Allocate <code>bytes</code> contiguous bytes of zeroed memory from a
+   * size class the caller has already determined, e.g. when the request
+   * size is known at compile time.<p>
+   *
+   * This code implements the fast path, and on failure delegates to the slow path.
+   *
+   * @param sizeClass The size class of the maximum aligned size of the request
+   * @param bytes The size of the object to occupy this space, in bytes.
+   * @param align The requested alignment.
+   * @param offset The alignment offset.
+   * @return The address of the first word or zero on failure
+   */
+  @Inline
+  public final Address allocInSizeClass(int sizeClass, int bytes, int align, int offset) {
     Address cell = freeList.get(sizeClass);
     if (!cell.isZero()) {
       freeList.set(sizeClass, cell.loadAddress());
@@ -86,6 +86,25 @@ import org.vmmagic.unboxed.*;
     }
   }
 
+  /**
+   * Check whether there are values in the buffer for a pending dequeue,
+   * as {@link #checkDequeue(int)} does, but return {@code false} rather
+   * than wait when the shared queue is empty.
+   *
+   * @param arity The arity of the values stored in this queue: the
+   * buffer must contain enough space for this many words.
+   * @return whether there are values available for a dequeue
+   */
+  @Inline
+  protected final boolean checkDequeueNonBlocking(int arity) {
+    if (bufferOffset(head).isZero()) {
+      return dequeueUnderflowNonBlocking(arity);
+    } else {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(bufferOffset(head).sGE(Word.fromIntZeroExtend(arity).lsh(LOG_BYTES_IN_ADDRESS).toOffset()));
+      return true;
+    }
+  }
+
   /**
    * Dequeue a value from the buffer.  This is <i>unchecked</i>.  The
    * caller must first call <code>checkDequeue()</code> to ensure the
@@ -114,10 +133,7 @@ import org.vmmagic.unboxed.*;
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == queue.getArity());
 
     // If the tail has entries...
-    if (tail.NE(tailBufferEnd)) {
-      head = normalizeTail(arity).plus(BYTES_IN_ADDRESS);
-      tail = Deque.TAIL_INITIAL_VALUE;
-      tailBufferEnd = Deque.TAIL_INITIAL_VALUE;
+    if (consumeTail(arity)) {
       // Return that we acquired more entries
       return false;
     }
@@ -156,4 +172,41 @@ import org.vmmagic.unboxed.*;
 
     return true;
   }
+
+  /**
+   * As {@link #dequeueUnderflow(int)}, but if the shared queue has no
+   * buffers available and the tail is empty, fail rather than wait.
+   *
+   * @param arity The arity of this buffer (used for sanity test only).
+   * @return True if there the head buffer has been successfully
+   * replenished.
+   */
+  @NoInline
+  private boolean dequeueUnderflowNonBlocking(int arity) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == queue.getArity());
+    do {
+      if (head.NE(Deque.HEAD_INITIAL_VALUE))
+        queue.free(head);
+      head = queue.dequeue(arity);
+    } while (head.NE(Deque.HEAD_INITIAL_VALUE) && bufferOffset(head).isZero());
+
+    if (head.EQ(Deque.HEAD_INITIAL_VALUE))
+      return consumeTail(arity);
+
+    return true;
+  }
+
+  /**
+   * If the tail buffer has entries, make it the head buffer.
+   *
+   * @param arity The arity of this buffer
+   * @return True if the tail had entries to consume
+   */
+  private boolean consumeTail(int arity) {
+    if (tail.EQ(tailBufferEnd)) return false;
+    head = normalizeTail(arity).plus(BYTES_IN_ADDRESS);
+    tail = Deque.TAIL_INITIAL_VALUE;
+    tailBufferEnd = Deque.TAIL_INITIAL_VALUE;
+    return true;
+  }
 }
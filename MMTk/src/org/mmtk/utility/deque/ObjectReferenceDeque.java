@@ -96,6 +96,23 @@ import org.vmmagic.pragma.*;
     }
   }
 
+  /**
+   * Pop an object from the object queue without waiting for other
+   * consumers of the shared queue: return zero as soon as neither this
+   * queue nor the shared queue has an object available.
+   *
+   * @return The next object in the object queue, or zero if none is
+   * available now
+   */
+  @Inline
+  public final ObjectReference popNonBlocking() {
+    if (checkDequeueNonBlocking(1)) {
+      return uncheckedDequeue().toObjectReference();
+    } else {
+      return ObjectReference.nullReference();
+    }
+  }
+
   @Inline
   public final boolean isEmpty() {
     return !checkDequeue(1);
@@ -0,0 +1,211 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * A bounded work-stealing deque of object references, after Chase and Lev
+ * ("Dynamic circular work-stealing deque", SPAA 2005).<p>
+ *
+ * The owning thread pushes and pops at the bottom without synchronization,
+ * except when it contends with a thief for the last entry.  Any other
+ * thread may steal from the top, claiming an entry by compare-and-swap of
+ * the top index.  The indices only ever increase, wrapping around, and
+ * are compared by difference.<p>
+ *
+ * The deque does not grow: when it is full <code>push</code> fails and the
+ * caller must put the entry elsewhere.  Its buffer is acquired from a raw
+ * page space on first use and held thereafter.  The deques of the threads
+ * sharing a trace are linked through <code>next</code> so that a thief
+ * can find its victims.
+ */
+@Uninterruptible
+public final class WorkStealingDeque {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** Log of the number of entries in the deque */
+  private static final int LOG_CAPACITY = 12;
+  private static final int CAPACITY = 1 << LOG_CAPACITY;
+  private static final int MASK = CAPACITY - 1;
+
+  /** The top and bottom indices are kept on separate cache lines of a header page */
+  private static final Offset TOP_OFFSET = Offset.zero();
+  private static final Offset BOTTOM_OFFSET = Offset.fromIntSignExtend(BYTES_IN_PAGE >> 1);
+  private static final Offset ENTRY_OFFSET = Offset.fromIntSignExtend(BYTES_IN_PAGE);
+  private static final int PAGES = 1 + ((CAPACITY << LOG_BYTES_IN_ADDRESS) >>> LOG_BYTES_IN_PAGE);
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /** Raw page space from which to allocate */
+  private final RawPageSpace rps;
+
+  /** The next deque sharing the same trace, or {@code null} */
+  private final WorkStealingDeque next;
+
+  /** The header page, followed by the entries, or zero if not yet acquired */
+  private Address base = Address.zero();
+
+  /**
+   * @param rps The space from which to acquire the buffer
+   * @param next The next deque sharing the same trace
+   */
+  public WorkStealingDeque(RawPageSpace rps, WorkStealingDeque next) {
+    this.rps = rps;
+    this.next = next;
+  }
+
+  /**
+   * Acquire the buffer if this is the first use of the deque.  Called by
+   * the owner before it first pushes.
+   */
+  public void prepare() {
+    if (!base.isZero()) return;
+    Address buffer = rps.acquire(PAGES);
+    if (buffer.isZero()) {
+      VM.assertions.fail("Failed to allocate space for work-stealing deque.  Is metadata virtual memory exhausted?");
+    }
+    buffer.store(Word.zero(), TOP_OFFSET);
+    buffer.store(Word.zero(), BOTTOM_OFFSET);
+    base = buffer;
+  }
+
+  /**
+   * @return The next deque sharing the same trace, or {@code null}
+   */
+  public WorkStealingDeque next() {
+    return next;
+  }
+
+  /****************************************************************************
+   *
+   * Owner operations
+   */
+
+  /**
+   * Push an object onto the bottom of the deque.  Only the owner may
+   * push.
+   *
+   * @param object The object to push
+   * @return {@code false} if the deque is full and the object was not pushed
+   */
+  @Inline
+  public boolean push(ObjectReference object) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!base.isZero() && !object.isNull());
+    int b = bottom();
+    if (b - top() >= CAPACITY) return false;
+    entry(b).store(object);
+    VM.memory.storeStoreBarrier();
+    base.store(Word.fromIntSignExtend(b + 1), BOTTOM_OFFSET);
+    return true;
+  }
+
+  /**
+   * Pop an object from the bottom of the deque.  Only the owner may pop.
+   *
+   * @return The object, or {@code null} if the deque is empty
+   */
+  @Inline
+  public ObjectReference pop() {
+    if (base.isZero()) return ObjectReference.nullReference();
+    int b = bottom() - 1;
+    base.store(Word.fromIntSignExtend(b), BOTTOM_OFFSET);
+    VM.memory.fence();
+    int t = top();
+    if (b - t < 0) {
+      base.store(Word.fromIntSignExtend(b + 1), BOTTOM_OFFSET);
+      return ObjectReference.nullReference();
+    }
+    ObjectReference object = entry(b).loadObjectReference();
+    if (b == t) {
+      /* The last entry, which a thief may be claiming too */
+      if (!base.plus(TOP_OFFSET).attempt(Word.fromIntSignExtend(t), Word.fromIntSignExtend(t + 1))) {
+        object = ObjectReference.nullReference();
+      }
+      base.store(Word.fromIntSignExtend(t + 1), BOTTOM_OFFSET);
+    }
+    return object;
+  }
+
+  /****************************************************************************
+   *
+   * Thief operations
+   */
+
+  /**
+   * Steal an object from the top of the deque.  May be called by any
+   * thread.
+   *
+   * @return The object, or {@code null} if the deque was empty or the
+   * entry was claimed by another thread first
+   */
+  public ObjectReference steal() {
+    if (base.isZero()) return ObjectReference.nullReference();
+    Address topAddress = base.plus(TOP_OFFSET);
+    Word t = topAddress.prepareWord();
+    VM.memory.combinedLoadBarriers();
+    int b = bottom();
+    if (b - t.toInt() <= 0) return ObjectReference.nullReference();
+    ObjectReference object = entry(t.toInt()).loadObjectReference();
+    if (!topAddress.attempt(t, Word.fromIntSignExtend(t.toInt() + 1))) {
+      return ObjectReference.nullReference();
+    }
+    return object;
+  }
+
+  /**
+   * @return {@code true} if the deque appeared empty when examined.  May be
+   * called by any thread.
+   */
+  public boolean isEmpty() {
+    if (base.isZero()) return true;
+    int t = top();
+    return bottom() - t <= 0;
+  }
+
+  /****************************************************************************
+   *
+   * Private methods
+   */
+
+  @Inline
+  private int top() {
+    return base.loadWord(TOP_OFFSET).toInt();
+  }
+
+  @Inline
+  private int bottom() {
+    return base.loadWord(BOTTOM_OFFSET).toInt();
+  }
+
+  @Inline
+  private Address entry(int index) {
+    return base.plus(ENTRY_OFFSET).plus((index & MASK) << LOG_BYTES_IN_ADDRESS);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class tracks the progress of concurrently zeroing a contiguous
+ * range of memory, so that several zeroing contexts and the allocators
+ * themselves can share the work.<p>
+ *
+ * The range is divided into blocks.  Each block has a <i>claimed</i> bit,
+ * set atomically by whichever thread zeroes the block, and a <i>zeroed</i>
+ * bit, published once the block may be used.  Zeroing contexts claim
+ * blocks in address order, which is the order in which a bump allocator
+ * consumes them, so allocators mostly find their blocks already zeroed.
+ * An allocator that reaches an unclaimed block zeroes it itself rather
+ * than waiting for the zeroing contexts to get there.<p>
+ *
+ * The state lives on a single page of metadata.  The block size grows
+ * with the range so that its blocks always fit in the bitmaps.
+ */
+@Uninterruptible
+final class ConcurrentZeroingMap {
+
+  /** The smallest block that is zeroed as a unit */
+  private static final int LOG_MIN_BYTES_IN_BLOCK = 16;
+  /** The most blocks a range is divided into */
+  private static final int LOG_MAX_BLOCKS = 13;
+  private static final int MAX_BLOCKS = 1 << LOG_MAX_BLOCKS;
+  private static final int BYTES_IN_BITMAP = MAX_BLOCKS >> LOG_BITS_IN_BYTE;
+
+  /* Layout of the metadata page; the counters are a cache line apart */
+  private static final Offset NEXT_BLOCK = Offset.zero();
+  private static final Offset BLOCKS_ZEROED = Offset.fromIntZeroExtend(64);
+  private static final Offset CLAIMED = Offset.fromIntZeroExtend(BYTES_IN_PAGE - 2 * BYTES_IN_BITMAP);
+  private static final Offset ZEROED = Offset.fromIntZeroExtend(BYTES_IN_PAGE - BYTES_IN_BITMAP);
+
+  /** The metadata page holding the counters and bitmaps */
+  private final Address base;
+
+  /** The start of the range being zeroed */
+  private Address start;
+
+  /** The limit of the range being zeroed */
+  private Address limit;
+
+  /** The log of the size of each block of the range */
+  private int logBytesInBlock = LOG_MIN_BYTES_IN_BLOCK;
+
+  /** The number of blocks in the range */
+  private int blocks = 0;
+
+  /**
+   * Constructor
+   */
+  ConcurrentZeroingMap() {
+    base = Plan.metaDataSpace.acquire(1);
+    if (base.isZero()) {
+      VM.assertions.fail("Failed to allocate concurrent zeroing map.  Is metadata virtual memory exhausted?");
+    }
+  }
+
+  /**
+   * Start tracking the zeroing of a new range, with no block claimed or
+   * zeroed.  There must be no zeroing of the previous range in progress.
+   *
+   * @param start The start of the range
+   * @param limit The limit of the range
+   */
+  void reset(Address start, Address limit) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isComplete());
+    Word bytes = limit.diff(start).toWord();
+    int log = LOG_MIN_BYTES_IN_BLOCK;
+    while (bytes.plus(Word.one().lsh(log)).minus(Word.one()).rshl(log).GT(Word.fromIntZeroExtend(MAX_BLOCKS))) {
+      log++;
+    }
+    VM.memory.zero(false, base, Extent.fromIntZeroExtend(BYTES_IN_PAGE));
+    this.start = start;
+    this.limit = limit;
+    this.logBytesInBlock = log;
+    this.blocks = bytes.plus(Word.one().lsh(log)).minus(Word.one()).rshl(log).toInt();
+  }
+
+  /**
+   * @return {@code true} if every block of the range has been zeroed.
+   */
+  boolean isComplete() {
+    return base.loadInt(BLOCKS_ZEROED) == blocks;
+  }
+
+  /**
+   * Claim the next unclaimed block in address order.
+   *
+   * @return The index of the claimed block, or -1 if all are claimed
+   */
+  int claimNext() {
+    while (true) {
+      int block = fetchAndAdd(base.plus(NEXT_BLOCK), 1);
+      if (block >= blocks) return -1;
+      if (tryClaim(block)) return block;
+    }
+  }
+
+  /**
+   * Try to claim a block for zeroing.
+   *
+   * @param block The index of the block
+   * @return {@code true} if the block was claimed by this thread
+   */
+  boolean tryClaim(int block) {
+    return setBit(base.plus(CLAIMED), block);
+  }
+
+  /**
+   * Publish that a claimed block has been zeroed.
+   *
+   * @param block The index of the block
+   */
+  void markZeroed(int block) {
+    setBit(base.plus(ZEROED), block);
+    fetchAndAdd(base.plus(BLOCKS_ZEROED), 1);
+  }
+
+  /**
+   * @param block The index of a block
+   * @return {@code true} if the block has been zeroed.
+   */
+  boolean isZeroed(int block) {
+    return isSet(base.plus(ZEROED), block);
+  }
+
+  /**
+   * Make sure that every block overlapping a region has been zeroed,
+   * zeroing any unclaimed blocks and waiting for claimed ones.
+   *
+   * @param from The start of the region
+   * @param to The limit of the region
+   * @param nonTemporal Whether to use non-temporal stores to zero
+   */
+  void awaitZeroed(Address from, Address to, boolean nonTemporal) {
+    if (from.GE(limit)) return;
+    if (to.GT(limit)) to = limit;
+    int last = blockIndex(to.minus(1));
+    for (int block = blockIndex(from); block <= last; block++) {
+      if (!isZeroed(block)) {
+        if (tryClaim(block)) {
+          zeroBlock(block, nonTemporal);
+        } else {
+          while (!isZeroed(block));
+        }
+      }
+    }
+  }
+
+  /**
+   * Zero a claimed block and publish that it has been zeroed.
+   *
+   * @param block The index of the block
+   * @param nonTemporal Whether to use non-temporal stores
+   */
+  void zeroBlock(int block, boolean nonTemporal) {
+    Address first = start.plus(Word.fromIntZeroExtend(block).lsh(logBytesInBlock).toExtent());
+    Address last = first.plus(Word.one().lsh(logBytesInBlock).toExtent());
+    if (last.GT(limit)) last = limit;
+    VM.memory.zero(nonTemporal, first, last.diff(first).toWord().toExtent());
+    markZeroed(block);
+  }
+
+  /**
+   * @param addr An address within the range
+   * @return The index of the block containing the address
+   */
+  @Inline
+  private int blockIndex(Address addr) {
+    return addr.diff(start).toWord().rshl(logBytesInBlock).toInt();
+  }
+
+  /**
+   * Atomically set a bit.
+   *
+   * @param bitmap The start of the bitmap
+   * @param index The index of the bit
+   * @return {@code true} if this call set the bit, {@code false} if it was already set
+   */
+  @Inline
+  private static boolean setBit(Address bitmap, int index) {
+    Address word = bitmap.plus((index >> LOG_BITS_IN_WORD) << LOG_BYTES_IN_WORD);
+    Word mask = Word.one().lsh(index & (BITS_IN_WORD - 1));
+    Word old;
+    do {
+      old = word.prepareWord();
+      if (!old.and(mask).isZero()) return false;
+    } while (!word.attempt(old, old.or(mask)));
+    return true;
+  }
+
+  /**
+   * @param bitmap The start of the bitmap
+   * @param index The index of the bit
+   * @return {@code true} if the bit is set
+   */
+  @Inline
+  private static boolean isSet(Address bitmap, int index) {
+    Address word = bitmap.plus((index >> LOG_BITS_IN_WORD) << LOG_BYTES_IN_WORD);
+    return !word.loadWord().and(Word.one().lsh(index & (BITS_IN_WORD - 1))).isZero();
+  }
+
+  /**
+   * Atomically add to a counter.
+   *
+   * @param cell The counter
+   * @param delta The amount to add
+   * @return The value of the counter before the addition
+   */
+  @Inline
+  private static int fetchAndAdd(Address cell, int delta) {
+    int old;
+    do {
+      old = cell.prepareInt();
+    } while (!cell.attempt(old, old + delta));
+    return old;
+  }
+}
@@ -13,6 +13,8 @@
 package org.mmtk.utility.heap;
 
 import static org.mmtk.utility.heap.layout.VMLayoutConstants.*;
+import static org.mmtk.utility.Constants.BYTES_IN_PAGE;
+import static org.mmtk.utility.Constants.LOG_BYTES_IN_ADDRESS;
 import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
 
 import org.mmtk.plan.Plan;
@@ -28,18 +30,32 @@ import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
 
 /**
  * This class manages the allocation of pages for a space.  When a
  * page is requested by the space both a page budget and the use of
  * virtual address space are checked.  If the request for space can't
- * be satisfied (for either reason) a GC may be triggered.
+ * be satisfied (for either reason) a GC may be triggered.<p>
+ *
+ * When scalable, each stripe also caches a few small runs of freed
+ * pages.  A run released to the cache stays allocated on the free list
+ * and is handed straight back to a request of the same size without
+ * taking the lock.  The caches are returned to the free list when the
+ * resource is consolidated, or when an allocation would otherwise fail.
  */
 @Uninterruptible
 public final class FreeListPageResource extends PageResource {
 
   private static final boolean VERBOSE = false;
 
+  /** The number of cached runs held by each stripe */
+  private static final int CACHE_SLOTS = BYTES_IN_STRIPE_CACHE >> LOG_BYTES_IN_ADDRESS;
+  /** The largest run of pages that is cached; runs are encoded with their size in the low bits */
+  private static final int MAX_CACHED_PAGES = 16;
+  private static final Word CACHED_PAGES_MASK = Word.fromIntZeroExtend(BYTES_IN_PAGE - 1);
+
   private final GenericFreeList freeList;
   private int highWaterMark = 0;
   private final int metaDataPagesPerRegion;
@@ -131,7 +147,7 @@ public final class FreeListPageResource extends PageResource {
       if (chunks < 0) chunks = 0;
       rtn += chunks * (PAGES_IN_CHUNK - metaDataPagesPerRegion);
     } else if (growable && VM.HEAP_LAYOUT_64BIT) {
-      rtn = PAGES_IN_SPACE64 - reserved;
+      rtn = PAGES_IN_SPACE64 - reservedPages();
     }
     return rtn;
   }
@@ -153,9 +169,22 @@ public final class FreeListPageResource extends PageResource {
   @Inline
   protected Address allocPages(int reservedPages, int requiredPages, boolean zeroed) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(metaDataPagesPerRegion == 0 || requiredPages <= PAGES_IN_CHUNK - metaDataPagesPerRegion);
+    if (isScalable() && requiredPages <= MAX_CACHED_PAGES) {
+      Address cached = takeCachedRun(requiredPages);
+      if (!cached.isZero()) {
+        commitPages(reservedPages, requiredPages);
+        if (zeroed)
+          VM.memory.zero(zeroNT, cached, Conversions.pagesToBytes(requiredPages));
+        VM.events.tracePageAcquired(space, cached, requiredPages);
+        return cached;
+      }
+    }
     lock();
     boolean newChunk = false;
     int pageOffset = freeList.alloc(requiredPages);
+    if (pageOffset == GenericFreeList.FAILURE && isScalable() && drainCaches() > 0) {
+      pageOffset = freeList.alloc(requiredPages);
+    }
     if (pageOffset == GenericFreeList.FAILURE && growable) {
       pageOffset = allocateContiguousChunks(requiredPages);
       newChunk = true;
@@ -211,20 +240,171 @@ public final class FreeListPageResource extends PageResource {
     if (protectOnRelease.getValue())
       LazyMmapper.protect(first, pages);
      */
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(pages <= committed);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(pages <= committedPages());
+
+    if (isScalable() && pages <= MAX_CACHED_PAGES && cacheRun(first, pages)) {
+      releaseCommitted(pages);
+    } else {
+      lock();
+      reserved -= pages;
+      committed -= pages;
+      freeRun(first, pages);
+      unlock();
+    }
 
+    VM.events.tracePageReleased(space, first, pages);
+  }
+
+  /**
+   * Release a chain of page groups under a single acquisition of the
+   * lock.  Each group was allocated together, and holds the address of
+   * the next group in the chain at <code>link</code>.
+   *
+   * @param first The first page of the first group in the chain, or zero
+   * @param link The offset within each group of the link to the next group
+   */
+  public void releasePageChain(Address first, Offset link) {
+    if (first.isZero()) return;
     lock();
-    reserved -= pages;
-    committed -= pages;
+    while (!first.isZero()) {
+      if (VM.VERIFY_ASSERTIONS)
+        VM.assertions._assert(Conversions.isPageAligned(first));
+      Address next = first.loadAddress(link);
+      int pages = freeList.size(Conversions.bytesToPages(first.diff(start)));
+      if (VM.config.ZERO_PAGES_ON_RELEASE)
+        VM.memory.zero(false, first, Conversions.pagesToBytes(pages));
+      reserved -= pages;
+      committed -= pages;
+      freeRun(first, pages);
+      VM.events.tracePageReleased(space, first, pages);
+      first = next;
+    }
+    unlock();
+  }
+
+  /**
+   * Zero part of the embedded meta data of a region of this discontiguous
+   * page resource.  The lock is held so that the region cannot be released
+   * while it is zeroed; a caller walking the regions of the space without
+   * the lock may therefore find that a region has since been released.
+   *
+   * @param region A region of the space, found without holding the lock
+   * @param offset The offset of the meta data from the region's meta data base
+   * @param bytes The number of bytes of meta data to zero
+   * @param useNT Use non-temporal stores, if available
+   * @return The next region of the space, zero if there are no more, or
+   * <code>Address.max()</code> if the region no longer belongs to the space
+   */
+  public Address zeroRegionMetaData(Address region, Offset offset, Extent bytes, boolean useNT) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!contiguous && metaDataPagesPerRegion > 0);
+    lock();
+    if (Space.getSpaceForAddress(region) != space) {
+      unlock();
+      return Address.max();
+    }
+    VM.memory.zero(useNT, EmbeddedMetaData.getMetaDataBase(region).plus(offset), bytes);
+    Address next = HeapLayout.vmMap.getNextContiguousRegion(region);
+    unlock();
+    return next;
+  }
+
+  /**
+   * Return a group of pages to the free list, releasing any chunks
+   * that become entirely free.  The caller must hold the lock and
+   * have already accounted for the pages.
+   *
+   * @param first The first page in the group of pages
+   * @param pages The number of pages in the group
+   */
+  private void freeRun(Address first, int pages) {
+    int pageOffset = Conversions.bytesToPages(first.diff(start));
     int freed = freeList.free(pageOffset, true);
     pagesCurrentlyOnFreeList += pages;
 
     if (!contiguous) // only discontiguous spaces use chunks
       releaseFreeChunks(first, freed);
+  }
 
-    unlock();
+  /**
+   * Try to cache a released run of pages in the current thread's stripe.
+   *
+   * @param first The first page of the run
+   * @param pages The number of pages in the run
+   * @return {@code true} if the run was cached
+   */
+  private boolean cacheRun(Address first, int pages) {
+    Address stripe = currentStripe();
+    Word entry = first.toWord().or(Word.fromIntZeroExtend(pages));
+    for (int i = 0; i < CACHE_SLOTS; i++) {
+      Address slot = cacheSlot(stripe, i);
+      Word old = slot.prepareWord();
+      if (old.isZero() && slot.attempt(old, entry)) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-    VM.events.tracePageReleased(space, first, pages);
+  /**
+   * Take a cached run of exactly the given size from the current thread's stripe.
+   *
+   * @param pages The number of pages required
+   * @return The first page of the run, or zero if none is cached
+   */
+  private Address takeCachedRun(int pages) {
+    Address stripe = currentStripe();
+    for (int i = 0; i < CACHE_SLOTS; i++) {
+      Address slot = cacheSlot(stripe, i);
+      Word entry = slot.prepareWord();
+      if (!entry.isZero() && entry.and(CACHED_PAGES_MASK).toInt() == pages &&
+          slot.attempt(entry, Word.zero())) {
+        return entry.and(CACHED_PAGES_MASK.not()).toAddress();
+      }
+    }
+    return Address.zero();
+  }
+
+  /**
+   * Return every cached run to the free list.  The caller must hold the lock.
+   *
+   * @return The number of runs returned
+   */
+  private int drainCaches() {
+    int drained = 0;
+    for (int s = 0; s < STRIPES; s++) {
+      Address stripe = getStripe(s);
+      for (int i = 0; i < CACHE_SLOTS; i++) {
+        Address slot = cacheSlot(stripe, i);
+        Word entry;
+        do {
+          entry = slot.prepareWord();
+        } while (!entry.isZero() && !slot.attempt(entry, Word.zero()));
+        if (!entry.isZero()) {
+          freeRun(entry.and(CACHED_PAGES_MASK.not()).toAddress(), entry.and(CACHED_PAGES_MASK).toInt());
+          drained++;
+        }
+      }
+    }
+    return drained;
+  }
+
+  /**
+   * @param stripe A stripe of this resource
+   * @param i The index of a cache slot
+   * @return The address of the cache slot within the stripe
+   */
+  @Inline
+  private static Address cacheSlot(Address stripe, int i) {
+    return stripe.plus(STRIPE_CACHE_OFFSET).plus(i << LOG_BYTES_IN_ADDRESS);
+  }
+
+  @Override
+  public void consolidate() {
+    if (!isScalable()) return;
+    lock();
+    drainCaches();
+    foldStripes();
+    unlock();
   }
 
   /**
@@ -298,6 +478,12 @@ public final class FreeListPageResource extends PageResource {
         if (metaDataPagesPerRegion > 1) {
           freeList.alloc(metaDataPagesPerRegion, p); // carve out space for metadata
         }
+        if (metaDataPagesPerRegion > 0) {
+          /* the chunk may hold stale meta data from an earlier owner */
+          Address chunk = start.plus(Conversions.pagesToBytes(p));
+          HeapLayout.mmapper.ensureMapped(chunk, metaDataPagesPerRegion);
+          VM.memory.zero(false, chunk, Conversions.pagesToBytes(metaDataPagesPerRegion));
+        }
         pagesCurrentlyOnFreeList += PAGES_IN_CHUNK - metaDataPagesPerRegion;
       }
       rtn = freeList.alloc(pages); // re-do the request which triggered this call
@@ -0,0 +1,225 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * This class is responsible for sizing the generations of a plan whose
+ * eden, survivor and old generation spaces share one heap budget.  It
+ * complements {@link HeapGrowthManager}, which sizes the heap as a whole.<p>
+ *
+ * After each collection the plan reports what the collection did.  The
+ * sizer keeps decaying averages of the pause times, GC load, survivor
+ * rate and promotion rate, and moves the generation boundaries so that
+ * nursery pauses stay under the <code>TargetPauseTime</code> option and the
+ * fraction of time spent outside GC meets the <code>ThroughputGoal</code>
+ * option.  The pause goal takes precedence: eden only grows to reduce GC
+ * load when the last nursery pause was within target.<p>
+ *
+ * Budgets are in pages.  Plans enforce them from <code>collectionRequired</code>,
+ * and create the two options when they are loaded.
+ */
+@Uninterruptible
+public final class GenerationSizer {
+
+  /** Weight given to the most recent observation in each decaying average */
+  private static final double DECAY = 0.3;
+  /** Fraction by which eden shrinks when a nursery pause misses its target */
+  private static final double SHRINK_STEP = 0.10;
+  /** Fraction by which eden grows when GC load exceeds the throughput goal */
+  private static final double GROW_STEP = 0.20;
+  /** Headroom given to the survivor space above the expected survivor volume */
+  private static final double SURVIVOR_PADDING = 1.5;
+  /** Headroom kept free in the old generation, in multiples of the average promotion */
+  private static final double PROMOTION_PADDING = 2.0;
+  /** The smallest survivor budget, in pages */
+  private static final int MIN_SURVIVOR_PAGES = 16;
+
+  /* Budgets */
+  private int edenPages;
+  private int survivorPages;
+  private int oldGenPages;
+
+  /* Observations of the collection in progress */
+  private long gcStart;
+  private long lastGCEnd;
+  private int edenPagesBefore;
+  private int oldGenPagesBefore;
+
+  /* Decaying averages */
+  private double avgNurseryPause;
+  private double avgFullHeapPause;
+  private double avgGCLoad;
+  private double avgSurvivorRate;
+  private double avgPromotedPages;
+
+  /**
+   * @param edenPages The initial eden budget
+   * @param survivorPages The initial survivor budget
+   * @param oldGenPages The initial old generation budget
+   */
+  public GenerationSizer(int edenPages, int survivorPages, int oldGenPages) {
+    this.edenPages = edenPages;
+    this.survivorPages = survivorPages;
+    this.oldGenPages = oldGenPages;
+  }
+
+  /**
+   * @return The number of pages eden may occupy before a collection is required
+   */
+  @Inline
+  public int getEdenPages() {
+    return edenPages;
+  }
+
+  /**
+   * @return The number of pages the survivor space may occupy
+   */
+  @Inline
+  public int getSurvivorPages() {
+    return survivorPages;
+  }
+
+  /**
+   * @return The number of pages the old generation may occupy
+   */
+  @Inline
+  public int getOldGenPages() {
+    return oldGenPages;
+  }
+
+  /**
+   * Is the old generation too full to absorb the promotion expected from
+   * the next nursery collection?
+   *
+   * @param oldGenReservedPages The pages currently reserved by the old generation
+   * @return {@code true} if the next collection should collect the old generation
+   */
+  public boolean oldGenFull(int oldGenReservedPages) {
+    return oldGenReservedPages + (int) (avgPromotedPages * PROMOTION_PADDING) > oldGenPages;
+  }
+
+  /**
+   * A collection is starting.
+   *
+   * @param edenReservedPages The pages reserved by eden before collection
+   * @param oldGenReservedPages The pages reserved by the old generation before collection
+   */
+  public void startCollection(int edenReservedPages, int oldGenReservedPages) {
+    gcStart = VM.statistics.nanoTime();
+    edenPagesBefore = edenReservedPages;
+    oldGenPagesBefore = oldGenReservedPages;
+  }
+
+  /**
+   * A collection has finished.  Record what it did and resize the generations.
+   *
+   * @param fullHeap Was this a full heap collection?
+   * @param survivorReservedPages The pages reserved by the survivor space after collection
+   * @param oldGenReservedPages The pages reserved by the old generation after collection
+   * @param totalPages The current total heap budget, in pages
+   */
+  public void endCollection(boolean fullHeap, int survivorReservedPages, int oldGenReservedPages, int totalPages) {
+    long now = VM.statistics.nanoTime();
+    double pause = VM.statistics.nanosToMillis(now - gcStart);
+    if (lastGCEnd != 0) {
+      double mutator = VM.statistics.nanosToMillis(gcStart - lastGCEnd);
+      avgGCLoad = decay(avgGCLoad, pause / (pause + mutator));
+    }
+    lastGCEnd = now;
+
+    if (fullHeap) {
+      avgFullHeapPause = decay(avgFullHeapPause, pause);
+    } else {
+      avgNurseryPause = decay(avgNurseryPause, pause);
+    }
+    int promoted = oldGenReservedPages - oldGenPagesBefore;
+    avgPromotedPages = decay(avgPromotedPages, promoted < 0 ? 0 : promoted);
+    if (edenPagesBefore > 0) {
+      avgSurvivorRate = decay(avgSurvivorRate, survivorReservedPages / (double) edenPagesBefore);
+    }
+
+    resize(fullHeap, pause, survivorReservedPages, oldGenReservedPages, totalPages);
+  }
+
+  /**
+   * Move the generation boundaries toward the pause and throughput goals.
+   *
+   * @param fullHeap Was the last collection a full heap collection?
+   * @param pause The length of the last collection, in milliseconds
+   * @param survivorReservedPages The pages reserved by the survivor space
+   * @param oldGenReservedPages The pages reserved by the old generation
+   * @param totalPages The current total heap budget, in pages
+   */
+  private void resize(boolean fullHeap, double pause, int survivorReservedPages, int oldGenReservedPages, int totalPages) {
+    double eden = edenPages;
+    if (!fullHeap && pause > Options.targetPauseTime.getMilliseconds()) {
+      eden *= 1 - SHRINK_STEP;
+    } else if (avgGCLoad > 1 - Options.throughputGoal.getValue()) {
+      eden *= 1 + GROW_STEP;
+    }
+
+    /* Leave the old generation its live data plus room for expected promotion */
+    int oldGenFloor = oldGenReservedPages + (int) (avgPromotedPages * PROMOTION_PADDING);
+    int youngLimit = (totalPages - oldGenFloor) >> 1;
+    int minEden = Options.nurserySize.getMinNursery();
+
+    edenPages = (int) eden;
+    if (edenPages > youngLimit) edenPages = youngLimit;
+    if (edenPages < minEden) edenPages = minEden;
+
+    /* The survivor space must hold what it holds now, plus the expected survivors */
+    survivorPages = survivorReservedPages + (int) (avgSurvivorRate * edenPages * SURVIVOR_PADDING);
+    if (survivorPages < survivorReservedPages + MIN_SURVIVOR_PAGES) survivorPages = survivorReservedPages + MIN_SURVIVOR_PAGES;
+
+    oldGenPages = totalPages - edenPages - survivorPages;
+    if (oldGenPages < oldGenFloor) oldGenPages = oldGenFloor;
+
+    if (Options.verbose.getValue() >= 2) {
+      Log.write("GC Message: Generations resized: eden ");
+      Log.write(edenPages);
+      Log.write(" survivor ");
+      Log.write(survivorPages);
+      Log.write(" old ");
+      Log.write(oldGenPages);
+      Log.writeln(" pages");
+    }
+    if (Options.verbose.getValue() > 2) {
+      Log.write("Nursery pause ");
+      Log.writeln(avgNurseryPause);
+      Log.write("Full heap pause ");
+      Log.writeln(avgFullHeapPause);
+      Log.write("GCLoad     ");
+      Log.writeln(avgGCLoad);
+      Log.write("Survivor rate ");
+      Log.writeln(avgSurvivorRate);
+      Log.write("Promotion ");
+      Log.writeln(avgPromotedPages);
+    }
+  }
+
+  /**
+   * @param average The current average
+   * @param sample The latest observation
+   * @return The average updated with the observation
+   */
+  private static double decay(double average, double sample) {
+    return average * (1 - DECAY) + sample * DECAY;
+  }
+}
@@ -25,6 +25,7 @@ import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.Extent;
@@ -57,12 +58,15 @@ public final class MonotonePageResource extends PageResource {
   /** Base address of the current chunk of addresses */
   private Address currentChunk;
 
-  /** Current frontier of zeroing, in a separate zeroing thread */
-  private volatile Address zeroingCursor;
+  /** Progress of concurrent zeroing, shared by the zeroing contexts and allocators */
+  private ConcurrentZeroingMap zeroingMap;
 
-  /** Current limit of zeroing.  If zeroingCursor &lt; zeroingSentinel, zeroing is still happening. */
+  /** Current limit of zeroing.  Memory beyond it has never been allocated, so is still zero. */
   private Address zeroingSentinel;
 
+  /** The cursor, bumped atomically without the lock, or zero if the cursor field is in use */
+  private Address cursorCell = Address.zero();
+
   /**
    * Constructor
    *
@@ -80,7 +84,6 @@ public final class MonotonePageResource extends PageResource {
     this.cursor = start;
     this.currentChunk = Conversions.chunkAlign(start, true);
     this.sentinel = start.plus(bytes);
-    this.zeroingCursor = this.sentinel;
     this.zeroingSentinel = start;
     this.metaDataPagesPerRegion = metaDataPagesPerRegion;
   }
@@ -107,7 +110,7 @@ public final class MonotonePageResource extends PageResource {
 
   @Override
   public int getAvailablePhysicalPages() {
-    int rtn = Conversions.bytesToPages(sentinel.diff(cursor));
+    int rtn = Conversions.bytesToPages(sentinel.diff(currentCursor()));
     if (!contiguous)
       rtn += HeapLayout.vmMap.getAvailableDiscontiguousChunks() * VMLayoutConstants.PAGES_IN_CHUNK;
     return rtn;
@@ -129,7 +132,11 @@ public final class MonotonePageResource extends PageResource {
   @Override
   @Inline
   protected Address allocPages(int reservedPages, int requiredPages, boolean zeroed) {
+    if (!cursorCell.isZero()) {
+      return allocPagesLockFree(reservedPages, requiredPages, zeroed);
+    }
     boolean newChunk = false;
+    int dataPages = requiredPages;
     lock();
     Address rtn = cursor;
 
@@ -163,11 +170,16 @@ public final class MonotonePageResource extends PageResource {
 
     if (!contiguous && tmp.GT(sentinel)) {
       /* we're out of virtual memory within our discontiguous region, so ask for more */
+      if (metaDataPagesPerRegion != 0) {
+        /* the new chunk starts a new region, so the request is just its metadata and data */
+        requiredPages = dataPages + metaDataPagesPerRegion;
+        bytes = Conversions.pagesToBytes(requiredPages);
+      }
       int requiredChunks = Space.requiredChunks(requiredPages);
       currentChunk = space.growDiscontiguousSpace(requiredChunks); // Returns zero on failure
       cursor = currentChunk;
       sentinel = cursor.plus(currentChunk.isZero() ? 0 : requiredChunks << VMLayoutConstants.LOG_BYTES_IN_CHUNK);
-      rtn = cursor;
+      rtn = cursor.plus(Conversions.pagesToBytes(requiredPages - dataPages));
       tmp = cursor.plus(bytes);
       newChunk = true;
     }
@@ -192,7 +204,7 @@ public final class MonotonePageResource extends PageResource {
         if (!zeroConcurrent) {
           VM.memory.zero(zeroNT, old, bytes);
         } else {
-          while (cursor.GT(zeroingCursor));
+          zeroingMap.awaitZeroed(old, tmp, zeroNT);
         }
       }
       VM.events.tracePageAcquired(space, rtn, requiredPages);
@@ -200,6 +212,70 @@ public final class MonotonePageResource extends PageResource {
     }
   }
 
+  /**
+   * Allocate <code>pages</code> pages from this resource by atomically
+   * bumping the cursor, without taking the lock.  Only used by contiguous
+   * resources without embedded metadata, whose sentinel never changes
+   * and whose cursor never crosses into a new region.
+   *
+   * @param reservedPages The number of pages reserved due to the initial request.
+   * @param requiredPages The number of pages required to be allocated.
+   * @param zeroed If true allocated pages are zeroed.
+   * @return The start of the first page if successful, zero on
+   * failure.
+   */
+  @Inline
+  private Address allocPagesLockFree(int reservedPages, int requiredPages, boolean zeroed) {
+    Extent bytes = Conversions.pagesToBytes(requiredPages);
+    Address old;
+    Address tmp;
+    do {
+      old = cursorCell.prepareAddress();
+      tmp = old.plus(bytes);
+      if (tmp.GT(sentinel)) return Address.zero();
+    } while (!cursorCell.attempt(old, tmp));
+
+    commitPages(reservedPages, requiredPages);
+    space.growSpace(old, bytes, false);
+    HeapLayout.mmapper.ensureMapped(old, requiredPages);
+    if (zeroed) {
+      if (!zeroConcurrent) {
+        VM.memory.zero(zeroNT, old, bytes);
+      } else {
+        zeroingMap.awaitZeroed(old, tmp, zeroNT);
+      }
+    }
+    VM.events.tracePageAcquired(space, old, requiredPages);
+    return old;
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * A contiguous resource without embedded metadata also bumps its
+   * cursor atomically rather than under the lock.
+   */
+  @Override
+  @Interruptible
+  public void enableScalable() {
+    if (isScalable()) return;
+    super.enableScalable();
+    if (contiguous && metaDataPagesPerRegion == 0) {
+      lock();
+      cursorCell = getStripe(0).plus(BYTES_IN_STRIPES);
+      cursorCell.store(cursor);
+      unlock();
+    }
+  }
+
+  /**
+   * @return The current value of the cursor
+   */
+  @Inline
+  private Address currentCursor() {
+    return cursorCell.isZero() ? cursor : cursorCell.loadAddress();
+  }
+
   /**
    * {@inheritDoc}<p>
    *
@@ -244,6 +320,7 @@ public final class MonotonePageResource extends PageResource {
   @Inline
   public void reset() {
     lock();
+    if (isScalable()) foldStripes();
     reserved = 0;
     committed = 0;
     releasePages();
@@ -282,16 +359,17 @@ public final class MonotonePageResource extends PageResource {
   private void releasePages() {
     if (contiguous) {
       // TODO: We will perform unnecessary zeroing if the nursery size has decreased.
-      if (zeroConcurrent) {
+      if (zeroingMap != null) {
         // Wait for current zeroing to finish.
-        while (zeroingCursor.LT(zeroingSentinel)) { }
+        while (!zeroingMap.isComplete()) { }
       }
-      // Reset zeroing region.
-      if (cursor.GT(zeroingSentinel)) {
-        zeroingSentinel = cursor;
+      // Extend the zeroing region to cover everything allocated so far.
+      Address limit = currentCursor();
+      if (limit.GT(zeroingSentinel)) {
+        zeroingSentinel = limit;
       }
-      zeroingCursor = start;
       cursor = start;
+      if (!cursorCell.isZero()) cursorCell.store(start);
       currentChunk = Conversions.chunkAlign(start, true);
     } else { /* Not contiguous */
       if (!cursor.isZero()) {
@@ -344,22 +422,42 @@ public final class MonotonePageResource extends PageResource {
     VM.events.tracePageReleased(space, first, pages);
   }
 
-  private static int CONCURRENT_ZEROING_BLOCKSIZE = 1 << 16;
+  @Override
+  @Interruptible
+  public void updateZeroingApproach(boolean nontemporal, boolean concurrent) {
+    if (concurrent && zeroingMap == null) {
+      zeroingMap = new ConcurrentZeroingMap();
+    }
+    super.updateZeroingApproach(nontemporal, concurrent);
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Everything allocated before the last release is divided into blocks
+   * that the zeroing contexts and allocators then zero between them.
+   */
+  @Override
+  public void triggerConcurrentZeroing() {
+    zeroingMap.reset(start, zeroingSentinel);
+    super.triggerConcurrentZeroing();
+  }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Each zeroing context claims and zeroes blocks in address order
+   * until none are left unclaimed.
+   */
   @Override
   public void concurrentZeroing() {
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(zeroConcurrent);
     }
-    Address first = start;
-    while (first.LT(zeroingSentinel)) {
-      Address last = first.plus(CONCURRENT_ZEROING_BLOCKSIZE);
-      if (last.GT(zeroingSentinel)) last = zeroingSentinel;
-      VM.memory.zero(zeroNT, first, Extent.fromIntSignExtend(last.diff(first).toInt()));
-      zeroingCursor = last;
-      first = first.plus(CONCURRENT_ZEROING_BLOCKSIZE);
+    int block;
+    while ((block = zeroingMap.claimNext()) >= 0) {
+      zeroingMap.zeroBlock(block, zeroNT);
     }
-    zeroingCursor = sentinel;
   }
 
 
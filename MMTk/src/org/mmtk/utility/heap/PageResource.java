@@ -12,6 +12,9 @@
  */
 package org.mmtk.utility.heap;
 
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.Plan;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.options.ProtectOnRelease;
 import org.mmtk.utility.options.Options;
@@ -32,7 +35,12 @@ import org.vmmagic.unboxed.*;
  * freelist variants, which reflect monotonic and ad hoc space usage
  * respectively.  Monotonic use is easier to manage, but is obviously
  * more restrictive (useful for copying collectors which allocate
- * monotonically before freeing the entire space and starting over).
+ * monotonically before freeing the entire space and starting over).<p>
+ *
+ * When made scalable (see {@link #enableScalable()}), page budgeting on
+ * the common path is done without the lock: each thread adjusts the
+ * counts in its own stripe of a metadata page with an atomic update, and
+ * the stripes are summed lazily when the totals are read.
  */
 @Uninterruptible
 public abstract class PageResource {
@@ -46,6 +54,23 @@ public abstract class PageResource {
   private static final Lock classLock;
   /** cumulative count of pages ever committed */
   private static long cumulativeCommitted = 0;
+  /** stripes of cumulative committed pages not yet folded into the total, or zero */
+  private static Address cumulativeStripes = Address.zero();
+
+  /** The number of stripes over which scalable page counts are spread */
+  static final int STRIPES = 16;
+  /** Stripes are a cache line apart, so threads on different stripes do not share a line */
+  private static final int LOG_BYTES_IN_STRIPE = 6;
+  /** The bytes of metadata occupied by the stripes of one page resource */
+  static final int BYTES_IN_STRIPES = STRIPES << LOG_BYTES_IN_STRIPE;
+  private static final Offset RESERVED_OFFSET = Offset.zero();
+  private static final Offset COMMITTED_OFFSET = Offset.fromIntZeroExtend(BYTES_IN_INT);
+  /** The offset within each stripe of the space available to subclasses */
+  static final Offset STRIPE_CACHE_OFFSET = Offset.fromIntZeroExtend(4 * BYTES_IN_INT);
+  /** The bytes within each stripe available to subclasses */
+  static final int BYTES_IN_STRIPE_CACHE = (1 << LOG_BYTES_IN_STRIPE) - (4 * BYTES_IN_INT);
+  /** A cumulative stripe is folded into the total once it exceeds this many pages */
+  private static final int CUMULATIVE_FOLD_THRESHOLD = 1 << 30;
 
 
   /****************************************************************************
@@ -71,10 +96,13 @@ public abstract class PageResource {
   // locking
   private final Lock lock;
 
+  /** Per-thread stripes of reserved and committed pages, or zero if not scalable */
+  private Address stripes = Address.zero();
+
   // zeroing
   protected boolean zeroNT;
   protected boolean zeroConcurrent;
-  protected ConcurrentZeroingContext zeroingContext;
+  protected ConcurrentZeroingContext[] zeroingContexts;
 
   /****************************************************************************
    *
@@ -158,10 +186,14 @@ public abstract class PageResource {
    */
   @Inline
   public final int reservePages(int pages) {
-    lock();
     pages = adjustForMetaData(pages);
-    reserved += pages;
-    unlock();
+    if (isScalable()) {
+      addToStripe(currentStripe().plus(RESERVED_OFFSET), pages);
+    } else {
+      lock();
+      reserved += pages;
+      unlock();
+    }
     return pages;
   }
 
@@ -172,11 +204,157 @@ public abstract class PageResource {
    */
   @Inline
   public final void clearRequest(int reservedPages) {
+    if (isScalable()) {
+      addToStripe(currentStripe().plus(RESERVED_OFFSET), -reservedPages);
+    } else {
+      lock();
+      reserved -= reservedPages;
+      unlock();
+    }
+  }
+
+  /**
+   * Make page budgeting for this resource scalable.  From now on the
+   * reserved and committed counts are adjusted in per-thread stripes
+   * without taking the lock, and summed when they are read.  This must
+   * be called while the VM is single threaded.
+   */
+  @Interruptible
+  public void enableScalable() {
+    if (isScalable()) return;
+    if (cumulativeStripes.isZero()) {
+      cumulativeStripes = acquireStripes();
+    }
+    stripes = acquireStripes();
+  }
+
+  /**
+   * @return A zeroed page of metadata large enough to hold a set of stripes
+   */
+  @Interruptible
+  private static Address acquireStripes() {
+    Address rtn = Plan.metaDataSpace.acquire(1);
+    if (rtn.isZero()) {
+      VM.assertions.fail("Failed to allocate page resource stripes.  Is metadata virtual memory exhausted?");
+    }
+    return rtn;
+  }
+
+  /**
+   * @return {@code true} if page budgeting for this resource is scalable.
+   */
+  @Inline
+  public final boolean isScalable() {
+    return !stripes.isZero();
+  }
+
+  /**
+   * Fold the striped page counts back into the reserved and committed
+   * totals, returning any pages held by per-thread caches.  This keeps
+   * the stripes from growing without bound when pages are acquired on
+   * one stripe and released on another.
+   */
+  public void consolidate() {
+    if (!isScalable()) return;
     lock();
-    reserved -= reservedPages;
+    foldStripes();
     unlock();
   }
 
+  /**
+   * Fold the striped page counts into the reserved and committed totals.
+   * The caller must hold the lock.
+   */
+  protected final void foldStripes() {
+    for (int s = 0; s < STRIPES; s++) {
+      Address stripe = getStripe(s);
+      reserved += takeStripe(stripe.plus(RESERVED_OFFSET));
+      committed += takeStripe(stripe.plus(COMMITTED_OFFSET));
+    }
+  }
+
+  /**
+   * @return The stripe of this resource used by the current thread
+   */
+  @Inline
+  protected final Address currentStripe() {
+    return getStripe(stripeIndex());
+  }
+
+  /**
+   * @param index The index of a stripe
+   * @return The stripe of this resource with the given index
+   */
+  @Inline
+  protected final Address getStripe(int index) {
+    return stripes.plus(index << LOG_BYTES_IN_STRIPE);
+  }
+
+  /**
+   * Choose the stripe for the current thread.  Mutators and collectors
+   * are spread by their ids; any other thread (for example a background
+   * context running outside a collection) shares the first stripe.
+   *
+   * @return The index of the stripe for the current thread
+   */
+  @Inline
+  private static int stripeIndex() {
+    int id;
+    if (VM.activePlan.isMutator()) {
+      id = VM.activePlan.mutator().getId();
+    } else if (Plan.gcInProgress()) {
+      id = VM.activePlan.collector().getId();
+    } else {
+      id = 0;
+    }
+    return id & (STRIPES - 1);
+  }
+
+  /**
+   * Atomically add to a striped count.
+   *
+   * @param cell The count to add to
+   * @param delta The amount to add
+   * @return The new value of the count
+   */
+  @Inline
+  private static int addToStripe(Address cell, int delta) {
+    int old;
+    do {
+      old = cell.prepareInt();
+    } while (!cell.attempt(old, old + delta));
+    return old + delta;
+  }
+
+  /**
+   * Atomically read and clear a striped count.
+   *
+   * @param cell The count to clear
+   * @return The value of the count before it was cleared
+   */
+  @Inline
+  private static int takeStripe(Address cell) {
+    int old;
+    do {
+      old = cell.prepareInt();
+    } while (!cell.attempt(old, 0));
+    return old;
+  }
+
+  /**
+   * Sum one count across all stripes of this resource.
+   *
+   * @param offset The offset of the count within each stripe
+   * @return The sum of the count across all stripes
+   */
+  private int sumStripes(Offset offset) {
+    int sum = 0;
+    for (int s = 0; s < STRIPES; s++) {
+      sum += getStripe(s).loadInt(offset);
+    }
+    return sum;
+  }
+
   /**
    * Update the zeroing approach for this page resource.
    *
@@ -189,8 +367,11 @@ public abstract class PageResource {
     this.zeroNT = nontemporal;
     this.zeroConcurrent = concurrent;
     if (concurrent) {
-      this.zeroingContext = new ConcurrentZeroingContext(this);
-      VM.collection.spawnCollectorContext(zeroingContext);
+      this.zeroingContexts = new ConcurrentZeroingContext[Options.zeroingThreads.getValue()];
+      for (int i = 0; i < zeroingContexts.length; i++) {
+        zeroingContexts[i] = new ConcurrentZeroingContext(this);
+        VM.collection.spawnCollectorContext(zeroingContexts[i]);
+      }
     }
   }
 
@@ -207,7 +388,9 @@ public abstract class PageResource {
    */
   public void triggerConcurrentZeroing() {
     zeroConcurrent = true;
-    this.zeroingContext.trigger();
+    for (int i = 0; i < zeroingContexts.length; i++) {
+      zeroingContexts[i].trigger();
+    }
   }
 
   /**
@@ -258,15 +441,22 @@ public abstract class PageResource {
    * <code>reserved</code> while the request was pending.
    *
    * This *MUST* be called by each PageResource during the
-   * allocPages, and the caller must hold the lock.
+   * allocPages, and the caller must hold the lock (unless this resource
+   * is scalable, in which case the counts are updated atomically).
    *
    * @param reservedPages The number of pages initially reserved due to this request
    * @param actualPages The number of pages actually allocated.
    */
   protected void commitPages(int reservedPages, int actualPages) {
     int delta = actualPages - reservedPages;
-    reserved += delta;
-    committed += actualPages;
+    if (isScalable()) {
+      Address stripe = currentStripe();
+      addToStripe(stripe.plus(RESERVED_OFFSET), delta);
+      addToStripe(stripe.plus(COMMITTED_OFFSET), actualPages);
+    } else {
+      reserved += delta;
+      committed += actualPages;
+    }
     if (VM.activePlan.isMutator()) {
       // only count mutator pages
       addToCommitted(actualPages);
@@ -279,7 +469,7 @@ public abstract class PageResource {
    * @return The number of reserved pages.
    */
   public final int reservedPages() {
-    return reserved;
+    return isScalable() ? reserved + sumStripes(RESERVED_OFFSET) : reserved;
   }
 
   /**
@@ -288,7 +478,20 @@ public abstract class PageResource {
    * @return The number of committed pages.
    */
   public final int committedPages() {
-    return committed;
+    return isScalable() ? committed + sumStripes(COMMITTED_OFFSET) : committed;
+  }
+
+  /**
+   * Account for pages released by this resource without taking the lock.
+   * Only valid if this resource is scalable.
+   *
+   * @param pages The number of pages released
+   */
+  protected final void releaseCommitted(int pages) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isScalable());
+    Address stripe = currentStripe();
+    addToStripe(stripe.plus(RESERVED_OFFSET), -pages);
+    addToStripe(stripe.plus(COMMITTED_OFFSET), -pages);
   }
 
   /**
@@ -297,7 +500,13 @@ public abstract class PageResource {
    * @return The cumulative number of committed pages.
    */
   public static long cumulativeCommittedPages() {
-    return cumulativeCommitted;
+    long rtn = cumulativeCommitted;
+    if (!cumulativeStripes.isZero()) {
+      for (int s = 0; s < STRIPES; s++) {
+        rtn += cumulativeStripes.loadInt(Offset.fromIntZeroExtend(s << LOG_BYTES_IN_STRIPE));
+      }
+    }
+    return rtn;
   }
 
   /**
@@ -306,6 +515,11 @@ public abstract class PageResource {
    * @param pages The number of pages to be added.
    */
   private static void addToCommitted(int pages) {
+    if (!cumulativeStripes.isZero()) {
+      Address stripe = cumulativeStripes.plus(stripeIndex() << LOG_BYTES_IN_STRIPE);
+      if (addToStripe(stripe, pages) < CUMULATIVE_FOLD_THRESHOLD) return;
+      pages = takeStripe(stripe);
+    }
     classLock.acquire();
     cumulativeCommitted += pages;
     classLock.release();
@@ -0,0 +1,207 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.*;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.mmtk.utility.statistics.Stats;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class returns the physical memory of free chunks to the operating
+ * system.<p>
+ *
+ * Chunks released by discontiguous spaces are recorded along with the
+ * collection in which they were freed.  Once a chunk has stayed free for
+ * <code>Options.uncommitAfterGCs</code> collections, a background
+ * {@link ConcurrentUncommitContext} uncommits it through
+ * {@link org.mmtk.vm.Memory#uncommit}.  The chunk stays mapped, and is
+ * faulted back in when a space next acquires and touches it.  Its
+ * contents are then undefined, as they are for any reused chunk.<p>
+ *
+ * A chunk is taken off the free list under the lock that
+ * {@link #chunksAcquired} takes to forget chunks a space acquires, and is
+ * uncommitted outside it.  Until the uncommit is done, a space acquiring
+ * that chunk waits in {@link #chunksAcquired}, so a chunk is never
+ * uncommitted once a space may be using it.
+ * Contiguous spaces keep their address range and reuse it every cycle, so
+ * only chunks that pass through the discontiguous chunk map are tracked.
+ */
+@Uninterruptible
+public final class Uncommitter {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The maximum number of free chunks tracked; further chunks are not uncommitted */
+  private static final int MAX_FREE_CHUNKS = 1 << 12;
+
+  /** The free chunks, in no particular order */
+  private static final AddressArray freeChunk = AddressArray.create(MAX_FREE_CHUNKS);
+  /** The collection count when each free chunk was released */
+  private static final int[] freedAt = new int[MAX_FREE_CHUNKS];
+  private static int freeChunks = 0;
+  /** The chunk being uncommitted outside the lock, or zero */
+  private static Address uncommitting = Address.zero();
+
+  private static final Lock lock = VM.newLock("Uncommitter");
+
+  private static ConcurrentUncommitContext uncommitContext;
+  private static boolean enabled = false;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  private Uncommitter() {}
+
+  /**
+   * Start uncommitting free chunks, spawning the background context.
+   */
+  @Interruptible
+  public static void enable() {
+    uncommitContext = new ConcurrentUncommitContext();
+    VM.collection.spawnCollectorContext(uncommitContext);
+    enabled = true;
+  }
+
+  /**
+   * @return {@code true} if free chunks are being uncommitted
+   */
+  @Inline
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /****************************************************************************
+   *
+   * Chunk tracking
+   */
+
+  /**
+   * Record that a space has released a run of chunks.
+   *
+   * @param start The first chunk
+   * @param chunks The number of chunks
+   */
+  public static void chunksReleased(Address start, int chunks) {
+    if (!enabled) return;
+    int now = Stats.gcCount();
+    lock.acquire();
+    for (int i = 0; i < chunks && freeChunks < MAX_FREE_CHUNKS; i++) {
+      freeChunk.set(freeChunks, start.plus(i << LOG_BYTES_IN_CHUNK));
+      freedAt[freeChunks] = now;
+      freeChunks++;
+    }
+    lock.release();
+  }
+
+  /**
+   * Record that a space has acquired a run of chunks, so they must no
+   * longer be uncommitted.  This must be called before the space uses
+   * the chunks.
+   *
+   * @param start The first chunk
+   * @param chunks The number of chunks
+   */
+  public static void chunksAcquired(Address start, int chunks) {
+    if (!enabled) return;
+    Address end = start.plus(chunks << LOG_BYTES_IN_CHUNK);
+    lock.acquire();
+    int i = 0;
+    while (i < freeChunks) {
+      Address chunk = freeChunk.get(i);
+      if (chunk.GE(start) && chunk.LT(end)) {
+        removeFreeChunk(i);
+      } else {
+        i++;
+      }
+    }
+    // Wait out an uncommit of one of these chunks that is under way
+    while (uncommitting.GE(start) && uncommitting.LT(end)) {
+      lock.release();
+      VM.memory.combinedLoadBarriers();
+      lock.acquire();
+    }
+    lock.release();
+  }
+
+  /**
+   * Forget a free chunk, moving the last entry into its slot.
+   * The caller must hold the lock.
+   *
+   * @param i The index of the entry
+   */
+  private static void removeFreeChunk(int i) {
+    freeChunks--;
+    freeChunk.set(i, freeChunk.get(freeChunks));
+    freedAt[i] = freedAt[freeChunks];
+  }
+
+  /****************************************************************************
+   *
+   * Uncommitting
+   */
+
+  /**
+   * Trigger the background context at the end of a collection.
+   */
+  public static void trigger() {
+    if (enabled) uncommitContext.trigger();
+  }
+
+  /**
+   * The entry point for the background context: uncommit every chunk that
+   * has stayed free for long enough.  Chunks are uncommitted one at a time,
+   * and the work stops as soon as a collection starts, so that it never
+   * holds up a collector.
+   */
+  public static void concurrentUncommit() {
+    int threshold = Options.uncommitAfterGCs.getValue();
+    int now = Stats.gcCount();
+    int uncommitted = 0;
+    int i = 0;
+    while (!Plan.gcInProgress()) {
+      lock.acquire();
+      while (i < freeChunks && now - freedAt[i] < threshold) i++;
+      if (i >= freeChunks) {
+        lock.release();
+        break;
+      }
+      Address chunk = freeChunk.get(i);
+      removeFreeChunk(i);
+      uncommitting = chunk;
+      lock.release();
+      boolean success = VM.memory.uncommit(chunk, BYTES_IN_CHUNK);
+      lock.acquire();
+      uncommitting = Address.zero();
+      lock.release();
+      if (success) uncommitted++;
+    }
+    if (Options.verbose.getValue() >= 3 && uncommitted > 0) {
+      Log.write("[Uncommitted ");
+      Log.write(uncommitted);
+      Log.writeln(" free chunks]");
+    }
+  }
+}
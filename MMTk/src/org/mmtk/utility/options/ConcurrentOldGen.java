@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should a generational plan with a mark-sweep old generation mark that
+ * generation concurrently with the mutators?
+ */
+public final class ConcurrentOldGen extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public ConcurrentOldGen() {
+    super(Options.set, "Concurrent Old Gen",
+          "Mark the old generation concurrently once its occupancy crosses the concurrent trigger",
+          false);
+  }
+}
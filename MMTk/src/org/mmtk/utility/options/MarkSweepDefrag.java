@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should full-heap collections evacuate the sparsest blocks of
+ * fragmented mark-sweep spaces?
+ */
+public final class MarkSweepDefrag extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public MarkSweepDefrag() {
+    super(Options.set, "Mark Sweep Defrag",
+          "Evacuate the sparsest blocks of a fragmented mark-sweep space during full-heap collections",
+          false);
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The fraction of the cells in swept mark-sweep blocks that must be free
+ * before a full-heap collection evacuates the sparsest blocks.
+ */
+public final class MarkSweepDefragThreshold extends org.vmutil.options.FloatOption {
+  /**
+   * Create the option.
+   */
+  public MarkSweepDefragThreshold() {
+    super(Options.set, "Mark Sweep Defrag Threshold",
+          "Evacuate mark-sweep blocks when at least this fraction of the cells in swept blocks is free",
+          0.3f);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value < 0 || this.value > 1.0), "Ratio must be a float between 0 and 1");
+  }
+}
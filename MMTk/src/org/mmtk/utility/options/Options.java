@@ -21,6 +21,9 @@ public final class Options {
   public static OptionSet set;
 
   /* Other options */
+  public static AdaptiveTLABs adaptiveTLABs;
+  public static CollectorAffinity collectorAffinity;
+  public static ConcurrentOldGen concurrentOldGen;
   public static ConcurrentTrigger concurrentTrigger;
   public static CycleFilterThreshold cycleFilterThreshold;
   public static CycleMetaDataLimit cycleMetaDataLimit;
@@ -37,6 +40,8 @@ public final class Options {
   public static DefragStress defragStress;
   public static EagerCompleteSweep eagerCompleteSweep;
   public static EagerMmapSpaces eagerMmapSpaces;
+  public static EventTraceFile eventTraceFile;
+  public static EventTracing eventTracing;
   public static FragmentationStats fragmentationStats;
   public static FullHeapSystemGC fullHeapSystemGC;
   public static GCspyPort gcspyPort;
@@ -46,25 +51,42 @@ public final class Options {
   public static GenCycleDetection genCycleDetection;
   public static HarnessAll harnessAll;
   public static IgnoreSystemGC ignoreSystemGC;
+  public static LazySweep lazySweep;
   public static LineReuseRatio lineReuseRatio;
+  public static MarkSweepDefrag markSweepDefrag;
+  public static MarkSweepDefragThreshold markSweepDefragThreshold;
   public static MarkSweepMarkBits markSweepMarkBits;
   public static MetaDataLimit metaDataLimit;
   public static NoFinalizer noFinalizer;
   public static NoReferenceTypes noReferenceTypes;
   public static NurserySize nurserySize;
   public static PerfEvents perfEvents;
+  public static PretenureAdviceFile pretenureAdviceFile;
+  public static PretenureProfiling pretenureProfiling;
+  public static PretenureSurvivalThreshold pretenureSurvivalThreshold;
   public static PretenureThresholdFraction pretenureThresholdFraction;
   public static PrintPhaseStats printPhaseStats;
   public static ProtectOnRelease protectOnRelease;
   public static SanityCheck sanityCheck;
+  public static ScalablePageResources scalablePageResources;
   public static StressFactor stressFactor;
+  public static TargetPauseTime targetPauseTime;
+  public static TargetSurvivorRatio targetSurvivorRatio;
+  public static Telemetry telemetry;
+  public static TelemetryFile telemetryFile;
+  public static TenuringPolicy tenuringPolicy;
+  public static TenuringThreshold tenuringThreshold;
   public static Threads threads;
+  public static ThroughputGoal throughputGoal;
   public static TraceRate traceRate;
+  public static UncommitAfterGCs uncommitAfterGCs;
   public static UseReturnBarrier useReturnBarrier;
   public static UseShortStackScans useShortStackScans;
   public static VariableSizeHeap variableSizeHeap;
   public static VerboseFragmentationStats verboseFragmentationStats;
   public static Verbose verbose;
   public static VerboseTiming verboseTiming;
+  public static WorkStealing workStealing;
   public static XmlStats xmlStats;
+  public static ZeroingThreads zeroingThreads;
 }
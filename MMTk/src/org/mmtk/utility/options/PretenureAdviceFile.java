@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The file that pretenuring advice is read from at startup and written
+ * to at exit.  An empty name disables persistence.
+ */
+public final class PretenureAdviceFile extends org.vmutil.options.StringOption {
+  /**
+   * Create the option.
+   */
+  public PretenureAdviceFile() {
+    super(Options.set, "Pretenure Advice File",
+        "The file from which pretenuring advice is read and to which it is written",
+        "");
+  }
+}
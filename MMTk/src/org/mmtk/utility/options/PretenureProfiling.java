@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should allocation sites be profiled for nursery survival, and sites
+ * that mostly survive be allocated directly into the old generation?
+ */
+public final class PretenureProfiling extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public PretenureProfiling() {
+    super(Options.set, "Pretenure Profiling",
+        "Profile nursery survival per allocation site and pretenure long-lived sites",
+        false);
+  }
+}
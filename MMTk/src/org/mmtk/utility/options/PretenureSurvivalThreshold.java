@@ -0,0 +1,36 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The fraction of sampled bytes from an allocation site that must
+ * survive nursery collection before the site is pretenured.
+ */
+public final class PretenureSurvivalThreshold extends org.vmutil.options.FloatOption {
+  /**
+   * Create the option.
+   */
+  public PretenureSurvivalThreshold() {
+    super(Options.set, "Pretenure Survival Threshold",
+          "Fraction of an allocation site's bytes that must survive before the site is pretenured",
+          0.8f);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value <= 0 || this.value > 1.0), "Threshold must be a float greater than 0 and at most 1");
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The nursery pause time that adaptive generation sizing aims not to exceed.
+ */
+public final class TargetPauseTime extends org.vmutil.options.MicrosecondsOption {
+  /**
+   * Create the option.
+   */
+  public TargetPauseTime() {
+    super(Options.set, "Target Pause Time",
+          "The nursery pause time that adaptive generation sizing aims not to exceed",
+          200000);
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The percentage of the survivor space that an adaptive tenuring policy
+ * aims to keep occupied after a collection.
+ */
+public final class TargetSurvivorRatio extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public TargetSurvivorRatio() {
+    super(Options.set, "Target Survivor Ratio",
+          "Desired percentage of survivor space occupied after a collection",
+          50);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value <= 0 || this.value > 100, "Ratio must be a percentage between 1 and 100");
+  }
+}
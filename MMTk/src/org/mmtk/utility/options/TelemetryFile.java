@@ -0,0 +1,27 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The file that collection telemetry is written to.
+ */
+public final class TelemetryFile extends org.vmutil.options.StringOption {
+  /**
+   * Create the option.
+   */
+  public TelemetryFile() {
+    super(Options.set, "Telemetry File",
+        "The file to which collection telemetry is written, one JSON object per line",
+        "mmtk-telemetry.jsonl");
+  }
+}
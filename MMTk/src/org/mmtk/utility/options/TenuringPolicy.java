@@ -0,0 +1,42 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * How the tenuring threshold of an age-based generational plan is chosen.
+ */
+@Uninterruptible
+public final class TenuringPolicy extends org.vmutil.options.EnumOption {
+
+  public final int FIXED = 0;
+  public final int ADAPTIVE = 1;
+
+  /**
+   * Create the option.
+   */
+  public TenuringPolicy() {
+    super(Options.set, "Tenuring Policy",
+          "Use a fixed tenuring threshold, or adapt it to survivor space occupancy",
+          new String[] {"fixed", "adaptive"},
+          "adaptive");
+  }
+
+  /**
+   * @return {@code true} if the tenuring threshold is adaptive.
+   */
+  public boolean getAdaptive() {
+    return getValue() == ADAPTIVE;
+  }
+}
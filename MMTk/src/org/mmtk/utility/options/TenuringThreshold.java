@@ -0,0 +1,40 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+import org.mmtk.utility.ObjectAge;
+
+/**
+ * The number of copies an object must survive before it is tenured.  When
+ * the tenuring policy is adaptive this is the upper bound on the threshold.
+ */
+public final class TenuringThreshold extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public TenuringThreshold() {
+    super(Options.set, "Tenuring Threshold",
+          "Number of copies an object must survive before it is tenured (the maximum when adaptive)",
+          4);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value <= 0, "Tenuring threshold must be at least one");
+    failIf(this.value > ObjectAge.MAX_AGE, "Only " +
+        ObjectAge.AGE_BITS + " age bits are reserved in the object header");
+  }
+}
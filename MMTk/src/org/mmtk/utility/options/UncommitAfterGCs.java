@@ -0,0 +1,36 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Return free chunks of discontiguous spaces to the operating system once
+ * they have stayed free for this many collections.
+ */
+public final class UncommitAfterGCs extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public UncommitAfterGCs() {
+    super(Options.set, "Uncommit After GCs",
+          "Uncommit chunks that stay free for this many collections (0 disables uncommitting)",
+          0);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value < 0, "Uncommit After GCs must not be negative");
+  }
+}
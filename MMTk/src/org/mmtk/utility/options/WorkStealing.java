@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should collector threads share the work of a parallel trace by
+ * stealing from one another, rather than through shared queues alone?
+ */
+public final class WorkStealing extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public WorkStealing() {
+    super(Options.set, "Work Stealing",
+          "Balance parallel traces by having collector threads steal work from each other's deques",
+          false);
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The number of contexts that concurrently zero each nursery.
+ */
+public final class ZeroingThreads extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public ZeroingThreads() {
+    super(Options.set, "Zeroing Threads",
+          "Number of contexts that concurrently zero each nursery when nursery zeroing is concurrent",
+          1);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value <= 0, "Zeroing Threads must be greater than 0");
+  }
+}
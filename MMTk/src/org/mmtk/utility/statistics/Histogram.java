@@ -0,0 +1,248 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.statistics;
+
+import org.mmtk.utility.Log;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * This class implements a histogram of a distribution of (long) values,
+ * such as pause times.
+ * <p>
+ * Buckets are log-linear: each power of two is divided into
+ * <code>SUB_BUCKETS</code> linear sub-buckets, so any recorded value is
+ * known to within 1/<code>SUB_BUCKETS</code> of its magnitude.  The bucket
+ * array is allocated when the histogram is created, so values can be
+ * recorded from uninterruptible code without allocating.  Values of
+ * 2<sup>MAX_LOG_VALUE</sup> or more are counted in the last bucket; the
+ * exact minimum and maximum are kept separately.
+ */
+@Uninterruptible
+public class Histogram {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** log2 of the number of linear sub-buckets per power of two */
+  private static final int LOG_SUB_BUCKETS = 3;
+  private static final int SUB_BUCKETS = 1 << LOG_SUB_BUCKETS;
+  /** Values up to 2^MAX_LOG_VALUE are bucketed precisely (2^40ns is ~18 minutes) */
+  private static final int MAX_LOG_VALUE = 40;
+  private static final int BUCKETS = (MAX_LOG_VALUE - LOG_SUB_BUCKETS + 1) * SUB_BUCKETS;
+
+  /** The percentiles reported, in tenths of a percent */
+  private static final int[] PERCENTILES = { 500, 900, 990, 999 };
+  private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  private final String name;
+  private final boolean time;
+  private final int[] buckets;
+  private long count = 0;
+  private long min = Long.MAX_VALUE;
+  private long max = 0;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   *
+   * @param name The name to be associated with this histogram
+   * @param time True if the values are times in nanoseconds, to
+   * be reported in milliseconds
+   */
+  public Histogram(String name, boolean time) {
+    this.name = name;
+    this.time = time;
+    this.buckets = new int[BUCKETS];
+    Stats.newHistogram(this);
+  }
+
+  /****************************************************************************
+   *
+   * Recording
+   */
+
+  /**
+   * Record a value, if statistics are being gathered.
+   *
+   * @param value The value, which must be non-negative
+   */
+  public final void record(long value) {
+    if (!Stats.gatheringStats) return;
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(value >= 0);
+    buckets[bucketIndex(value)]++;
+    count++;
+    if (value < min) min = value;
+    if (value > max) max = value;
+  }
+
+  /**
+   * Return the bucket that counts a value.  Values below
+   * <code>SUB_BUCKETS</code> have a bucket each; above that, the bucket
+   * is given by the position of the highest set bit and the next
+   * <code>LOG_SUB_BUCKETS</code> bits below it.
+   *
+   * @param value The value
+   * @return The index of its bucket
+   */
+  @Inline
+  private static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) return (int)value;
+    int log = 63 - Long.numberOfLeadingZeros(value);
+    if (log >= MAX_LOG_VALUE) return BUCKETS - 1;
+    int sub = (int)(value >>> (log - LOG_SUB_BUCKETS)) & (SUB_BUCKETS - 1);
+    return ((log - LOG_SUB_BUCKETS + 1) << LOG_SUB_BUCKETS) + sub;
+  }
+
+  /**
+   * Return the largest value counted by a bucket.
+   *
+   * @param index The bucket index
+   * @return The upper bound (inclusive) of the bucket
+   */
+  private static long bucketLimit(int index) {
+    if (index < SUB_BUCKETS) return index;
+    int group = index >>> LOG_SUB_BUCKETS;
+    long sub = index & (SUB_BUCKETS - 1);
+    return ((SUB_BUCKETS + sub + 1) << (group - 1)) - 1;
+  }
+
+  /****************************************************************************
+   *
+   * Accessor methods
+   */
+
+  /** @return The name of this histogram */
+  String getName() {
+    return name;
+  }
+
+  /** @return The number of values recorded */
+  public final long getCount() {
+    return count;
+  }
+
+  /** @return The largest value recorded, or 0 if none */
+  public final long getMax() {
+    return max;
+  }
+
+  /**
+   * Return a percentile of the recorded values, as the upper bound of
+   * the bucket holding the value of that rank (but no more than the
+   * maximum recorded value).
+   *
+   * @param perMille The percentile, in tenths of a percent
+   * @return The value at that percentile, or 0 if there are no values
+   */
+  public final long percentile(int perMille) {
+    if (count == 0) return 0;
+    long rank = (count * perMille + 999) / 1000;
+    if (rank < 1) rank = 1;
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets[i];
+      if (seen >= rank) {
+        long limit = bucketLimit(i);
+        if (limit > max) return max;
+        if (limit < min) return min;
+        return limit;
+      }
+    }
+    return max;
+  }
+
+  /****************************************************************************
+   *
+   * Printing
+   */
+
+  /**
+   * Print the column names of a histogram line
+   */
+  @Interruptible
+  static void printColumnNames() {
+    Log.write("name\tcount");
+    for (int p = 0; p < PERCENTILES.length; p++) {
+      Log.write("\t");
+      Log.write(PERCENTILE_NAMES[p]);
+    }
+    Log.writeln("\tmax");
+  }
+
+  /**
+   * Print the count, percentiles and maximum of this histogram
+   */
+  @Interruptible
+  void print() {
+    Log.write(name);
+    Log.write(time ? ".ms\t" : "\t");
+    Log.write(count);
+    for (int p = 0; p < PERCENTILES.length; p++) {
+      Log.write("\t");
+      printValue(percentile(PERCENTILES[p]));
+    }
+    Log.write("\t");
+    printValue(max);
+    Log.writeln();
+  }
+
+  /**
+   * Print the count, percentiles and maximum of this histogram in an
+   * xml tag
+   */
+  @Interruptible
+  void printXml() {
+    Xml.openMinorTag("histogram");
+    Xml.attribute("name", name);
+    if (time) Xml.attribute("units", "ms");
+    Xml.attribute("count", count);
+    for (int p = 0; p < PERCENTILES.length; p++) {
+      printValueXml(PERCENTILE_NAMES[p], percentile(PERCENTILES[p]));
+    }
+    printValueXml("max", max);
+    Xml.closeMinorTag();
+  }
+
+  /**
+   * Print a value, in milliseconds if this is a time histogram
+   *
+   * @param value The value to be printed
+   */
+  private void printValue(long value) {
+    if (time)
+      Log.write(VM.statistics.nanosToMillis(value));
+    else
+      Log.write(value);
+  }
+
+  @Interruptible
+  private void printValueXml(String attribute, long value) {
+    if (time)
+      Xml.attribute(attribute, VM.statistics.nanosToMillis(value));
+    else
+      Xml.attribute(attribute, value);
+  }
+}
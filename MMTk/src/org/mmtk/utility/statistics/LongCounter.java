@@ -114,6 +114,16 @@ public abstract class LongCounter extends Counter {
     long delta = getCurrentValue() - startValue;
     count[Stats.phase] += delta;
     totalCount += delta;
+    sample(delta);
+  }
+
+  /**
+   * A start/stop interval of this counter has completed.
+   * <b>Do nothing in this case.</b>
+   *
+   * @param delta The change in value over the interval
+   */
+  protected void sample(long delta) {
   }
 
   /**
@@ -45,9 +45,22 @@ public class Stats {
   static final int MAX_PHASES = 1 << 12;
   /** Maximum number of counters that can be in operation */
   static final int MAX_COUNTERS = 100;
+  /**
+   * Maximum number of histograms that can be in operation: a nursery and
+   * a full heap histogram for each phase, the two pause histograms, and
+   * the slot {@link #newHistogram} leaves unused
+   */
+  static final int MAX_HISTOGRAMS = 2 * org.mmtk.plan.Phase.MAX_PHASES + 3;
 
   private static int counters = 0;
   private static Counter[] counter;
+  private static int histograms = 0;
+  private static Histogram[] histogram;
+  /** Distribution of nursery collection pause times */
+  private static Histogram nurseryPauses;
+  /** Distribution of full heap collection pause times */
+  private static Histogram fullHeapPauses;
+  private static long gcStartTime;
   static int phase = 0;
   private static int gcCount = 0;
   static boolean gatheringStats = false;
@@ -66,6 +79,9 @@ public class Stats {
    */
   static {
     counter = new Counter[MAX_COUNTERS];
+    histogram = new Histogram[MAX_HISTOGRAMS];
+    nurseryPauses = new Histogram("pause.nursery", true);
+    fullHeapPauses = new Histogram("pause.full", true);
     Options.printPhaseStats = new PrintPhaseStats();
     Options.xmlStats = new XmlStats();
   }
@@ -84,6 +100,20 @@ public class Stats {
     }
   }
 
+  /**
+   * Add a new histogram to the set of managed histograms.
+   *
+   * @param hist The histogram to be added.
+   */
+  @Interruptible
+  static void newHistogram(Histogram hist) {
+    if (histograms < (MAX_HISTOGRAMS - 1)) {
+      histogram[histograms++] = hist;
+    } else {
+      Log.writeln("Warning: number of stats histograms exceeds maximum");
+    }
+  }
+
   /**
    * Start a new GC phase.  This means notifying each counter of the
    * phase change.
@@ -91,6 +121,7 @@ public class Stats {
   public static void startGC() {
     gcCount++;
     if (!gatheringStats) return;
+    gcStartTime = VM.statistics.nanoTime();
     if (phase < MAX_PHASES - 1) {
       for (int c = 0; c < counters; c++) {
         counter[c].phaseChange(phase);
@@ -108,6 +139,11 @@ public class Stats {
    */
   public static void endGC() {
     if (!gatheringStats) return;
+    long pause = VM.statistics.nanoTime() - gcStartTime;
+    if (isNurseryGC())
+      nurseryPauses.record(pause);
+    else
+      fullHeapPauses.record(pause);
     if (phase < MAX_PHASES - 1) {
       for (int c = 0; c < counters; c++) {
         counter[c].phaseChange(phase);
@@ -186,6 +222,22 @@ public class Stats {
     if (Options.printPhaseStats.getValue())
       printPhases();
     printTotals();
+    printHistograms();
+  }
+
+  /**
+   * Print out the count, percentiles and maximum of each histogram
+   * with any recorded values
+   */
+  @Interruptible
+  public static void printHistograms() {
+    Log.writeln("========================== MMTk Statistics Histograms ==========================");
+    Histogram.printColumnNames();
+    for (int h = 0; h < histograms; h++) {
+      if (histogram[h].getCount() > 0)
+        histogram[h].print();
+    }
+    Log.writeln("---------------------------- End MMTk Histograms -------------------------------");
   }
 
   /**
@@ -279,9 +331,23 @@ public class Stats {
     if (Options.printPhaseStats.getValue())
       printPhasesXml();
     printTotalsXml();
+    printHistogramsXml();
     Xml.end();
   }
 
+  /**
+   * Print out each histogram with any recorded values in Xml format
+   */
+  @Interruptible
+  public static void printHistogramsXml() {
+    Xml.openTag("mmtk-stats-histograms");
+    for (int h = 0; h < histograms; h++) {
+      if (histogram[h].getCount() > 0)
+        histogram[h].printXml();
+    }
+    Xml.closeTag("mmtk-stats-histograms");
+  }
+
   private static void openStatXml(String name) {
     Xml.openMinorTag("stat");
     Xml.attribute("name", name);
@@ -407,6 +473,14 @@ public class Stats {
     return gcCount;
   }
 
+  /**
+   * @return {@code true} if the collection in progress (or the last
+   * collection, between collections) only collects the nursery
+   */
+  static boolean isNurseryGC() {
+    return VM.activePlan.global().isCurrentGCNursery();
+  }
+
   /** @return {@code true} if currently gathering stats */
   public static boolean gatheringStats() {
     return gatheringStats;
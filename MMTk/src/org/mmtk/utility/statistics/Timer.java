@@ -23,6 +23,16 @@ import org.vmmagic.pragma.*;
 @Uninterruptible
 public class Timer extends LongCounter {
 
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /** Distribution of start/stop intervals during nursery collections, if enabled */
+  private Histogram nurseryHistogram;
+  /** Distribution of start/stop intervals during full heap collections, if enabled */
+  private Histogram fullHeapHistogram;
+
   /****************************************************************************
    *
    * Initialization
@@ -63,11 +73,40 @@ public class Timer extends LongCounter {
     super(name, start, mergephases);
   }
 
+  /**
+   * Record the distribution of this timer's start/stop intervals, separately
+   * for nursery and full heap collections.  Only meaningful for timers that
+   * run within a collection, such as phase timers.
+   */
+  @Interruptible
+  public final void enableHistograms() {
+    if (nurseryHistogram == null) {
+      nurseryHistogram = new Histogram(getName() + ".nursery", true);
+      fullHeapHistogram = new Histogram(getName() + ".full", true);
+    }
+  }
+
   /****************************************************************************
    *
    * Counter-specific methods
    */
 
+  /**
+   * Record a completed interval in the histogram for the current kind of
+   * collection, if histograms are enabled.
+   *
+   * @param delta The length of the interval in nanoseconds
+   */
+  @Override
+  protected final void sample(long delta) {
+    if (nurseryHistogram != null) {
+      if (Stats.isNurseryGC())
+        nurseryHistogram.record(delta);
+      else
+        fullHeapHistogram.record(delta);
+    }
+  }
+
   /**
    * Get the current value for this timer
    *
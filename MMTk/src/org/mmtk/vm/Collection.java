@@ -80,6 +80,17 @@ import org.vmmagic.pragma.*;
    */
   public abstract int getDefaultThreads();
 
+  /**
+   * Binds the calling collector thread to a processor.  Consecutive
+   * ordinals are bound to consecutive processors, wrapping around when
+   * there are more collector threads than processors.
+   *
+   * @param ordinal the unique ordinal of the calling collector thread
+   * @return The processor the thread was bound to, or -1 if threads
+   * cannot be bound
+   */
+  public abstract int bindCollectorThread(int ordinal);
+
   /**
    * @return The number of active threads.
    *
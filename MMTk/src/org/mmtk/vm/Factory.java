@@ -199,6 +199,14 @@ public abstract class Factory {
    */
   public abstract Debug newDebug();
 
+  /**
+   * Create a new FileIO instance using the appropriate VM-specific
+   * concrete FileIO sub-class.
+   *
+   * @return A concrete VM-specific FileIO instance.
+   */
+  public abstract FileIO newFileIO();
+
   /**********************************************************************
    * GCspy methods
    */
@@ -0,0 +1,65 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.vm;
+
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * Minimal binary file access for MMTk components that persist data
+ * outside of the log (e.g. event traces).  Files are identified by
+ * small integer handles; a negative handle denotes failure.
+ */
+@Uninterruptible
+public abstract class FileIO {
+
+  /**
+   * Open a file.
+   *
+   * @param name the name of the file
+   * @param forWriting {@code true} to create (or truncate) the file for
+   * writing, {@code false} to open an existing file for reading
+   * @return a handle for the file, or a negative value on failure
+   */
+  @Interruptible
+  public abstract int open(String name, boolean forWriting);
+
+  /**
+   * Write bytes to a file.  The call blocks until all bytes have been
+   * written or an error occurred.
+   *
+   * @param handle a handle returned by {@link #open}
+   * @param buf the bytes to write, starting at index 0
+   * @param len the number of bytes to write
+   * @return the number of bytes written, or a negative value on failure
+   */
+  public abstract int write(int handle, byte[] buf, int len);
+
+  /**
+   * Read bytes from a file.
+   *
+   * @param handle a handle returned by {@link #open}
+   * @param buf the buffer to read into, starting at index 0
+   * @param len the maximum number of bytes to read
+   * @return the number of bytes read, zero at end of file, or a
+   * negative value on failure
+   */
+  public abstract int read(int handle, byte[] buf, int len);
+
+  /**
+   * Close a file.
+   *
+   * @param handle a handle returned by {@link #open}
+   */
+  public abstract void close(int handle);
+}
@@ -97,6 +97,40 @@ import org.vmmagic.pragma.*;
    */
   public abstract boolean munprotect(Address start, int size);
 
+  /**
+   * Returns the physical memory backing an area of virtual memory to
+   * the operating system (e.g. with <code>madvise(MADV_DONTNEED)</code>).
+   * The area stays mapped.  Its contents are undefined afterwards: some
+   * platforms (e.g. Linux) zero it when it is next touched, others may
+   * keep or later discard the old contents.
+   *
+   * @param start the address of the start of the area to be uncommitted
+   * @param size the size, in bytes, of the area to be uncommitted
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean uncommit(Address start, int size);
+
+  /**
+   * @param processor a processor
+   * @return The NUMA node of the processor, or -1 if it is not known
+   */
+  public abstract int numaNode(int processor);
+
+  /**
+   * Asks that the pages of an area of virtual memory that are not yet
+   * backed by physical memory be allocated on the given NUMA node when
+   * they are first touched.  Pages that are already resident are not
+   * moved.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @param node the preferred node
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean preferNumaNode(Address start, int size, int node);
+
 
   /**
    * Zero a region of memory.
@@ -134,6 +168,14 @@ import org.vmmagic.pragma.*;
   @Inline
   public abstract void combinedLoadBarriers();
 
+  /**
+   * Ensures that all memory writes before this point are visible to all
+   * processors before any memory writes after it.
+   * In JMM terminology, this would be a {@code StoreStore} fence.
+   */
+  @Inline
+  public abstract void storeStoreBarrier();
+
   /*
    * NOTE: The following methods must be implemented by subclasses of this
    * class, but are internal to the VM<->MM interface glue, so are never
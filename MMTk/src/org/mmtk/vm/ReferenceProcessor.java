@@ -40,6 +40,18 @@ public abstract class ReferenceProcessor {
    */
   public abstract void scan(TraceLocal trace, boolean nursery, boolean retain);
 
+  /**
+   * Can the references be scanned and forwarded by all collectors in
+   * parallel?  If so, every collector calls {@link #scan} and
+   * {@link #forward}, and each processes its own share of the references;
+   * otherwise only the primary collector calls them.
+   *
+   * @return {@code true} if references are processed in parallel
+   */
+  public boolean isParallel() {
+    return false;
+  }
+
   /**
    * Iterate over all references and forward.
    *
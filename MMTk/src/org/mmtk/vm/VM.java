@@ -126,6 +126,8 @@ public final class VM {
   public static final MMTk_Events events;
   @Untraced
   public static final Debug debugging;
+  @Untraced
+  public static final FileIO fileIO;
 
   /*
    * The remainder is does the static initialization of the
@@ -172,6 +174,7 @@ public final class VM {
     traceInterface = factory.newTraceInterface();
     events = factory.newEvents();
     debugging = factory.newDebug();
+    fileIO = factory.newFileIO();
     config = new Config(factory.newBuildTimeConfig());
 
     /* Now initialize the constants using the vm-specific singletons */
@@ -14,6 +14,7 @@ package org.jikesrvm.adaptive.controller;
 
 import java.util.LinkedList;
 import org.jikesrvm.VM;
+import org.jikesrvm.adaptive.recompilation.CompilationThread;
 import org.jikesrvm.adaptive.util.AOSGenerator;
 import org.jikesrvm.adaptive.util.AOSLogging;
 import org.jikesrvm.compilers.common.CompiledMethod;
@@ -174,6 +175,19 @@ public final class ControllerPlan {
    *  method otherwise
    */
   public CompiledMethod doRecompile() {
+    return doRecompile(null);
+  }
+
+  /**
+   * Like {@link #doRecompile()}, but compiles on the given compilation
+   * thread, which may be running concurrently with other compilation threads.
+   *
+   * @param thread the compilation thread performing this plan, or
+   *  {@code null} to compile under the RuntimeCompiler lock
+   * @return {@code null} if the compilation was aborted, the new compiled
+   *  method otherwise
+   */
+  public CompiledMethod doRecompile(CompilationThread thread) {
     CompilationPlan cp = getCompPlan();
 
     setTimeInitiated(Controller.controllerClock);
@@ -184,19 +198,23 @@ public final class ControllerPlan {
     }
 
     // Compile the method.
-    int newCMID = RuntimeCompiler.recompileWithOpt(cp);
+    int newCMID = thread == null ? RuntimeCompiler.recompileWithOpt(cp) : thread.recompile(cp);
     int prevCMID = getPrevCMID();
 
     if (Controller.options.sampling()) {
       // transfer the samples from the old CMID to the new CMID.
       // scale the number of samples down by the expected speedup
       // in the newly compiled method.
-      double expectedSpeedup = getExpectedSpeedup();
-      double oldNumSamples = Controller.methodSamples.getData(prevCMID);
-      double newNumSamples = oldNumSamples / expectedSpeedup;
-      Controller.methodSamples.reset(prevCMID);
-      if (newCMID > -1) {
-        Controller.methodSamples.augmentData(newCMID, newNumSamples);
+      // (hold the lock so that transfers made by concurrent compilation
+      //  threads are not interleaved)
+      synchronized (Controller.methodSamples) {
+        double expectedSpeedup = getExpectedSpeedup();
+        double oldNumSamples = Controller.methodSamples.getData(prevCMID);
+        double newNumSamples = oldNumSamples / expectedSpeedup;
+        Controller.methodSamples.reset(prevCMID);
+        if (newCMID > -1) {
+          Controller.methodSamples.augmentData(newCMID, newNumSamples);
+        }
       }
     }
 
@@ -12,9 +12,16 @@
  */
 package org.jikesrvm.adaptive.recompilation;
 
+import java.util.IdentityHashMap;
+
 import org.jikesrvm.adaptive.OnStackReplacementPlan;
 import org.jikesrvm.adaptive.controller.Controller;
 import org.jikesrvm.adaptive.controller.ControllerPlan;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanElement;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
 import org.jikesrvm.scheduler.SystemThread;
 import org.vmmagic.pragma.NonMoving;
 
@@ -24,17 +31,33 @@ import org.vmmagic.pragma.NonMoving;
  *  thread will pick the highest priority compilation plan from the queue
  *  and invoke the OPT compiler to perform the plan.
  *  <p>
+ *  There are {@code COMPILATION_THREADS} of these threads, all draining
+ *  the same queue.  With more than one, each thread compiles with
+ *  optimization plans of its own (see {@link #recompile}) and without the
+ *  RuntimeCompiler lock, so hot methods are optimized in parallel.
+ *  <p>
  *  No intelligence is contained in this class.  All policy decisions are
  *  made by the ControllerThread.
  */
 @NonMoving
 public final class CompilationThread extends SystemThread {
 
+  /**
+   * The optimization plans this thread compiles with, keyed by the options
+   * they were created from. {@code null} if this is the only compilation
+   * thread, which then uses the shared plans under the RuntimeCompiler lock.
+   */
+  private final IdentityHashMap<OptOptions, OptimizationPlanElement[]> ownPlans;
+
   /**
    * constructor
+   *
+   * @param id the number of this thread, starting at 0
+   * @param numThreads the number of compilation threads being created
    */
-  public CompilationThread() {
-    super("CompilationThread");
+  public CompilationThread(int id, int numThreads) {
+    super(numThreads == 1 ? "CompilationThread" : "CompilationThread-" + id);
+    ownPlans = numThreads == 1 ? null : new IdentityHashMap<OptOptions, OptimizationPlanElement[]>();
   }
 
   /**
@@ -49,12 +72,41 @@ public final class CompilationThread extends SystemThread {
     while (true) {
       Object plan = Controller.compilationQueue.deleteMin();
       if (plan instanceof ControllerPlan) {
-        ((ControllerPlan) plan).doRecompile();
+        ((ControllerPlan) plan).doRecompile(this);
       } else if (plan instanceof OnStackReplacementPlan) {
         ((OnStackReplacementPlan) plan).execute();
       }
     }
   }
 
+  /**
+   * Compiles and installs the method of the given plan on this thread.
+   * <p>
+   * The shared plans made by the recompilation strategies are all created
+   * by {@link OptimizationPlanner#createOptimizationPlan} from the plan's
+   * options, so an equivalent plan of this thread's own is made from those
+   * options the first time they are seen.
+   *
+   * @param cp the compilation plan to perform
+   * @return the CMID of the new method if successful, -1 if the
+   *    recompilation failed.
+   */
+  public int recompile(CompilationPlan cp) {
+    if (ownPlans == null) {
+      return RuntimeCompiler.recompileWithOpt(cp);
+    }
+    OptimizationPlanElement[] optimizationPlan = ownPlans.get(cp.options);
+    if (optimizationPlan == null) {
+      optimizationPlan = OptimizationPlanner.createUnsharedOptimizationPlan(cp.options);
+      ownPlans.put(cp.options, optimizationPlan);
+    }
+    CompilationPlan ownPlan =
+        new CompilationPlan(cp.method, cp.params, optimizationPlan, cp.instrumentationPlan, cp.options);
+    ownPlan.setInlineOracle(cp.inlinePlan);
+    ownPlan.analyzeOnly = cp.analyzeOnly;
+    ownPlan.irGeneration = cp.irGeneration;
+    return RuntimeCompiler.recompileWithOptConcurrently(ownPlan);
+  }
+
 }
 
@@ -78,7 +78,9 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
   public static final byte BASELINE_COMPILER = 1;
   public static final byte OPT_COMPILER = 2;
 
-  // Data accumulators
+  // Data accumulators, updated under statsLock as compilations may be
+  // recorded by several threads at once
+  private static final Object statsLock = new Object();
   private static final String[] name = {"JNI\t", "Base\t", "Opt\t"};   // Output names
   private static int[] totalMethods = {0, 0, 0};
   private static double[] totalCompTime = {0, 0, 0};
@@ -112,11 +114,26 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    *     is not reentrant, future ok)
    * </ol>
    * <p>
+   * The one exception is {@link #recompileWithOptConcurrently}, used when the
+   * adaptive system runs several compilation threads. Each of those threads
+   * brings its own optimization plan and records that it is compiling in
+   * {@link RVMThread#optCompilationInProgress} instead of this flag.
+   * <p>
    * NOTE: The associated code can be quite subtle, so please be absolutely sure
    * you know what you're doing before modifying it!!!
    */
   protected static boolean compilationInProgress;
 
+  /**
+   * @return whether the opt compiler must not be entered from the current
+   *  thread under the RuntimeCompiler lock, either because the lock's
+   *  compilation is in progress or because this thread is already compiling
+   *  concurrently
+   */
+  private static boolean optCompilerBusy() {
+    return compilationInProgress || RVMThread.getCurrentThread().optCompilationInProgress;
+  }
+
   // Cache objects needed to cons up compilation plans
   // TODO: cutting link to opt compiler by declaring type as object.
   public static final Object /* Options */ options = VM.BuildForAdaptiveSystem ? new OptOptions() : null;
@@ -139,25 +156,26 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    * @param compiledMethod the resulting compiled method
    */
   public static void record(byte compiler, NormalMethod method, CompiledMethod compiledMethod) {
-
-    recordCompilation(compiler,
-                      method.getBytecodeLength(),
-                      compiledMethod.numberOfInstructions(),
-                      compiledMethod.getCompilationTime());
-
-    if (VM.BuildForAdaptiveSystem) {
-      if (AOSLogging.logger.booted()) {
-        AOSLogging.logger.recordUpdatedCompilationRates(compiler,
-                                                    method,
-                                                    method.getBytecodeLength(),
-                                                    totalBCLength[compiler],
-                                                    compiledMethod.numberOfInstructions(),
-                                                    totalMCLength[compiler],
-                                                    compiledMethod.getCompilationTime(),
-                                                    totalCompTime[compiler],
-                                                    totalLogOfRates[compiler],
-                                                    totalLogValueMethods[compiler],
-                                                    totalMethods[compiler]);
+    synchronized (statsLock) {
+      recordCompilation(compiler,
+                        method.getBytecodeLength(),
+                        compiledMethod.numberOfInstructions(),
+                        compiledMethod.getCompilationTime());
+
+      if (VM.BuildForAdaptiveSystem) {
+        if (AOSLogging.logger.booted()) {
+          AOSLogging.logger.recordUpdatedCompilationRates(compiler,
+                                                      method,
+                                                      method.getBytecodeLength(),
+                                                      totalBCLength[compiler],
+                                                      compiledMethod.numberOfInstructions(),
+                                                      totalMCLength[compiler],
+                                                      compiledMethod.getCompilationTime(),
+                                                      totalCompTime[compiler],
+                                                      totalLogOfRates[compiler],
+                                                      totalLogValueMethods[compiler],
+                                                      totalMethods[compiler]);
+        }
       }
     }
   }
@@ -170,13 +188,15 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    * @param compiledMethod the resulting compiled method
    */
   public static void record(byte compiler, NativeMethod method, CompiledMethod compiledMethod) {
-
-    recordCompilation(compiler, 0, // don't have any bytecode info, its native
-                      compiledMethod.numberOfInstructions(), compiledMethod.getCompilationTime());
+    synchronized (statsLock) {
+      recordCompilation(compiler, 0, // don't have any bytecode info, its native
+                        compiledMethod.numberOfInstructions(), compiledMethod.getCompilationTime());
+    }
   }
 
   /**
-   * This method does the actual recording
+   * This method does the actual recording.
+   * Precondition: statsLock is held
    * @param compiler the compiler used
    * @param BCLength the number of bytecodes in method source
    * @param MCLength the length of the generated machine code
@@ -358,7 +378,8 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
       throws OptimizingCompilerException {
     if (VM.BuildForOptCompiler) {
       if (VM.VerifyAssertions) {
-        VM._assert(compilationInProgress, "Failed to acquire compilationInProgress \"lock\"");
+        VM._assert(compilationInProgress || RVMThread.getCurrentThread().optCompilationInProgress,
+                   "Failed to acquire compilationInProgress \"lock\"");
       }
 
       Callbacks.notifyMethodCompile(method, CompiledMethod.OPT);
@@ -402,7 +423,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    */
   public static synchronized CompiledMethod optCompileWithFallBack(NormalMethod method) {
     if (VM.BuildForOptCompiler) {
-      if (compilationInProgress) {
+      if (optCompilerBusy()) {
         return fallback(method);
       } else {
         try {
@@ -438,7 +459,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
   public static synchronized CompiledMethod optCompileWithFallBack(NormalMethod method,
                                                                       CompilationPlan plan) {
     if (VM.BuildForOptCompiler) {
-      if (compilationInProgress) {
+      if (optCompilerBusy()) {
         return fallback(method);
       } else {
         try {
@@ -492,12 +513,12 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
   }
 
   /* recompile the specialized method with Compiler. */
-  public static CompiledMethod recompileWithOptOnStackSpecialization(CompilationPlan plan) {
+  public static synchronized CompiledMethod recompileWithOptOnStackSpecialization(CompilationPlan plan) {
     if (VM.BuildForOptCompiler) {
       if (VM.VerifyAssertions) {
         VM._assert(plan.method.isForOsrSpecialization());
       }
-      if (compilationInProgress) {
+      if (optCompilerBusy()) {
         return null;
       }
 
@@ -551,36 +572,12 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    **/
   public static synchronized int recompileWithOpt(CompilationPlan plan) {
     if (VM.BuildForOptCompiler) {
-      if (compilationInProgress) {
+      if (optCompilerBusy()) {
         return -1;
       } else {
         try {
           compilationInProgress = true;
-          CompiledMethod cm = optCompile(plan.method, plan);
-          try {
-            plan.method.replaceCompiledMethod(cm);
-          } catch (Throwable e) {
-            String msg = "Failure in RVMMethod.replaceCompiledMethod (via recompileWithOpt): while replacing \"" + plan
-                .method + "\" (error was: " + e + ")\n";
-            if (VM.ErrorsFatal) {
-              e.printStackTrace();
-              VM.sysFail(msg);
-            } else {
-              VM.sysWrite(msg);
-            }
-            return -1;
-          }
-          return cm.getId();
-        } catch (OptimizingCompilerException e) {
-          String msg = "Optimizing compiler (via recompileWithOpt): can't optimize \"" + plan
-              .method + "\" (error was: " + e + ")\n";
-          if (e.isFatal && VM.ErrorsFatal) {
-            e.printStackTrace();
-            VM.sysFail(msg);
-          } else {
-            // VM.sysWrite(msg);
-          }
-          return -1;
+          return recompileWithOptInternal(plan);
         } finally {
           compilationInProgress = false;
         }
@@ -591,6 +588,79 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
     }
   }
 
+  /**
+   * Like {@link #recompileWithOpt(CompilationPlan)}, but without taking the
+   * RuntimeCompiler lock, so that several AOS compilation threads can be in
+   * the optimizing compiler at once.
+   * <p>
+   * The caller must make sure that no other thread is executing the
+   * optimization plan elements of the passed plan: compiler phases that
+   * return themselves from {@code newExecution} are not safe to share.
+   * Installing the result is safe because
+   * {@link org.jikesrvm.classloader.RVMMethod#replaceCompiledMethod}
+   * is synchronized on the method.
+   *
+   * @param plan the compilation plan to use
+   * @return the CMID of the new method if successful, -1 if the
+   *    recompilation failed.
+   */
+  public static int recompileWithOptConcurrently(CompilationPlan plan) {
+    if (VM.BuildForOptCompiler) {
+      RVMThread myThread = RVMThread.getCurrentThread();
+      if (myThread.optCompilationInProgress) {
+        return -1;
+      } else {
+        try {
+          myThread.optCompilationInProgress = true;
+          return recompileWithOptInternal(plan);
+        } finally {
+          myThread.optCompilationInProgress = false;
+        }
+      }
+    } else {
+      if (VM.VerifyAssertions) VM._assert(VM.NOT_REACHED);
+      return -1;
+    }
+  }
+
+  /**
+   * Compiles and installs the method of the passed plan.<p>
+   * Precondition: the current thread is allowed to enter the opt compiler
+   * (see {@link #optCompile})
+   * @param plan the compilation plan to use
+   * @return the CMID of the new method if successful, -1 if the
+   *    recompilation failed.
+   */
+  private static int recompileWithOptInternal(CompilationPlan plan) {
+    try {
+      CompiledMethod cm = optCompile(plan.method, plan);
+      try {
+        plan.method.replaceCompiledMethod(cm);
+      } catch (Throwable e) {
+        String msg = "Failure in RVMMethod.replaceCompiledMethod (via recompileWithOpt): while replacing \"" + plan
+            .method + "\" (error was: " + e + ")\n";
+        if (VM.ErrorsFatal) {
+          e.printStackTrace();
+          VM.sysFail(msg);
+        } else {
+          VM.sysWrite(msg);
+        }
+        return -1;
+      }
+      return cm.getId();
+    } catch (OptimizingCompilerException e) {
+      String msg = "Optimizing compiler (via recompileWithOpt): can't optimize \"" + plan
+          .method + "\" (error was: " + e + ")\n";
+      if (e.isFatal && VM.ErrorsFatal) {
+        e.printStackTrace();
+        VM.sysFail(msg);
+      } else {
+        // VM.sysWrite(msg);
+      }
+      return -1;
+    }
+  }
+
   /**
    * A wrapper method for those callers who don't want to make
    * optimization plans
@@ -126,15 +126,39 @@ public class OptimizationPlanner {
       initializeMasterPlan();
     }
 
+    OptimizationPlanElement[] plan = selectElements(masterPlan, options);
+    if (VM.writingBootImage) {
+      masterPlan = null;  // avoid problems with classes not being in bootimage.
+    }
+    return plan;
+  }
+
+  /**
+   * Using the passed options create an optimization plan whose elements
+   * are newly created rather than taken from the masterPlan.  No compiler
+   * phase of the result is shared with any other plan, so it may be
+   * executed concurrently with them.  Its phase timings are not included
+   * in {@link #generateOptimizingCompilerSubsystemReport}.
+   *
+   * @param options the Options to use
+   * @return a new OptimizationPlanElement[] based on options
+   */
+  public static OptimizationPlanElement[] createUnsharedOptimizationPlan(OptOptions options) {
+    return selectElements(newMasterPlan(), options);
+  }
+
+  /**
+   * @param plan the plan to select from
+   * @param options the Options to use
+   * @return the elements of plan that should be performed for options
+   */
+  private static OptimizationPlanElement[] selectElements(OptimizationPlanElement[] plan, OptOptions options) {
     ArrayList<OptimizationPlanElement> temp = new ArrayList<OptimizationPlanElement>();
-    for (OptimizationPlanElement element : masterPlan) {
+    for (OptimizationPlanElement element : plan) {
       if (element.shouldPerform(options)) {
         temp.add(element);
       }
     }
-    if (VM.writingBootImage) {
-      masterPlan = null;  // avoid problems with classes not being in bootimage.
-    }
     return toArray(temp);
   }
 
@@ -153,6 +177,13 @@ public class OptimizationPlanner {
    * that will normally execute.
    */
   private static void initializeMasterPlan() {
+    masterPlan = newMasterPlan();
+  }
+
+  /**
+   * @return a full plan of newly created optimization elements
+   */
+  private static OptimizationPlanElement[] newMasterPlan() {
     ArrayList<OptimizationPlanElement> temp = new ArrayList<OptimizationPlanElement>();
     BC2HIR(temp);
     HIROptimizations(temp);
@@ -164,7 +195,7 @@ public class OptimizationPlanner {
       if (VM.VerifyAssertions) VM._assert(VM.BuildForPowerPC);
       org.jikesrvm.compilers.opt.driver.ppc.MIROptimizationPlanner.intializeMasterPlan(temp);
     }
-    masterPlan = toArray(temp);
+    return toArray(temp);
   }
 
   /**
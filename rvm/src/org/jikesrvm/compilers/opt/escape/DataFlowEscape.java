@@ -0,0 +1,658 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.escape;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.*;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.compilers.opt.DefUse;
+import org.jikesrvm.compilers.opt.ir.ALoad;
+import org.jikesrvm.compilers.opt.ir.AStore;
+import org.jikesrvm.compilers.opt.ir.Athrow;
+import org.jikesrvm.compilers.opt.ir.Call;
+import org.jikesrvm.compilers.opt.ir.CondMove;
+import org.jikesrvm.compilers.opt.ir.GetField;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.Move;
+import org.jikesrvm.compilers.opt.ir.Phi;
+import org.jikesrvm.compilers.opt.ir.PutField;
+import org.jikesrvm.compilers.opt.ir.PutStatic;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.ResultCarrier;
+import org.jikesrvm.compilers.opt.ir.Return;
+import org.jikesrvm.compilers.opt.ir.TypeCheck;
+import org.jikesrvm.compilers.opt.ir.operand.MethodOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+
+/**
+ * Escape analysis formulated as a data-flow problem over a connection
+ * graph of the method.
+ * <p>
+ * Every register that may hold a reference is a node of the graph. Copies,
+ * checkcasts, conditional moves and phis merge the nodes they connect, and
+ * each node has a single <em>contents</em> node that stands for the objects
+ * reachable through its fields and array elements. An object that is stored
+ * into a container and loaded back out is therefore still tracked, instead
+ * of being given up at the store as {@link SimpleEscape} does. The escape
+ * state of a container flows to its contents until a fixed point is
+ * reached. Because the HIR is largely in SSA form when the analysis runs,
+ * the result for a register describes the objects that reach its
+ * definitions rather than everything a local variable is ever assigned.
+ * <p>
+ * Calls that remain after inlining are modelled with the
+ * {@link MethodSummary} of their target. In turn the analysis records
+ * the summary of the method being compiled, so that methods compiled
+ * later benefit from it.
+ * <p>
+ * A register is only reported as thread-local if all objects it may hold
+ * were allocated by this method or returned fresh by a callee. Unlike the
+ * results of {@link SimpleEscape}, this makes it safe to remove
+ * synchronization on any such register, not just on allocation sites.
+ * <p>
+ * An allocation is reported method-local if each of its uses is one that
+ * {@link SimpleEscape} accepts, except that it may also be copied into a
+ * register that is assigned more than once. {@link SimpleEscape} gives up
+ * at such copies, which arise when javac reuses a local variable slot. They
+ * are accepted when every object that may reach the copy is the one
+ * allocation, so that the scalar replacers may replace all uses of the copy
+ * as well. Such copies are reported method-local too, which is what the
+ * replacers check.
+ */
+final class DataFlowEscape {
+
+  /** The objects held by a node are not visible outside this method */
+  private static final byte NO_ESCAPE = 0;
+  /** The objects may be returned or passed to callees, but stay in this thread */
+  private static final byte METHOD_ESCAPE = 1;
+  /** The objects may become reachable from other threads */
+  private static final byte THREAD_ESCAPE = 2;
+
+  /**
+   * A set of registers (or of heap locations) that may refer to the same
+   * objects. Nodes are merged with a union-find structure; only the
+   * representative of a set carries meaningful state.
+   */
+  private static final class Node {
+    Node parent = this;
+    byte state = NO_ESCAPE;
+    /** May the node hold objects that were not allocated by this method? */
+    boolean unknown;
+    /** May the node hold objects passed in by the caller? */
+    boolean parameter;
+    /** May the objects of the node be returned to the caller? */
+    boolean returned;
+    /** Is the node (part of) the contents of another node? */
+    boolean isContents;
+    /** The number of allocation instructions that define registers of the node */
+    int allocations;
+    /**
+     * May the node hold {@code null} or objects that were passed around by
+     * callees, even if they were allocated by this method?
+     */
+    boolean mayHoldOther;
+    /** The objects reachable through fields and elements, or {@code null} */
+    Node contents;
+  }
+
+  /** The node for each register that may hold a reference */
+  private final HashMap<Register, Node> nodes = new HashMap<Register, Node>();
+
+  /** All nodes created, including contents nodes */
+  private final ArrayList<Node> allNodes = new ArrayList<Node>();
+
+  /** The nodes of the values returned by the method */
+  private final ArrayList<Node> returnValues = new ArrayList<Node>();
+
+  /** Does the method return an object constant? */
+  private boolean returnsConstantObject;
+
+  /** The IR being analyzed */
+  private IR ir;
+
+  /**
+   * Performs the escape analysis for a method.
+   *
+   * <p> Side effect: updates the method summary database to hold
+   *                the escape analysis result for the parameters and
+   *                the result of the method
+   *
+   * @param ir IR for the target method
+   * @return an object holding the result of the analysis
+   */
+  FI_EscapeSummary analyze(IR ir) {
+    this.ir = ir;
+    RVMMethod m = ir.method;
+    MethodSummary summ = SummaryDatabase.findOrCreateMethodSummary(m);
+    summ.setInProgress(true);
+    DefUse.computeDU(ir);
+    DefUse.recomputeSSA(ir);
+
+    for (Enumeration<Operand> e = ir.getParameters(); e.hasMoreElements();) {
+      Node n = nodeFor(e.nextElement());
+      if (n != null) {
+        n.parameter = true;
+      }
+    }
+    for (Enumeration<Instruction> e = ir.forwardInstrEnumerator(); e.hasMoreElements();) {
+      visit(e.nextElement());
+    }
+    propagate();
+
+    FI_EscapeSummary result = new FI_EscapeSummary();
+    for (Map.Entry<Register, Node> entry : nodes.entrySet()) {
+      Register reg = entry.getKey();
+      Node n = find(entry.getValue());
+      boolean threadLocal = n.state != THREAD_ESCAPE && !n.unknown && !n.parameter;
+      if (threadLocal) {
+        result.setThreadLocal(reg, true);
+        if (n.state == NO_ESCAPE && reg.isSSA() && reg.defList != null &&
+            !SimpleEscape.checkEscapesMethod(reg.defList, ir, null)) {
+          HashSet<Register> copies = new HashSet<Register>();
+          if (!usesEscapeMethod(reg, n, copies)) {
+            result.setMethodLocal(reg, true);
+            for (Register copy : copies) {
+              if (!copy.isSSA()) {
+                result.setMethodLocal(copy, true);
+              }
+            }
+          }
+        }
+      }
+    }
+    updateSummary(summ);
+    summ.setInProgress(false);
+    return result;
+  }
+
+  /**
+   * Adds the effect of an instruction to the connection graph.
+   *
+   * @param s the instruction
+   */
+  private void visit(Instruction s) {
+    switch (s.getOpcode()) {
+      case NEW_opcode:
+      case NEWARRAY_opcode:
+      case NEWOBJMULTIARRAY_opcode:
+      case NEW_UNRESOLVED_opcode:
+      case NEWARRAY_UNRESOLVED_opcode: {
+        // a fresh object: its node starts out not escaping
+        Node n = nodeFor(ResultCarrier.getResult(s));
+        if (n != null) {
+          n.allocations++;
+        }
+        break;
+      }
+      case REF_MOVE_opcode:
+        flowInto(Move.getResult(s), Move.getVal(s));
+        break;
+      case CHECKCAST_opcode:
+      case CHECKCAST_NOTNULL_opcode:
+      case CHECKCAST_UNRESOLVED_opcode:
+        flowInto(TypeCheck.getResult(s), TypeCheck.getRef(s));
+        break;
+      case REF_COND_MOVE_opcode:
+        flowInto(CondMove.getResult(s), CondMove.getTrueValue(s));
+        flowInto(CondMove.getResult(s), CondMove.getFalseValue(s));
+        break;
+      case PHI_opcode:
+        for (int i = 0; i < Phi.getNumberOfValues(s); i++) {
+          flowInto(Phi.getResult(s), Phi.getValue(s, i));
+        }
+        break;
+      case GETFIELD_opcode:
+      case REF_ALOAD_opcode: {
+        Node result = nodeFor(ResultCarrier.getResult(s));
+        if (result != null) {
+          Operand ref = s.getOpcode() == GETFIELD_opcode ? GetField.getRef(s) : ALoad.getArray(s);
+          union(result, contentsOf(ref));
+        }
+        break;
+      }
+      case PUTFIELD_opcode:
+        store(PutField.getRef(s), PutField.getValue(s));
+        break;
+      case REF_ASTORE_opcode:
+        store(AStore.getArray(s), AStore.getValue(s));
+        break;
+      case PUTSTATIC_opcode:
+        escape(PutStatic.getValue(s), THREAD_ESCAPE);
+        break;
+      case ATHROW_opcode:
+        escape(Athrow.getValue(s), THREAD_ESCAPE);
+        break;
+      case RETURN_opcode: {
+        Operand val = Return.getVal(s);
+        Node n = nodeFor(val);
+        if (n != null) {
+          n.returned = true;
+          raise(n, METHOD_ESCAPE);
+          returnValues.add(n);
+        } else if (isConstantObject(val)) {
+          returnsConstantObject = true;
+        }
+        break;
+      }
+      case CALL_opcode:
+        visitCall(s);
+        break;
+      case IR_PROLOGUE_opcode:
+        // parameters were handled before the walk
+        break;
+      case INT_ASTORE_opcode:
+      case LONG_ASTORE_opcode:
+      case FLOAT_ASTORE_opcode:
+      case DOUBLE_ASTORE_opcode:
+      case BYTE_ASTORE_opcode:
+      case SHORT_ASTORE_opcode:
+      case INT_ALOAD_opcode:
+      case LONG_ALOAD_opcode:
+      case FLOAT_ALOAD_opcode:
+      case DOUBLE_ALOAD_opcode:
+      case BYTE_ALOAD_opcode:
+      case UBYTE_ALOAD_opcode:
+      case SHORT_ALOAD_opcode:
+      case USHORT_ALOAD_opcode:
+      case BOUNDS_CHECK_opcode:
+      case MONITORENTER_opcode:
+      case MONITOREXIT_opcode:
+      case NULL_CHECK_opcode:
+      case ARRAYLENGTH_opcode:
+      case REF_IFCMP_opcode:
+      case INT_IFCMP_opcode:
+      case IG_PATCH_POINT_opcode:
+      case IG_CLASS_TEST_opcode:
+      case IG_METHOD_TEST_opcode:
+      case BOOLEAN_CMP_INT_opcode:
+      case BOOLEAN_CMP_ADDR_opcode:
+      case OBJARRAY_STORE_CHECK_opcode:
+      case OBJARRAY_STORE_CHECK_NOTNULL_opcode:
+      case GET_OBJ_TIB_opcode:
+      case GET_TYPE_FROM_TIB_opcode:
+      case INSTANCEOF_opcode:
+      case INSTANCEOF_NOTNULL_opcode:
+      case INSTANCEOF_UNRESOLVED_opcode:
+      case MUST_IMPLEMENT_INTERFACE_opcode:
+      case GET_CAUGHT_EXCEPTION_opcode:
+      case GETSTATIC_opcode:
+        // these never cause an object to escape, but any reference they
+        // produce is not one of ours
+        for (Enumeration<Operand> e = s.getDefs(); e.hasMoreElements();) {
+          markUnknown(e.nextElement());
+        }
+        break;
+      default:
+        giveUp(s);
+        break;
+    }
+  }
+
+  /**
+   * Models a call that was not inlined, using the summary of its target
+   * if there is one.
+   *
+   * @param s the call instruction
+   */
+  private void visitCall(Instruction s) {
+    MethodOperand mop = Call.getMethod(s);
+    if (mop == null || !mop.hasPreciseTarget()) {
+      giveUp(s);
+      return;
+    }
+    RVMMethod target = mop.getTarget();
+    Node result = nodeFor(Call.getResult(s));
+    if (target.isPure()) {
+      // pure methods write nothing, but may return (part of) any argument
+      for (int i = 0; i < Call.getNumberOfParams(s); i++) {
+        Node arg = nodeFor(Call.getParam(s, i));
+        if (arg != null) {
+          raise(arg, METHOD_ESCAPE);
+          if (result != null) {
+            union(result, arg);
+            union(result, contentsOf(arg));
+          }
+        }
+      }
+      if (result != null) {
+        find(result).mayHoldOther = true;
+      }
+      return;
+    }
+    MethodSummary summ = target.isNative() ? null : SimpleEscape.getMethodSummaryIfAvailable(target, ir.options);
+    if (summ == null) {
+      giveUp(s);
+      return;
+    }
+    boolean resultEscapes = summ.resultMayEscapeThread();
+    for (int i = 0; i < Call.getNumberOfParams(s); i++) {
+      Node arg = nodeFor(Call.getParam(s, i));
+      if (arg == null) {
+        continue;
+      }
+      raise(arg, summ.parameterMayEscapeThread(i) ? THREAD_ESCAPE : METHOD_ESCAPE);
+      // the summary says nothing about what the callee does with the
+      // contents of the argument
+      Node contents = contentsOf(arg);
+      contents.unknown = true;
+      raise(contents, THREAD_ESCAPE);
+      // a result that does not escape may still be one of the arguments
+      if (result != null && !resultEscapes) {
+        union(result, arg);
+      }
+    }
+    if (result != null) {
+      // even a result that does not escape may be a fresh object of the callee
+      find(result).mayHoldOther = true;
+      if (resultEscapes) {
+        find(result).unknown = true;
+      }
+      Node contents = contentsOf(result);
+      contents.unknown = true;
+      raise(contents, THREAD_ESCAPE);
+    }
+  }
+
+  /**
+   * Conservatively models an instruction the analysis does not understand:
+   * every reference it uses escapes and every reference it defines is
+   * unknown.
+   *
+   * @param s the instruction
+   */
+  private void giveUp(Instruction s) {
+    for (Enumeration<Operand> e = s.getUses(); e.hasMoreElements();) {
+      escape(e.nextElement(), THREAD_ESCAPE);
+    }
+    for (Enumeration<Operand> e = s.getDefs(); e.hasMoreElements();) {
+      markUnknown(e.nextElement());
+    }
+  }
+
+  /**
+   * Pushes the escape state of containers to their contents until nothing
+   * changes. Everything reachable from an object that we did not allocate
+   * is itself unknown and escaping.
+   */
+  private void propagate() {
+    boolean changed;
+    do {
+      changed = false;
+      for (int i = 0; i < allNodes.size(); i++) {
+        Node n = allNodes.get(i);
+        if (n.parent != n || n.contents == null) {
+          continue;
+        }
+        Node contents = find(n.contents);
+        boolean foreign = n.unknown || n.parameter;
+        byte state = foreign ? THREAD_ESCAPE : n.state;
+        if (contents.state < state) {
+          contents.state = state;
+          changed = true;
+        }
+        if (foreign && !contents.unknown) {
+          contents.unknown = true;
+          changed = true;
+        }
+      }
+    } while (changed);
+  }
+
+  /**
+   * Checks whether the uses of a register, or of the registers it is
+   * copied into, may let the objects it holds escape this method or are
+   * uses the scalar replacers do not understand.
+   *
+   * @param reg the register whose uses are checked
+   * @param root the representative node of the register the check started from
+   * @param copies the registers the objects were copied into; filled in
+   *  as they are found
+   * @return {@code true} if the objects may escape, {@code false} otherwise
+   */
+  private boolean usesEscapeMethod(Register reg, Node root, Set<Register> copies) {
+    for (RegisterOperand use = reg.useList; use != null; use = use.getNext()) {
+      if (use.getType() == null || use.getType().isPrimitiveType()) {
+        return true;
+      }
+      Instruction s = use.instruction;
+      switch (s.getOpcode()) {
+        case REF_MOVE_opcode:
+        case CHECKCAST_opcode:
+        case CHECKCAST_NOTNULL_opcode:
+        case CHECKCAST_UNRESOLVED_opcode: {
+          Register copy = ResultCarrier.getResult(s).getRegister();
+          if (copy == reg || !copies.add(copy)) {
+            break;
+          }
+          // A copy that is assigned elsewhere as well may only ever hold
+          // the one object allocated for the root
+          if (!copy.isSSA() && !holdsOnlyOneAllocation(copy, root)) {
+            return true;
+          }
+          if (usesEscapeMethod(copy, root, copies)) {
+            return true;
+          }
+          break;
+        }
+        default:
+          if (SimpleEscape.checkEscapesMethod(use, ir, null)) {
+            return true;
+          }
+          break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param reg a register
+   * @param root the representative node of an allocation's register
+   * @return whether every object the register may hold comes from the one
+   *  allocation of the root
+   */
+  private boolean holdsOnlyOneAllocation(Register reg, Node root) {
+    Node n = nodes.get(reg);
+    return n != null && find(n) == root && root.allocations == 1 &&
+        !root.mayHoldOther && !root.unknown && !root.parameter;
+  }
+
+  /**
+   * Records the escape behaviour of the parameters and the result of
+   * the method in its summary.
+   *
+   * @param summ the summary of the method being analyzed
+   */
+  private void updateSummary(MethodSummary summ) {
+    boolean resultEscapes = returnsConstantObject;
+    for (Node n : returnValues) {
+      Node r = find(n);
+      if (r.state == THREAD_ESCAPE || r.unknown) {
+        resultEscapes = true;
+      }
+    }
+    int numParam = 0;
+    for (Enumeration<Operand> e = ir.getParameters(); e.hasMoreElements(); numParam++) {
+      Node n = nodeFor(e.nextElement());
+      // callers only track a parameter through the result of the call,
+      // so it escapes if it is reachable in any other way
+      boolean escapes = n == null || n.state == THREAD_ESCAPE || n.isContents ||
+          (n.returned && resultEscapes);
+      summ.setParameterMayEscapeThread(numParam, escapes);
+    }
+    summ.setResultMayEscapeThread(resultEscapes);
+  }
+
+  /**
+   * Records that the objects held by a register or constant may reach
+   * the register defined by a copy.
+   *
+   * @param dst the operand defined
+   * @param src the operand copied
+   */
+  private void flowInto(Operand dst, Operand src) {
+    Node d = nodeFor(dst);
+    if (d == null) {
+      return;
+    }
+    Node s = nodeFor(src);
+    if (s != null) {
+      union(d, s);
+    } else if (isConstantObject(src)) {
+      find(d).unknown = true;
+    } else {
+      // null, or a value we do not track
+      find(d).mayHoldOther = true;
+    }
+  }
+
+  /**
+   * Records a store of a reference into a field or array element.
+   *
+   * @param ref the object or array stored into
+   * @param value the value stored
+   */
+  private void store(Operand ref, Operand value) {
+    Node v = nodeFor(value);
+    if (v != null) {
+      union(contentsOf(ref), v);
+    } else if (isConstantObject(value)) {
+      contentsOf(ref).unknown = true;
+    }
+  }
+
+  private void escape(Operand op, byte state) {
+    Node n = nodeFor(op);
+    if (n != null) {
+      raise(n, state);
+    }
+  }
+
+  private void markUnknown(Operand op) {
+    Node n = nodeFor(op);
+    if (n != null) {
+      n.unknown = true;
+    }
+  }
+
+  private static void raise(Node n, byte state) {
+    Node r = find(n);
+    if (r.state < state) {
+      r.state = state;
+    }
+  }
+
+  private static boolean isConstantObject(Operand op) {
+    return op != null && (op.isObjectConstant() || op.isTIBConstant());
+  }
+
+  /**
+   * @param op an operand
+   * @return the representative node for the register of the operand, or
+   *  {@code null} if the operand is not a register that may hold a reference
+   */
+  private Node nodeFor(Operand op) {
+    if (op == null || !op.isRegister()) {
+      return null;
+    }
+    Register reg = op.asRegister().getRegister();
+    if (!reg.isAddress() || reg.isPhysical()) {
+      return null;
+    }
+    Node n = nodes.get(reg);
+    if (n == null) {
+      n = newNode();
+      nodes.put(reg, n);
+    }
+    return find(n);
+  }
+
+  /**
+   * @param ref an operand referring to an object
+   * @return the representative node for the contents of the object
+   */
+  private Node contentsOf(Operand ref) {
+    Node n = nodeFor(ref);
+    if (n == null) {
+      // a constant object or something we cannot follow
+      Node contents = newNode();
+      contents.isContents = true;
+      contents.unknown = true;
+      contents.mayHoldOther = true;
+      contents.state = THREAD_ESCAPE;
+      return contents;
+    }
+    return contentsOf(n);
+  }
+
+  private Node contentsOf(Node n) {
+    Node r = find(n);
+    if (r.contents == null) {
+      r.contents = newNode();
+      r.contents.isContents = true;
+      // fields and elements start out null
+      r.contents.mayHoldOther = true;
+    }
+    return find(r.contents);
+  }
+
+  private Node newNode() {
+    Node n = new Node();
+    allNodes.add(n);
+    return n;
+  }
+
+  private static Node find(Node n) {
+    while (n.parent != n) {
+      n.parent = n.parent.parent;
+      n = n.parent;
+    }
+    return n;
+  }
+
+  /**
+   * Merges two nodes, and then their contents.
+   *
+   * @param a a node
+   * @param b another node
+   */
+  private static void union(Node a, Node b) {
+    a = find(a);
+    b = find(b);
+    if (a == b) {
+      return;
+    }
+    b.parent = a;
+    if (b.state > a.state) {
+      a.state = b.state;
+    }
+    a.unknown |= b.unknown;
+    a.parameter |= b.parameter;
+    a.returned |= b.returned;
+    a.isContents |= b.isContents;
+    a.allocations += b.allocations;
+    a.mayHoldOther |= b.mayHoldOther;
+    if (a.contents == null) {
+      a.contents = b.contents;
+    } else if (b.contents != null) {
+      union(a.contents, b.contents);
+    }
+  }
+}
@@ -92,19 +92,16 @@ public class EscapeTransformations extends CompilerPhase {
     DefUse.computeDU(ir);
     DefUse.recomputeSSA(ir);
     SimpleEscape analyzer = new SimpleEscape();
+    boolean dataFlow = ir.options.ESCAPE_DATA_FLOW;
     // do multiple passes to catch chains of objects that can be removed
     boolean removedAggregate;
     do {
       removedAggregate = false;
-      FI_EscapeSummary summary = analyzer.simpleEscapeAnalysis(ir);
+      FI_EscapeSummary summary = dataFlow ? new DataFlowEscape().analyze(ir) : analyzer.simpleEscapeAnalysis(ir);
       // pass through registers. look for registers that point
       // to objects that do not escape. When found,
       // perform the transformations
       for (Register reg = ir.regpool.getFirstSymbolicRegister(); reg != null; reg = reg.getNext()) {
-        // check if register is SSA
-        if (!reg.isSSA()) {
-          continue;
-        }
         // The following can occur for guards. Why?
         if (reg.defList == null) {
           continue;
@@ -114,10 +111,10 @@ public class EscapeTransformations extends CompilerPhase {
         // of aggregates
         // *********************************************************
         Instruction def = reg.defList.instruction;
-        if (ir.options.ESCAPE_SCALAR_REPLACE_AGGREGATES && summary.isMethodLocal(reg)) {
+        if (ir.options.ESCAPE_SCALAR_REPLACE_AGGREGATES && reg.isSSA() && summary.isMethodLocal(reg)) {
           AggregateReplacer s = null;
           if ((def.getOpcode() == NEW_opcode) || (def.getOpcode() == NEWARRAY_opcode)) {
-            s = getAggregateReplacer(def, ir);
+            s = getAggregateReplacer(def, ir, summary);
           }
           if (s != null) {
             // org.jikesrvm.VM.sysWriteln("Scalar replacing " + def + " in " + ir.method);
@@ -130,7 +127,13 @@ public class EscapeTransformations extends CompilerPhase {
         // *********************************************************
         if (ir.options.ESCAPE_MONITOR_REMOVAL && summary.isThreadLocal(reg)) {
           UnsyncReplacer unsync = null;
-          if ((def.getOpcode() == NEW_opcode) || (def.getOpcode() == NEWARRAY_opcode)) {
+          if (dataFlow) {
+            // every object the register may hold is thread-local, whatever
+            // its definitions are
+            if (synchronizesOn(reg)) {
+              unsync = UnsyncReplacer.getReplacer(reg, ir);
+            }
+          } else if (reg.isSSA() && ((def.getOpcode() == NEW_opcode) || (def.getOpcode() == NEWARRAY_opcode))) {
             unsync = getUnsyncReplacer(reg, def, ir);
           }
           if (unsync != null) {
@@ -215,10 +218,11 @@ public class EscapeTransformations extends CompilerPhase {
    *
    * @param inst the allocation site
    * @param ir controlling ir
+   * @param summary the escape analysis result
    * @return an AggregateReplacer specialized to the allocation site,
    *            null if no legal transformation found
    */
-  private AggregateReplacer getAggregateReplacer(Instruction inst, IR ir) {
+  private AggregateReplacer getAggregateReplacer(Instruction inst, IR ir, FI_EscapeSummary summary) {
     OptOptions options = ir.options;
     RVMType t = null;
     if (inst.getOpcode() == NEW_opcode) {
@@ -231,11 +235,11 @@ public class EscapeTransformations extends CompilerPhase {
 
     // first attempt to perform scalar replacement for an object
     if (t.isClassType() && options.ESCAPE_SCALAR_REPLACE_AGGREGATES) {
-      return ObjectReplacer.getReplacer(inst, ir);
+      return ObjectReplacer.getReplacer(inst, ir, summary);
     }
     // attempt to perform scalar replacement on a short array
     if (t.isArrayType() && options.ESCAPE_SCALAR_REPLACE_AGGREGATES) {
-      return ShortArrayReplacer.getReplacer(inst, ir);
+      return ShortArrayReplacer.getReplacer(inst, ir, summary);
     }
     return null;
   }
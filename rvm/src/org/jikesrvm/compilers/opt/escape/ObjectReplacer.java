@@ -95,13 +95,15 @@ final class ObjectReplacer implements AggregateReplacer {
    *
    * @param inst the allocation site
    * @param ir the governing IR
+   * @param summary the escape analysis result the allocation was found
+   *  method-local in
    * @return the object, or null if illegal
    */
-  public static ObjectReplacer getReplacer(Instruction inst, IR ir) {
+  public static ObjectReplacer getReplacer(Instruction inst, IR ir, FI_EscapeSummary summary) {
     Register r = New.getResult(inst).getRegister();
     RVMClass klass = New.getType(inst).getVMType().asClass();
     // TODO :handle these cases
-    if (klass.hasFinalizer() || containsUnsupportedUse(ir, r, klass, null)) {
+    if (klass.hasFinalizer() || containsUnsupportedUse(ir, r, klass, summary, null)) {
       return null;
     }
     return new ObjectReplacer(r, klass, ir);
@@ -290,11 +292,13 @@ final class ObjectReplacer implements AggregateReplacer {
    * @param ir the IR to check
    * @param reg the register whose uses are being checked
    * @param klass the class of the newly created object
+   * @param summary the escape analysis result
    * @param visited registers that were already seen
    *
    * @return {@code true} if the IR contains a case that we don't handle yet
    */
-  private static boolean containsUnsupportedUse(IR ir, Register reg, RVMClass klass, Set<Register> visited) {
+  private static boolean containsUnsupportedUse(IR ir, Register reg, RVMClass klass, FI_EscapeSummary summary,
+      Set<Register> visited) {
     for (RegisterOperand use = reg.useList; use != null; use = use.getNext()) {
       switch (use.instruction.getOpcode()) {
         case MUST_IMPLEMENT_INTERFACE_opcode:
@@ -317,7 +321,11 @@ final class ObjectReplacer implements AggregateReplacer {
             Register copy = TypeCheck.getResult(use.instruction).getRegister();
             if (!visited.contains(copy)) {
               visited.add(copy);
-              if (containsUnsupportedUse(ir, copy, klass, visited)) {
+              // all uses of the copy are replaced, so it may hold nothing else
+              if (!copy.isSSA() && !summary.isMethodLocal(copy)) {
+                return true;
+              }
+              if (containsUnsupportedUse(ir, copy, klass, summary, visited)) {
                 return true;
               }
             }
@@ -342,7 +350,11 @@ final class ObjectReplacer implements AggregateReplacer {
           Register copy = Move.getResult(use.instruction).getRegister();
           if (!visited.contains(copy)) {
             visited.add(copy);
-            if (containsUnsupportedUse(ir, copy, klass, visited)) {
+            // all uses of the copy are replaced, so it may hold nothing else
+            if (!copy.isSSA() && !summary.isMethodLocal(copy)) {
+              return true;
+            }
+            if (containsUnsupportedUse(ir, copy, klass, summary, visited)) {
               return true;
             }
           }
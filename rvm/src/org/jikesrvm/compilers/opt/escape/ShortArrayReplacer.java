@@ -126,9 +126,11 @@ final class ShortArrayReplacer implements AggregateReplacer {
    *
    * @param inst the allocation site
    * @param ir the governing IR
+   * @param summary the escape analysis result the allocation was found
+   *  method-local in
    * @return the object, or {@code null} if illegal
    */
-  public static ShortArrayReplacer getReplacer(Instruction inst, IR ir) {
+  public static ShortArrayReplacer getReplacer(Instruction inst, IR ir, FI_EscapeSummary summary) {
     if (inst.operator() != NEWARRAY) {
       return null;
     }
@@ -146,7 +148,7 @@ final class ShortArrayReplacer implements AggregateReplacer {
     Register r = NewArray.getResult(inst).getRegister();
     RVMArray a = NewArray.getType(inst).getVMType().asArray();
     // TODO :handle these cases
-    if (containsUnsupportedUse(ir, r, s, a, null)) {
+    if (containsUnsupportedUse(ir, r, s, a, summary, null)) {
       return null;
     }
     return new ShortArrayReplacer(r, a, s, ir);
@@ -379,10 +381,12 @@ final class ShortArrayReplacer implements AggregateReplacer {
    * @param reg the register in question
    * @param size the size of the array to scalar replace.
    * @param vmArray the array to replace
+   * @param summary the escape analysis result
    * @param visited the registers that were already visited
    * @return whether the IR contains an unsupported use
    */
-  private static boolean containsUnsupportedUse(IR ir, Register reg, int size, RVMArray vmArray, Set<Register> visited) {
+  private static boolean containsUnsupportedUse(IR ir, Register reg, int size, RVMArray vmArray,
+      FI_EscapeSummary summary, Set<Register> visited) {
     // If an array is accessed by a non-constant integer, what's the maximum size of support array?
     final int MAX_SIZE_FOR_VARIABLE_LOAD_STORE = VM.BuildForIA32 ? 2 : 1;
     for (RegisterOperand use = reg.useList; use != null; use = use.getNext()) {
@@ -416,7 +420,11 @@ final class ShortArrayReplacer implements AggregateReplacer {
             Register copy = TypeCheck.getResult(use.instruction).getRegister();
             if (!visited.contains(copy)) {
               visited.add(copy);
-              if (containsUnsupportedUse(ir, copy, size, vmArray, visited)) {
+              // all uses of the copy are replaced, so it may hold nothing else
+              if (!copy.isSSA() && !summary.isMethodLocal(copy)) {
+                return true;
+              }
+              if (containsUnsupportedUse(ir, copy, size, vmArray, summary, visited)) {
                 return true;
               }
             }
@@ -469,7 +477,11 @@ final class ShortArrayReplacer implements AggregateReplacer {
           Register copy = Move.getResult(use.instruction).getRegister();
           if (!visited.contains(copy)) {
             visited.add(copy);
-            if (containsUnsupportedUse(ir, copy, size, vmArray, visited)) {
+            // all uses of the copy are replaced, so it may hold nothing else
+            if (!copy.isSSA() && !summary.isMethodLocal(copy)) {
+              return true;
+            }
+            if (containsUnsupportedUse(ir, copy, size, vmArray, summary, visited)) {
               return true;
             }
           }
@@ -66,14 +66,9 @@ import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
  * optimizations because those will only be performed when the definition of
  * the object in question is contained in the method that's being compiled.
  * <p>
- * TODO list:
- * <ul>
- *   <li>This would be more effective if formulated as a data-flow problem,
- *    and solved with iteration.</li>
- *   <li>Implement a more powerful analysis that it suitable for general use and
- *    add suitable references</li>
- *   <li>Write a testsuite that demonstrates the capabilities of the analysis</li>
- * </ul>
+ * {@link DataFlowEscape} is a more powerful analysis that is formulated as a
+ * data-flow problem; it reuses the per-use method-locality checks and the
+ * method summaries of this class.
  *
  */
 class SimpleEscape extends CompilerPhase {
@@ -528,7 +523,7 @@ class SimpleEscape extends CompilerPhase {
    * @param visited visited registers
    * @return {@code true} if it may escape, {@code false} otherwise
    */
-  private static boolean checkEscapesMethod(RegisterOperand use, IR ir, Set<Register> visited) {
+  static boolean checkEscapesMethod(RegisterOperand use, IR ir, Set<Register> visited) {
     Instruction inst = use.instruction;
     try {
       switch (inst.getOpcode()) {
@@ -771,7 +766,7 @@ class SimpleEscape extends CompilerPhase {
    *  if it does not exist
    * @return a method summary or {@code null}.
    */
-  private static MethodSummary getMethodSummaryIfAvailable(RVMMethod m, OptOptions options) {
+  static MethodSummary getMethodSummaryIfAvailable(RVMMethod m, OptOptions options) {
     MethodSummary summ = SummaryDatabase.findMethodSummary(m);
     if (summ == null) {
       if (options.ESCAPE_SIMPLE_IPA) {
@@ -73,6 +73,18 @@ final class UnsyncReplacer {
     return new UnsyncReplacer(r, ir.options);
   }
 
+  /**
+   * Generate an instance of this class for a register that only ever
+   * holds thread-local objects.
+   *
+   * @param r the register
+   * @param ir governing ir
+   * @return the object
+   */
+  static UnsyncReplacer getReplacer(Register r, IR ir) {
+    return new UnsyncReplacer(r, ir.options);
+  }
+
   /**
    * Perform the transformation
    */
@@ -100,8 +112,8 @@ final class UnsyncReplacer {
     switch (inst.getOpcode()) {
       case SYSCALL_opcode:
       case CALL_opcode:
-        RegisterOperand invokee = Call.getParam(inst, 0).asRegister();
-        if (invokee == rop) {
+        // the register may also be the result of the call
+        if (Call.getNumberOfParams(inst) > 0 && Call.getParam(inst, 0) == rop) {
           // replace with equivalent call on the synthetic
           // unsynchronized type
           MethodOperand mop = Call.getMethod(inst);
@@ -0,0 +1,220 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.escape;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.NEWARRAY_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.NEW_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.PUTFIELD_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_ASTORE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_MOVE_opcode;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jikesrvm.classloader.RVMArray;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMField;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.compilers.opt.ir.AStore;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.Move;
+import org.jikesrvm.compilers.opt.ir.New;
+import org.jikesrvm.compilers.opt.ir.NewArray;
+import org.jikesrvm.compilers.opt.ir.PutField;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.operand.IntConstantOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.objectmodel.ObjectModel;
+
+/**
+ * Finds the reference stores of a method that need no write barrier
+ * because they store into an object that was just allocated.<p>
+ *
+ * Where the plan's barrier ignores stores into objects that the default
+ * allocator has just placed in the nursery (see
+ * {@link MemoryManager#freshObjectNeedsNoWriteBarrier}), a store needs no
+ * barrier if its target was certainly allocated by such a
+ * <code>NEW</code> or constant-length <code>NEWARRAY</code> and no GC
+ * point lies between the allocation and the store.  Once a collection
+ * may have happened the object may have been promoted, so the barrier is
+ * needed again.<p>
+ *
+ * The analysis is a forward pass over extended basic blocks: a block
+ * with a single, already visited, normal predecessor starts with the
+ * fresh registers its predecessor ended with; any other block starts
+ * with none.  Within a block, allocations and reference moves of fresh
+ * registers add fresh registers, any other definition removes its
+ * register, and any instruction that may be a GC point removes all of
+ * them.  This catches the stores that inlined constructors and array
+ * initializers make, which are the common case.
+ */
+public final class WriteBarrierElision {
+
+  /**
+   * Reference stores examined, over all compilations.  Several compilation
+   * threads may run at once, so the totals are only updated through
+   * {@link #addCounts}.
+   */
+  private static int storesExamined;
+  /** Reference stores found to need no barrier, over all compilations */
+  private static int barriersElided;
+
+  /** Reference stores examined in this method */
+  private int examined;
+
+  /** The registers holding fresh objects at the end of each visited block */
+  private final HashMap<BasicBlock, Set<Register>> freshAtExit = new HashMap<BasicBlock, Set<Register>>();
+
+  /** The stores found to need no barrier */
+  private final Set<Instruction> elided = new HashSet<Instruction>();
+
+  /**
+   * Finds the reference stores in a method's HIR that need no barrier.
+   *
+   * @param ir the IR of the method, before runtime services are expanded
+   * @return the <code>PUTFIELD</code> and <code>REF_ASTORE</code>
+   *  instructions that need no write barrier
+   */
+  public Set<Instruction> analyze(IR ir) {
+    for (BasicBlock bb = ir.firstBasicBlockInCodeOrder(); bb != null; bb = bb.nextBasicBlockInCodeOrder()) {
+      Set<Register> fresh = new HashSet<Register>();
+      if (!bb.isExceptionHandlerBasicBlock() && bb.getNumberOfIn() == 1) {
+        Set<Register> inherited = freshAtExit.get(bb.getIn().nextElement());
+        if (inherited != null) fresh.addAll(inherited);
+      }
+      for (Enumeration<Instruction> e = bb.forwardRealInstrEnumerator(); e.hasMoreElements();) {
+        visit(e.nextElement(), fresh);
+      }
+      freshAtExit.put(bb, fresh);
+    }
+    addCounts(examined, elided.size());
+    return elided;
+  }
+
+  /**
+   * Adds the counts of one method to the totals.
+   *
+   * @param examined the reference stores examined in the method
+   * @param elided the reference stores found to need no barrier
+   */
+  private static synchronized void addCounts(int examined, int elided) {
+    storesExamined += examined;
+    barriersElided += elided;
+  }
+
+  /**
+   * Updates the set of fresh registers across an instruction, recording
+   * the instruction if it is a store that needs no barrier.
+   *
+   * @param inst the instruction
+   * @param fresh the registers holding fresh objects before the instruction
+   */
+  private void visit(Instruction inst, Set<Register> fresh) {
+    switch (inst.getOpcode()) {
+      case PUTFIELD_opcode:
+        if (!PutField.getLocation(inst).getFieldRef().getFieldContentsType().isPrimitiveType()) {
+          RVMField field = PutField.getLocation(inst).getFieldRef().peekResolvedField();
+          recordStore(inst, PutField.getRef(inst), field != null, fresh);
+        }
+        break;
+      case REF_ASTORE_opcode:
+        recordStore(inst, AStore.getArray(inst), true, fresh);
+        break;
+      default:
+        break;
+    }
+
+    if (mayBeGCPoint(inst)) fresh.clear();
+
+    Register moved = null;
+    if (inst.getOpcode() == REF_MOVE_opcode && Move.getVal(inst).isRegister()) {
+      moved = Move.getVal(inst).asRegister().getRegister();
+    }
+    boolean isFresh = (moved != null && fresh.contains(moved)) || allocatesFreshObject(inst);
+    for (Enumeration<Operand> defs = inst.getDefs(); defs.hasMoreElements();) {
+      Operand def = defs.nextElement();
+      if (def instanceof RegisterOperand) {
+        Register reg = ((RegisterOperand) def).getRegister();
+        if (isFresh) {
+          fresh.add(reg);
+        } else {
+          fresh.remove(reg);
+        }
+      }
+    }
+  }
+
+  /**
+   * Records a reference store.
+   *
+   * @param inst the store
+   * @param target the object stored into
+   * @param resolved whether the store can be made without linking
+   * @param fresh the registers holding fresh objects before the store
+   */
+  private void recordStore(Instruction inst, Operand target, boolean resolved, Set<Register> fresh) {
+    examined++;
+    if (resolved && target.isRegister() && fresh.contains(target.asRegister().getRegister())) {
+      elided.add(inst);
+    }
+  }
+
+  /**
+   * @param inst an instruction
+   * @return whether a collection may happen while the instruction executes
+   */
+  private static boolean mayBeGCPoint(Instruction inst) {
+    return inst.isGCPoint() || inst.isCall() || inst.isAllocation() || inst.isYieldPoint() ||
+        inst.isAcquire() || inst.isThrow() || inst.isDynamicLinkingPoint();
+  }
+
+  /**
+   * @param inst an instruction
+   * @return whether the instruction allocates an object whose stores
+   *  need no barrier until the next GC point
+   */
+  private static boolean allocatesFreshObject(Instruction inst) {
+    if (inst.getOpcode() == NEW_opcode) {
+      RVMClass cls = (RVMClass) New.getType(inst).getVMType();
+      RVMMethod site = inst.position().getMethod();
+      return MemoryManager.freshObjectNeedsNoWriteBarrier(MemoryManager.pickAllocator(cls, site),
+          cls.getInstanceSize(), ObjectModel.getAlignment(cls));
+    }
+    if (inst.getOpcode() == NEWARRAY_opcode && NewArray.getSize(inst) instanceof IntConstantOperand) {
+      RVMArray array = (RVMArray) NewArray.getType(inst).getVMType();
+      int length = ((IntConstantOperand) NewArray.getSize(inst)).value;
+      if (length < 0 || length > (Integer.MAX_VALUE >> array.getLogElementSize())) return false;
+      int bytes = ObjectModel.computeArrayHeaderSize(array) + (length << array.getLogElementSize());
+      RVMMethod site = inst.position().getMethod();
+      return MemoryManager.freshObjectNeedsNoWriteBarrier(MemoryManager.pickAllocator(array, site),
+          bytes, ObjectModel.getAlignment(array));
+    }
+    return false;
+  }
+
+  /** @return the number of reference stores examined, over all compilations */
+  public static synchronized int getStoresExamined() {
+    return storesExamined;
+  }
+
+  /** @return the number of write barriers elided, over all compilations */
+  public static synchronized int getBarriersElided() {
+    return barriersElided;
+  }
+}
@@ -43,6 +43,8 @@ import static org.jikesrvm.compilers.opt.ir.Operators.REF_MOVE;
 import static org.jikesrvm.mm.mminterface.Barriers.*;
 
 import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.Set;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.classloader.RVMArray;
@@ -56,6 +58,7 @@ import org.jikesrvm.compilers.opt.OptOptions;
 import org.jikesrvm.compilers.opt.Simple;
 import org.jikesrvm.compilers.opt.controlflow.BranchOptimizations;
 import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.escape.WriteBarrierElision;
 import org.jikesrvm.compilers.opt.inlining.InlineDecision;
 import org.jikesrvm.compilers.opt.inlining.Inliner;
 import org.jikesrvm.compilers.opt.ir.ALoad;
@@ -105,6 +108,8 @@ public final class ExpandRuntimeServices extends CompilerPhase {
   private boolean didSomething = false;
   /** Pointer for next instruction during perform() */
   private Instruction next;
+  /** Reference stores into just allocated objects, which need no write barrier */
+  private Set<Instruction> barrierFree;
 
 
   /**
@@ -136,7 +141,11 @@ public final class ExpandRuntimeServices extends CompilerPhase {
   public void reportAdditionalStats() {
     VM.sysWrite("  ");
     VM.sysWrite(container.counter1 / container.counter2 * 100, 2);
-    VM.sysWrite("% Infrequent RS calls");
+    VM.sysWrite("% Infrequent RS calls, ");
+    VM.sysWrite(WriteBarrierElision.getBarriersElided());
+    VM.sysWrite(" of ");
+    VM.sysWrite(WriteBarrierElision.getStoresExamined());
+    VM.sysWrite(" reference store barriers elided");
   }
 
   /**
@@ -150,6 +159,13 @@ public final class ExpandRuntimeServices extends CompilerPhase {
   public void perform(IR ir) {
     ir.getGc().resync(); // resync generation context -- yuck...
 
+    if ((NEEDS_OBJECT_PUTFIELD_BARRIER || NEEDS_OBJECT_ASTORE_BARRIER) &&
+        ir.options.H2L_ELIDE_INITIALIZING_WRITE_BARRIER) {
+      barrierFree = new WriteBarrierElision().analyze(ir);
+    } else {
+      barrierFree = Collections.emptySet();
+    }
+
     for (Instruction inst = ir.firstInstructionInCodeOrder(); inst != null; inst = next) {
       next = inst.nextInstructionInCodeOrder();
       int opcode = inst.getOpcode();
@@ -204,20 +220,41 @@ public final class ExpandRuntimeServices extends CompilerPhase {
             inst.insertBefore(Move.create(REF_MOVE, tmp, tib));
             tib = tmp.copyRO();
           }
-          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(true));
-          RVMMethod target = Entrypoints.resolvedNewScalarMethod;
-          Call.mutate7(inst,
-                       CALL,
-                       New.getClearResult(inst),
-                       IRTools.AC(target.getOffset()),
-                       MethodOperand.STATIC(target),
-                       IRTools.IC(cls.getInstanceSize()),
-                       tib,
-                       hasFinalizer,
-                       allocator,
-                       align,
-                       offset,
-                       site);
+          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(cls, callSite));
+          int sizeClass = ir.options.H2L_INLINE_NEW ?
+              MemoryManager.getAllocationSizeClass(allocator.value, cls.getInstanceSize(), align.value) : -1;
+          if (sizeClass >= 0) {
+            // The size class is fixed, so the inlined sequence pops its free list
+            // directly; a nursery site pretenured at run time pops the same list
+            RVMMethod target = Entrypoints.resolvedNewScalarInSizeClassMethod;
+            Call.mutate8(inst,
+                         CALL,
+                         New.getClearResult(inst),
+                         IRTools.AC(target.getOffset()),
+                         MethodOperand.STATIC(target),
+                         IRTools.IC(cls.getInstanceSize()),
+                         tib,
+                         hasFinalizer,
+                         allocator,
+                         align,
+                         offset,
+                         site,
+                         IRTools.IC(sizeClass));
+          } else {
+            RVMMethod target = Entrypoints.resolvedNewScalarMethod;
+            Call.mutate7(inst,
+                         CALL,
+                         New.getClearResult(inst),
+                         IRTools.AC(target.getOffset()),
+                         MethodOperand.STATIC(target),
+                         IRTools.IC(cls.getInstanceSize()),
+                         tib,
+                         hasFinalizer,
+                         allocator,
+                         align,
+                         offset,
+                         site);
+          }
           next = inst.prevInstructionInCodeOrder();
           if (ir.options.H2L_INLINE_NEW) {
             if (inst.getBasicBlock().getInfrequent()) container.counter1++;
@@ -261,21 +298,50 @@ public final class ExpandRuntimeServices extends CompilerPhase {
             inst.insertBefore(Move.create(REF_MOVE, tmp, tib));
             tib = tmp.copyRO();
           }
-          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(true));
-          RVMMethod target = Entrypoints.resolvedNewArrayMethod;
-          Call.mutate8(inst,
-                       CALL,
-                       NewArray.getClearResult(inst),
-                       IRTools.AC(target.getOffset()),
-                       MethodOperand.STATIC(target),
-                       numberElements,
-                       width,
-                       headerSize,
-                       tib,
-                       allocator,
-                       align,
-                       offset,
-                       site);
+          IntConstantOperand site = IRTools.IC(MemoryManager.getAllocationSite(array, callSite));
+          int sizeClass = -1;
+          long size = 0;
+          if (inline && ir.options.H2L_INLINE_NEW) {
+            int length = ((IntConstantOperand) numberElements).value;
+            size = ((long) length << array.getLogElementSize()) + ObjectModel.computeArrayHeaderSize(array);
+            if (length >= 0 && size <= Integer.MAX_VALUE) {
+              sizeClass = MemoryManager.getAllocationSizeClass(allocator.value, (int) size, align.value);
+            }
+          }
+          if (sizeClass >= 0) {
+            // The length and so the size class are fixed, so the inlined
+            // sequence pops the size class's free list directly; a nursery
+            // site pretenured at run time pops the same list
+            RVMMethod target = Entrypoints.resolvedNewArrayInSizeClassMethod;
+            Call.mutate8(inst,
+                         CALL,
+                         NewArray.getClearResult(inst),
+                         IRTools.AC(target.getOffset()),
+                         MethodOperand.STATIC(target),
+                         numberElements,
+                         IRTools.IC((int) size),
+                         tib,
+                         allocator,
+                         align,
+                         offset,
+                         site,
+                         IRTools.IC(sizeClass));
+          } else {
+            RVMMethod target = Entrypoints.resolvedNewArrayMethod;
+            Call.mutate8(inst,
+                         CALL,
+                         NewArray.getClearResult(inst),
+                         IRTools.AC(target.getOffset()),
+                         MethodOperand.STATIC(target),
+                         numberElements,
+                         width,
+                         headerSize,
+                         tib,
+                         allocator,
+                         align,
+                         offset,
+                         site);
+          }
           next = inst.prevInstructionInCodeOrder();
           if (inline && ir.options.H2L_INLINE_NEW) {
             if (inst.getBasicBlock().getInfrequent()) container.counter1++;
@@ -422,7 +488,7 @@ public final class ExpandRuntimeServices extends CompilerPhase {
         break;
 
         case REF_ASTORE_opcode: {
-          if (NEEDS_OBJECT_ASTORE_BARRIER) {
+          if (NEEDS_OBJECT_ASTORE_BARRIER && !barrierFree.contains(inst)) {
             RVMMethod target = Entrypoints.objectArrayWriteBarrierMethod;
             Instruction wb =
                 Call.create3(CALL,
@@ -511,7 +577,7 @@ public final class ExpandRuntimeServices extends CompilerPhase {
             if (!fieldRef.getFieldContentsType().isPrimitiveType()) {
               // reference PUTFIELD
               RVMField field = fieldRef.peekResolvedField();
-              if (field == null || !field.isUntraced()) {
+              if ((field == null || !field.isUntraced()) && !barrierFree.contains(inst)) {
                 RVMMethod target = Entrypoints.objectFieldWriteBarrierMethod;
                 Instruction wb =
                     Call.create4(CALL,
@@ -52,7 +52,9 @@ import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.Plan;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.Memory;
+import org.mmtk.utility.Telemetry;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.alloc.PretenureAdvisor;
 import org.mmtk.utility.gcspy.GCspy;
 import org.mmtk.utility.heap.HeapGrowthManager;
 import org.mmtk.utility.heap.layout.HeapLayout;
@@ -264,6 +266,14 @@ public final class MemoryManager {
     Selected.Plan.handleUserCollectionRequest();
   }
 
+  /**
+   * Writes the collection telemetry recorded since the last write to the
+   * telemetry file.  Does nothing unless telemetry is enabled.
+   */
+  public static void writeTelemetry() {
+    Telemetry.flush();
+  }
+
   /****************************************************************************
    *
    * Check references, log information about references
@@ -349,6 +359,42 @@ public final class MemoryManager {
     return Plan.getAllocationSite(compileTime);
   }
 
+  /**
+   * Return a new allocation site for an allocation being compiled, and
+   * register a key for it that identifies the site across runs so that
+   * pretenuring advice can be persisted.
+   *
+   * @param type the type of the object to be allocated
+   * @param method the method requesting the allocation
+   * @return an allocation site
+   */
+  @Interruptible
+  public static int getAllocationSite(RVMType type, RVMMethod method) {
+    int site = Plan.getAllocationSite(true);
+    if (method != null) {
+      PretenureAdvisor.registerSite(site, allocationSiteKey(type, method));
+    }
+    return site;
+  }
+
+  /**
+   * Compute the key that identifies the allocations of a type by a
+   * method across runs.  The key depends only on names, never on ids
+   * assigned at run time.
+   *
+   * @param type the type of the object to be allocated
+   * @param method the method requesting the allocation
+   * @return a non-zero key
+   */
+  @Interruptible
+  private static int allocationSiteKey(RVMType type, RVMMethod method) {
+    int key = type.getDescriptor().hashCode();
+    key = 31 * key + method.getDeclaringClass().getDescriptor().hashCode();
+    key = 31 * key + method.getName().hashCode();
+    key = 31 * key + method.getDescriptor().hashCode();
+    return key == 0 ? 1 : key;
+  }
+
   /**
    * Returns the appropriate allocation scheme/area for the given
    * type.  This form is deprecated.  Without the RVMMethod argument,
@@ -433,6 +479,13 @@ public final class MemoryManager {
       if (method.isNonMovingAllocation()) {
         return Plan.ALLOC_NON_MOVING;
       }
+      if (type.getMMAllocator() == Plan.ALLOC_DEFAULT &&
+          PretenureAdvisor.isAdvisedKey(allocationSiteKey(type, method))) {
+        if (traceAllocator) {
+          VM.sysWriteln("PRETENURE");
+        }
+        return PretenureAdvisor.getPretenureAllocator();
+      }
     }
     if (traceAllocator) {
       VM.sysWriteln(type.getMMAllocator());
@@ -440,6 +493,29 @@ public final class MemoryManager {
     return type.getMMAllocator();
   }
 
+  /**
+   * Determines whether stores of references into an object need no write
+   * barrier from when it is allocated until the next GC point.  This holds
+   * when the plan's barrier ignores stores into objects just allocated by
+   * the default allocator, and the allocation cannot be sent to the large
+   * object space.  A plan that pretenures the allocation at run time
+   * remembers the object instead.  Code compiled into the boot image is
+   * never eligible, as the run-time options are not yet known.
+   *
+   * @param allocator the allocator picked for the allocation
+   * @param bytes the size of the object in bytes, including headers
+   * @param align the alignment requested
+   * @return whether the barrier may be omitted on such stores
+   */
+  @Interruptible
+  public static boolean freshObjectNeedsNoWriteBarrier(int allocator, int bytes, int align) {
+    return VM.runningVM &&
+        Selected.Constraints.get().freshDefaultObjectsNeedNoWriteBarrier() &&
+        allocator == Plan.ALLOC_DEFAULT &&
+        Allocator.getMaximumAlignedSize(org.jikesrvm.runtime.Memory.alignUp(bytes, MIN_ALIGNMENT), align) <=
+            Plan.MAX_NON_LOS_COPY_BYTES;
+  }
+
   /**
    * Determine the default allocator to be used for a given type.
    *
@@ -570,6 +646,101 @@ public final class MemoryManager {
     return result;
   }
 
+  /**
+   * Determines the free-list size class that an allocation of a size
+   * known at compile time is, or may be, served from, so that the compiled
+   * site can allocate with {@link #allocateScalarInSizeClass} or
+   * {@link #allocateArrayInSizeClass}.  Code compiled into the boot image
+   * is never eligible, as the run-time options are not yet known.
+   *
+   * @param allocator the allocator picked for the allocation
+   * @param bytes the size of the object in bytes, including headers
+   * @param align the alignment requested
+   * @return the size class, or -1 if the allocation is never served from
+   *  segregated free lists
+   */
+  @Interruptible
+  public static int getAllocationSizeClass(int allocator, int bytes, int align) {
+    if (!VM.runningVM) return -1;
+    return Selected.Plan.get().getAllocationSizeClass(org.jikesrvm.runtime.Memory.alignUp(bytes, MIN_ALIGNMENT),
+        align, allocator);
+  }
+
+  /**
+   * Allocate a scalar object, given the free-list size class determined
+   * at compile time by {@link #getAllocationSizeClass}.
+   *
+   * @param size Size in bytes of the object, including any headers
+   * that need space.
+   * @param tib  Type of the object (pointer to TIB).
+   * @param allocator the allocator the size class was determined for
+   * @param align the alignment requested; must be a power of 2.
+   * @param offset the offset at which the alignment is desired.
+   * @param site allocation site.
+   * @param sizeClass the size class of the object
+   * @return the initialized Object
+   */
+  @Inline
+  public static Object allocateScalarInSizeClass(int size, TIB tib, int allocator, int align, int offset, int site,
+                                                 int sizeClass) {
+    Selected.Mutator mutator = Selected.Mutator.get();
+    Address region = allocateSpaceInSizeClass(mutator, size, align, offset, allocator, site, sizeClass);
+    Object result = ObjectModel.initializeScalar(region, tib, size);
+    mutator.postAlloc(ObjectReference.fromObject(result), ObjectReference.fromObject(tib), size, allocator);
+    return result;
+  }
+
+  /**
+   * Allocate an array object of a length known at compile time, given
+   * the free-list size class determined by {@link #getAllocationSizeClass}.
+   *
+   * @param numElements number of array elements
+   * @param size size in bytes of the array, including its header
+   * @param tib type information block for array object
+   * @param allocator the allocator the size class was determined for
+   * @param align the alignment requested; must be a power of 2.
+   * @param offset the offset at which the alignment is desired.
+   * @param site allocation site.
+   * @param sizeClass the size class of the array
+   * @return array object with header installed and all elements set
+   *         to zero/{@code null}
+   */
+  @Inline
+  public static Object allocateArrayInSizeClass(int numElements, int size, TIB tib, int allocator,
+                                                int align, int offset, int site, int sizeClass) {
+    Selected.Mutator mutator = Selected.Mutator.get();
+    Address region = allocateSpaceInSizeClass(mutator, size, align, offset, allocator, site, sizeClass);
+    Object result = ObjectModel.initializeArray(region, tib, numElements, size);
+    mutator.postAlloc(ObjectReference.fromObject(result), ObjectReference.fromObject(tib), size, allocator);
+    return result;
+  }
+
+  /**
+   * Allocate space for runtime allocation of an object, given its
+   * free-list size class
+   *
+   * @param mutator The mutator instance to be used for this allocation
+   * @param bytes The size of the allocation in bytes
+   * @param align The alignment requested; must be a power of 2.
+   * @param offset The offset at which the alignment is desired.
+   * @param allocator The MMTk allocator to be used
+   * @param site Allocation site.
+   * @param sizeClass The size class to allocate from
+   * @return The first byte of a suitably sized and aligned region of memory.
+   */
+  @Inline
+  private static Address allocateSpaceInSizeClass(Selected.Mutator mutator, int bytes, int align, int offset,
+                                                  int allocator, int site, int sizeClass) {
+    /* MMTk requests must be in multiples of MIN_ALIGNMENT */
+    bytes = org.jikesrvm.runtime.Memory.alignUp(bytes, MIN_ALIGNMENT);
+
+    Address region = mutator.allocInSizeClass(bytes, align, offset, allocator, site, sizeClass);
+
+    if (CHECK_MEMORY_IS_ZEROED) Memory.assertIsZeroed(region, bytes);
+
+    return region;
+  }
+
   /**
    * Allocate space for runtime allocation of an object
    *
@@ -28,7 +28,11 @@ public class MemoryManagerConstants {
   public static final int GC_HEADER_BITS = Selected.Constraints.get().gcHeaderBits();
   /** Number of additional bytes required in the header by the selected plan */
   public static final int GC_HEADER_BYTES = Selected.Constraints.get().gcHeaderWords() << LOG_BYTES_IN_WORD;
-  /** {@code true} if the selected plan requires concurrent worker threads */
+  /**
+   * {@code true} if the selected plan requires concurrent worker threads
+   * whatever the options; a plan may also ask for them once its options
+   * are processed
+   */
   public static final boolean NEEDS_CONCURRENT_WORKERS = Selected.Constraints.get().needsConcurrentWorkers();
   /** {@code true} if the selected plan needs support for generating a GC trace */
   public static final boolean GENERATE_GC_TRACE = Selected.Constraints.get().generateGCTrace();
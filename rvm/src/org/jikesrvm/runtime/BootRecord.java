@@ -156,6 +156,9 @@ public class BootRecord {
   /** size of a virtual memory page in bytes */
   public Extent bytesInPage;
 
+  /** the host platform's value of the madvise advice MADV_DONTNEED */
+  public int madvDontNeed;
+
   @Untraced // because bootloader code must be able to access it
   public AddressArray heapRanges; // [start1, end1, ..., start_k, end_k, -1, -1]
   // C-style termination with sentinel values
@@ -256,16 +259,21 @@ public class BootRecord {
   public Address sysWriteByteIP;
   public Address sysReadBytesIP;
   public Address sysWriteBytesIP;
+  public Address sysOpenFileIP;
+  public Address sysCloseFileIP;
 
   // mmap - memory mapping
   public Address sysMMapIP;
   public Address sysMMapErrnoIP;
   public Address sysMProtectIP;
+  public Address sysMAdviseIP;
+  public Address sysNumaPreferNodeIP;
 
   // threads
   public Address sysNumProcessorsIP;
   public Address sysThreadBindSupportedIP;
   public Address sysThreadBindIP;
+  public Address sysCpuNumaNodeIP;
   public Address sysThreadCreateIP;
   public Address sysThreadYieldIP;
   public Address sysGetThreadIdIP;
@@ -93,6 +93,14 @@ public class Entrypoints {
       getMethod(org.jikesrvm.runtime.RuntimeEntrypoints.class,
                 "resolvedNewArray",
                 "(IIILorg/jikesrvm/objectmodel/TIB;IIII)Ljava/lang/Object;");
+  public static final NormalMethod resolvedNewScalarInSizeClassMethod =
+      getMethod(org.jikesrvm.runtime.RuntimeEntrypoints.class,
+                "resolvedNewScalarInSizeClass",
+                "(ILorg/jikesrvm/objectmodel/TIB;ZIIIII)Ljava/lang/Object;");
+  public static final NormalMethod resolvedNewArrayInSizeClassMethod =
+      getMethod(org.jikesrvm.runtime.RuntimeEntrypoints.class,
+                "resolvedNewArrayInSizeClass",
+                "(IILorg/jikesrvm/objectmodel/TIB;IIIII)Ljava/lang/Object;");
 
   public static final RVMField sysWriteLockField = getField(org.jikesrvm.VM.class, "sysWriteLock", int.class);
   public static final RVMField intBufferLockField =
@@ -498,6 +498,21 @@ public class Memory {
   public static final int MAP_FIXED     = (VM.BuildForLinux) ? 16 : (VM.BuildForOsx) ?     16 : (VM.BuildForSolaris) ? 0x10 : 256;
   public static final int MAP_ANONYMOUS = (VM.BuildForLinux) ? 32 : (VM.BuildForOsx) ? 0x1000 : (VM.BuildForSolaris) ? 0x100 : 16;
 
+  /**
+   * The value of the madvise advice MADV_DONTNEED differs between platforms,
+   * so it is supplied by the bootloader.<p>
+   *
+   * On Linux, private anonymous pages given this advice are released at once
+   * and read back as zero when next touched.  Elsewhere (e.g. OS X and
+   * Solaris) the advice only allows the OS to reclaim the pages, which may
+   * keep their old contents.
+   *
+   * @return the host platform's MADV_DONTNEED
+   */
+  public static int madvDontNeed() {
+    return BootRecord.the_boot_record.madvDontNeed;
+  }
+
   public static boolean isPageMultiple(int val) {
     int pagesizeMask = getPagesize() - 1;
     return ((val & pagesizeMask) == 0);
@@ -562,6 +577,35 @@ public class Memory {
     return SysCall.sysCall.sysMProtect(address, size, prot) == 0;
   }
 
+  /**
+   * Do madvise system call
+   * @param address Start of address range (Address)
+   * @param size Size of address range
+   * @param advice Advice (int)
+   * @return true iff success
+   */
+  public static boolean madvise(Address address, Extent size, int advice) {
+    if (VM.VerifyAssertions) {
+      VM._assert(isPageAligned(address) && isPageMultiple(size));
+    }
+    return SysCall.sysCall.sysMAdvise(address, size, advice) == 0;
+  }
+
+  /**
+   * Prefer a NUMA node for the pages of an address range that are not
+   * yet backed by physical memory.
+   * @param address Start of address range (Address)
+   * @param size Size of address range
+   * @param node The preferred node
+   * @return true iff success
+   */
+  public static boolean preferNumaNode(Address address, Extent size, int node) {
+    if (VM.VerifyAssertions) {
+      VM._assert(isPageAligned(address) && isPageMultiple(size));
+    }
+    return SysCall.sysCall.sysNumaPreferNode(address, size, node) == 0;
+  }
+
   private static int pagesize = UNKNOWN;
   private static int pagesizeLog = UNKNOWN;
 
@@ -554,6 +554,38 @@ public class RuntimeEntrypoints {
                             site);
   }
 
+  /**
+   * Allocate something like "new Foo()" at a compiled site whose free-list
+   * size class was determined at compile time.
+   * @param size size of object (including header), in bytes
+   * @param tib  type information block for object
+   * @param hasFinalizer does this type have a finalizer?
+   * @param allocator int that encodes which allocator should be used
+   * @param align the alignment requested; must be a power of 2.
+   * @param offset the offset at which the alignment is desired.
+   * @param site the site id of the calling allocation site
+   * @param sizeClass the size class of the object
+   * @return object with header installed and all fields set to zero/null
+   *           (ready for initializer to be run on it)
+   * @see MemoryManager#getAllocationSizeClass(int, int, int)
+   */
+  @Entrypoint
+  public static Object resolvedNewScalarInSizeClass(int size, TIB tib, boolean hasFinalizer, int allocator,
+                                                    int align, int offset, int site, int sizeClass)
+      throws OutOfMemoryError {
+
+    // GC stress testing
+    if (VM.ForceFrequentGC) checkAllocationCountDownToGC();
+
+    // Allocate the object and initialize its header
+    Object newObj = MemoryManager.allocateScalarInSizeClass(size, tib, allocator, align, offset, site, sizeClass);
+
+    // Deal with finalization
+    if (hasFinalizer) MemoryManager.addFinalizer(newObj);
+
+    return newObj;
+  }
+
   /**
    * Allocate something like "new int[cnt]" or "new Foo[cnt]".
    * @param numElements number of array elements
@@ -582,6 +614,33 @@ public class RuntimeEntrypoints {
     return MemoryManager.allocateArray(numElements, logElementSize, headerSize, tib, allocator, align, offset, site);
   }
 
+  /**
+   * Allocate something like "new int[8]" at a compiled site whose length,
+   * and so free-list size class, is known at compile time.
+   * @param numElements number of array elements, not negative
+   * @param size size in bytes of the array, including its header
+   * @param tib type information block for array object
+   * @param allocator int that encodes which allocator should be used
+   * @param align the alignment requested; must be a power of 2.
+   * @param offset the offset at which the alignment is desired.
+   * @param site the site id of the calling allocation site
+   * @param sizeClass the size class of the array
+   * @return array object with header installed and all elements set
+   *         to zero/null
+   * @see MemoryManager#getAllocationSizeClass(int, int, int)
+   */
+  @Entrypoint
+  public static Object resolvedNewArrayInSizeClass(int numElements, int size, TIB tib, int allocator,
+                                                   int align, int offset, int site, int sizeClass)
+      throws OutOfMemoryError {
+
+    // GC stress testing
+    if (VM.ForceFrequentGC) checkAllocationCountDownToGC();
+
+    // Allocate the array and initialize its header
+    return MemoryManager.allocateArrayInSizeClass(numElements, size, tib, allocator, align, offset, site, sizeClass);
+  }
+
   /**
    * Clone a Scalar or Array Object.
    * called from java/lang/Object.clone().
@@ -159,6 +159,12 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysWriteBytes(int fd, Address buf, int cnt);
 
+  @SysCallTemplate
+  public abstract int sysOpenFile(byte[] name, int forWriting);
+
+  @SysCallTemplate
+  public abstract int sysCloseFile(int fd);
+
   // mmap - memory mapping
   @SysCallTemplate
   public abstract Address sysMMap(Address start, Extent length, int protection, int flags, int fd, Offset offset);
@@ -169,6 +175,20 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysMProtect(Address start, Extent length, int prot);
 
+  @SysCallTemplate
+  public abstract int sysMAdvise(Address start, Extent length, int advice);
+
+  /**
+   * Asks that pages of a region not yet backed by physical memory be
+   * allocated on a NUMA node.
+   * @param start start of the region
+   * @param length length of the region
+   * @param node the preferred node
+   * @return 0 on success, -1 on failure or if NUMA is not supported
+   */
+  @SysCallTemplate
+  public abstract int sysNumaPreferNode(Address start, Extent length, int node);
+
   // threads
   @SysCallTemplate
   public abstract int sysNumProcessors();
@@ -194,6 +214,13 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract void sysThreadBind(int cpuId);
 
+  /**
+   * @param cpuId a processor
+   * @return the NUMA node of the processor, or -1 if it is not known
+   */
+  @SysCallTemplate
+  public abstract int sysCpuNumaNode(int cpuId);
+
   @SysCallTemplate
   public abstract void sysThreadYield();
 
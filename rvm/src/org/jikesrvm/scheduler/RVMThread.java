@@ -536,6 +536,13 @@ public final class RVMThread extends ThreadContext {
    */
   public boolean yieldToOSRRequested;
 
+  /**
+   * Is this thread inside the optimizing compiler without holding the
+   * RuntimeCompiler lock (i.e. is it one of several concurrent AOS
+   * compilation threads)? Used to detect recursive opt compilation.
+   */
+  public boolean optCompilationInProgress;
+
   /**
    * Is CBS enabled for 'call' yieldpoints?
    */
@@ -0,0 +1,263 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.escape;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.NEWARRAY_opcode;
+import static org.jikesrvm.tests.util.TestingTools.buildHIR;
+import static org.jikesrvm.tests.util.TestingTools.getInstructionsWithOpcode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.NewArray;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.RequiresOptCompiler;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+
+@RunWith(VMRequirements.class)
+@Category({RequiresBuiltJikesRVM.class, RequiresOptCompiler.class})
+public class DataFlowEscapeTest {
+
+  public static Object sink;
+
+  private IR ir;
+
+  private FI_EscapeSummary summary;
+
+  private void analyze(String methodName, Class<?>... argumentTypes) throws Exception {
+    ir = buildHIR(DataFlowEscapeTest.class, methodName, argumentTypes);
+    summary = new DataFlowEscape().analyze(ir);
+  }
+
+  private List<Register> arrayAllocations() {
+    List<Register> allocations = new ArrayList<Register>();
+    for (Instruction s : getInstructionsWithOpcode(ir, NEWARRAY_opcode)) {
+      allocations.add(NewArray.getResult(s).getRegister());
+    }
+    return allocations;
+  }
+
+  private Register onlyArrayAllocation() {
+    List<Register> allocations = arrayAllocations();
+    assertEquals(1, allocations.size());
+    return allocations.get(0);
+  }
+
+  /** The allocation of the n-th array in bytecode order */
+  private Register arrayAllocation(int n) {
+    return arrayAllocations().get(n);
+  }
+
+  public static int arrayUsedLocally(int x) {
+    int[] a = new int[2];
+    a[0] = x;
+    return a[0];
+  }
+
+  @Test
+  public void arraysThatAreOnlyReadAndWrittenAreMethodLocal() throws Exception {
+    analyze("arrayUsedLocally", int.class);
+    Register a = onlyArrayAllocation();
+    assertTrue(summary.isThreadLocal(a));
+    assertTrue(summary.isMethodLocal(a));
+  }
+
+  public static int arrayCopiedInTwoScopes(int x) {
+    int[] a = new int[2];
+    {
+      int[] b = a;
+      b[0] = x;
+    }
+    {
+      int[] c = a;
+      c[1] = x;
+    }
+    return a[0] + a[1];
+  }
+
+  @Test
+  public void arraysCopiedIntoReusedLocalsAreScalarReplaced() throws Exception {
+    analyze("arrayCopiedInTwoScopes", int.class);
+    Register a = onlyArrayAllocation();
+    // b and c share a local variable slot, so the copies are not in SSA form
+    assertTrue(summary.isMethodLocal(a));
+    assertFalse(new SimpleEscape().simpleEscapeAnalysis(ir).isMethodLocal(a));
+    ShortArrayReplacer replacer = ShortArrayReplacer.getReplacer(a.defList.instruction, ir, summary);
+    assertNotNull(replacer);
+    replacer.transform();
+    assertTrue(arrayAllocations().isEmpty());
+  }
+
+  public static int arrayMaybeNullInReusedLocal(boolean b) {
+    int[] a = new int[2];
+    {
+      int[] c = a;
+      c[0] = 1;
+    }
+    {
+      int[] c = b ? a : null;
+      c[1] = 2;
+    }
+    return a[0];
+  }
+
+  @Test
+  public void arraysCopiedIntoLocalsThatMayHoldNullAreNotMethodLocal() throws Exception {
+    analyze("arrayMaybeNullInReusedLocal", boolean.class);
+    Register a = onlyArrayAllocation();
+    assertTrue(summary.isThreadLocal(a));
+    assertFalse(summary.isMethodLocal(a));
+  }
+
+  public static Object arrayReturned() {
+    return new Object[1];
+  }
+
+  @Test
+  public void returnedArraysAreThreadLocalButNotMethodLocal() throws Exception {
+    analyze("arrayReturned");
+    Register a = onlyArrayAllocation();
+    assertTrue(summary.isThreadLocal(a));
+    assertFalse(summary.isMethodLocal(a));
+    assertFalse(SummaryDatabase.findMethodSummary(ir.method).resultMayEscapeThread());
+  }
+
+  public static void arrayStoredInStatic() {
+    sink = new Object[1];
+  }
+
+  @Test
+  public void arraysStoredInStaticsEscape() throws Exception {
+    analyze("arrayStoredInStatic");
+    assertFalse(summary.isThreadLocal(onlyArrayAllocation()));
+  }
+
+  public static int arrayStoredInLocalArray() {
+    Object[] outer = new Object[1];
+    outer[0] = new int[1];
+    return outer.length;
+  }
+
+  @Test
+  public void arraysStoredInLocalArraysStayThreadLocal() throws Exception {
+    analyze("arrayStoredInLocalArray");
+    Register inner = arrayAllocation(1);
+    assertTrue(summary.isThreadLocal(inner));
+    // the flow-insensitive analysis gives up at the store
+    assertFalse(new SimpleEscape().simpleEscapeAnalysis(ir).isThreadLocal(inner));
+  }
+
+  public static void arrayPublishedThroughLocalArray() {
+    Object[] outer = new Object[1];
+    outer[0] = new int[1];
+    sink = outer;
+  }
+
+  @Test
+  public void contentsOfEscapingArraysEscape() throws Exception {
+    analyze("arrayPublishedThroughLocalArray");
+    assertFalse(summary.isThreadLocal(arrayAllocation(0)));
+    assertFalse(summary.isThreadLocal(arrayAllocation(1)));
+  }
+
+  public static void arrayLoadedBackAndPublished() {
+    Object[] outer = new Object[1];
+    outer[0] = new int[1];
+    sink = outer[0];
+  }
+
+  @Test
+  public void arraysLoadedBackFromLocalArraysAreStillTracked() throws Exception {
+    analyze("arrayLoadedBackAndPublished");
+    assertTrue(summary.isThreadLocal(arrayAllocation(0)));
+    assertFalse(summary.isThreadLocal(arrayAllocation(1)));
+  }
+
+  public static void arrayStoredIntoParameter(Object[] p) {
+    p[0] = new int[1];
+  }
+
+  @Test
+  public void arraysStoredIntoParametersEscape() throws Exception {
+    analyze("arrayStoredIntoParameter", Object[].class);
+    assertFalse(summary.isThreadLocal(onlyArrayAllocation()));
+  }
+
+  public static int mergedAllocations(boolean b) {
+    Object[] a = b ? new Object[1] : new Object[2];
+    synchronized (a) {
+      return a.length;
+    }
+  }
+
+  @Test
+  public void mergedAllocationsStayThreadLocal() throws Exception {
+    analyze("mergedAllocations", boolean.class);
+    assertTrue(summary.isThreadLocal(arrayAllocation(0)));
+    assertTrue(summary.isThreadLocal(arrayAllocation(1)));
+  }
+
+  public static int allocationMergedWithParameter(boolean b, Object[] p) {
+    Object[] a = b ? new Object[1] : p;
+    synchronized (a) {
+      return a.length;
+    }
+  }
+
+  @Test
+  public void allocationsMergedWithParametersAreNotThreadLocal() throws Exception {
+    analyze("allocationMergedWithParameter", boolean.class, Object[].class);
+    assertFalse(summary.isThreadLocal(onlyArrayAllocation()));
+  }
+
+  public static int parameterOnlyRead(Object[] p) {
+    return p.length;
+  }
+
+  @Test
+  public void parametersThatAreOnlyReadDoNotEscapeInTheSummary() throws Exception {
+    analyze("parameterOnlyRead", Object[].class);
+    assertFalse(SummaryDatabase.findMethodSummary(ir.method).parameterMayEscapeThread(0));
+  }
+
+  public static void parameterStoredInStatic(Object[] p) {
+    sink = p;
+  }
+
+  @Test
+  public void parametersStoredInStaticsEscapeInTheSummary() throws Exception {
+    analyze("parameterStoredInStatic", Object[].class);
+    assertTrue(SummaryDatabase.findMethodSummary(ir.method).parameterMayEscapeThread(0));
+  }
+
+  public static Object parameterContentsReturned(Object[] p) {
+    return p[0];
+  }
+
+  @Test
+  public void resultsLoadedFromParametersEscapeInTheSummary() throws Exception {
+    analyze("parameterContentsReturned", Object[].class);
+    assertTrue(SummaryDatabase.findMethodSummary(ir.method).resultMayEscapeThread());
+  }
+
+}
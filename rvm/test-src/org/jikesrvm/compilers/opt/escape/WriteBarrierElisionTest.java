@@ -0,0 +1,149 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.escape;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_ASTORE_opcode;
+import static org.jikesrvm.tests.util.TestingTools.buildHIR;
+import static org.jikesrvm.tests.util.TestingTools.getInstructionsWithOpcode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.Set;
+
+import org.jikesrvm.classloader.RVMArray;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.RequiresOptCompiler;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mmtk.plan.Plan;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.NonMovingAllocation;
+
+/**
+ * Stores are only elided when the selected plan's barrier ignores stores
+ * into fresh objects of the default allocator; for other plans nothing is
+ * ever elided.
+ */
+@RunWith(VMRequirements.class)
+@Category({RequiresBuiltJikesRVM.class, RequiresOptCompiler.class})
+public class WriteBarrierElisionTest {
+
+  private IR ir;
+
+  private Set<Instruction> elided;
+
+  private void analyze(String methodName, Class<?>... argumentTypes) throws Exception {
+    ir = buildHIR(WriteBarrierElisionTest.class, methodName, argumentTypes);
+    elided = new WriteBarrierElision().analyze(ir);
+  }
+
+  private Instruction onlyReferenceArrayStore() {
+    List<Instruction> stores = getInstructionsWithOpcode(ir, REF_ASTORE_opcode);
+    assertEquals(1, stores.size());
+    return stores.get(0);
+  }
+
+  private static boolean freshObjectArraysNeedNoBarrier() {
+    RVMArray array = JikesRVMSupport.getTypeForClass(Object[].class).asArray();
+    int bytes = ObjectModel.computeArrayHeaderSize(array) + (2 << array.getLogElementSize());
+    return MemoryManager.freshObjectNeedsNoWriteBarrier(Plan.ALLOC_DEFAULT, bytes, ObjectModel.getAlignment(array));
+  }
+
+  @NoInline
+  public static void opaque() { }
+
+  public static Object[] storeRightAfterAllocation(Object o) {
+    Object[] a = new Object[2];
+    a[0] = o;
+    return a;
+  }
+
+  @Test
+  public void storesRightAfterAnAllocationNeedNoBarrierIfThePlanAllows() throws Exception {
+    analyze("storeRightAfterAllocation", Object.class);
+    boolean expected = freshObjectArraysNeedNoBarrier();
+    assertEquals(expected, elided.contains(onlyReferenceArrayStore()));
+    assertEquals(expected ? 1 : 0, elided.size());
+  }
+
+  public static Object[] storeAfterCall(Object o) {
+    Object[] a = new Object[2];
+    opaque();
+    a[0] = o;
+    return a;
+  }
+
+  @Test
+  public void storesAfterACallKeepTheBarrier() throws Exception {
+    analyze("storeAfterCall", Object.class);
+    assertFalse(elided.contains(onlyReferenceArrayStore()));
+  }
+
+  public static Object[] storeAfterAnotherAllocation(Object o) {
+    Object[] a = new Object[2];
+    Object[] b = new Object[2];
+    a[0] = o;
+    return b;
+  }
+
+  @Test
+  public void storesAfterAnotherAllocationKeepTheBarrier() throws Exception {
+    analyze("storeAfterAnotherAllocation", Object.class);
+    assertFalse(elided.contains(onlyReferenceArrayStore()));
+  }
+
+  public static Object[] storeIntoMergedAllocations(boolean b, Object o) {
+    Object[] a = b ? new Object[1] : new Object[2];
+    a[0] = o;
+    return a;
+  }
+
+  @Test
+  public void storesIntoObjectsFromSeveralPredecessorsKeepTheBarrier() throws Exception {
+    analyze("storeIntoMergedAllocations", boolean.class, Object.class);
+    assertFalse(elided.contains(onlyReferenceArrayStore()));
+  }
+
+  public static Object[] storeIntoLargeObject(Object o) {
+    Object[] a = new Object[1 << 20];
+    a[0] = o;
+    return a;
+  }
+
+  @Test
+  public void storesIntoLargeObjectsKeepTheBarrier() throws Exception {
+    analyze("storeIntoLargeObject", Object.class);
+    assertFalse(elided.contains(onlyReferenceArrayStore()));
+  }
+
+  @NonMovingAllocation
+  public static Object[] storeIntoNonNurseryObject(Object o) {
+    Object[] a = new Object[2];
+    a[0] = o;
+    return a;
+  }
+
+  @Test
+  public void storesIntoObjectsNotAllocatedByTheDefaultAllocatorKeepTheBarrier() throws Exception {
+    analyze("storeIntoNonNurseryObject", Object.class);
+    assertFalse(elided.contains(onlyReferenceArrayStore()));
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mmtk.vm.ReferenceProcessor.Semantics;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * The referents are kept strongly reachable by {@link #referents}, so the
+ * collector never enqueues the references itself.
+ */
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class ReferenceProcessorTest {
+
+  private static final int THREADS = 4;
+
+  private static final int REFERENCES_PER_THREAD = 10000;
+
+  private final Object[] referents = new Object[THREADS * REFERENCES_PER_THREAD];
+
+  private final ReferenceProcessor processor = ReferenceProcessor.get(Semantics.WEAK);
+
+  @Test
+  public void concurrentEnqueuesOntoOneQueueAreAllKept() throws InterruptedException {
+    final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    final WeakReference<?>[] references = new WeakReference<?>[referents.length];
+    for (int i = 0; i < referents.length; i++) {
+      referents[i] = new Object();
+      references[i] = new WeakReference<Object>(referents[i], queue);
+    }
+
+    final boolean[] enqueued = new boolean[referents.length];
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int first = t * REFERENCES_PER_THREAD;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = first; i < first + REFERENCES_PER_THREAD; i++) {
+            enqueued[i] = processor.enqueueReference(ObjectReference.fromObject(references[i]));
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (int i = 0; i < referents.length; i++) {
+      assertTrue("reference " + i, enqueued[i]);
+    }
+    int polled = 0;
+    while (queue.poll() != null) {
+      polled++;
+    }
+    assertEquals(referents.length, polled);
+  }
+
+  @Test
+  public void aReferenceIsOnlyEnqueuedOnce() {
+    ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    referents[0] = new Object();
+    WeakReference<Object> reference = new WeakReference<Object>(referents[0], queue);
+    assertTrue(processor.enqueueReference(ObjectReference.fromObject(reference)));
+    assertFalse(processor.enqueueReference(ObjectReference.fromObject(reference)));
+    assertTrue(queue.poll() == reference);
+    assertTrue(queue.poll() == null);
+  }
+}
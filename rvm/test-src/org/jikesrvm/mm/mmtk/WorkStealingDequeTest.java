@@ -0,0 +1,165 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.mm.mmtk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.jikesrvm.junit.runners.RequiresBuiltJikesRVM;
+import org.jikesrvm.junit.runners.VMRequirements;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mmtk.plan.Plan;
+import org.mmtk.utility.deque.WorkStealingDeque;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * The deque keeps references in raw memory that the collector does not
+ * scan, so the entries are non-moving arrays holding their own index,
+ * kept alive by {@link #objects}.
+ */
+@RunWith(VMRequirements.class)
+@Category(RequiresBuiltJikesRVM.class)
+public class WorkStealingDequeTest {
+
+  private static final int OBJECTS = 1024;
+
+  private static final int THIEVES = 3;
+
+  private int[][] objects;
+
+  private WorkStealingDeque deque;
+
+  @Before
+  public void setUp() {
+    objects = new int[OBJECTS][];
+    for (int i = 0; i < OBJECTS; i++) {
+      objects[i] = MemoryManager.newNonMovingIntArray(1);
+      objects[i][0] = i;
+    }
+    deque = new WorkStealingDeque(Plan.metaDataSpace, null);
+    deque.prepare();
+  }
+
+  private ObjectReference entry(int i) {
+    return ObjectReference.fromObject(objects[i % OBJECTS]);
+  }
+
+  private static int indexOf(ObjectReference object) {
+    return ((int[]) object.toObject())[0];
+  }
+
+  @Test
+  public void popReturnsTheLastEntryPushed() {
+    assertTrue(deque.push(entry(0)));
+    assertTrue(deque.push(entry(1)));
+    assertTrue(deque.push(entry(2)));
+    assertEquals(2, indexOf(deque.pop()));
+    assertEquals(1, indexOf(deque.pop()));
+    assertEquals(0, indexOf(deque.pop()));
+    assertTrue(deque.pop().isNull());
+    assertTrue(deque.isEmpty());
+  }
+
+  @Test
+  public void stealReturnsTheFirstEntryPushed() {
+    assertTrue(deque.push(entry(0)));
+    assertTrue(deque.push(entry(1)));
+    assertEquals(0, indexOf(deque.steal()));
+    assertEquals(1, indexOf(deque.pop()));
+    assertTrue(deque.steal().isNull());
+  }
+
+  @Test
+  public void pushFailsOnceTheDequeIsFullAndSucceedsAfterAPop() {
+    int pushed = 0;
+    while (deque.push(entry(pushed))) {
+      pushed++;
+      assertTrue("deque never filled", pushed <= OBJECTS * OBJECTS);
+    }
+    assertTrue(pushed > 0);
+    assertFalse(deque.push(entry(0)));
+    assertEquals((pushed - 1) % OBJECTS, indexOf(deque.pop()));
+    assertTrue(deque.push(entry(0)));
+    int popped = 0;
+    while (!deque.pop().isNull()) {
+      popped++;
+    }
+    assertEquals(pushed, popped);
+  }
+
+  @Test
+  public void concurrentPopsAndStealsTakeEachEntryExactlyOnce() throws InterruptedException {
+    final int rounds = 200;
+    final int[][] taken = new int[THIEVES + 1][OBJECTS];
+    final boolean[] done = new boolean[1];
+    Thread[] thieves = new Thread[THIEVES];
+    for (int t = 0; t < THIEVES; t++) {
+      final int[] mine = taken[t + 1];
+      thieves[t] = new Thread() {
+        @Override
+        public void run() {
+          while (true) {
+            ObjectReference object = deque.steal();
+            if (!object.isNull()) {
+              mine[indexOf(object)]++;
+            } else if (isDone(done) && deque.isEmpty()) {
+              return;
+            }
+          }
+        }
+      };
+      thieves[t].start();
+    }
+
+    // Owner: push everything, popping as well to contend for the bottom
+    for (int i = 0; i < rounds * OBJECTS; i++) {
+      while (!deque.push(entry(i))) {
+        popInto(taken[0]);
+      }
+      if (i % 3 == 0) popInto(taken[0]);
+    }
+    while (popInto(taken[0])) { }
+    setDone(done);
+    for (Thread thief : thieves) {
+      thief.join();
+    }
+
+    for (int i = 0; i < OBJECTS; i++) {
+      int total = 0;
+      for (int[] t : taken) {
+        total += t[i];
+      }
+      assertEquals("entry " + i, rounds, total);
+    }
+  }
+
+  private boolean popInto(int[] taken) {
+    ObjectReference object = deque.pop();
+    if (object.isNull()) return false;
+    taken[indexOf(object)]++;
+    return true;
+  }
+
+  private static synchronized boolean isDone(boolean[] done) {
+    return done[0];
+  }
+
+  private static synchronized void setDone(boolean[] done) {
+    done[0] = true;
+  }
+}
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 
 import org.jikesrvm.classloader.NormalMethod;
@@ -28,6 +29,9 @@ import org.jikesrvm.classloader.RVMClass;
 import org.jikesrvm.classloader.RVMField;
 import org.jikesrvm.classloader.RVMMethod;
 import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.bc2ir.ConvertBCtoHIR;
+import org.jikesrvm.compilers.opt.inlining.DefaultInlineOracle;
 import org.jikesrvm.compilers.opt.inlining.InlineSequence;
 import org.jikesrvm.compilers.opt.ir.BasicBlock;
 import org.jikesrvm.compilers.opt.ir.Call;
@@ -113,6 +117,24 @@ public class TestingTools {
     epilogue.insertOut(exit);
   }
 
+  public static IR buildHIR(Class<?> declaringClass, String name, Class<?>... argumentTypes) throws Exception {
+    NormalMethod nm = getNormalMethod(declaringClass, name, argumentTypes);
+    IR ir = new IR(nm, new DefaultInlineOracle(), new OptOptions());
+    new ConvertBCtoHIR().perform(ir);
+    return ir;
+  }
+
+  public static List<Instruction> getInstructionsWithOpcode(IR ir, char opcode) {
+    List<Instruction> instructions = new ArrayList<Instruction>();
+    for (Enumeration<Instruction> e = ir.forwardInstrEnumerator(); e.hasMoreElements();) {
+      Instruction s = e.nextElement();
+      if (s.getOpcode() == opcode) {
+        instructions.add(s);
+      }
+    }
+    return instructions;
+  }
+
   public static RVMField getRVMFieldForField(Field field) {
     return JikesRVMSupport.getFieldOf(field);
   }
@@ -0,0 +1,62 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.harness;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BenchmarkTest {
+
+  @Test
+  public void testPercentileEmpty() {
+    assertEquals(0, Benchmark.percentile(new ArrayList<Long>(), 50));
+  }
+
+  @Test
+  public void testPercentileNearestRank() {
+    List<Long> values = new ArrayList<Long>();
+    for (long i = 1; i <= 100; i++) {
+      values.add(i);
+    }
+    assertEquals(50, Benchmark.percentile(values, 50));
+    assertEquals(90, Benchmark.percentile(values, 90));
+    assertEquals(99, Benchmark.percentile(values, 99));
+    assertEquals(100, Benchmark.percentile(values, 100));
+  }
+
+  @Test
+  public void testResultAggregation() {
+    Benchmark.Result result = new Benchmark.Result("Test", "GenMS", 4096, 1);
+    result.add("elapsed=3000000000 allocated=2097152 pauses=1000000,3000000");
+    result.add("elapsed=1000000000 allocated=1048576 pauses=2000000");
+    assertEquals(2, result.runs);
+    assertEquals(1.5, result.meanGcCount(), 1e-9);
+    assertEquals(3.0, result.meanGcTimeMs(), 1e-9);
+    assertEquals(3.0, result.maxPauseMs(), 1e-9);
+    assertEquals(2.0, result.pausePercentileMs(50), 1e-9);
+    assertEquals(1.5, result.meanAllocatedMB(), 1e-9);
+  }
+
+  @Test
+  public void testResultNoPauses() {
+    Benchmark.Result result = new Benchmark.Result("Test", "GenMS", 4096, 1);
+    result.add("elapsed=1000000000 allocated=1048576 pauses=");
+    assertEquals(0.0, result.meanGcCount(), 1e-9);
+    assertEquals(0.0, result.maxPauseMs(), 1e-9);
+    assertEquals(1.0, result.meanThroughputMBs(), 1e-6);
+  }
+}
@@ -441,6 +441,7 @@ int createVM(int vmInSeparateThread)
   bootRecord->verboseBoot      = verboseBoot;
   bootRecord->verboseSignalHandling = verboseSignalHandling;
   bootRecord->bytesInPage = pageSize;
+  bootRecord->madvDontNeed = MADV_DONTNEED;
 
   /* write syscall linkage information into boot record */
   setLinkage(bootRecord);
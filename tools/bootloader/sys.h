@@ -170,6 +170,8 @@ EXTERNAL int sysReadByte(int fd);
 EXTERNAL int sysWriteByte(int fd, int data);
 EXTERNAL int sysReadBytes(int fd, char *buf, int cnt);
 EXTERNAL int sysWriteBytes(int fd, char *buf, int cnt);
+EXTERNAL int sysOpenFile(char *name, int forWriting);
+EXTERNAL int sysCloseFile(int fd);
 // sysLibrary
 EXTERNAL void* sysDlopen(char *libname);
 EXTERNAL void* sysDlsym(Address libHandler, char *symbolName);
@@ -223,6 +225,8 @@ EXTERNAL void * sysMMapErrno(char *start , size_t length ,
                              int protection , int flags ,
                              int fd , Offset offset);
 EXTERNAL int sysMProtect(char *start, size_t length, int prot);
+EXTERNAL int sysMAdvise(char *start, size_t length, int advice);
+EXTERNAL int sysNumaPreferNode(char *start, size_t length, int node);
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt);
 EXTERNAL void sysMemmove(void *dst, const void *src, Extent cnt);
 EXTERNAL void sysSyncCache(void *address, size_t size);
@@ -299,6 +303,7 @@ EXTERNAL void sysCreateThreadSpecificDataKeys(void);
 EXTERNAL void sysStashVMThread(Address vmThread);
 EXTERNAL int sysThreadBindSupported();
 EXTERNAL void sysThreadBind(int cpuId);
+EXTERNAL int sysCpuNumaNode(int cpuId);
 EXTERNAL void * sysThreadStartup(void *args);
 EXTERNAL Word sysGetThreadId();
 EXTERNAL void sysThreadTerminate();
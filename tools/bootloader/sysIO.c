@@ -14,6 +14,7 @@
 #include "sys.h"
 
 #include <errno.h>
+#include <fcntl.h> // open
 #include <string.h> // strerror
 #include <unistd.h> // read, close, fsync, ...
 
@@ -135,3 +136,34 @@ EXTERNAL int sysWriteBytes(int fd, char *buf, int cnt)
     }
   }
 }
+
+/**
+ * Opens a file for reading or for writing.
+ * Taken:     null-terminated file name
+ *            0 to open for reading, 1 to create or truncate for writing
+ * Returned:  file descriptor (-1: error)
+ */
+EXTERNAL int sysOpenFile(char *name, int forWriting)
+{
+  TRACE_PRINTF("%s: sysOpenFile %s %d\n", Me, name, forWriting);
+  int flags = forWriting ? (O_WRONLY | O_CREAT | O_TRUNC) : O_RDONLY;
+  int rc = open(name, flags, 0644);
+  if (rc < 0) {
+    int err = errno;
+    ERROR_PRINTF("%s: open error %d (%s) on %s\n", Me,
+                 err, strerror( err ), name);
+    return -1;
+  }
+  return rc;
+}
+
+/**
+ * Closes a file opened with sysOpenFile.
+ * Taken:     file descriptor
+ * Returned:  0 on success, -1 on error
+ */
+EXTERNAL int sysCloseFile(int fd)
+{
+  TRACE_PRINTF("%s: sysCloseFile %d\n", Me, fd);
+  return close(fd);
+}
@@ -17,6 +17,10 @@
 #include <errno.h> // error numbers
 #include <string.h> // memcpy & memmove
 #include <sys/mman.h> // mmap
+#ifdef RVM_FOR_LINUX
+#  include <sys/syscall.h> // SYS_mbind
+#  include <unistd.h> // syscall
+#endif
 
 int inRVMAddressSpace(Address a);
 
@@ -257,6 +261,50 @@ EXTERNAL int sysMProtect(char *start, size_t length, int prot)
   return mprotect(start, length, prot);
 }
 
+/**
+ * madvise.
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ *            advice (Java int)
+ * Returned:  0 (success) or -1 (failure) (Java int)
+ */
+EXTERNAL int sysMAdvise(char *start, size_t length, int advice)
+{
+  TRACE_PRINTF("%s: sysMAdvise %p %zu %d\n",
+               Me, start, length, advice);
+  return madvise(start, length, advice);
+}
+
+/**
+ * Ask that pages of a region not yet backed by physical memory be
+ * allocated on the given NUMA node, falling back to other nodes when it
+ * is full.  Uses the mbind system call directly so that libnuma is not
+ * required.  Pages that are already resident are not moved.
+ *
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ *            node (Java int)
+ * Returned:  0 (success) or -1 (failure or unsupported) (Java int)
+ */
+EXTERNAL int sysNumaPreferNode(char *start, size_t length, int node)
+{
+  TRACE_PRINTF("%s: sysNumaPreferNode %p %zu %d\n",
+               Me, start, length, node);
+#if defined(RVM_FOR_LINUX) && defined(SYS_mbind)
+  {
+    const int MPOL_PREFERRED_MODE = 1; /* MPOL_PREFERRED from numaif.h */
+    unsigned long mask[4];
+    unsigned long bits = 8 * sizeof(unsigned long);
+    if (node < 0 || node >= (int) (bits * 4)) return -1;
+    memset(mask, 0, sizeof(mask));
+    mask[node / bits] = 1UL << (node % bits);
+    return (int) syscall(SYS_mbind, start, length, MPOL_PREFERRED_MODE, mask, bits * 4 + 1, 0);
+  }
+#else
+  return -1;
+#endif
+}
+
 /** Memory to memory copy. Memory regions must not overlap. */
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt)
 {
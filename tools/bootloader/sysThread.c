@@ -24,6 +24,8 @@
 #ifdef RVM_FOR_LINUX
 #  include <sys/sysinfo.h> // get_nprocs
 #  include <sys/ucontext.h>
+#  include <dirent.h> // opendir, readdir
+#  include <stdio.h> // snprintf, sscanf
 #endif // def RVM_FOR_LINUX
 
 /** Constant to show that the newly created thread is a child */
@@ -457,6 +459,35 @@ EXTERNAL void sysThreadBind(int cpuId)
 #endif
 }
 
+/**
+ * Find the NUMA node that a processor belongs to.  On Linux the node is
+ * read from sysfs, so libnuma is not required.
+ *
+ * Taken:     cpuId [in] the processor
+ * Returned:  the node, or -1 if it cannot be determined (e.g. the kernel
+ *            was built without NUMA support)
+ */
+EXTERNAL int sysCpuNumaNode(int cpuId)
+{
+  int node = -1;
+  TRACE_PRINTF("%s: sysCpuNumaNode %d\n", Me, cpuId);
+#ifdef RVM_FOR_LINUX
+  char path[64];
+  DIR *dir;
+  struct dirent *entry;
+  snprintf(path, sizeof(path), "/sys/devices/system/cpu/cpu%d", cpuId);
+  dir = opendir(path);
+  if (dir != NULL) {
+    while ((entry = readdir(dir)) != NULL) {
+      if (sscanf(entry->d_name, "node%d", &node) == 1) break;
+      node = -1;
+    }
+    closedir(dir);
+  }
+#endif
+  return node;
+}
+
 /**
  * Function called by pthread startup
  *